@@ -4,9 +4,14 @@ import com.launchdarkly.logging.LDLogger;
 import com.launchdarkly.sdk.server.subsystems.BigSegmentStore;
 import com.launchdarkly.sdk.server.subsystems.BigSegmentStoreTypes;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 
 final class RedisBigSegmentStoreImpl extends RedisStoreImplBase implements BigSegmentStore {
   private final String syncTimeKey;
@@ -29,6 +34,27 @@ final class RedisBigSegmentStoreImpl extends RedisStoreImplBase implements BigSe
     }
   }
 
+  // This overrides BigSegmentStore.getMemberships in SDK 7.16.0 and later; it has no @Override annotation
+  // because we still compile against older SDK versions that don't have that method.
+  public Map<String, BigSegmentStoreTypes.Membership> getMemberships(Collection<String> userHashes) {
+    Map<String, Response<Set<String>>> includedResponses = new HashMap<>();
+    Map<String, Response<Set<String>>> excludedResponses = new HashMap<>();
+    try (Jedis jedis = pool.getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (String userHash: userHashes) {
+        includedResponses.put(userHash, pipeline.smembers(includedKeyPrefix + userHash));
+        excludedResponses.put(userHash, pipeline.smembers(excludedKeyPrefix + userHash));
+      }
+      pipeline.sync();
+    }
+    Map<String, BigSegmentStoreTypes.Membership> ret = new HashMap<>();
+    for (String userHash: includedResponses.keySet()) {
+      ret.put(userHash, BigSegmentStoreTypes.createMembershipFromSegmentRefs(
+          includedResponses.get(userHash).get(), excludedResponses.get(userHash).get()));
+    }
+    return ret;
+  }
+
   @Override
   public BigSegmentStoreTypes.StoreMetadata getMetadata() {
     try (Jedis jedis = pool.getResource()) {
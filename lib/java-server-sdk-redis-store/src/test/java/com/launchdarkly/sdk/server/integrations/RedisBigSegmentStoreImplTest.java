@@ -2,8 +2,18 @@ package com.launchdarkly.sdk.server.integrations;
 
 import com.launchdarkly.sdk.server.subsystems.BigSegmentStore;
 import com.launchdarkly.sdk.server.subsystems.BigSegmentStoreTypes;
+import com.launchdarkly.sdk.server.subsystems.ClientContext;
 import com.launchdarkly.sdk.server.subsystems.ComponentConfigurer;
 
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
 import redis.clients.jedis.Jedis;
 
 @SuppressWarnings("javadoc")
@@ -48,4 +58,47 @@ public class RedisBigSegmentStoreImplTest extends BigSegmentStoreTestBase {
       }
     }
   }
+
+  // getMemberships is not covered by BigSegmentStoreTestBase, because we build against an SDK version that
+  // does not have it; so we call it directly on the implementation class.
+  @Test
+  public void getMembershipsReturnsSameResultsAsGetMembership() throws Exception {
+    String prefix = "testprefix";
+    clearData(prefix);
+    setSegments(prefix, "userhash1", Arrays.asList("key1", "key2"), Collections.<String>emptyList());
+    setSegments(prefix, "userhash2", Collections.<String>emptyList(), Arrays.asList("key1"));
+    setSegments(prefix, "userhash3", Arrays.asList("key1", "key3"), Arrays.asList("key2", "key3"));
+
+    try (BigSegmentStore store = makeStore(prefix).build(new ClientContext(""))) {
+      Map<String, BigSegmentStoreTypes.Membership> memberships = ((RedisBigSegmentStoreImpl)store).getMemberships(
+          Arrays.asList("userhash1", "userhash2", "userhash3", "unknownhash"));
+      assertEquals(4, memberships.size());
+
+      BigSegmentStoreTypes.Membership m1 = memberships.get("userhash1");
+      assertEquals(Boolean.TRUE, m1.checkMembership("key1"));
+      assertEquals(Boolean.TRUE, m1.checkMembership("key2"));
+      assertNull(m1.checkMembership("key3"));
+
+      BigSegmentStoreTypes.Membership m2 = memberships.get("userhash2");
+      assertEquals(Boolean.FALSE, m2.checkMembership("key1"));
+      assertNull(m2.checkMembership("key2"));
+
+      BigSegmentStoreTypes.Membership m3 = memberships.get("userhash3");
+      assertEquals(Boolean.TRUE, m3.checkMembership("key1"));
+      assertEquals(Boolean.FALSE, m3.checkMembership("key2"));
+      assertEquals(Boolean.TRUE, m3.checkMembership("key3")); // include takes precedence over exclude
+
+      BigSegmentStoreTypes.Membership m4 = memberships.get("unknownhash");
+      for (String ref: Arrays.asList("key1", "key2", "key3")) {
+        assertNull(m4.checkMembership(ref));
+      }
+
+      for (String userHash: memberships.keySet()) {
+        BigSegmentStoreTypes.Membership single = store.getMembership(userHash);
+        for (String ref: Arrays.asList("key1", "key2", "key3")) {
+          assertEquals(single.checkMembership(ref), memberships.get(userHash).checkMembership(ref));
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,104 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.server.DataModel.Segment;
+import com.launchdarkly.sdk.server.interfaces.LDClientInterface;
+import com.launchdarkly.sdk.server.subsystems.DataStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.launchdarkly.sdk.server.Evaluator.makeBigSegmentRef;
+import static com.launchdarkly.sdk.server.ModelBuilders.booleanFlagWithClauses;
+import static com.launchdarkly.sdk.server.ModelBuilders.clauseMatchingSegment;
+import static com.launchdarkly.sdk.server.ModelBuilders.segmentBuilder;
+import static com.launchdarkly.sdk.server.TestComponents.initedDataStore;
+import static com.launchdarkly.sdk.server.TestComponents.specificComponent;
+import static com.launchdarkly.sdk.server.TestUtil.upsertFlag;
+import static com.launchdarkly.sdk.server.TestUtil.upsertSegment;
+import static com.launchdarkly.sdk.server.TestValues.SDK_KEY;
+import static com.launchdarkly.sdk.server.subsystems.BigSegmentStoreTypes.createMembershipFromSegmentRefs;
+
+/**
+ * These benchmarks are a load test of a request fan-out that evaluates a Big Segment flag for many contexts
+ * that are not yet in the Big Segment membership cache, using an in-memory BigSegmentStore that simulates
+ * the latency of a database round trip. Without prefetching, each context costs one round trip; with
+ * prefetchBigSegments(), the whole batch costs one.
+ */
+public class BigSegmentPrefetchBenchmarks {
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    @Param({"10", "100"})
+    public int contextCount;
+
+    @Param({"1"})
+    public int latencyMillis;
+
+    LDClientInterface client;
+    private int batchNumber;
+
+    @Setup
+    public void setUp() {
+      DataStore dataStore = initedDataStore();
+      Segment segment = segmentBuilder("big-segment").unbounded(true).generation(1).build();
+      upsertSegment(dataStore, segment);
+      upsertFlag(dataStore, booleanFlagWithClauses("flag", clauseMatchingSegment(segment)));
+
+      TestComponents.InMemoryBigSegmentStore store =
+          new TestComponents.InMemoryBigSegmentStore(Duration.ofMillis(latencyMillis));
+      store.setMembership("batch0-context0",
+          createMembershipFromSegmentRefs(Collections.singleton(makeBigSegmentRef(segment)), null));
+
+      LDConfig config = new LDConfig.Builder()
+        .dataStore(specificComponent(dataStore))
+        .bigSegments(Components.bigSegments(specificComponent(store)))
+        .events(Components.noEvents())
+        .dataSource(Components.externalUpdatesOnly())
+        .logging(Components.noLogging())
+        .build();
+      client = new LDClient(SDK_KEY, config);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+      client.close();
+    }
+
+    // Returns contexts that have never been evaluated before, so their memberships are not cached.
+    List<LDContext> nextContexts() {
+      LDContext[] contexts = new LDContext[contextCount];
+      for (int i = 0; i < contextCount; i++) {
+        contexts[i] = LDContext.create("batch" + batchNumber + "-context" + i);
+      }
+      batchNumber++;
+      return Arrays.asList(contexts);
+    }
+  }
+
+  @Benchmark
+  public void evaluateWithoutPrefetch(BenchmarkInputs inputs, Blackhole bh) throws Exception {
+    for (LDContext context: inputs.nextContexts()) {
+      bh.consume(inputs.client.boolVariation("flag", context, false));
+    }
+  }
+
+  @Benchmark
+  public void evaluateWithPrefetch(BenchmarkInputs inputs, Blackhole bh) throws Exception {
+    List<LDContext> contexts = inputs.nextContexts();
+    inputs.client.prefetchBigSegments(contexts);
+    for (LDContext context: contexts) {
+      bh.consume(inputs.client.boolVariation("flag", context, false));
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.launchdarkly.sdk.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * These benchmarks compare lookups in the CompactStringSet that is used for large target lists and segment
+ * key lists with lookups in the LinkedHashSet that Gson would otherwise create, for keys that are UUID
+ * strings. Lookups in a CompactStringSet are a binary search, so they are expected to be slower; the point
+ * of it is memory use, which is checked by CompactStringSetTest rather than here. The smallest key count is
+ * CompactStringSet.MIN_COMPACT_SIZE, the smallest set that is compacted.
+ */
+public class CompactStringSetBenchmarks {
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    @Param({"10000", "150000"})
+    public int keyCount;
+
+    List<String> keys;
+    Set<String> hashSet;
+    Set<String> compactSet;
+    String[] presentKeys;
+    String[] absentKeys;
+    int index;
+
+    @Setup
+    public void setUp() {
+      keys = makeKeys(keyCount);
+      hashSet = new LinkedHashSet<>(keys);
+      compactSet = CompactStringSet.of(keys);
+      if (!(compactSet instanceof CompactStringSet)) {
+        throw new IllegalStateException("set should be compacted");
+      }
+      // Use separate String instances for lookups, as we would have for a context key
+      presentKeys = new String[1000];
+      absentKeys = new String[1000];
+      for (int i = 0; i < presentKeys.length; i++) {
+        presentKeys[i] = new String(keys.get((i * 7919) % keyCount).toCharArray());
+        absentKeys[i] = UUID.randomUUID().toString();
+      }
+    }
+
+    private static List<String> makeKeys(int count) {
+      Random random = new Random(1);
+      List<String> keys = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        keys.add(new UUID(random.nextLong(), random.nextLong()).toString());
+      }
+      return keys;
+    }
+
+    String nextPresentKey() {
+      index = (index + 1) % presentKeys.length;
+      return presentKeys[index];
+    }
+
+    String nextAbsentKey() {
+      index = (index + 1) % absentKeys.length;
+      return absentKeys[index];
+    }
+  }
+
+  @Benchmark
+  public boolean hashSetHit(BenchmarkInputs inputs) throws Exception {
+    return inputs.hashSet.contains(inputs.nextPresentKey());
+  }
+
+  @Benchmark
+  public boolean hashSetMiss(BenchmarkInputs inputs) throws Exception {
+    return inputs.hashSet.contains(inputs.nextAbsentKey());
+  }
+
+  @Benchmark
+  public boolean compactSetHit(BenchmarkInputs inputs) throws Exception {
+    return inputs.compactSet.contains(inputs.nextPresentKey());
+  }
+
+  @Benchmark
+  public boolean compactSetMiss(BenchmarkInputs inputs) throws Exception {
+    return inputs.compactSet.contains(inputs.nextAbsentKey());
+  }
+}
@@ -0,0 +1,65 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.ItemDescriptor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static com.launchdarkly.sdk.server.DataModel.FEATURES;
+import static com.launchdarkly.sdk.server.ModelBuilders.flagBuilder;
+import static com.launchdarkly.sdk.server.TestUtil.upsertFlag;
+
+/**
+ * These benchmarks compare the ways the SDK can look up a flag in a large in-memory data store: the
+ * generic {@link ReadOnlyStore#get} lookup, the typed flag index, and a {@link FlagHandle}.
+ */
+public class DataStoreFlagLookupBenchmarks {
+  private static final int FLAG_COUNT = 10000;
+  private static final int LOOKUP_COUNT = 100;
+
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    ReadOnlyStore store;
+    final String[] flagKeys = new String[LOOKUP_COUNT];
+    final FlagHandle[] flagHandles = new FlagHandle[LOOKUP_COUNT];
+
+    @Setup
+    public void setUp() {
+      InMemoryDataStore dataStore = new InMemoryDataStore();
+      for (int i = 0; i < FLAG_COUNT; i++) {
+        upsertFlag(dataStore, flagBuilder("flag" + i).version(1).build());
+      }
+      store = new ReadonlyStoreFacade(dataStore);
+      for (int i = 0; i < LOOKUP_COUNT; i++) {
+        // spread the lookups across the key space
+        flagKeys[i] = "flag" + (i * (FLAG_COUNT / LOOKUP_COUNT));
+        flagHandles[i] = new FlagHandle(null, store, flagKeys[i]);
+      }
+    }
+  }
+
+  @Benchmark
+  public void genericLookup(BenchmarkInputs inputs, Blackhole bh) throws Exception {
+    for (String key: inputs.flagKeys) {
+      ItemDescriptor item = inputs.store.get(FEATURES, key);
+      bh.consume(item == null ? null : (DataModel.FeatureFlag)item.getItem());
+    }
+  }
+
+  @Benchmark
+  public void flagIndexLookup(BenchmarkInputs inputs, Blackhole bh) throws Exception {
+    for (String key: inputs.flagKeys) {
+      bh.consume(inputs.store.getFlag(key));
+    }
+  }
+
+  @Benchmark
+  public void flagHandleLookup(BenchmarkInputs inputs, Blackhole bh) throws Exception {
+    for (FlagHandle handle: inputs.flagHandles) {
+      bh.consume(handle.getFlag());
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.AttributeRef;
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
+import com.launchdarkly.sdk.server.DataModel.Rollout;
+import com.launchdarkly.sdk.server.DataModel.RolloutKind;
+import com.launchdarkly.sdk.server.DataModel.WeightedVariation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+
+import static com.launchdarkly.sdk.server.EvaluatorBucketing.computeBucketValue;
+import static com.launchdarkly.sdk.server.EvaluatorTestUtil.evaluatorBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.flagBuilder;
+
+/**
+ * These benchmarks cover the percentage rollout hash computation by itself. Since this runs for every
+ * rollout, experiment, and weighted segment rule, it should not allocate any memory; check the
+ * gc.alloc.rate.norm value reported by the gc profiler (which is enabled in build.gradle).
+ * <p>
+ * The "sharedSeed" benchmarks evaluate a set of flags whose rollouts all use the same seed, as
+ * allFlagsState() would, with and without an EvaluationScope to remember the bucket value.
+ */
+public class EvaluatorBucketingBenchmarks {
+  private static final EvaluationRecorder NO_OP_RECORDER = new EvaluationRecorder() {};
+  private static final int SHARED_SEED_FLAG_COUNT = 50;
+
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    final LDContext context = LDContext.builder("user-key-0123456789")
+        .set("stringattr", "some-attribute-value")
+        .set("intattr", 123456)
+        .build();
+    final LDContext nonAsciiContext = LDContext.create("üser-€-😀");
+    final AttributeRef stringAttr = AttributeRef.fromLiteral("stringattr");
+    final AttributeRef intAttr = AttributeRef.fromLiteral("intattr");
+    final Integer seed = 61;
+    final Evaluator evaluator = evaluatorBuilder().build();
+    final FeatureFlag[] sharedSeedFlags = new FeatureFlag[SHARED_SEED_FLAG_COUNT];
+
+    public BenchmarkInputs() {
+      Rollout rollout = new Rollout(null, Arrays.asList(
+          new WeightedVariation(0, 50000, false),
+          new WeightedVariation(1, 50000, false)
+          ), null, RolloutKind.experiment, seed);
+      for (int i = 0; i < sharedSeedFlags.length; i++) {
+        sharedSeedFlags[i] = flagBuilder("flag" + i)
+            .on(true)
+            .fallthrough(rollout)
+            .offVariation(0)
+            .variations(LDValue.of(false), LDValue.of(true))
+            .build();
+      }
+    }
+  }
+
+  @Benchmark
+  public float bucketByKeyWithSalt(BenchmarkInputs inputs) throws Exception {
+    return computeBucketValue(false, null, inputs.context, null, "flag-key", null, "flag-salt");
+  }
+
+  @Benchmark
+  public float bucketByKeyWithSeed(BenchmarkInputs inputs) throws Exception {
+    return computeBucketValue(true, inputs.seed, inputs.context, null, "flag-key", null, "flag-salt");
+  }
+
+  @Benchmark
+  public float bucketByNonAsciiKey(BenchmarkInputs inputs) throws Exception {
+    return computeBucketValue(false, null, inputs.nonAsciiContext, null, "flag-key", null, "flag-salt");
+  }
+
+  @Benchmark
+  public float bucketByStringAttribute(BenchmarkInputs inputs) throws Exception {
+    return computeBucketValue(false, null, inputs.context, null, "flag-key", inputs.stringAttr, "flag-salt");
+  }
+
+  @Benchmark
+  public float bucketByIntAttribute(BenchmarkInputs inputs) throws Exception {
+    return computeBucketValue(false, null, inputs.context, null, "flag-key", inputs.intAttr, "flag-salt");
+  }
+
+  @Benchmark
+  public void sharedSeedFlagsWithoutScope(BenchmarkInputs inputs, Blackhole bh) throws Exception {
+    for (FeatureFlag flag: inputs.sharedSeedFlags) {
+      bh.consume(inputs.evaluator.evaluate(flag, inputs.context, NO_OP_RECORDER));
+    }
+  }
+
+  @Benchmark
+  public void sharedSeedFlagsWithScope(BenchmarkInputs inputs, Blackhole bh) throws Exception {
+    EvaluationScope scope = inputs.evaluator.newScope(inputs.context);
+    for (FeatureFlag flag: inputs.sharedSeedFlags) {
+      bh.consume(inputs.evaluator.evaluate(flag, inputs.context, NO_OP_RECORDER, scope));
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.AttributeRef;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.Clause;
+import com.launchdarkly.sdk.server.DataModel.Operator;
+import com.launchdarkly.sdk.server.EvaluatorOperators.ValueMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+
+import static com.launchdarkly.sdk.server.EvaluatorHelpers.matchClauseWithoutSegments;
+
+/**
+ * These benchmarks cover each family of clause operators (string, numeric, date, semver, and regex),
+ * matching one context value against a clause with several values, none of which match, so every value
+ * is checked. The "compiled" benchmarks use the ValueMatcher that DataModelPreprocessing builds for a
+ * clause; the "uncompiled" ones use the per-value operator dispatch that is used if a clause has not
+ * been compiled. Neither should allocate memory, except for parsing the context value in the date and
+ * semver cases.
+ */
+public class EvaluatorOperatorBenchmarks {
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    final OperatorCase string = new OperatorCase(Operator.startsWith, LDValue.of("user@example.com"),
+        LDValue.of("admin@"), LDValue.of("root@"), LDValue.of("test@"), LDValue.of("qa@"), LDValue.of("ops@"));
+    final OperatorCase numeric = new OperatorCase(Operator.lessThan, LDValue.of(1000),
+        LDValue.of(1), LDValue.of(2), LDValue.of(3), LDValue.of(4.5), LDValue.of(5));
+    final OperatorCase date = new OperatorCase(Operator.before, LDValue.of(1700000000000L),
+        LDValue.of("2020-01-01T00:00:00Z"), LDValue.of("2021-01-01T00:00:00Z"), LDValue.of("2022-01-01T00:00:00Z"),
+        LDValue.of(1500000000000L), LDValue.of(1600000000000L));
+    final OperatorCase semVer = new OperatorCase(Operator.semVerLessThan, LDValue.of("3.2.1"),
+        LDValue.of("1.0.0"), LDValue.of("2.0.0"), LDValue.of("2.5.0-beta.1"), LDValue.of("3.0"), LDValue.of("3.2.0"));
+    final OperatorCase regex = new OperatorCase(Operator.matches, LDValue.of("user@example.com"),
+        LDValue.of("^admin"), LDValue.of("@test\\.org$"), LDValue.of("[0-9]{5}"), LDValue.of("^qa-"), LDValue.of("ops$"));
+  }
+
+  static final class OperatorCase {
+    final Clause clause;
+    final ValueMatcher matcher;
+    final LDValue contextValue;
+
+    OperatorCase(Operator op, LDValue contextValue, LDValue... clauseValues) {
+      this.clause = new Clause(null, AttributeRef.fromLiteral("attr"), op, Arrays.asList(clauseValues), false);
+      DataModelPreprocessing.preprocessClause(clause);
+      this.matcher = EvaluatorOperators.compileValueMatcher(op, clause.getValues(), clause.preprocessed);
+      this.contextValue = contextValue;
+      if (matcher.matchAny(contextValue) || matchClauseWithoutSegments(clause, contextValue)) {
+        throw new IllegalStateException("benchmark input for " + op + " should not match");
+      }
+    }
+  }
+
+  @Benchmark
+  public boolean stringOperatorCompiled(BenchmarkInputs inputs) throws Exception {
+    return inputs.string.matcher.matchAny(inputs.string.contextValue);
+  }
+
+  @Benchmark
+  public boolean stringOperatorUncompiled(BenchmarkInputs inputs) throws Exception {
+    return matchClauseWithoutSegments(inputs.string.clause, inputs.string.contextValue);
+  }
+
+  @Benchmark
+  public boolean numericOperatorCompiled(BenchmarkInputs inputs) throws Exception {
+    return inputs.numeric.matcher.matchAny(inputs.numeric.contextValue);
+  }
+
+  @Benchmark
+  public boolean numericOperatorUncompiled(BenchmarkInputs inputs) throws Exception {
+    return matchClauseWithoutSegments(inputs.numeric.clause, inputs.numeric.contextValue);
+  }
+
+  @Benchmark
+  public boolean dateOperatorCompiled(BenchmarkInputs inputs) throws Exception {
+    return inputs.date.matcher.matchAny(inputs.date.contextValue);
+  }
+
+  @Benchmark
+  public boolean dateOperatorUncompiled(BenchmarkInputs inputs) throws Exception {
+    return matchClauseWithoutSegments(inputs.date.clause, inputs.date.contextValue);
+  }
+
+  @Benchmark
+  public boolean semVerOperatorCompiled(BenchmarkInputs inputs) throws Exception {
+    return inputs.semVer.matcher.matchAny(inputs.semVer.contextValue);
+  }
+
+  @Benchmark
+  public boolean semVerOperatorUncompiled(BenchmarkInputs inputs) throws Exception {
+    return matchClauseWithoutSegments(inputs.semVer.clause, inputs.semVer.contextValue);
+  }
+
+  @Benchmark
+  public boolean regexOperatorCompiled(BenchmarkInputs inputs) throws Exception {
+    return inputs.regex.matcher.matchAny(inputs.regex.contextValue);
+  }
+
+  @Benchmark
+  public boolean regexOperatorUncompiled(BenchmarkInputs inputs) throws Exception {
+    return matchClauseWithoutSegments(inputs.regex.clause, inputs.regex.contextValue);
+  }
+}
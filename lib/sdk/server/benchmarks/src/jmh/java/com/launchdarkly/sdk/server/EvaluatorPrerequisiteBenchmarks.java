@@ -0,0 +1,81 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static com.launchdarkly.sdk.server.EvaluatorTestUtil.evaluatorBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.flagBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.prerequisite;
+
+/**
+ * These benchmarks cover a flag at the top of a chain of prerequisites, all of which are met. The "linked"
+ * benchmark uses the PrerequisiteLinks that DataSourceUpdatesImpl creates when the flags are stored in an
+ * in-memory store; the "unlinked" benchmark looks up each prerequisite by key and checks for cycles, as the
+ * evaluator does for other stores.
+ */
+public class EvaluatorPrerequisiteBenchmarks {
+  private static final EvaluationRecorder NO_OP_RECORDER = new EvaluationRecorder() {};
+
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    @Param({"1", "5", "20"})
+    public int chainLength;
+
+    final LDContext context = LDContext.create("user-key-0123456789");
+    Evaluator evaluator;
+    FeatureFlag linkedFlag;
+    FeatureFlag unlinkedFlag;
+
+    @Setup
+    public void setUp() {
+      FeatureFlag[] linked = makeChain("linked", chainLength);
+      FeatureFlag[] unlinked = makeChain("unlinked", chainLength);
+      for (int i = 0; i < chainLength; i++) {
+        linked[i].preprocessed.prerequisiteLinks =
+            new DataModelPreprocessing.PrerequisiteLinks(new FeatureFlag[] { linked[i + 1] }, 1);
+      }
+      // The evaluator's store only contains the unlinked flags, so the evaluator builder will throw an
+      // exception if the linked benchmark does any lookups.
+      evaluator = evaluatorBuilder().withStoredFlags(unlinked).withDataVersion(1).build();
+      linkedFlag = linked[0];
+      unlinkedFlag = unlinked[0];
+      if (!evaluator.evaluate(linkedFlag, context, NO_OP_RECORDER).getValue().booleanValue() ||
+          !evaluator.evaluate(unlinkedFlag, context, NO_OP_RECORDER).getValue().booleanValue()) {
+        throw new IllegalStateException("prerequisites should be met");
+      }
+    }
+
+    private static FeatureFlag[] makeChain(String keyPrefix, int length) {
+      FeatureFlag[] flags = new FeatureFlag[length + 1];
+      for (int i = length; i >= 0; i--) {
+        ModelBuilders.FlagBuilder builder = flagBuilder(keyPrefix + i)
+            .on(true)
+            .fallthroughVariation(1)
+            .offVariation(0)
+            .variations(LDValue.of(false), LDValue.of(true));
+        if (i < length) {
+          builder.prerequisites(prerequisite(keyPrefix + (i + 1), 1));
+        }
+        flags[i] = builder.build();
+      }
+      return flags;
+    }
+  }
+
+  @Benchmark
+  public EvalResult prerequisiteChainLinked(BenchmarkInputs inputs) throws Exception {
+    return inputs.evaluator.evaluate(inputs.linkedFlag, inputs.context, NO_OP_RECORDER);
+  }
+
+  @Benchmark
+  public EvalResult prerequisiteChainUnlinked(BenchmarkInputs inputs) throws Exception {
+    return inputs.evaluator.evaluate(inputs.unlinkedFlag, inputs.context, NO_OP_RECORDER);
+  }
+}
@@ -0,0 +1,109 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.Operator;
+import com.launchdarkly.sdk.server.EvaluatorOperators.ValueMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * These benchmarks cover "matches" clauses with several regexes applied to user-agent strings. The
+ * "combined" benchmarks use the single alternation that EvaluatorOperators builds for such a clause, and
+ * the "separate" benchmarks try each regex in turn. The "cached" benchmark goes through a RegexMatchCache,
+ * as the evaluator does if LDConfig.Builder.regexMatchCacheSize is set, with a small set of recurring
+ * user agents.
+ */
+public class EvaluatorRegexBenchmarks {
+  private static final String[] REGEXES = new String[] {
+      "Googlebot/[0-9.]+",
+      "bingbot/[0-9.]+",
+      "(?i)yandex(bot|images)",
+      "facebookexternalhit/1\\.[01]",
+      "Slackbot-LinkExpanding",
+      "Twitterbot/[0-9.]+",
+      "\\bcurl/[0-9]+\\.[0-9]+",
+      "python-requests/[0-9.]+"
+  };
+
+  private static final String[] USER_AGENTS = new String[] {
+      "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36",
+      "Mozilla/5.0 (Macintosh; Intel Mac OS X 14_1) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.1 Safari/605.1.15",
+      "Mozilla/5.0 (iPhone; CPU iPhone OS 17_1 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Mobile/15E148",
+      "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)"
+  };
+
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    ValueMatcher combined;
+    ValueMatcher separate;
+    RegexMatchCache cache;
+    LDValue[] userAgents;
+    int index;
+
+    @Setup
+    public void setUp() {
+      List<LDValue> values = new ArrayList<>();
+      List<Pattern> patterns = new ArrayList<>();
+      for (String r: REGEXES) {
+        values.add(LDValue.of(r));
+        patterns.add(Pattern.compile(r));
+      }
+      combined = EvaluatorOperators.compileValueMatcher(Operator.matches, values, null);
+      separate = new SeparateRegexMatcher(patterns.toArray(new Pattern[patterns.size()]));
+      cache = new RegexMatchCache(1000);
+      userAgents = new LDValue[USER_AGENTS.length];
+      for (int i = 0; i < USER_AGENTS.length; i++) {
+        userAgents[i] = LDValue.of(USER_AGENTS[i]);
+        if (combined.matchAny(userAgents[i]) != separate.matchAny(userAgents[i])) {
+          throw new IllegalStateException("combined and separate regexes disagree for " + USER_AGENTS[i]);
+        }
+      }
+    }
+
+    LDValue nextUserAgent() {
+      index = (index + 1) % userAgents.length;
+      return userAgents[index];
+    }
+  }
+
+  @Benchmark
+  public boolean regexesCombined(BenchmarkInputs inputs) throws Exception {
+    return inputs.combined.matchAny(inputs.nextUserAgent());
+  }
+
+  @Benchmark
+  public boolean regexesSeparate(BenchmarkInputs inputs) throws Exception {
+    return inputs.separate.matchAny(inputs.nextUserAgent());
+  }
+
+  @Benchmark
+  public boolean regexesCombinedCached(BenchmarkInputs inputs) throws Exception {
+    return inputs.cache.matchAny(inputs.combined, inputs.nextUserAgent());
+  }
+
+  private static final class SeparateRegexMatcher extends ValueMatcher {
+    private final Pattern[] patterns;
+
+    SeparateRegexMatcher(Pattern[] patterns) {
+      this.patterns = patterns;
+    }
+
+    @Override
+    boolean matchAny(LDValue contextValue) {
+      String s = contextValue.stringValue();
+      for (Pattern p: patterns) {
+        if (p.matcher(s).find()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
+import com.launchdarkly.sdk.server.DataModel.Operator;
+import com.launchdarkly.sdk.server.DataModel.Rule;
+import com.launchdarkly.sdk.server.DataModelPreprocessing.FlagRulePreprocessed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.launchdarkly.sdk.server.EvaluatorTestUtil.evaluatorBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.clause;
+import static com.launchdarkly.sdk.server.ModelBuilders.flagBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.ruleBuilder;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * These benchmarks compare evaluation of flag rules through the compiled clause plan that is built by
+ * DataModelPreprocessing against the uncompiled code path that interprets the raw clauses, for flags
+ * with different numbers of rules. In each case the context only matches the last rule, so every rule
+ * has to be checked.
+ */
+public class EvaluatorRuleBenchmarks {
+  private static final EvaluationRecorder NO_OP_RECORDER = new EvaluationRecorder() {};
+
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    @Param({"1", "10", "100"})
+    public int ruleCount;
+
+    Evaluator evaluator;
+    FeatureFlag compiledFlag;
+    FeatureFlag interpretedFlag;
+    LDContext context;
+
+    @Setup
+    public void setUp() {
+      evaluator = evaluatorBuilder().build();
+      compiledFlag = makeFlag(ruleCount);
+      interpretedFlag = makeFlag(ruleCount);
+      for (Rule r: interpretedFlag.getRules()) {
+        // keep the precomputed results, but remove the compiled clauses
+        r.preprocessed = new FlagRulePreprocessed(r.preprocessed.allPossibleResults, null);
+      }
+      context = LDContext.builder("userkey")
+          .set("country", "country-" + (ruleCount - 1))
+          .set("email", "user@example.com")
+          .build();
+
+      // sanity check that both flags produce the expected result
+      assertEquals(LDValue.of(true), evaluator.evaluate(compiledFlag, context, NO_OP_RECORDER).getValue());
+      assertEquals(LDValue.of(true), evaluator.evaluate(interpretedFlag, context, NO_OP_RECORDER).getValue());
+    }
+
+    private static FeatureFlag makeFlag(int ruleCount) {
+      List<Rule> rules = new ArrayList<>();
+      for (int i = 0; i < ruleCount; i++) {
+        rules.add(ruleBuilder()
+            .id("rule" + i)
+            .clauses(
+                clause("email", Operator.endsWith, LDValue.of("@example.com")),
+                clause("country", Operator.in, LDValue.of("country-" + i))
+                )
+            .variation(1)
+            .build());
+      }
+      return flagBuilder("flag")
+          .on(true)
+          .rules(rules.toArray(new Rule[rules.size()]))
+          .fallthroughVariation(0)
+          .offVariation(0)
+          .variations(LDValue.of(false), LDValue.of(true))
+          .build();
+    }
+  }
+
+  @Benchmark
+  public EvalResult evaluateRulesWithCompiledClauses(BenchmarkInputs inputs) throws Exception {
+    return inputs.evaluator.evaluate(inputs.compiledFlag, inputs.context, NO_OP_RECORDER);
+  }
+
+  @Benchmark
+  public EvalResult evaluateRulesWithInterpretedClauses(BenchmarkInputs inputs) throws Exception {
+    return inputs.evaluator.evaluate(inputs.interpretedFlag, inputs.context, NO_OP_RECORDER);
+  }
+}
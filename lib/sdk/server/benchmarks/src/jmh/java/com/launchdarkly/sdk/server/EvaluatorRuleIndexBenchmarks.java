@@ -0,0 +1,96 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
+import com.launchdarkly.sdk.server.DataModel.Operator;
+import com.launchdarkly.sdk.server.DataModel.Rule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.launchdarkly.sdk.server.EvaluatorTestUtil.evaluatorBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.clause;
+import static com.launchdarkly.sdk.server.ModelBuilders.flagBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.ruleBuilder;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * These benchmarks cover flags with many rules of the form "key in [customer-N-a, customer-N-b, ...]", which
+ * DataModelPreprocessing indexes so that the matching rule can be found with one lookup. The context matches
+ * the last rule. With the index, the cost should stay flat as the number of rules grows; without it (the
+ * "unindexed" benchmark), it grows linearly.
+ */
+public class EvaluatorRuleIndexBenchmarks {
+  private static final EvaluationRecorder NO_OP_RECORDER = new EvaluationRecorder() {};
+  private static final int VALUES_PER_RULE = 5;
+
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    @Param({"10", "100", "500", "1000"})
+    public int ruleCount;
+
+    Evaluator evaluator;
+    FeatureFlag indexedFlag;
+    FeatureFlag unindexedFlag;
+    LDContext lastRuleContext;
+    LDContext noMatchContext;
+
+    @Setup
+    public void setUp() {
+      evaluator = evaluatorBuilder().build();
+      indexedFlag = makeFlag(ruleCount);
+      unindexedFlag = makeFlag(ruleCount);
+      unindexedFlag.preprocessed.ruleRunIndexes = null;
+      lastRuleContext = LDContext.create("customer-" + (ruleCount - 1) + "-" + (VALUES_PER_RULE - 1));
+      noMatchContext = LDContext.create("no-such-customer");
+
+      assertEquals(LDValue.of(true), evaluator.evaluate(indexedFlag, lastRuleContext, NO_OP_RECORDER).getValue());
+      assertEquals(LDValue.of(true), evaluator.evaluate(unindexedFlag, lastRuleContext, NO_OP_RECORDER).getValue());
+    }
+
+    private static FeatureFlag makeFlag(int ruleCount) {
+      List<Rule> rules = new ArrayList<>();
+      for (int i = 0; i < ruleCount; i++) {
+        LDValue[] values = new LDValue[VALUES_PER_RULE];
+        for (int j = 0; j < VALUES_PER_RULE; j++) {
+          values[j] = LDValue.of("customer-" + i + "-" + j);
+        }
+        rules.add(ruleBuilder().id("rule" + i).clauses(clause("key", Operator.in, values)).variation(1).build());
+      }
+      return flagBuilder("flag")
+          .on(true)
+          .rules(rules.toArray(new Rule[rules.size()]))
+          .fallthroughVariation(0)
+          .offVariation(0)
+          .variations(LDValue.of(false), LDValue.of(true))
+          .build();
+    }
+  }
+
+  @Benchmark
+  public EvalResult indexedRulesLastRuleMatches(BenchmarkInputs inputs) throws Exception {
+    return inputs.evaluator.evaluate(inputs.indexedFlag, inputs.lastRuleContext, NO_OP_RECORDER);
+  }
+
+  @Benchmark
+  public EvalResult indexedRulesNoRuleMatches(BenchmarkInputs inputs) throws Exception {
+    return inputs.evaluator.evaluate(inputs.indexedFlag, inputs.noMatchContext, NO_OP_RECORDER);
+  }
+
+  @Benchmark
+  public EvalResult unindexedRulesLastRuleMatches(BenchmarkInputs inputs) throws Exception {
+    return inputs.evaluator.evaluate(inputs.unindexedFlag, inputs.lastRuleContext, NO_OP_RECORDER);
+  }
+
+  @Benchmark
+  public EvalResult unindexedRulesNoRuleMatches(BenchmarkInputs inputs) throws Exception {
+    return inputs.evaluator.evaluate(inputs.unindexedFlag, inputs.noMatchContext, NO_OP_RECORDER);
+  }
+}
@@ -0,0 +1,82 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.Clause;
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
+import com.launchdarkly.sdk.server.DataModel.Operator;
+import com.launchdarkly.sdk.server.DataModel.Rule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static com.launchdarkly.sdk.server.EvaluatorTestUtil.evaluatorBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.clause;
+import static com.launchdarkly.sdk.server.ModelBuilders.flagBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.ruleBuilder;
+
+/**
+ * These benchmarks cover flags whose rules compare an "appVersion" attribute with semVerLessThan and
+ * semVerGreaterThan, and a "signupDate" attribute with before, which is a common way to target releases.
+ * The context's attribute values only need to be parsed once per evaluation, or once for all of the flags
+ * if an EvaluationScope is shared as it is in allFlagsState(); the "WithoutScope" benchmark parses them
+ * once per flag.
+ */
+public class EvaluatorSemVerBenchmarks {
+  private static final EvaluationRecorder NO_OP_RECORDER = new EvaluationRecorder() {};
+  private static final int FLAG_COUNT = 50;
+  private static final int RULES_PER_FLAG = 5;
+
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    final LDContext context = LDContext.builder("user-key-0123456789")
+        .set("appVersion", "4.12.3-beta.2+build.567")
+        .set("signupDate", "2021-06-15T12:00:00Z")
+        .build();
+    final Evaluator evaluator = evaluatorBuilder().build();
+    final FeatureFlag[] flags = new FeatureFlag[FLAG_COUNT];
+
+    public BenchmarkInputs() {
+      for (int i = 0; i < flags.length; i++) {
+        Rule[] rules = new Rule[RULES_PER_FLAG];
+        for (int j = 0; j < rules.length; j++) {
+          // the date clause matches and the version clause does not, so both attributes are compared in every rule
+          Clause versionClause = j % 2 == 0 ?
+              clause("appVersion", Operator.semVerLessThan, LDValue.of("1." + i + ".0")) :
+              clause("appVersion", Operator.semVerGreaterThan, LDValue.of("9." + i + ".0"));
+          Clause dateClause = clause("signupDate", Operator.before, LDValue.of("2030-01-01T00:00:00Z"));
+          rules[j] = ruleBuilder().id("rule" + j).clauses(dateClause, versionClause).variation(1).build();
+        }
+        flags[i] = flagBuilder("flag" + i)
+            .on(true)
+            .rules(rules)
+            .fallthroughVariation(0)
+            .offVariation(0)
+            .variations(LDValue.of(false), LDValue.of(true))
+            .build();
+      }
+    }
+  }
+
+  @Benchmark
+  public EvalResult singleSemVerFlag(BenchmarkInputs inputs) throws Exception {
+    return inputs.evaluator.evaluate(inputs.flags[0], inputs.context, NO_OP_RECORDER);
+  }
+
+  @Benchmark
+  public void semVerFlagsWithoutScope(BenchmarkInputs inputs, Blackhole bh) throws Exception {
+    for (FeatureFlag flag: inputs.flags) {
+      bh.consume(inputs.evaluator.evaluate(flag, inputs.context, NO_OP_RECORDER));
+    }
+  }
+
+  @Benchmark
+  public void semVerFlagsWithScope(BenchmarkInputs inputs, Blackhole bh) throws Exception {
+    EvaluationScope scope = inputs.evaluator.newScope(inputs.context);
+    for (FeatureFlag flag: inputs.flags) {
+      bh.consume(inputs.evaluator.evaluate(flag, inputs.context, NO_OP_RECORDER, scope));
+    }
+  }
+}
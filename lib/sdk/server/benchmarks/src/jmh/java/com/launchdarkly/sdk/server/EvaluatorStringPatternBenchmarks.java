@@ -0,0 +1,99 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.AttributeRef;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.Clause;
+import com.launchdarkly.sdk.server.DataModel.Operator;
+import com.launchdarkly.sdk.server.EvaluatorOperators.ValueMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.launchdarkly.sdk.server.EvaluatorHelpers.matchClauseWithoutSegments;
+
+/**
+ * These benchmarks cover startsWith, endsWith, and contains clauses with many values, such as a list of
+ * email domains. The "indexed" benchmarks use the StringPatternIndex that DataModelPreprocessing builds
+ * for such clauses, which should cost about the same regardless of the number of values; the "unindexed"
+ * benchmarks check each clause value in turn. The context value does not match any of the clause values,
+ * which is the worst case for the unindexed version.
+ */
+public class EvaluatorStringPatternBenchmarks {
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    @Param({"10", "1000", "10000"})
+    public int valueCount;
+
+    ValueMatcher indexedStartsWith;
+    ValueMatcher indexedEndsWith;
+    ValueMatcher indexedContains;
+    Clause unindexedStartsWith;
+    Clause unindexedEndsWith;
+    Clause unindexedContains;
+    final LDValue contextValue = LDValue.of("someone@example-domain-x.com");
+
+    @Setup
+    public void setUp() {
+      List<LDValue> prefixes = new ArrayList<>();
+      List<LDValue> suffixes = new ArrayList<>();
+      List<LDValue> substrings = new ArrayList<>();
+      for (int i = 0; i < valueCount; i++) {
+        prefixes.add(LDValue.of("someone-" + i + "@"));
+        suffixes.add(LDValue.of("@example-domain-" + i + ".com"));
+        substrings.add(LDValue.of("domain-" + i + "."));
+      }
+      indexedStartsWith = compile(Operator.startsWith, prefixes);
+      indexedEndsWith = compile(Operator.endsWith, suffixes);
+      indexedContains = compile(Operator.contains, substrings);
+      unindexedStartsWith = new Clause(null, AttributeRef.fromLiteral("email"), Operator.startsWith, prefixes, false);
+      unindexedEndsWith = new Clause(null, AttributeRef.fromLiteral("email"), Operator.endsWith, suffixes, false);
+      unindexedContains = new Clause(null, AttributeRef.fromLiteral("email"), Operator.contains, substrings, false);
+    }
+
+    private ValueMatcher compile(Operator op, List<LDValue> values) {
+      Clause c = new Clause(null, AttributeRef.fromLiteral("email"), op, values, false);
+      DataModelPreprocessing.preprocessClause(c);
+      ValueMatcher m = EvaluatorOperators.compileValueMatcher(op, values, c.preprocessed);
+      if (m.matchAny(contextValue)) {
+        throw new IllegalStateException("benchmark input for " + op + " should not match");
+      }
+      return m;
+    }
+  }
+
+  @Benchmark
+  public boolean startsWithIndexed(BenchmarkInputs inputs) throws Exception {
+    return inputs.indexedStartsWith.matchAny(inputs.contextValue);
+  }
+
+  @Benchmark
+  public boolean startsWithUnindexed(BenchmarkInputs inputs) throws Exception {
+    return matchClauseWithoutSegments(inputs.unindexedStartsWith, inputs.contextValue);
+  }
+
+  @Benchmark
+  public boolean endsWithIndexed(BenchmarkInputs inputs) throws Exception {
+    return inputs.indexedEndsWith.matchAny(inputs.contextValue);
+  }
+
+  @Benchmark
+  public boolean endsWithUnindexed(BenchmarkInputs inputs) throws Exception {
+    return matchClauseWithoutSegments(inputs.unindexedEndsWith, inputs.contextValue);
+  }
+
+  @Benchmark
+  public boolean containsIndexed(BenchmarkInputs inputs) throws Exception {
+    return inputs.indexedContains.matchAny(inputs.contextValue);
+  }
+
+  @Benchmark
+  public boolean containsUnindexed(BenchmarkInputs inputs) throws Exception {
+    return matchClauseWithoutSegments(inputs.unindexedContains, inputs.contextValue);
+  }
+}
@@ -0,0 +1,80 @@
+package com.launchdarkly.sdk.server;
+
+import com.google.common.collect.ImmutableList;
+import com.launchdarkly.sdk.fdv2.ChangeSet;
+import com.launchdarkly.sdk.fdv2.ChangeSetType;
+import com.launchdarkly.sdk.fdv2.Selector;
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
+import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.DataKind;
+import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.FullDataSet;
+import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.ItemDescriptor;
+import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.KeyedItems;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.launchdarkly.sdk.server.DataModel.FEATURES;
+import static com.launchdarkly.sdk.server.ModelBuilders.flagBuilder;
+
+/**
+ * These benchmarks measure the cost of applying a streaming patch to one flag in an
+ * {@link InMemoryDataStore} that already contains many flags, either as an upsert (FDv1) or as a partial
+ * change set (FDv2).
+ */
+public class InMemoryDataStoreUpdateBenchmarks {
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    @Param({"1000", "10000", "100000"})
+    public int itemCount;
+
+    InMemoryDataStore store;
+    FeatureFlag[] patchFlags;
+    int nextPatch = 0;
+    int nextVersion = 2;
+
+    @Setup
+    public void setUp() {
+      List<Map.Entry<String, ItemDescriptor>> flags = new ArrayList<>();
+      for (int i = 0; i < itemCount; i++) {
+        flags.add(new AbstractMap.SimpleEntry<>("flag" + i, new ItemDescriptor(1, flagBuilder("flag" + i).version(1).build())));
+      }
+      store = new InMemoryDataStore();
+      store.init(new FullDataSet<ItemDescriptor>(ImmutableList.<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>>of(
+          new AbstractMap.SimpleEntry<>(FEATURES, new KeyedItems<>(flags)))));
+      patchFlags = new FeatureFlag[100];
+      for (int i = 0; i < patchFlags.length; i++) {
+        patchFlags[i] = flagBuilder("flag" + (i * (itemCount / patchFlags.length))).version(2).build();
+      }
+    }
+
+    ItemDescriptor nextPatch() {
+      FeatureFlag flag = patchFlags[nextPatch];
+      nextPatch = (nextPatch + 1) % patchFlags.length;
+      // each patch must have a higher version than the last one for the same flag, or upsert will ignore it
+      return new ItemDescriptor(nextVersion++, flag);
+    }
+  }
+
+  @Benchmark
+  public boolean upsertOneFlag(BenchmarkInputs inputs) throws Exception {
+    ItemDescriptor item = inputs.nextPatch();
+    return inputs.store.upsert(FEATURES, ((FeatureFlag)item.getItem()).getKey(), item);
+  }
+
+  @Benchmark
+  public void applyPartialChangeSetWithOneFlag(BenchmarkInputs inputs) throws Exception {
+    ItemDescriptor item = inputs.nextPatch();
+    Map.Entry<DataKind, KeyedItems<ItemDescriptor>> data = new AbstractMap.SimpleEntry<>(FEATURES,
+        new KeyedItems<>(ImmutableList.of(new AbstractMap.SimpleEntry<>(((FeatureFlag)item.getItem()).getKey(), item))));
+    inputs.store.apply(new ChangeSet<>(ChangeSetType.Partial, Selector.make(item.getVersion(), "state"),
+        ImmutableList.of(data), null, false));
+  }
+}
@@ -0,0 +1,91 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.Operator;
+import com.launchdarkly.sdk.server.DataModel.Segment;
+import com.launchdarkly.sdk.server.DataModel.SegmentRule;
+import com.launchdarkly.sdk.server.interfaces.LDClientInterface;
+import com.launchdarkly.sdk.server.subsystems.DataStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+
+import static com.launchdarkly.sdk.server.ModelBuilders.booleanFlagWithClauses;
+import static com.launchdarkly.sdk.server.ModelBuilders.clause;
+import static com.launchdarkly.sdk.server.ModelBuilders.clauseMatchingSegment;
+import static com.launchdarkly.sdk.server.ModelBuilders.segmentBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.segmentRuleBuilder;
+import static com.launchdarkly.sdk.server.TestComponents.initedDataStore;
+import static com.launchdarkly.sdk.server.TestComponents.specificComponent;
+import static com.launchdarkly.sdk.server.TestUtil.upsertFlag;
+import static com.launchdarkly.sdk.server.TestUtil.upsertSegment;
+import static com.launchdarkly.sdk.server.TestValues.SDK_KEY;
+
+/**
+ * These benchmarks cover allFlagsState() for a set of flags that all reference the same segment, which
+ * has many rules that the context does not match. Since allFlagsState() remembers the segment match result
+ * for the context, its cost should grow much more slowly with the number of flags than the cost of calling
+ * boolVariation() for each flag, which has to evaluate the segment every time.
+ */
+public class LDClientAllFlagsBenchmarks {
+  private static final int SEGMENT_RULE_COUNT = 40;
+
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    @Param({"1", "10", "100", "300"})
+    public int flagCount;
+
+    LDClientInterface client;
+    String[] flagKeys;
+    final LDContext context = LDContext.builder("user-key-0123456789").set("plan", "free").build();
+
+    @Setup
+    public void setUp() {
+      DataStore dataStore = initedDataStore();
+      SegmentRule[] rules = new SegmentRule[SEGMENT_RULE_COUNT];
+      for (int i = 0; i < rules.length; i++) {
+        rules[i] = segmentRuleBuilder().clauses(clause("plan", Operator.in, LDValue.of("plan-" + i))).build();
+      }
+      Segment segment = segmentBuilder("beta-users").version(1).rules(rules).build();
+      upsertSegment(dataStore, segment);
+      flagKeys = new String[flagCount];
+      for (int i = 0; i < flagCount; i++) {
+        flagKeys[i] = "flag" + i;
+        upsertFlag(dataStore, booleanFlagWithClauses(flagKeys[i], clauseMatchingSegment(segment)));
+      }
+
+      LDConfig config = new LDConfig.Builder()
+        .dataStore(specificComponent(dataStore))
+        .events(Components.noEvents())
+        .dataSource(Components.externalUpdatesOnly())
+        .logging(Components.noLogging())
+        .build();
+      client = new LDClient(SDK_KEY, config);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+      client.close();
+    }
+  }
+
+  @Benchmark
+  public FeatureFlagsState allFlagsStateWithSharedSegment(BenchmarkInputs inputs) throws Exception {
+    return inputs.client.allFlagsState(inputs.context);
+  }
+
+  @Benchmark
+  public void boolVariationForEachFlagWithSharedSegment(BenchmarkInputs inputs, Blackhole bh) throws Exception {
+    for (String key: inputs.flagKeys) {
+      bh.consume(inputs.client.boolVariation(key, inputs.context, false));
+    }
+  }
+}
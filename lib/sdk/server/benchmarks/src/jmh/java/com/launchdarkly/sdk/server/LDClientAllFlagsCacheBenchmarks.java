@@ -0,0 +1,73 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.integrations.TestData;
+import com.launchdarkly.sdk.server.interfaces.LDClientInterface;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+
+import static com.launchdarkly.sdk.server.TestValues.SDK_KEY;
+
+/**
+ * These benchmarks compare allFlagsState() with and without an allFlagsStateCacheSize, both when the data
+ * has not changed since the last call for the same context, and when one flag has changed. A cache size of
+ * zero means that there is no cache.
+ */
+public class LDClientAllFlagsCacheBenchmarks {
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    @Param({"100", "1000"})
+    public int flagCount;
+
+    @Param({"0", "1000"})
+    public int cacheSize;
+
+    TestData testData;
+    LDClientInterface client;
+    int changeCounter;
+    final LDContext context = LDContext.builder("user-key-0123456789")
+        .set("email", "test@example.com")
+        .build();
+
+    @Setup
+    public void setUp() {
+      testData = TestData.dataSource();
+      for (int i = 0; i < flagCount; i++) {
+        testData.update(testData.flag("flag" + i).ifMatch("email", LDValue.of("other@example.com"))
+            .thenReturn(true));
+      }
+      LDConfig config = new LDConfig.Builder()
+        .dataSource(testData)
+        .events(Components.noEvents())
+        .logging(Components.noLogging())
+        .allFlagsStateCacheSize(cacheSize)
+        .build();
+      client = new LDClient(SDK_KEY, config);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+      client.close();
+    }
+  }
+
+  @Benchmark
+  public FeatureFlagsState allFlagsStateUnchanged(BenchmarkInputs inputs) throws Exception {
+    return inputs.client.allFlagsState(inputs.context);
+  }
+
+  @Benchmark
+  public FeatureFlagsState allFlagsStateAfterOneFlagChanged(BenchmarkInputs inputs) throws Exception {
+    inputs.changeCounter++;
+    inputs.testData.update(inputs.testData.flag("flag0").variationForAll(inputs.changeCounter % 2 == 0));
+    return inputs.client.allFlagsState(inputs.context);
+  }
+}
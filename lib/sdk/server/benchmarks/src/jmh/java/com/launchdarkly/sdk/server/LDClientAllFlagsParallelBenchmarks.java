@@ -0,0 +1,92 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.Operator;
+import com.launchdarkly.sdk.server.DataModel.Rule;
+import com.launchdarkly.sdk.server.interfaces.LDClientInterface;
+import com.launchdarkly.sdk.server.subsystems.DataStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.launchdarkly.sdk.server.ModelBuilders.clause;
+import static com.launchdarkly.sdk.server.ModelBuilders.flagBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.ruleBuilder;
+import static com.launchdarkly.sdk.server.TestComponents.initedDataStore;
+import static com.launchdarkly.sdk.server.TestComponents.specificComponent;
+import static com.launchdarkly.sdk.server.TestUtil.upsertFlag;
+import static com.launchdarkly.sdk.server.TestValues.SDK_KEY;
+
+/**
+ * These benchmarks compare allFlagsState() with and without an allFlagsStatePool, for different numbers
+ * of flags and pool threads. A thread count of zero means that no pool is configured, so the flags are
+ * evaluated sequentially. Each flag has several rules that the context does not match, so that it takes
+ * a realistic amount of work to evaluate.
+ */
+public class LDClientAllFlagsParallelBenchmarks {
+  private static final int RULES_PER_FLAG = 5;
+
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    @Param({"100", "1000", "4000"})
+    public int flagCount;
+
+    @Param({"0", "2", "4"})
+    public int threadCount;
+
+    LDClientInterface client;
+    ForkJoinPool pool;
+    final LDContext context = LDContext.builder("user-key-0123456789")
+        .set("email", "test@example.com")
+        .set("plan", "free")
+        .build();
+
+    @Setup
+    public void setUp() {
+      DataStore dataStore = initedDataStore();
+      for (int i = 0; i < flagCount; i++) {
+        Rule[] rules = new Rule[RULES_PER_FLAG];
+        for (int j = 0; j < rules.length; j++) {
+          rules[j] = ruleBuilder().id("rule" + j).variation(1)
+              .clauses(
+                  clause("plan", Operator.in, LDValue.of("plan-" + j)),
+                  clause("email", Operator.endsWith, LDValue.of("@example" + j + ".com")))
+              .build();
+        }
+        upsertFlag(dataStore, flagBuilder("flag" + i).version(1).on(true).rules(rules)
+            .variations(LDValue.of(false), LDValue.of(true)).fallthroughVariation(0).offVariation(0).build());
+      }
+
+      pool = threadCount == 0 ? null : new ForkJoinPool(threadCount);
+      LDConfig config = new LDConfig.Builder()
+        .dataStore(specificComponent(dataStore))
+        .events(Components.noEvents())
+        .dataSource(Components.externalUpdatesOnly())
+        .logging(Components.noLogging())
+        .allFlagsStatePool(pool)
+        .build();
+      client = new LDClient(SDK_KEY, config);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+      client.close();
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
+  }
+
+  @Benchmark
+  public FeatureFlagsState allFlagsState(BenchmarkInputs inputs) throws Exception {
+    return inputs.client.allFlagsState(inputs.context);
+  }
+}
@@ -8,8 +8,10 @@ import com.launchdarkly.sdk.server.subsystems.DataStore;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 
+import java.lang.management.ManagementFactory;
 import java.util.Random;
 
 import static com.launchdarkly.sdk.server.TestComponents.initedDataStore;
@@ -35,13 +37,24 @@ import static org.junit.Assert.assertTrue;
 /**
  * These benchmarks cover just the evaluation logic itself (and, by necessity, the overhead of getting the
  * flag to be evaluated out of the in-memory store).
+ * <p>
+ * A boolVariation call for a flag that is off, or that is on and serves its fallthrough variation, should
+ * not allocate any memory. The gc profiler (which is enabled in build.gradle) reports this as
+ * gc.alloc.rate.norm for boolVariationForSimpleFlag and boolVariationForFallthroughFlag, but since it cannot
+ * fail the run, {@link BenchmarkInputs#verifyNoAllocation()} also measures it directly before the
+ * benchmarks start and throws an exception if it is not zero.
  */
 public class LDClientEvaluationBenchmarks {
+  private static final int ALLOCATION_CHECK_WARMUP_ITERATIONS = 20000;
+  private static final int ALLOCATION_CHECK_ITERATIONS = 10000;
+  private static final int ALLOCATION_CHECK_ROUNDS = 5;
+
   @State(Scope.Thread)
   public static class BenchmarkInputs {
     // Initialization of the things in BenchmarkInputs does not count as part of a benchmark.
     final LDClientInterface client;
     final LDContext basicUser;
+    final LDContext notTargetedUser;
     final Random random;
 
     public BenchmarkInputs() {
@@ -59,9 +72,42 @@ public class LDClientEvaluationBenchmarks {
       client = new LDClient(SDK_KEY, config);
 
       basicUser = LDContext.create("userkey");
+      notTargetedUser = LDContext.create(NOT_TARGETED_CONTEXT_KEY);
 
       random = new Random();
     }
+
+    @Setup
+    public void verifyNoAllocation() {
+      long offFlagBytes = bytesPerBoolVariation(BOOLEAN_FLAG_KEY, basicUser);
+      long fallthroughFlagBytes = bytesPerBoolVariation(FLAG_WITH_TARGET_LIST_KEY, notTargetedUser);
+      if (offFlagBytes != 0 || fallthroughFlagBytes != 0) {
+        throw new IllegalStateException("boolVariation should not allocate memory, but it allocated " + offFlagBytes +
+            " bytes per call for an off flag and " + fallthroughFlagBytes + " bytes per call for a fallthrough flag");
+      }
+    }
+
+    private long bytesPerBoolVariation(String flagKey, LDContext context) {
+      com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+      long threadId = Thread.currentThread().getId();
+      for (int i = 0; i < ALLOCATION_CHECK_WARMUP_ITERATIONS; i++) {
+        client.boolVariation(flagKey, context, false);
+      }
+      // We take the best of several rounds, since JIT compilation can cause some incidental allocations
+      // while the code is still warming up.
+      long result = Long.MAX_VALUE;
+      for (int round = 0; round < ALLOCATION_CHECK_ROUNDS && result > 0; round++) {
+        // the first pair of readings measures the overhead of getThreadAllocatedBytes itself
+        long before = threads.getThreadAllocatedBytes(threadId);
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ALLOCATION_CHECK_ITERATIONS; i++) {
+          client.boolVariation(flagKey, context, false);
+        }
+        long end = threads.getThreadAllocatedBytes(threadId);
+        result = Math.min(result, ((end - start) - (start - before)) / ALLOCATION_CHECK_ITERATIONS);
+      }
+      return result;
+    }
   }
 
   @Benchmark
@@ -69,6 +115,11 @@ public class LDClientEvaluationBenchmarks {
     inputs.client.boolVariation(BOOLEAN_FLAG_KEY, inputs.basicUser, false);
   }
 
+  @Benchmark
+  public void boolVariationForFallthroughFlag(BenchmarkInputs inputs) throws Exception {
+    inputs.client.boolVariation(FLAG_WITH_TARGET_LIST_KEY, inputs.notTargetedUser, false);
+  }
+
   @Benchmark
   public void boolVariationDetailForSimpleFlag(BenchmarkInputs inputs) throws Exception {
     inputs.client.boolVariationDetail(BOOLEAN_FLAG_KEY, inputs.basicUser, false);
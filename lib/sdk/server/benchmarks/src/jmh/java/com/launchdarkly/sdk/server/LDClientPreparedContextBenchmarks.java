@@ -0,0 +1,93 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.ContextKind;
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.Operator;
+import com.launchdarkly.sdk.server.interfaces.LDClientInterface;
+import com.launchdarkly.sdk.server.subsystems.DataStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.launchdarkly.sdk.server.ModelBuilders.clause;
+import static com.launchdarkly.sdk.server.ModelBuilders.flagBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.ruleBuilder;
+import static com.launchdarkly.sdk.server.TestComponents.initedDataStore;
+import static com.launchdarkly.sdk.server.TestComponents.specificComponent;
+import static com.launchdarkly.sdk.server.TestUtil.upsertFlag;
+import static com.launchdarkly.sdk.server.TestValues.SDK_KEY;
+
+/**
+ * These benchmarks compare evaluating flags for a multi-kind context with a {@link PreparedContext} against
+ * passing the context to each variation call. Each flag has several rules that refer to attributes of
+ * different context kinds, and targets for a context kind that is not the first one in the context.
+ */
+public class LDClientPreparedContextBenchmarks {
+  private static final int FLAG_COUNT = 20;
+  private static final ContextKind ORG = ContextKind.of("org");
+  private static final ContextKind DEVICE = ContextKind.of("device");
+
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    LDClientInterface client;
+    final List<String> flagKeys = new ArrayList<>();
+    final LDContext context = LDContext.createMulti(
+        LDContext.builder(DEVICE, "device-key-0123456789").set("os", "android").set("appVersion", "2.3.4").build(),
+        LDContext.builder(ORG, "org-key-0123456789").set("plan", "enterprise").set("region", "eu").build(),
+        LDContext.builder("user-key-0123456789").set("email", "test@example.com").set("country", "de").build());
+
+    @Setup
+    public void setUp() {
+      DataStore dataStore = initedDataStore();
+      for (int i = 0; i < FLAG_COUNT; i++) {
+        upsertFlag(dataStore, flagBuilder("flag" + i).version(1).on(true).variations(false, true)
+            .addContextTarget(ORG, 1, "other-org-" + i)
+            .rules(
+                ruleBuilder().variation(1).clauses(clause(DEVICE, "os", Operator.in, LDValue.of("ios"))).build(),
+                ruleBuilder().variation(1).clauses(clause(null, "country", Operator.in, LDValue.of("fr"))).build(),
+                ruleBuilder().variation(1).clauses(
+                    clause(ORG, "plan", Operator.in, LDValue.of("enterprise")),
+                    clause(ORG, "region", Operator.in, LDValue.of("eu"))).build())
+            .fallthroughVariation(0).offVariation(0).build());
+        flagKeys.add("flag" + i);
+      }
+      LDConfig config = new LDConfig.Builder()
+        .dataStore(specificComponent(dataStore))
+        .events(Components.noEvents())
+        .dataSource(Components.externalUpdatesOnly())
+        .logging(Components.noLogging())
+        .build();
+      client = new LDClient(SDK_KEY, config);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+      client.close();
+    }
+  }
+
+  @Benchmark
+  public void contextVariations(BenchmarkInputs inputs, Blackhole bh) throws Exception {
+    for (String key: inputs.flagKeys) {
+      bh.consume(inputs.client.boolVariation(key, inputs.context, false));
+    }
+  }
+
+  @Benchmark
+  public void preparedContextVariations(BenchmarkInputs inputs, Blackhole bh) throws Exception {
+    // includes the cost of preparing the context, as it would be for each request in an application
+    PreparedContext prepared = inputs.client.prepare(inputs.context);
+    for (String key: inputs.flagKeys) {
+      bh.consume(prepared.boolVariation(key, false));
+    }
+  }
+}
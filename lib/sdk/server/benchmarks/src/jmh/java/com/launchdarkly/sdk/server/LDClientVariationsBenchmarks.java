@@ -0,0 +1,87 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.Operator;
+import com.launchdarkly.sdk.server.DataModel.Segment;
+import com.launchdarkly.sdk.server.interfaces.LDClientInterface;
+import com.launchdarkly.sdk.server.subsystems.DataStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.launchdarkly.sdk.server.ModelBuilders.booleanFlagWithClauses;
+import static com.launchdarkly.sdk.server.ModelBuilders.clause;
+import static com.launchdarkly.sdk.server.ModelBuilders.clauseMatchingSegment;
+import static com.launchdarkly.sdk.server.ModelBuilders.segmentBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.segmentRuleBuilder;
+import static com.launchdarkly.sdk.server.TestComponents.initedDataStore;
+import static com.launchdarkly.sdk.server.TestComponents.specificComponent;
+import static com.launchdarkly.sdk.server.TestUtil.upsertFlag;
+import static com.launchdarkly.sdk.server.TestUtil.upsertSegment;
+import static com.launchdarkly.sdk.server.TestValues.SDK_KEY;
+
+/**
+ * These benchmarks compare evaluating a set of flags for one context with variations() against calling
+ * jsonValueVariation() for each flag. Every flag references the same segment, which has a rule, as is
+ * common for flags that are rolled out to a group such as "beta-users".
+ */
+public class LDClientVariationsBenchmarks {
+  @State(Scope.Thread)
+  public static class BenchmarkInputs {
+    @Param({"20", "50"})
+    public int flagCount;
+
+    LDClientInterface client;
+    final List<String> flagKeys = new ArrayList<>();
+    final LDContext context = LDContext.builder("user-key-0123456789")
+        .set("email", "test@example.com")
+        .build();
+
+    @Setup
+    public void setUp() {
+      DataStore dataStore = initedDataStore();
+      Segment segment = segmentBuilder("beta-users").version(1)
+          .rules(segmentRuleBuilder().clauses(clause("email", Operator.endsWith, LDValue.of("@example.com"))).build())
+          .build();
+      upsertSegment(dataStore, segment);
+      for (int i = 0; i < flagCount; i++) {
+        upsertFlag(dataStore, booleanFlagWithClauses("flag" + i, clauseMatchingSegment(segment)));
+        flagKeys.add("flag" + i);
+      }
+      LDConfig config = new LDConfig.Builder()
+        .dataStore(specificComponent(dataStore))
+        .events(Components.noEvents())
+        .dataSource(Components.externalUpdatesOnly())
+        .logging(Components.noLogging())
+        .build();
+      client = new LDClient(SDK_KEY, config);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+      client.close();
+    }
+  }
+
+  @Benchmark
+  public void individualVariations(BenchmarkInputs inputs, Blackhole bh) throws Exception {
+    for (String key: inputs.flagKeys) {
+      bh.consume(inputs.client.jsonValueVariation(key, inputs.context, LDValue.ofNull()));
+    }
+  }
+
+  @Benchmark
+  public FlagVariations variations(BenchmarkInputs inputs) throws Exception {
+    return inputs.client.variations(inputs.context, inputs.flagKeys);
+  }
+}
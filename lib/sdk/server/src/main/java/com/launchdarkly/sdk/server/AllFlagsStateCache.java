@@ -0,0 +1,187 @@
+package com.launchdarkly.sdk.server;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.server.DataModelDependencies.KindAndKey;
+import com.launchdarkly.sdk.server.interfaces.EvaluationStatistics;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.launchdarkly.sdk.server.DataModel.FEATURES;
+
+/**
+ * A bounded cache of {@link FeatureFlagsState} results, used by {@link InputValidatingEvaluator} if
+ * {@link LDConfig.Builder#allFlagsStateCacheSize(int)} is set.
+ * <p>
+ * Entries are keyed by the context (including all of its attributes) and the set of options. Each one is
+ * tagged with the version of the {@link DataStoreSnapshot} it was computed from. {@link DataSourceUpdatesImpl}
+ * calls {@link #itemsChanged(long, long, Set)} synchronously after each update to the store, with the data
+ * versions before and after the update and every item that the update affected according to its
+ * {@link DataModelDependencies.DependencyTracker}; we record which flags changed in each version. When an
+ * entry is older than the snapshot that the evaluator is using, the evaluator only has to re-evaluate the
+ * flags that changed between the two versions, rather than all of them.
+ * <p>
+ * Since the versions come from the snapshots themselves, an entry can never be mistaken for a result
+ * computed from newer data. A snapshot that is published before its change has been recorded here is
+ * simply treated as a miss. We only remember the last {@link #MAX_CHANGE_RECORDS} changes; an entry that
+ * is older than that is also treated as a miss.
+ */
+final class AllFlagsStateCache implements DataSourceUpdatesImpl.ChangedItemsListener {
+  static final int MAX_CHANGE_RECORDS = 100;
+
+  private final Cache<Key, Entry> entries;
+  private final Object changeLock = new Object();
+  private volatile ChangeLog changeLog = new ChangeLog(DataStoreSnapshot.EMPTY.getVersion(),
+      DataStoreSnapshot.EMPTY.getVersion(), ImmutableList.of());
+
+  final LongAdder hits = new LongAdder();
+  final LongAdder misses = new LongAdder();
+  final LongAdder reevaluatedFlags = new LongAdder();
+
+  AllFlagsStateCache(int maximumSize) {
+    this.entries = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+  }
+
+  Entry get(LDContext context, FlagsStateOption[] options) {
+    return entries.getIfPresent(new Key(context, options));
+  }
+
+  void put(LDContext context, FlagsStateOption[] options, Entry entry) {
+    entries.put(new Key(context, options), entry);
+  }
+
+  /**
+   * Returns the keys of all flags that were affected by changes after one data version, up to and
+   * including another, or null if we don't know what those changes were.
+   *
+   * @param entryVersion the data version that a cached entry was computed from
+   * @param dataVersion the version of the snapshot that is being evaluated
+   * @return a set of flag keys, or null
+   */
+  Set<String> getFlagsChangedSince(long entryVersion, long dataVersion) {
+    if (entryVersion == dataVersion) {
+      return ImmutableSet.of();
+    }
+    ChangeLog log = changeLog;
+    if (entryVersion > dataVersion || dataVersion > log.version || entryVersion < log.oldestVersion) {
+      return null;
+    }
+    Set<String> ret = new HashSet<>();
+    for (ChangeRecord r: log.records) {
+      if (r.version > entryVersion && r.version <= dataVersion) {
+        ret.addAll(r.flagKeys);
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public void itemsChanged(long previousDataVersion, long dataVersion, Set<KindAndKey> affectedItems) {
+    ImmutableSet.Builder<String> flagKeys = ImmutableSet.builder();
+    for (KindAndKey item: affectedItems) {
+      if (item.kind == FEATURES) {
+        flagKeys.add(item.key);
+      }
+    }
+    Set<String> changedFlagKeys = flagKeys.build();
+    synchronized (changeLock) {
+      ChangeLog log = changeLog;
+      if (previousDataVersion != log.version) {
+        // We weren't told about some earlier change (for instance, the listener was set after the store
+        // had already been updated), so we can't say what changed before this version.
+        changeLog = new ChangeLog(dataVersion, dataVersion, ImmutableList.of());
+        return;
+      }
+      if (changedFlagKeys.isEmpty()) {
+        // for instance, a segment changed that no flags use
+        changeLog = new ChangeLog(dataVersion, log.oldestVersion, log.records);
+        return;
+      }
+      List<ChangeRecord> records = log.records;
+      long oldestVersion = log.oldestVersion;
+      if (records.size() >= MAX_CHANGE_RECORDS) {
+        int dropped = records.size() - MAX_CHANGE_RECORDS + 1;
+        oldestVersion = records.get(dropped - 1).version;
+        records = records.subList(dropped, records.size());
+      }
+      records = ImmutableList.<ChangeRecord>builder().addAll(records)
+          .add(new ChangeRecord(dataVersion, changedFlagKeys)).build();
+      changeLog = new ChangeLog(dataVersion, oldestVersion, records);
+    }
+  }
+
+  EvaluationStatistics.CacheStatistics getStatistics() {
+    return new EvaluationStatistics.CacheStatistics(hits.sum(), misses.sum());
+  }
+
+  long size() {
+    return entries.size();
+  }
+
+  static final class Entry {
+    final FeatureFlagsState state;
+    final long dataVersion;
+
+    Entry(FeatureFlagsState state, long dataVersion) {
+      this.state = state;
+      this.dataVersion = dataVersion;
+    }
+  }
+
+  private static final class Key {
+    private final LDContext context;
+    private final int options;
+
+    Key(LDContext context, FlagsStateOption[] options) {
+      this.context = context;
+      this.options = (FlagsStateOption.hasOption(options, FlagsStateOption.CLIENT_SIDE_ONLY) ? 1 : 0) |
+          (FlagsStateOption.hasOption(options, FlagsStateOption.WITH_REASONS) ? 2 : 0) |
+          (FlagsStateOption.hasOption(options, FlagsStateOption.DETAILS_ONLY_FOR_TRACKED_FLAGS) ? 4 : 0);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key o = (Key)other;
+      return options == o.options && context.equals(o.context);
+    }
+
+    @Override
+    public int hashCode() {
+      // LDContext.hashCode() covers all of the attributes; the fully qualified key is enough to spread
+      // the entries out, and is much cheaper to compute.
+      return Objects.hash(context.getFullyQualifiedKey(), options);
+    }
+  }
+
+  private static final class ChangeRecord {
+    final long version;
+    final Set<String> flagKeys;
+
+    ChangeRecord(long version, Set<String> flagKeys) {
+      this.version = version;
+      this.flagKeys = flagKeys;
+    }
+  }
+
+  private static final class ChangeLog {
+    final long version;
+    final long oldestVersion; // the earliest version that getFlagsChangedSince can compute changes from
+    final List<ChangeRecord> records;
+
+    ChangeLog(long version, long oldestVersion, List<ChangeRecord> records) {
+      this.version = version;
+      this.oldestVersion = oldestVersion;
+      this.records = records;
+    }
+  }
+}
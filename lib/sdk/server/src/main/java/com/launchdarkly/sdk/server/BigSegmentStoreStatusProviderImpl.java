@@ -27,4 +27,9 @@ final class BigSegmentStoreStatusProviderImpl implements BigSegmentStoreStatusPr
   public void removeStatusListener(StatusListener listener) {
     statusNotifier.unregister(listener);
   }
+
+  @Override
+  public CacheStats getCacheStats() {
+    return storeWrapper == null ? null : storeWrapper.getCacheStats();
+  }
 }
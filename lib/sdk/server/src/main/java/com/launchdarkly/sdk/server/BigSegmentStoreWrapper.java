@@ -3,8 +3,11 @@ package com.launchdarkly.sdk.server;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.launchdarkly.logging.LDLogger;
 import com.launchdarkly.sdk.EvaluationReason.BigSegmentsStatus;
+import com.launchdarkly.sdk.server.interfaces.BigSegmentStoreStatusProvider;
 import com.launchdarkly.sdk.server.interfaces.BigSegmentStoreStatusProvider.Status;
 import com.launchdarkly.sdk.server.interfaces.BigSegmentStoreStatusProvider.StatusListener;
 import com.launchdarkly.sdk.server.subsystems.BigSegmentStore;
@@ -20,21 +23,32 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.launchdarkly.sdk.server.subsystems.BigSegmentStoreTypes.createMembershipFromSegmentRefs;
 
 class BigSegmentStoreWrapper implements Closeable {
   private final BigSegmentStore store;
   private final Duration staleAfter;
+  private final long memberCacheNanos;
+  private final long notMemberCacheNanos;
+  private final double refreshAheadFactor;
   private final ScheduledFuture<?> pollFuture;
-  private final LoadingCache<String, Membership> cache;
+  private final LoadingCache<String, CachedMembership> cache;
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder refreshCount = new LongAdder();
   private final EventBroadcasterImpl<StatusListener, Status> statusProvider;
   private final LDLogger logger;
-  private final Object statusLock = new Object();
-  private Status lastStatus;
+  private final AtomicReference<Status> lastStatus = new AtomicReference<>();
 
   BigSegmentStoreWrapper(BigSegmentsConfiguration config,
                          EventBroadcasterImpl<StatusListener, Status> statusProvider,
@@ -42,24 +56,53 @@ class BigSegmentStoreWrapper implements Closeable {
                          LDLogger logger) {
     this.store = config.getStore();
     this.staleAfter = config.getStaleAfter();
+    this.memberCacheNanos = config.getUserCacheTime().toNanos();
+    this.notMemberCacheNanos = config.getNotMemberCacheTime().toNanos();
+    this.refreshAheadFactor = config.getUserCacheRefreshAheadFactor();
     this.statusProvider = statusProvider;
     this.logger = logger;
 
-    CacheLoader<String, Membership> loader = new CacheLoader<String, Membership>() {
+    CacheLoader<String, CachedMembership> loader = new CacheLoader<String, CachedMembership>() {
       @Override
-      public Membership load(@NonNull String key) {
-        Membership membership = queryMembership(key);
-        return membership == null ? createMembershipFromSegmentRefs(null, null) : membership;
+      public CachedMembership load(@NonNull String key) {
+        return newCacheEntry(queryMembership(key));
+      }
+
+      @Override
+      public Map<String, CachedMembership> loadAll(Iterable<? extends String> keys) {
+        return queryMemberships(keys);
+      }
+
+      @Override
+      public ListenableFuture<CachedMembership> reload(@NonNull String key, @NonNull CachedMembership oldValue) {
+        // This is only called for a refresh-ahead, on the shared executor (see asyncReloading below). If it
+        // fails, we keep the old value until it expires, and then the next evaluation will query the store.
+        refreshCount.increment();
+        try {
+          return Futures.immediateFuture(load(key));
+        } catch (Exception e) {
+          logger.warn("Big Segment store returned error when refreshing cached state: {}", e.toString());
+          logger.debug(e.toString(), e);
+          return Futures.immediateFuture(oldValue);
+        }
       }
     };
+    // Each entry has its own expiration time depending on whether the user was in any segments (see
+    // CachedMembership), which we check when we read it; the cache's own expiration is just to make sure
+    // entries don't stay in memory past the longer of the two times.
     this.cache = CacheBuilder.newBuilder()
         .maximumSize(config.getUserCacheSize())
-        .expireAfterWrite(config.getUserCacheTime())
-        .build(loader);
+        .expireAfterWrite(Math.max(memberCacheNanos, notMemberCacheNanos), TimeUnit.NANOSECONDS)
+        .recordStats()
+        .build(CacheLoader.asyncReloading(loader, sharedExecutor));
 
+    // Do the first status query now, on the thread that is starting the client, so that getStatus() never
+    // has to block an evaluation.
+    pollStoreAndUpdateStatus();
+    long pollIntervalMillis = config.getStatusPollInterval().toMillis();
     this.pollFuture = sharedExecutor.scheduleAtFixedRate(this::pollStoreAndUpdateStatus,
-        0,
-        config.getStatusPollInterval().toMillis(),
+        pollIntervalMillis,
+        pollIntervalMillis,
         TimeUnit.MILLISECONDS);
   }
 
@@ -78,6 +121,9 @@ class BigSegmentStoreWrapper implements Closeable {
    * and caches the result. The returned status value indicates whether the query succeeded, and
    * whether the result (regardless of whether it was from a new query or the cache) should be
    * considered "stale".
+   * <p>
+   * If refresh-ahead is enabled and the cached state is close to expiring, it still returns the cached
+   * state, but also starts a query on the shared executor to replace it.
    *
    * @param userKey the (unhashed) user key
    * @return the query result
@@ -85,7 +131,22 @@ class BigSegmentStoreWrapper implements Closeable {
   BigSegmentsQueryResult getUserMembership(String userKey) {
     BigSegmentsQueryResult ret = new BigSegmentsQueryResult();
     try {
-      ret.membership = cache.get(userKey);
+      long now = System.nanoTime();
+      CachedMembership entry = cache.getIfPresent(userKey);
+      if (entry == null || now - entry.expiresAt >= 0) {
+        missCount.increment();
+        if (entry != null) {
+          // Only remove the entry we saw: another thread may already have replaced it with a fresh one
+          cache.asMap().remove(userKey, entry);
+        }
+        entry = cache.get(userKey);
+      } else {
+        hitCount.increment();
+        if (now - entry.refreshAt >= 0 && entry.refreshStarted.compareAndSet(false, true)) {
+          cache.refresh(userKey);
+        }
+      }
+      ret.membership = entry.membership;
       ret.status = getStatus().isStale() ? BigSegmentsStatus.STALE : BigSegmentsStatus.HEALTHY;
     } catch (Exception e) {
       logger.error("Big Segment store returned error: {}", e.toString());
@@ -96,34 +157,86 @@ class BigSegmentStoreWrapper implements Closeable {
     return ret;
   }
 
+  /**
+   * Called by the client to load the Big Segment membership state for a number of users into the
+   * cache ahead of evaluations.
+   * <p>
+   * All of the users that are not already cached are queried with a single call to
+   * {@link BigSegmentStore#getMemberships(Collection)}. Errors are logged, not thrown; evaluations for
+   * the users that could not be loaded will just query the store again as usual.
+   *
+   * @param userKeys the (unhashed) user keys
+   */
+  void prefetchMemberships(Collection<String> userKeys) {
+    try {
+      cache.getAll(userKeys);
+    } catch (Exception e) {
+      logger.error("Big Segment store returned error: {}", e.toString());
+      logger.debug(e.toString(), e);
+    }
+  }
+
+  /**
+   * Returns statistics for the membership cache.
+   *
+   * @return a snapshot of the cache statistics
+   */
+  BigSegmentStoreStatusProvider.CacheStats getCacheStats() {
+    com.google.common.cache.CacheStats stats = cache.stats();
+    return new BigSegmentStoreStatusProvider.CacheStats(
+        hitCount.sum(),
+        missCount.sum(),
+        stats.loadSuccessCount(),
+        stats.loadExceptionCount(),
+        stats.totalLoadTime(),
+        refreshCount.sum(),
+        stats.evictionCount());
+  }
+
+  private Map<String, CachedMembership> queryMemberships(Iterable<? extends String> userKeys) {
+    Map<String, String> userKeysByHash = new HashMap<>();
+    for (String userKey: userKeys) {
+      userKeysByHash.put(hashForUserKey(userKey), userKey);
+    }
+    logger.debug("Querying Big Segment state for {} user hashes", userKeysByHash.size());
+    Map<String, Membership> memberships = store.getMemberships(userKeysByHash.keySet());
+    Map<String, CachedMembership> ret = new HashMap<>();
+    for (Map.Entry<String, String> e: userKeysByHash.entrySet()) {
+      ret.put(e.getValue(), newCacheEntry(memberships == null ? null : memberships.get(e.getKey())));
+    }
+    return ret;
+  }
+
   private Membership queryMembership(String userKey) {
     String hash = hashForUserKey(userKey);
     logger.debug("Querying Big Segment state for user hash {}", hash);
     return store.getMembership(hash);
   }
 
+  private CachedMembership newCacheEntry(Membership membership) {
+    Membership empty = createMembershipFromSegmentRefs(null, null);
+    boolean notMember = membership == null || empty.equals(membership);
+    long cacheNanos = notMember ? notMemberCacheNanos : memberCacheNanos;
+    long now = System.nanoTime();
+    return new CachedMembership(
+        notMember ? empty : membership,
+        now + cacheNanos,
+        refreshAheadFactor > 0 ? now + (long)(cacheNanos * (1 - refreshAheadFactor)) : Long.MAX_VALUE);
+  }
+
   /**
    * Returns a BigSegmentStoreStatus describing whether the store seems to be available (that is,
    * the last query to it did not return an error) and whether it is stale (that is, the last known
    * update time is too far in the past).
    * <p>
-   * If we have not yet obtained that information (the poll task has not executed yet), then this
-   * method immediately does a metadata query and waits for it to succeed or fail. This means that
-   * if an application using Big Segments evaluates a feature flag immediately after creating the
-   * SDK client, before the first status poll has happened, that evaluation may block for however
-   * long it takes to query the store.
+   * This is called on every evaluation that involves a Big Segment, so it does not lock or query the
+   * store: it just returns the result of the last status poll. The first poll is done in the
+   * constructor, so there is always a result.
    *
    * @return the store status
    */
   Status getStatus() {
-    Status ret;
-    synchronized (statusLock) {
-      ret = lastStatus;
-    }
-    if (ret != null) {
-      return ret;
-    }
-    return pollStoreAndUpdateStatus();
+    return lastStatus.get();
   }
 
   Status pollStoreAndUpdateStatus() {
@@ -139,11 +252,7 @@ class BigSegmentStoreWrapper implements Closeable {
       logger.debug(e.toString(), e);
     }
     Status newStatus = new Status(storeAvailable, storeStale);
-    Status oldStatus;
-    synchronized (this.statusLock) {
-      oldStatus = this.lastStatus;
-      this.lastStatus = newStatus;
-    }
+    Status oldStatus = lastStatus.getAndSet(newStatus);
     if (!newStatus.equals(oldStatus)) {
       logger.debug("Big Segment store status changed from {} to {}", oldStatus, newStatus);
       statusProvider.broadcast(newStatus);
@@ -160,6 +269,19 @@ class BigSegmentStoreWrapper implements Closeable {
     return Base64.getEncoder().encodeToString(encodedDigest);
   }
 
+  private static final class CachedMembership {
+    final Membership membership;
+    final long expiresAt; // System.nanoTime() values
+    final long refreshAt;
+    final AtomicBoolean refreshStarted = new AtomicBoolean();
+
+    CachedMembership(Membership membership, long expiresAt, long refreshAt) {
+      this.membership = membership;
+      this.expiresAt = expiresAt;
+      this.refreshAt = refreshAt;
+    }
+  }
+
   static class BigSegmentsQueryResult {
     Membership membership;
     BigSegmentsStatus status;
@@ -0,0 +1,284 @@
+package com.launchdarkly.sdk.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable set of strings that is stored as the UTF-8 bytes of all of the strings packed into a single
+ * array. This is used for the target lists of flags and segments (see
+ * {@link DataModelSerialization.StringSetTypeAdapter}), which can have hundreds of thousands of keys: a
+ * HashSet costs over 100 bytes per key for a typical key of 20 to 40 characters, most of which is the String
+ * and hash entry objects, whereas this costs the length of the key plus about 5 bytes.
+ * <p>
+ * The strings are ordered by {@link String#hashCode()}, and there is an array of the hash codes in the same
+ * order, so {@link #contains(Object)} is a binary search of that array using the hash code that the String
+ * has usually already cached; only a string whose hash code is found is compared to the stored bytes, which
+ * is done without encoding it to a new array. Each string is stored with its length in front of it, and we
+ * keep the position of every 16th string, so finding a string's bytes means skipping over at most 15 others.
+ * Iterating over the set creates a new String for each element, which is fine for the things we need to
+ * iterate for, such as serializing the data model.
+ * <p>
+ * A lookup that finds the string takes several times as long as in a HashSet (see CompactStringSetBenchmarks),
+ * so we only do this for sets of at least {@link #MIN_COMPACT_SIZE} strings, where it saves about a megabyte
+ * of heap per set. Smaller sets, and sets that contain a null or a string with an unpaired surrogate character
+ * (which cannot be represented in UTF-8), are kept as a regular LinkedHashSet instead; see
+ * {@link #of(Collection)}.
+ */
+final class CompactStringSet extends AbstractSet<String> {
+  static final int MIN_COMPACT_SIZE = 10000;
+
+  private static final int BLOCK_SIZE = 16;
+
+  private final int[] hashCodes; // hashCodes[i] is the hash code of the i-th string, in ascending order
+  private final byte[] data; // each string is a varint length followed by that many bytes of UTF-8
+  private final int[] blockOffsets; // blockOffsets[i] is where the (i * BLOCK_SIZE)th string starts
+
+  private CompactStringSet(int[] hashCodes, byte[] data, int[] blockOffsets) {
+    this.hashCodes = hashCodes;
+    this.data = data;
+    this.blockOffsets = blockOffsets;
+  }
+
+  /**
+   * Returns an immutable CompactStringSet containing the given strings if there are at least
+   * {@link #MIN_COMPACT_SIZE} of them and they can all be encoded; otherwise, a LinkedHashSet of them.
+   *
+   * @param strings the strings; duplicates are allowed
+   * @return a set of the strings
+   */
+  static Set<String> of(Collection<String> strings) {
+    return of(strings, MIN_COMPACT_SIZE);
+  }
+
+  // Used directly only in tests, so that they can check the encoding without making large sets.
+  static Set<String> of(Collection<String> strings, int minCompactSize) {
+    if (strings.size() < minCompactSize) {
+      return new LinkedHashSet<>(strings);
+    }
+    String[] sorted = new String[strings.size()];
+    int n = 0;
+    for (String s: strings) {
+      if (!isEncodable(s)) {
+        return new LinkedHashSet<>(strings);
+      }
+      sorted[n++] = s;
+    }
+    Arrays.sort(sorted, CompactStringSet::compareHashCodesFirst);
+    byte[][] encoded = new byte[n][];
+    int distinctCount = 0, totalLength = 0;
+    for (int i = 0; i < n; i++) {
+      if (i == 0 || !sorted[i].equals(sorted[i - 1])) {
+        sorted[distinctCount] = sorted[i];
+        byte[] bytes = sorted[i].getBytes(StandardCharsets.UTF_8);
+        encoded[distinctCount++] = bytes;
+        totalLength += varIntLength(bytes.length) + bytes.length;
+      }
+    }
+    int[] hashCodes = new int[distinctCount];
+    byte[] data = new byte[totalLength];
+    int[] blockOffsets = new int[(distinctCount + BLOCK_SIZE - 1) / BLOCK_SIZE];
+    int pos = 0;
+    for (int i = 0; i < distinctCount; i++) {
+      hashCodes[i] = sorted[i].hashCode();
+      if (i % BLOCK_SIZE == 0) {
+        blockOffsets[i / BLOCK_SIZE] = pos;
+      }
+      byte[] bytes = encoded[i];
+      for (int length = bytes.length; ; length >>>= 7) {
+        if (length < 0x80) {
+          data[pos++] = (byte)length;
+          break;
+        }
+        data[pos++] = (byte)(0x80 | (length & 0x7f));
+      }
+      System.arraycopy(bytes, 0, data, pos, bytes.length);
+      pos += bytes.length;
+    }
+    return new CompactStringSet(hashCodes, data, blockOffsets);
+  }
+
+  @Override
+  public int size() {
+    return hashCodes.length;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (!(o instanceof String)) {
+      return false;
+    }
+    String s = (String)o;
+    int hash = s.hashCode();
+    int low = 0, high = hashCodes.length;
+    while (low < high) { // find the first string with this hash code, if any
+      int mid = (low + high) >>> 1;
+      if (hashCodes[mid] < hash) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    if (low == hashCodes.length || hashCodes[low] != hash) {
+      return false;
+    }
+    int pos = startOf(low);
+    for (int i = low; i < hashCodes.length && hashCodes[i] == hash; i++) {
+      int length = lengthAt(pos);
+      pos += varIntLength(length);
+      if (matchesStored(s, pos, pos + length)) {
+        return true;
+      }
+      pos += length;
+    }
+    return false;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return new Iterator<String>() {
+      private int index = 0;
+      private int pos = 0;
+
+      @Override
+      public boolean hasNext() {
+        return index < hashCodes.length;
+      }
+
+      @Override
+      public String next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        int length = lengthAt(pos);
+        pos += varIntLength(length);
+        index++;
+        String s = new String(data, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return s;
+      }
+    };
+  }
+
+  // Returns the number of bytes in the arrays that hold the set's contents, not counting the array headers,
+  // so that tests can check how much memory it takes per string.
+  int storageBytes() {
+    return hashCodes.length * Integer.BYTES + data.length + blockOffsets.length * Integer.BYTES;
+  }
+
+  // Returns the position of the index-th string's length prefix.
+  private int startOf(int index) {
+    int pos = blockOffsets[index / BLOCK_SIZE];
+    for (int i = index - index % BLOCK_SIZE; i < index; i++) {
+      int length = lengthAt(pos);
+      pos += varIntLength(length) + length;
+    }
+    return pos;
+  }
+
+  // Decodes the varint length prefix at the given position.
+  private int lengthAt(int pos) {
+    int length = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = data[pos++];
+      length |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        return length;
+      }
+    }
+  }
+
+  // Tests whether the UTF-8 encoding of s is equal to the stored bytes from start to end, without actually
+  // creating the encoded bytes.
+  private boolean matchesStored(String s, int start, int end) {
+    int length = s.length();
+    // The UTF-8 encoding is never shorter than the string, and is the same length only if it is all ASCII;
+    // in that case each byte must be equal to the corresponding char. Most keys are ASCII.
+    if (end - start == length) {
+      for (int i = 0; i < length; i++) {
+        if (data[start + i] != s.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (end - start < length) {
+      return false;
+    }
+    int pos = start;
+    for (int i = 0; i < length; i++) {
+      char ch = s.charAt(i);
+      if (ch < 0x80) {
+        if (pos == end || data[pos++] != ch) {
+          return false;
+        }
+        continue;
+      }
+      int codePoint = ch;
+      if (Character.isSurrogate(ch)) {
+        if (!Character.isHighSurrogate(ch) || i + 1 == length || !Character.isLowSurrogate(s.charAt(i + 1))) {
+          return false; // an unpaired surrogate can't be encoded, so we never store one
+        }
+        codePoint = Character.toCodePoint(ch, s.charAt(++i));
+      }
+      int byteCount = utf8Length(codePoint);
+      for (int k = 0; k < byteCount; k++) {
+        if (pos == end || (data[pos++] & 0xff) != utf8Byte(codePoint, byteCount, k)) {
+          return false;
+        }
+      }
+    }
+    return pos == end;
+  }
+
+  private static int utf8Length(int codePoint) {
+    return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+  }
+
+  private static int utf8Byte(int codePoint, int byteCount, int index) {
+    if (index == 0) {
+      switch (byteCount) {
+      case 2:
+        return 0xc0 | (codePoint >> 6);
+      case 3:
+        return 0xe0 | (codePoint >> 12);
+      default:
+        return 0xf0 | (codePoint >> 18);
+      }
+    }
+    return 0x80 | ((codePoint >> (6 * (byteCount - 1 - index))) & 0x3f);
+  }
+
+  private static boolean isEncodable(String s) {
+    if (s == null) {
+      return false;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      char ch = s.charAt(i);
+      if (Character.isHighSurrogate(ch) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+        i++;
+      } else if (Character.isSurrogate(ch)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int compareHashCodesFirst(String a, String b) {
+    int result = Integer.compare(a.hashCode(), b.hashCode());
+    return result != 0 ? result : a.compareTo(b);
+  }
+
+  private static int varIntLength(int value) {
+    int length = 1;
+    while ((value >>>= 7) != 0) {
+      length++;
+    }
+    return length;
+  }
+}
@@ -9,6 +9,8 @@ import com.launchdarkly.sdk.server.DataModelPreprocessing.ClausePreprocessed;
 import com.launchdarkly.sdk.server.DataModelPreprocessing.FlagPreprocessed;
 import com.launchdarkly.sdk.server.DataModelPreprocessing.FlagRulePreprocessed;
 import com.launchdarkly.sdk.server.DataModelPreprocessing.PrerequisitePreprocessed;
+import com.launchdarkly.sdk.server.DataModelPreprocessing.SegmentPreprocessed;
+import com.launchdarkly.sdk.server.DataModelPreprocessing.SegmentRulePreprocessed;
 import com.launchdarkly.sdk.server.DataModelPreprocessing.TargetPreprocessed;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.DataKind;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.ItemDescriptor;
@@ -268,8 +270,29 @@ public abstract class DataModel {
     }
 
     public void afterDeserialized() {
+      DataModelInterner interner = DataModelInterner.current();
+      if (interner != null) {
+        intern(interner);
+      }
       DataModelPreprocessing.preprocessFlag(this);
     }
+
+    // Replaces values that Gson deserialized for us with canonical instances; values that are deserialized
+    // by our own type adapters, such as clauses, have already been interned.
+    private void intern(DataModelInterner interner) {
+      key = interner.string(key);
+      interner.values(variations);
+      if (prerequisites != null) {
+        for (Prerequisite p: prerequisites) {
+          p.key = interner.string(p.key);
+        }
+      }
+      if (contextTargets != null) {
+        for (Target t: contextTargets) {
+          t.contextKind = interner.contextKind(t.contextKind);
+        }
+      }
+    }
   }
 
   static final class Prerequisite {
@@ -296,6 +319,7 @@ public abstract class DataModel {
 
   static final class Target {
     private ContextKind contextKind;
+    @JsonAdapter(DataModelSerialization.StringSetTypeAdapter.class)
     private Set<String> values;
     private int variation;
   
@@ -495,7 +519,9 @@ public abstract class DataModel {
   @JsonAdapter(JsonHelpers.PostProcessingDeserializableTypeAdapterFactory.class)
   static final class Segment implements VersionedData, JsonHelpers.PostProcessingDeserializable {
     private String key;
+    @JsonAdapter(DataModelSerialization.StringSetTypeAdapter.class)
     private Set<String> included;
+    @JsonAdapter(DataModelSerialization.StringSetTypeAdapter.class)
     private Set<String> excluded;
     private List<SegmentTarget> includedContexts;
     private List<SegmentTarget> excludedContexts;
@@ -507,6 +533,8 @@ public abstract class DataModel {
     private ContextKind unboundedContextKind;
     private Integer generation;
 
+    transient SegmentPreprocessed preprocessed;
+
     Segment() {}
 
     Segment(String key,
@@ -589,8 +617,28 @@ public abstract class DataModel {
     }
 
     public void afterDeserialized() {
+      DataModelInterner interner = DataModelInterner.current();
+      if (interner != null) {
+        intern(interner);
+      }
       DataModelPreprocessing.preprocessSegment(this);
     }
+
+    // See FeatureFlag.intern().
+    private void intern(DataModelInterner interner) {
+      key = interner.string(key);
+      unboundedContextKind = interner.contextKind(unboundedContextKind);
+      internContextKinds(includedContexts, interner);
+      internContextKinds(excludedContexts, interner);
+    }
+
+    private static void internContextKinds(List<SegmentTarget> targets, DataModelInterner interner) {
+      if (targets != null) {
+        for (SegmentTarget t: targets) {
+          t.contextKind = interner.contextKind(t.contextKind);
+        }
+      }
+    }
   }
   
   @JsonAdapter(DataModelSerialization.SegmentRuleTypeAdapter.class)
@@ -600,6 +648,8 @@ public abstract class DataModel {
     private final ContextKind rolloutContextKind; 
     private final AttributeRef bucketBy;
     
+    transient SegmentRulePreprocessed preprocessed;
+    
     SegmentRule(List<Clause> clauses, Integer weight, ContextKind rolloutContextKind, AttributeRef bucketBy) {
       this.clauses = clauses == null ? emptyList() : clauses;
       this.weight = weight;
@@ -627,6 +677,7 @@ public abstract class DataModel {
 
   static class SegmentTarget {
     private ContextKind contextKind;
+    @JsonAdapter(DataModelSerialization.StringSetTypeAdapter.class)
     private Set<String> values;
     
     SegmentTarget(ContextKind contextKind, Set<String> values) {
@@ -649,49 +700,70 @@ public abstract class DataModel {
    * EvaluatorOperators.
    */
   static class Operator {
+    // Each builtin operator has a distinct code, so that EvaluatorOperators can dispatch on it with a switch
+    // statement rather than a map lookup. Unrecognized operators have the code UNKNOWN.
+    static final int UNKNOWN = 0;
+    static final int IN = 1;
+    static final int STARTS_WITH = 2;
+    static final int ENDS_WITH = 3;
+    static final int MATCHES = 4;
+    static final int CONTAINS = 5;
+    static final int LESS_THAN = 6;
+    static final int LESS_THAN_OR_EQUAL = 7;
+    static final int GREATER_THAN = 8;
+    static final int GREATER_THAN_OR_EQUAL = 9;
+    static final int BEFORE = 10;
+    static final int AFTER = 11;
+    static final int SEM_VER_EQUAL = 12;
+    static final int SEM_VER_LESS_THAN = 13;
+    static final int SEM_VER_GREATER_THAN = 14;
+    static final int SEGMENT_MATCH = 15;
+
     private final String name;
     private final boolean builtin;
+    private final int code;
     private final int hashCode;
     
     private static final Map<String, Operator> builtins = new HashMap<>();
     
-    private Operator(String name, boolean builtin) {
+    private Operator(String name, boolean builtin, int code) {
       this.name = name;
       this.builtin = builtin;
+      this.code = code;
       
       // Precompute the hash code for fast map lookups - String.hashCode() does memoize this value,
       // sort of, but we shouldn't have to rely on that 
       this.hashCode = name.hashCode();
     }
     
-    private static Operator builtin(String name) {
-      Operator op = new Operator(name, true);
+    private static Operator builtin(String name, int code) {
+      Operator op = new Operator(name, true, code);
       builtins.put(name, op);
       return op;
     }
     
-    static final Operator in = builtin("in");
-    static final Operator startsWith = builtin("startsWith");
-    static final Operator endsWith = builtin("endsWith");
-    static final Operator matches = builtin("matches");
-    static final Operator contains = builtin("contains");
-    static final Operator lessThan = builtin("lessThan");
-    static final Operator lessThanOrEqual = builtin("lessThanOrEqual");
-    static final Operator greaterThan = builtin("greaterThan");
-    static final Operator greaterThanOrEqual = builtin("greaterThanOrEqual");
-    static final Operator before = builtin("before");
-    static final Operator after = builtin("after");
-    static final Operator semVerEqual = builtin("semVerEqual");
-    static final Operator semVerLessThan = builtin("semVerLessThan");
-    static final Operator semVerGreaterThan = builtin("semVerGreaterThan");
-    static final Operator segmentMatch = builtin("segmentMatch");
+    static final Operator in = builtin("in", IN);
+    static final Operator startsWith = builtin("startsWith", STARTS_WITH);
+    static final Operator endsWith = builtin("endsWith", ENDS_WITH);
+    static final Operator matches = builtin("matches", MATCHES);
+    static final Operator contains = builtin("contains", CONTAINS);
+    static final Operator lessThan = builtin("lessThan", LESS_THAN);
+    static final Operator lessThanOrEqual = builtin("lessThanOrEqual", LESS_THAN_OR_EQUAL);
+    static final Operator greaterThan = builtin("greaterThan", GREATER_THAN);
+    static final Operator greaterThanOrEqual = builtin("greaterThanOrEqual", GREATER_THAN_OR_EQUAL);
+    static final Operator before = builtin("before", BEFORE);
+    static final Operator after = builtin("after", AFTER);
+    static final Operator semVerEqual = builtin("semVerEqual", SEM_VER_EQUAL);
+    static final Operator semVerLessThan = builtin("semVerLessThan", SEM_VER_LESS_THAN);
+    static final Operator semVerGreaterThan = builtin("semVerGreaterThan", SEM_VER_GREATER_THAN);
+    static final Operator segmentMatch = builtin("segmentMatch", SEGMENT_MATCH);
     
     static Operator forName(String name) {
       // Normally we will only see names that are in the builtins map. Anything else is something
       // the SDK doesn't recognize, but we still need to allow it to exist rather than throwing
       // an error.
       Operator op = builtins.get(name);
-      return op == null ? new Operator(name, false) : op;
+      return op == null ? new Operator(name, false, UNKNOWN) : op;
     }
     
     static Iterable<Operator> getBuiltins() {
@@ -702,6 +774,10 @@ public abstract class DataModel {
       return name;
     }
     
+    int code() {
+      return code;
+    }
+    
     @Override
     public String toString() {
       return name;
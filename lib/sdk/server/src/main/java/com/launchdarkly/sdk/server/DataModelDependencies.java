@@ -13,9 +13,11 @@ import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.FullDataSet;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.ItemDescriptor;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.KeyedItems;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -259,6 +261,53 @@ abstract class DataModelDependencies {
       dependenciesTo.clear();
     }
     
+    /**
+     * Returns the given flag keys in an order where every flag comes after all of its direct and indirect
+     * prerequisites (based on the current state of the dependency graph), and finds the flags that have a
+     * prerequisite cycle: that is, the ones that are part of a cycle or that depend on a flag that is.
+     * 
+     * @param flagKeys the flags to sort
+     * @param cyclicFlagKeysOut an existing set to which the keys of any flags with cycles will be added;
+     *   this can include keys that were not in {@code flagKeys}, if they were visited as prerequisites
+     * @return the flag keys in dependency order
+     */
+    public List<String> sortPrerequisitesFirst(Iterable<String> flagKeys, Set<String> cyclicFlagKeysOut) {
+      Map<String, Boolean> visited = new HashMap<>(); // true if done, false if still in progress
+      List<String> sortedKeys = new ArrayList<>();
+      for (String key: flagKeys) {
+        visitPrerequisites(key, visited, sortedKeys, cyclicFlagKeysOut);
+      }
+      sortedKeys.retainAll(ImmutableSet.copyOf(flagKeys));
+      return sortedKeys;
+    }
+    
+    // Depth-first traversal that adds each flag to sortedKeysOut after its prerequisites. Returns true if the
+    // flag has a prerequisite cycle; a cycle shows up as a prerequisite that is still in progress, and is
+    // reported back up through every flag on the path to it.
+    private boolean visitPrerequisites(String flagKey, Map<String, Boolean> visited, List<String> sortedKeysOut,
+        Set<String> cyclicFlagKeysOut) {
+      Boolean done = visited.get(flagKey);
+      if (done != null) {
+        return !done || cyclicFlagKeysOut.contains(flagKey);
+      }
+      visited.put(flagKey, false);
+      boolean cyclic = false;
+      Set<KindAndKey> deps = dependenciesFrom.get(new KindAndKey(FEATURES, flagKey));
+      if (deps != null) {
+        for (KindAndKey dep: deps) {
+          if (dep.kind == FEATURES) {
+            cyclic |= visitPrerequisites(dep.key, visited, sortedKeysOut, cyclicFlagKeysOut);
+          }
+        }
+      }
+      visited.put(flagKey, true);
+      if (cyclic) {
+        cyclicFlagKeysOut.add(flagKey);
+      }
+      sortedKeysOut.add(flagKey);
+      return cyclic;
+    }
+    
     /**
      * Populates the given set with the union of the initial item and all items that directly or indirectly
      * depend on it (based on the current state of the dependency graph).
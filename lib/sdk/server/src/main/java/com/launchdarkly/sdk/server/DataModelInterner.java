@@ -0,0 +1,147 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.AttributeRef;
+import com.launchdarkly.sdk.ContextKind;
+import com.launchdarkly.sdk.LDValue;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Canonicalizes values that tend to be repeated many times across the flags and segments of one data set,
+ * so that equal values are represented by a single instance. For instance, many flags may have the same
+ * JSON variation values, many clauses may test the same attribute of the same context kind against the same
+ * values, and every flag's key is read twice from a full data set (once as a property name, and once from
+ * the flag's own "key" property). Without this, every one of those is a separate object.
+ * <p>
+ * An interner is only used while a data set, or some other collection of items, is being deserialized: see
+ * {@link #beginScope()}. All of the items in the collection share the interner, so equal values in different
+ * flags and segments are deserialized as a single instance. A single item that is deserialized on its own, as
+ * in a streaming "patch" event, has nothing to share values with, so it is deserialized without one. The
+ * deserialization logic in {@link DataModelSerialization} and in the {@code afterDeserialized()} methods of
+ * the data model classes uses {@link #current()} to find the interner, if any. Once the deserialization is
+ * done, the interner is discarded, so its maps do not keep anything from an old data set alive; the
+ * deduplicated values are referenced only by the data model objects.
+ * <p>
+ * We don't intern strings that are usually unique, like rule IDs and salts, or the keys in target lists, since
+ * that would only make the maps bigger. This class is not thread-safe, but each thread has its own interner.
+ */
+final class DataModelInterner {
+  private static final ThreadLocal<DataModelInterner> CURRENT = new ThreadLocal<>();
+
+  private static final Scope OUTER_SCOPE = new Scope(true);
+  private static final Scope NESTED_SCOPE = new Scope(false);
+
+  private final HashMap<String, String> strings = new HashMap<>();
+  private final HashMap<LDValue, LDValue> values = new HashMap<>();
+  private final HashMap<String, ContextKind> contextKinds = new HashMap<>();
+  private final HashMap<String, AttributeRef> attributeLiterals = new HashMap<>();
+  private final HashMap<String, AttributeRef> attributePaths = new HashMap<>();
+
+  /**
+   * Returns the interner for the deserialization that is in progress on this thread, or null if there is
+   * none, in which case values should be used as they are.
+   *
+   * @return an interner or null
+   */
+  static DataModelInterner current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Makes a new interner current for this thread until the returned scope is closed. If there is already a
+   * current interner (for instance, if we are deserializing an item that is part of a full data set), it
+   * remains current and closing the returned scope does nothing.
+   *
+   * @return a scope to be closed when deserialization is done
+   */
+  static Scope beginScope() {
+    if (CURRENT.get() != null) {
+      return NESTED_SCOPE;
+    }
+    CURRENT.set(new DataModelInterner());
+    return OUTER_SCOPE;
+  }
+
+  static final class Scope implements AutoCloseable {
+    private final boolean outer;
+
+    private Scope(boolean outer) {
+      this.outer = outer;
+    }
+
+    @Override
+    public void close() {
+      if (outer) {
+        CURRENT.remove();
+      }
+    }
+  }
+
+  String string(String s) {
+    if (s == null) {
+      return null;
+    }
+    String existing = strings.putIfAbsent(s, s);
+    return existing == null ? s : existing;
+  }
+
+  LDValue value(LDValue value) {
+    if (value == null) {
+      return null;
+    }
+    switch (value.getType()) {
+    case NULL:
+    case BOOLEAN:
+      return value; // these are already singletons
+    default:
+      LDValue existing = values.putIfAbsent(value, value);
+      return existing == null ? value : existing;
+    }
+  }
+
+  /**
+   * Replaces each value in a mutable list with the canonical instance.
+   *
+   * @param list a list that was created during deserialization, or null
+   */
+  void values(List<LDValue> list) {
+    if (list == null) {
+      return;
+    }
+    for (int i = 0; i < list.size(); i++) {
+      LDValue value = list.get(i);
+      LDValue canonical = value(value);
+      if (canonical != value) {
+        list.set(i, canonical);
+      }
+    }
+  }
+
+  ContextKind contextKind(String name) {
+    ContextKind kind = contextKinds.get(name);
+    if (kind == null) {
+      kind = ContextKind.of(name);
+      contextKinds.put(name, kind);
+    }
+    return kind;
+  }
+
+  ContextKind contextKind(ContextKind kind) {
+    if (kind == null) {
+      return null;
+    }
+    ContextKind existing = contextKinds.putIfAbsent(kind.toString(), kind);
+    return existing == null ? kind : existing;
+  }
+
+  AttributeRef attributeRef(String s, boolean literal) {
+    HashMap<String, AttributeRef> map = literal ? attributeLiterals : attributePaths;
+    AttributeRef ref = map.get(s);
+    if (ref == null) {
+      ref = literal ? AttributeRef.fromLiteral(s) : AttributeRef.fromPath(s);
+      map.put(s, ref);
+    }
+    return ref;
+  }
+}
@@ -1,6 +1,8 @@
 package com.launchdarkly.sdk.server;
 
 import com.google.common.collect.ImmutableSet;
+import com.launchdarkly.sdk.AttributeRef;
+import com.launchdarkly.sdk.ContextKind;
 import com.launchdarkly.sdk.EvaluationReason;
 import com.launchdarkly.sdk.EvaluationReason.ErrorKind;
 import com.launchdarkly.sdk.LDValue;
@@ -16,18 +18,24 @@ import com.launchdarkly.sdk.server.DataModel.Target;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 
 import static com.launchdarkly.sdk.server.DataModel.Operator.after;
 import static com.launchdarkly.sdk.server.DataModel.Operator.before;
+import static com.launchdarkly.sdk.server.DataModel.Operator.contains;
+import static com.launchdarkly.sdk.server.DataModel.Operator.endsWith;
 import static com.launchdarkly.sdk.server.DataModel.Operator.in;
 import static com.launchdarkly.sdk.server.DataModel.Operator.matches;
 import static com.launchdarkly.sdk.server.DataModel.Operator.semVerEqual;
 import static com.launchdarkly.sdk.server.DataModel.Operator.semVerGreaterThan;
 import static com.launchdarkly.sdk.server.DataModel.Operator.semVerLessThan;
+import static com.launchdarkly.sdk.server.DataModel.Operator.startsWith;
 
 /**
  * Additional information that we attach to our data model to reduce the overhead of feature flag
@@ -41,6 +49,10 @@ import static com.launchdarkly.sdk.server.DataModel.Operator.semVerLessThan;
 abstract class DataModelPreprocessing {
   private DataModelPreprocessing() {}
   
+  // Runs of rules shorter than this are not worth indexing, since checking the rules one at a time is
+  // about as fast as a map lookup.
+  static final int RULE_RUN_INDEX_MIN_LENGTH = 3;
+  
   static final class EvalResultsForSingleVariation {
     private final EvalResult regularResult;
     private final EvalResult inExperimentResult;
@@ -50,10 +62,13 @@ abstract class DataModelPreprocessing {
         int variationIndex,
         EvaluationReason regularReason,
         EvaluationReason inExperimentReason,
-        boolean alwaysInExperiment
+        boolean alwaysInExperiment,
+        FeatureFlag flag
         ) {
-      this.regularResult = EvalResult.of(value, variationIndex, regularReason).withForceReasonTracking(alwaysInExperiment);
-      this.inExperimentResult = EvalResult.of(value, variationIndex, inExperimentReason).withForceReasonTracking(true);
+      this.regularResult = EvalResult.of(value, variationIndex, regularReason).withForceReasonTracking(alwaysInExperiment)
+          .precomputedFor(flag);
+      this.inExperimentResult = EvalResult.of(value, variationIndex, inExperimentReason).withForceReasonTracking(true)
+          .precomputedFor(flag);
     }
     
     EvalResult getResult(boolean inExperiment) {
@@ -88,6 +103,10 @@ abstract class DataModelPreprocessing {
   static final class FlagPreprocessed {
     EvalResult offResult;
     EvalResultFactoryMultiVariations fallthroughResults;
+    RuleRunIndex[] ruleRunIndexes; // null, or same size as rules with an entry at the start of each indexed run
+    // Set by DataSourceUpdatesImpl when the flag is stored, and replaced whenever any of its prerequisites
+    // change; null if the flag has not been linked, or if it has a prerequisite cycle.
+    volatile PrerequisiteLinks prerequisiteLinks;
     
     FlagPreprocessed(EvalResult offResult,
         EvalResultFactoryMultiVariations fallthroughResults) {
@@ -96,6 +115,54 @@ abstract class DataModelPreprocessing {
     }
   }
   
+  /**
+   * The prerequisite flags of a flag, resolved when the flag was stored. Since these are only created for
+   * flags that have no direct or indirect prerequisite cycle (see
+   * {@link DataModelDependencies.DependencyTracker#sortPrerequisitesFirst}), the evaluator does not have to
+   * check for cycles when it follows them.
+   * <p>
+   * A flag instance is shared by every {@link DataStoreSnapshot} that contains it, but its links only belong
+   * to a range of data versions: from the version they were made from, until the last version before any of
+   * the prerequisites (or their prerequisites) changed. DataSourceUpdatesImpl sets the end of that range
+   * before it stores the change, and then replaces the links. So the evaluator can tell whether it may follow
+   * the links just by comparing the version of the snapshot it is using, without looking up any flags.
+   */
+  static final class PrerequisiteLinks {
+    final FeatureFlag[] flags; // same order as the flag's prerequisites; null for a flag that does not exist
+    final long dataVersion; // the version of the data that the links were made from
+    volatile long lastValidDataVersion = Long.MAX_VALUE;
+
+    PrerequisiteLinks(FeatureFlag[] flags, long dataVersion) {
+      this.flags = flags;
+      this.dataVersion = dataVersion;
+    }
+
+    boolean isValidFor(long dataVersion) {
+      return dataVersion >= this.dataVersion && dataVersion <= lastValidDataVersion;
+    }
+  }
+
+  /**
+   * Describes a run of consecutive flag rules that each consist of a single non-negated "in" clause
+   * for the same context kind and attribute. Within such a run, the first rule that matches is simply
+   * the lowest-numbered rule whose values include the context's attribute value, so the evaluator can
+   * find it with one map lookup instead of checking each rule in turn.
+   */
+  static final class RuleRunIndex {
+    final ContextKind contextKind;
+    final AttributeRef attribute;
+    final int endIndex; // exclusive
+    final Map<LDValue, Integer> firstRuleIndexByValue;
+    
+    RuleRunIndex(ContextKind contextKind, AttributeRef attribute, int endIndex,
+        Map<LDValue, Integer> firstRuleIndexByValue) {
+      this.contextKind = contextKind;
+      this.attribute = attribute;
+      this.endIndex = endIndex;
+      this.firstRuleIndexByValue = firstRuleIndexByValue;
+    }
+  }
+  
   static final class PrerequisitePreprocessed {
     final EvalResult prerequisiteFailedResult;
     
@@ -114,21 +181,83 @@ abstract class DataModelPreprocessing {
   
   static final class FlagRulePreprocessed {
     final EvalResultFactoryMultiVariations allPossibleResults;
+    final CompiledClause[] clauses;
     
     FlagRulePreprocessed(
-        EvalResultFactoryMultiVariations allPossibleResults
+        EvalResultFactoryMultiVariations allPossibleResults,
+        CompiledClause[] clauses
         ) {
       this.allPossibleResults = allPossibleResults;
+      this.clauses = clauses;
+    }
+  }
+  
+  static final class SegmentPreprocessed {
+    final String bigSegmentRef; // null if this is not a Big Segment
+    
+    SegmentPreprocessed(String bigSegmentRef) {
+      this.bigSegmentRef = bigSegmentRef;
+    }
+  }
+  
+  static final class SegmentRulePreprocessed {
+    final CompiledClause[] clauses;
+    
+    SegmentRulePreprocessed(CompiledClause[] clauses) {
+      this.clauses = clauses;
+    }
+  }
+  
+  /**
+   * An immutable, pre-validated form of a {@link Clause}. All of the decisions that the evaluator would
+   * otherwise make by inspecting the raw clause on every evaluation (whether it is a segment match, whether
+   * the attribute reference is valid, whether it is a "kind" match, which operator implementation to use)
+   * are made once here.
+   * <p>
+   * A malformed clause is not an error at preprocessing time, since it only causes an evaluation error if
+   * the evaluation actually reaches that clause; so in that case we just store the error message.
+   */
+  static final class CompiledClause {
+    final String malformedMessage;
+    final String[] segmentKeys;
+    final boolean matchByKind;
+    final ContextKind contextKind;
+    final AttributeRef attribute;
+    final EvaluatorOperators.ValueMatcher valueMatcher;
+    final boolean negate;
+    
+    private CompiledClause(
+        String malformedMessage,
+        String[] segmentKeys,
+        boolean matchByKind,
+        ContextKind contextKind,
+        AttributeRef attribute,
+        EvaluatorOperators.ValueMatcher valueMatcher,
+        boolean negate
+        ) {
+      this.malformedMessage = malformedMessage;
+      this.segmentKeys = segmentKeys;
+      this.matchByKind = matchByKind;
+      this.contextKind = contextKind;
+      this.attribute = attribute;
+      this.valueMatcher = valueMatcher;
+      this.negate = negate;
     }
   }
   
   static final class ClausePreprocessed {
     final Set<LDValue> valuesSet;
     final List<ValueData> valuesExtra;
+    final EvaluatorOperators.ValueMatcher stringMatcher;
     
     ClausePreprocessed(Set<LDValue> valuesSet, List<ValueData> valuesExtra) {
+      this(valuesSet, valuesExtra, null);
+    }
+    
+    ClausePreprocessed(Set<LDValue> valuesSet, List<ValueData> valuesExtra, EvaluatorOperators.ValueMatcher stringMatcher) {
       this.valuesSet = valuesSet;
       this.valuesExtra = valuesExtra;
+      this.stringMatcher = stringMatcher;
     }
     
     static final class ValueData {
@@ -146,7 +275,7 @@ abstract class DataModelPreprocessing {
 
   static void preprocessFlag(FeatureFlag f) {
     f.preprocessed = new FlagPreprocessed(
-        EvaluatorHelpers.offResult(f),
+        EvaluatorHelpers.offResult(f).precomputedFor(f),
         precomputeMultiVariationResultsForFlag(f, EvaluationReason.fallthrough(false),
             EvaluationReason.fallthrough(true), f.isTrackEventsFallthrough())
         );
@@ -165,10 +294,13 @@ abstract class DataModelPreprocessing {
     for (int i = 0; i < n; i++) {
       preprocessFlagRule(rules.get(i), i, f);
     }
+    f.preprocessed.ruleRunIndexes = buildRuleRunIndexes(rules);
     preprocessValueList(f.getVariations());
   }
   
   static void preprocessSegment(Segment s) {
+    s.preprocessed = new SegmentPreprocessed(
+        s.isUnbounded() && s.getGeneration() != null ? Evaluator.makeBigSegmentRef(s) : null);
     List<SegmentRule> rules = s.getRules();
     int n = rules.size();
     for (int i = 0; i < n; i++) {
@@ -179,29 +311,30 @@ abstract class DataModelPreprocessing {
   static void preprocessPrerequisite(Prerequisite p, FeatureFlag f) {
     // Precompute an immutable EvaluationDetail instance that will be used if the prerequisite fails.
     // This behaves the same as an "off" result except for the reason.
-    p.preprocessed = new PrerequisitePreprocessed(EvaluatorHelpers.prerequisiteFailedResult(f, p));
+    p.preprocessed = new PrerequisitePreprocessed(EvaluatorHelpers.prerequisiteFailedResult(f, p).precomputedFor(f));
   }
   
   static void preprocessTarget(Target t, FeatureFlag f) {
     // Precompute an immutable EvalResult instance that will be used if this target matches.
-    t.preprocessed = new TargetPreprocessed(EvaluatorHelpers.targetMatchResult(f, t));
+    t.preprocessed = new TargetPreprocessed(EvaluatorHelpers.targetMatchResult(f, t).precomputedFor(f));
   }
   
   static void preprocessFlagRule(Rule r, int ruleIndex, FeatureFlag f) {
     EvaluationReason ruleMatchReason = EvaluationReason.ruleMatch(ruleIndex, r.getId(), false);
     EvaluationReason ruleMatchReasonInExperiment = EvaluationReason.ruleMatch(ruleIndex, r.getId(), true);
-    r.preprocessed = new FlagRulePreprocessed(precomputeMultiVariationResultsForRule(f, r,
-        ruleMatchReason, ruleMatchReasonInExperiment, r.isTrackEvents()));
-    
     for (Clause c: r.getClauses()) {
       preprocessClause(c);
     }
+    r.preprocessed = new FlagRulePreprocessed(precomputeMultiVariationResultsForRule(f, r,
+        ruleMatchReason, ruleMatchReasonInExperiment, r.isTrackEvents()),
+        compileClauses(r.getClauses()));
   }
 
   static void preprocessSegmentRule(SegmentRule r, int ruleIndex) {
     for (Clause c: r.getClauses()) {
       preprocessClause(c);
     }
+    r.preprocessed = new SegmentRulePreprocessed(compileClauses(r.getClauses()));
   }
   
   static void preprocessClause(Clause c) {
@@ -224,6 +357,12 @@ abstract class DataModelPreprocessing {
       if (values.size() > 1) {
         c.preprocessed = new ClausePreprocessed(ImmutableSet.copyOf(values), null);
       }
+    } else if (op == startsWith || op == endsWith || op == contains) {
+      // For a long list of values, we build an index that can check all of them in a single pass over
+      // the context value. This is the same matcher that will be used in the compiled form of the clause.
+      if (values.size() >= EvaluatorOperators.STRING_PATTERN_INDEX_MIN_VALUES) {
+        c.preprocessed = new ClausePreprocessed(null, null, EvaluatorOperators.compileStringMatcher(op, values));
+      }
     } else if (op == matches) {
       c.preprocessed = preprocessClauseValues(c.getValues(), v ->
         new ClausePreprocessed.ValueData(null, EvaluatorTypeConversion.valueToRegex(v), null)
@@ -239,6 +378,89 @@ abstract class DataModelPreprocessing {
     }
   }
   
+  static CompiledClause[] compileClauses(List<Clause> clauses) {
+    CompiledClause[] ret = new CompiledClause[clauses.size()];
+    for (int i = 0; i < ret.length; i++) {
+      ret[i] = compileClause(clauses.get(i));
+    }
+    return ret;
+  }
+  
+  // This must be called after preprocessClause, so that it can reuse the parsed clause values. The
+  // order of the checks here must be the same as in Evaluator.clauseMatchesContext.
+  static CompiledClause compileClause(Clause c) {
+    boolean negate = c.isNegate();
+    if (c.getOp() == Operator.segmentMatch) {
+      List<String> keys = new ArrayList<>(c.getValues().size());
+      for (LDValue v: c.getValues()) {
+        if (v.isString()) {
+          keys.add(v.stringValue());
+        }
+      }
+      return new CompiledClause(null, keys.toArray(new String[keys.size()]), false, null, null, null, negate);
+    }
+    AttributeRef attr = c.getAttribute();
+    if (attr == null) {
+      return new CompiledClause("rule clause did not specify an attribute", null, false, null, null, null, negate);
+    }
+    if (!attr.isValid()) {
+      return new CompiledClause("invalid attribute reference \"" + attr.getError() + "\"",
+          null, false, null, null, null, negate);
+    }
+    EvaluatorOperators.ValueMatcher valueMatcher =
+        EvaluatorOperators.compileValueMatcher(c.getOp(), c.getValues(), c.preprocessed);
+    boolean matchByKind = attr.getDepth() == 1 && attr.getComponent(0).equals("kind");
+    return new CompiledClause(null, null, matchByKind, c.getContextKind(), attr, valueMatcher, negate);
+  }
+  
+  static RuleRunIndex[] buildRuleRunIndexes(List<Rule> rules) {
+    RuleRunIndex[] ret = null;
+    int n = rules.size();
+    int runStart = 0;
+    while (runStart < n) {
+      Clause first = getIndexableClause(rules.get(runStart));
+      int runEnd = runStart + 1;
+      if (first != null) {
+        while (runEnd < n) {
+          Clause c = getIndexableClause(rules.get(runEnd));
+          if (c == null || !Objects.equals(c.getContextKind(), first.getContextKind()) ||
+              !c.getAttribute().equals(first.getAttribute())) {
+            break;
+          }
+          runEnd++;
+        }
+        if (runEnd - runStart >= RULE_RUN_INDEX_MIN_LENGTH) {
+          Map<LDValue, Integer> firstRuleIndexByValue = new HashMap<>();
+          for (int i = runStart; i < runEnd; i++) {
+            for (LDValue v: rules.get(i).getClauses().get(0).getValues()) {
+              firstRuleIndexByValue.putIfAbsent(v, i);
+            }
+          }
+          if (ret == null) {
+            ret = new RuleRunIndex[n];
+          }
+          ret[runStart] = new RuleRunIndex(first.getContextKind(), first.getAttribute(), runEnd,
+              firstRuleIndexByValue);
+        }
+      }
+      runStart = runEnd;
+    }
+    return ret;
+  }
+  
+  // Returns the rule's only clause if it is a non-negated "in" test of a regular attribute, or null.
+  private static Clause getIndexableClause(Rule r) {
+    if (r.getClauses().size() != 1 || r.preprocessed == null || r.preprocessed.clauses == null) {
+      return null;
+    }
+    Clause c = r.getClauses().get(0);
+    CompiledClause cc = r.preprocessed.clauses[0];
+    if (c.getOp() != in || c.isNegate() || cc.malformedMessage != null || cc.matchByKind) {
+      return null;
+    }
+    return c;
+  }
+  
   static void preprocessValueList(List<LDValue> values) {
     // If a list of values contains a null (which is valid in terms of the JSON schema, even if it
     // isn't useful because the SDK considers this a non-value), Gson will give us an actual null.
@@ -271,7 +493,7 @@ abstract class DataModelPreprocessing {
     ArrayList<EvalResultsForSingleVariation> variations = new ArrayList<>(f.getVariations().size());
     for (int i = 0; i < f.getVariations().size(); i++) {
       variations.add(new EvalResultsForSingleVariation(f.getVariations().get(i), i,
-          regularReason, inExperimentReason, alwaysInExperiment));
+          regularReason, inExperimentReason, alwaysInExperiment, f));
     }
     return new EvalResultFactoryMultiVariations(Collections.unmodifiableList(variations));
   }
@@ -294,7 +516,7 @@ abstract class DataModelPreprocessing {
       int index = r.getVariation();
       if (index >= 0 && index < f.getVariations().size()) {
         variations.set(index, new EvalResultsForSingleVariation(f.getVariations().get(index), index,
-            regularReason, inExperimentReason, alwaysInExperiment));
+            regularReason, inExperimentReason, alwaysInExperiment, f));
       }
     }
 
@@ -303,7 +525,7 @@ abstract class DataModelPreprocessing {
         int index = wv.getVariation();
         if (index >= 0 && index < f.getVariations().size()) {
           variations.set(index, new EvalResultsForSingleVariation(f.getVariations().get(index), index,
-              regularReason, inExperimentReason, alwaysInExperiment));
+              regularReason, inExperimentReason, alwaysInExperiment, f));
         }
       }
     }
@@ -29,6 +29,7 @@ import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.launchdarkly.sdk.server.DataModel.FEATURES;
 import static com.launchdarkly.sdk.server.DataModel.SEGMENTS;
@@ -109,7 +110,8 @@ abstract class DataModelSerialization {
     ImmutableList.Builder<Map.Entry<String, ItemDescriptor>> flags = ImmutableList.builder();
     ImmutableList.Builder<Map.Entry<String, ItemDescriptor>> segments = ImmutableList.builder();
     
-    try {
+    try (DataModelInterner.Scope scope = DataModelInterner.beginScope()) {
+      DataModelInterner interner = DataModelInterner.current();
       jr.beginObject();
       while (jr.peek() != JsonToken.END_OBJECT) {
         String kindName = jr.nextName();
@@ -130,7 +132,7 @@ abstract class DataModelSerialization {
         }
         jr.beginObject();
         while (jr.peek() != JsonToken.END_OBJECT) {
-          String key = jr.nextName();
+          String key = interner.string(jr.nextName()); // the item's own key will be the same instance
           @SuppressWarnings("unchecked")
           Object item = JsonHelpers.deserialize(jr, (Class<Object>)itemClass);
           listBuilder.add(new AbstractMap.SimpleEntry<>(key,
@@ -180,11 +182,12 @@ abstract class DataModelSerialization {
       Operator op = null;
       List<LDValue> values = new ArrayList<>();
       boolean negate = false;
+      DataModelInterner interner = DataModelInterner.current();
       in.beginObject();
       while (in.hasNext()) {
         switch (in.nextName()) {
         case "contextKind":
-          contextKind = ContextKind.of(in.nextString());
+          contextKind = readContextKind(in);
           break;
         case "attribute":
           attrString = in.nextString();
@@ -199,7 +202,7 @@ abstract class DataModelSerialization {
             in.beginArray();
             while (in.hasNext()) {
               LDValue value = gsonInstanceWithNullsAllowed().fromJson(in, LDValue.class);
-              values.add(value);
+              values.add(interner == null ? value : interner.value(value));
             }
             in.endArray();
           }
@@ -253,7 +256,7 @@ abstract class DataModelSerialization {
       while (in.hasNext()) {
         switch (in.nextName()) {
         case "contextKind":
-          contextKind = ContextKind.of(in.nextString());
+          contextKind = readContextKind(in);
           break;
         case "variations":
           if (in.peek() == JsonToken.NULL) {
@@ -334,7 +337,7 @@ abstract class DataModelSerialization {
           weight = readNullableInt(in);
           break;
         case "rolloutContextKind":
-          rolloutContextKind = ContextKind.of(in.nextString());
+          rolloutContextKind = readContextKind(in);
           break;
         case "bucketBy":
           bucketByString = in.nextString();
@@ -349,6 +352,43 @@ abstract class DataModelSerialization {
     }
   }
   
+  // Custom deserialization logic for the key lists in targets and segments, so that large ones can be
+  // stored as a CompactStringSet without first building a HashSet.
+  static class StringSetTypeAdapter extends TypeAdapter<Set<String>> {
+    @Override
+    public void write(JsonWriter out, Set<String> values) throws IOException {
+      if (values == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginArray();
+      for (String v: values) {
+        out.value(v);
+      }
+      out.endArray();
+    }
+
+    @Override
+    public Set<String> read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.skipValue();
+        return null;
+      }
+      List<String> values = new ArrayList<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        if (in.peek() == JsonToken.NULL) {
+          in.skipValue();
+          values.add(null);
+        } else {
+          values.add(in.nextString());
+        }
+      }
+      in.endArray();
+      return CompactStringSet.of(values);
+    }
+  }
+  
   static Integer readNullableInt(JsonReader in) throws IOException {
     if (in.peek() == JsonToken.NULL) {
       in.skipValue();
@@ -357,10 +397,20 @@ abstract class DataModelSerialization {
     return in.nextInt();
   }
   
+  static ContextKind readContextKind(JsonReader in) throws IOException {
+    String name = in.nextString();
+    DataModelInterner interner = DataModelInterner.current();
+    return interner == null ? ContextKind.of(name) : interner.contextKind(name);
+  }
+
   static AttributeRef attributeNameOrPath(String attrString, ContextKind contextKind) {
     if (attrString == null) {
       return null;
     }
+    DataModelInterner interner = DataModelInterner.current();
+    if (interner != null) {
+      return interner.attributeRef(attrString, contextKind == null);
+    }
     return contextKind == null ? AttributeRef.fromLiteral(attrString) : AttributeRef.fromPath(attrString);
   }
 }
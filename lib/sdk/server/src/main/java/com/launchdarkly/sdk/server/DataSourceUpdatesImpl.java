@@ -1,6 +1,7 @@
 package com.launchdarkly.sdk.server;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.launchdarkly.logging.LDLogger;
@@ -15,6 +16,7 @@ import com.launchdarkly.sdk.server.subsystems.DataSourceUpdateSink;
 import com.launchdarkly.sdk.server.subsystems.DataSourceUpdateSinkV2;
 import com.launchdarkly.sdk.server.subsystems.DataStore;
 import com.launchdarkly.sdk.fdv2.ChangeSet;
+import com.launchdarkly.sdk.fdv2.ChangeSetType;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.DataKind;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.FullDataSet;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.ItemDescriptor;
@@ -26,8 +28,11 @@ import com.launchdarkly.sdk.server.interfaces.FlagChangeListener;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
@@ -63,6 +68,7 @@ final class DataSourceUpdatesImpl implements DataSourceUpdateSink, DataSourceUpd
   
   private volatile Status currentStatus;
   private volatile boolean lastStoreUpdateFailed = false;
+  private volatile ChangedItemsListener changedItemsListener = null;
   volatile Consumer<String> onOutageErrorLog = null; // test instrumentation
   
   DataSourceUpdatesImpl(
@@ -87,16 +93,19 @@ final class DataSourceUpdatesImpl implements DataSourceUpdateSink, DataSourceUpd
   @Override
   public boolean init(FullDataSet<ItemDescriptor> allData) {
     Map<DataKind, Map<String, ItemDescriptor>> oldData = null;
+    long previousDataVersion;
+    DataStoreSnapshot previousData = storeKeepsItemInstances() ? getStoreSnapshot() : null;
+    if (previousData != null) {
+      allData = new FullDataSet<>(reuseUnchangedItems(allData.getData(), previousData), allData.shouldPersist());
+      expirePrerequisiteLinks(changedFlagKeys(allData.getData(), previousData));
+    }
 
     try {
-      if (hasFlagChangeEventListeners()) {
+      if (isTrackingChanges()) {
         // Query the existing data if any, so that after the update we can send events for whatever was changed
-        oldData = new HashMap<>();
-        for (DataKind kind: ALL_DATA_KINDS) {
-          KeyedItems<ItemDescriptor> items = store.getAll(kind);
-          oldData.put(kind, ImmutableMap.copyOf(items.getItems()));
-        }
+        oldData = readAllData();
       }
+      previousDataVersion = getStoreDataVersion();
       store.init(DataModelDependencies.sortAllCollections(allData));
       lastStoreUpdateFailed = false;
     } catch (RuntimeException e) {
@@ -107,11 +116,13 @@ final class DataSourceUpdatesImpl implements DataSourceUpdateSink, DataSourceUpd
     // We must always update the dependency graph even if we don't currently have any event listeners, because if
     // listeners are added later, we don't want to have to reread the whole data store to compute the graph
     updateDependencyTrackerFromFullDataSet(allData);
+    updatePrerequisiteLinks(previousData == null ? allFlagKeys(allData.getData()) :
+        changedFlagKeys(allData.getData(), previousData));
     
     // Now, if we previously queried the old data because someone is listening for flag change events, compare
     // the versions of all items and generate events for those (and any other items that depend on them)
     if (oldData != null) {
-      sendChangeEvents(computeChangedItemsForFullDataSet(oldData, fullDataSetToMap(allData)));
+      sendChangeEvents(previousDataVersion, computeChangedItemsForFullDataSet(oldData, fullDataSetToMap(allData)));
     }
     
     return true;
@@ -120,7 +131,12 @@ final class DataSourceUpdatesImpl implements DataSourceUpdateSink, DataSourceUpd
   @Override
   public boolean upsert(DataKind kind, String key, ItemDescriptor item) {
     boolean successfullyUpdated;
+    long previousDataVersion;
+    if (kind == FEATURES) {
+      expirePrerequisiteLinks(ImmutableList.of(key));
+    }
     try {
+      previousDataVersion = getStoreDataVersion();
       successfullyUpdated = store.upsert(kind, key, item);
       lastStoreUpdateFailed = false;
     } catch (RuntimeException e) {
@@ -130,10 +146,16 @@ final class DataSourceUpdatesImpl implements DataSourceUpdateSink, DataSourceUpd
     
     if (successfullyUpdated) {
       dependencyTracker.updateDependenciesFrom(kind, key, item);
-      if (hasFlagChangeEventListeners()) {
+    }
+    if (kind == FEATURES) {
+      // The links of the affected flags were expired above, so they must be replaced even if the update was rejected
+      updatePrerequisiteLinks(ImmutableList.of(key));
+    }
+    if (successfullyUpdated) {
+      if (isTrackingChanges()) {
         Set<KindAndKey> affectedItems = new HashSet<>();
         dependencyTracker.addAffectedItems(affectedItems, new KindAndKey(kind, key));
-        sendChangeEvents(affectedItems);
+        sendChangeEvents(previousDataVersion, affectedItems);
       }
     }
     
@@ -209,8 +231,8 @@ final class DataSourceUpdatesImpl implements DataSourceUpdateSink, DataSourceUpd
     }
   }
   
-  private boolean hasFlagChangeEventListeners() {
-    return flagChangeEventNotifier.hasListeners();
+  private boolean isTrackingChanges() {
+    return flagChangeEventNotifier.hasListeners() || changedItemsListener != null;
   }
   
   void addFlagChangeListener(FlagChangeListener listener) {
@@ -221,7 +243,46 @@ final class DataSourceUpdatesImpl implements DataSourceUpdateSink, DataSourceUpd
     flagChangeEventNotifier.unregister(listener);
   }
   
-  private void sendChangeEvents(Iterable<KindAndKey> affectedItems) {
+  /**
+   * Receives the items that were affected by each update to the store; see
+   * {@link DataSourceUpdatesImpl#setChangedItemsListener(ChangedItemsListener)}.
+   */
+  interface ChangedItemsListener {
+    /**
+     * Called after each update to the store, with the versions of the store's data (see
+     * {@link DataStoreSnapshot#getVersion()}) just before and just after the update.
+     *
+     * @param previousDataVersion the data version before the update
+     * @param dataVersion the data version that includes the update
+     * @param affectedItems all of the items that the update affected, including any items that depend on them;
+     *   may be empty
+     */
+    void itemsChanged(long previousDataVersion, long dataVersion, Set<KindAndKey> affectedItems);
+  }
+
+  /**
+   * Sets a listener that will be called synchronously, after each update to the store, with all of the
+   * items that the update affected (including any items that depend on them). Unlike flag change listeners,
+   * it is called before the update method returns. It is only called if the store provides snapshots, so
+   * that each change can be identified by the data version it produced; this is what allows
+   * {@link AllFlagsStateCache} to never return results that are older than the snapshot an evaluation is
+   * using. Like the rest of this class, this relies on updates not being made concurrently.
+   *
+   * @param listener the listener, or null to remove it
+   */
+  void setChangedItemsListener(ChangedItemsListener listener) {
+    this.changedItemsListener = listener;
+  }
+
+  private void sendChangeEvents(long previousDataVersion, Set<KindAndKey> affectedItems) {
+    ChangedItemsListener listener = changedItemsListener;
+    if (listener != null && previousDataVersion >= 0) {
+      long dataVersion = getStoreDataVersion();
+      if (dataVersion >= 0) {
+        // this is called even if nothing was affected, so the listener knows about every data version
+        listener.itemsChanged(previousDataVersion, dataVersion, affectedItems);
+      }
+    }
     for (KindAndKey item: affectedItems) {
       if (item.kind == FEATURES) {
         flagChangeEventNotifier.broadcast(new FlagChangeEvent(item.key));
@@ -240,6 +301,167 @@ final class DataSourceUpdatesImpl implements DataSourceUpdateSink, DataSourceUpd
     }
   }
   
+  // A full data set usually has mostly the same versions of flags and segments that we already have, for
+  // instance if the stream reconnects. If the store keeps the instances we give it, we replace each of
+  // those items with the one that is already in the store, so that the newly deserialized copies, and
+  // everything that was preprocessed for them, can be discarded right away instead of replacing objects
+  // that have been in the heap for a long time; and prerequisite links only need to be recomputed for the
+  // flags that changed (see changedFlagKeys). An item is considered unchanged if it has the same version,
+  // for the same reason as in computeChangedItemsForFullDataSet.
+  private static Iterable<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>> reuseUnchangedItems(
+      Iterable<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>> data, DataStoreSnapshot previousData) {
+    ImmutableList.Builder<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>> ret = ImmutableList.builder();
+    for (Map.Entry<DataKind, KeyedItems<ItemDescriptor>> e0: data) {
+      Map<String, ItemDescriptor> oldItems = previousData.getItems(e0.getKey());
+      List<Map.Entry<String, ItemDescriptor>> items = new ArrayList<>();
+      for (Map.Entry<String, ItemDescriptor> e1: e0.getValue().getItems()) {
+        ItemDescriptor newItem = e1.getValue();
+        ItemDescriptor oldItem = oldItems.get(e1.getKey());
+        if (oldItem != null && oldItem != newItem && oldItem.getVersion() == newItem.getVersion() &&
+            (oldItem.getItem() == null) == (newItem.getItem() == null)) {
+          items.add(new AbstractMap.SimpleEntry<>(e1.getKey(), oldItem));
+        } else {
+          items.add(e1);
+        }
+      }
+      ret.add(new AbstractMap.SimpleEntry<>(e0.getKey(), new KeyedItems<>(items)));
+    }
+    return ret.build();
+  }
+
+  // Called before storing data in which the given flags have changed. Any flag whose prerequisite links
+  // could refer to one of them (including, through the dependency tracker, flags that depend on them
+  // indirectly) is still in the store, and may be reused in the new data. We mark its links as not valid
+  // for any data version after the current one, so that evaluations that use the new data will look up its
+  // prerequisites until updatePrerequisiteLinks replaces the links; see DataModelPreprocessing.PrerequisiteLinks.
+  private void expirePrerequisiteLinks(Iterable<String> changedFlagKeys) {
+    if (!storeKeepsItemInstances()) {
+      return;
+    }
+    DataStoreSnapshot snapshot = getStoreSnapshot();
+    if (snapshot == null) {
+      return;
+    }
+    Set<KindAndKey> affectedItems = new HashSet<>();
+    for (String key: changedFlagKeys) {
+      dependencyTracker.addAffectedItems(affectedItems, new KindAndKey(FEATURES, key));
+    }
+    for (KindAndKey item: affectedItems) {
+      DataModel.FeatureFlag flag = item.kind == FEATURES ? snapshot.getFlag(item.key) : null;
+      DataModelPreprocessing.PrerequisiteLinks links = flag == null || flag.preprocessed == null ? null :
+        flag.preprocessed.prerequisiteLinks;
+      if (links != null) {
+        links.lastValidDataVersion = Math.min(links.lastValidDataVersion, snapshot.getVersion());
+      }
+    }
+  }
+
+  // Returns the keys of flags in a full data set that were not reused by reuseUnchangedItems, plus the keys
+  // of flags that were in the previous data but are not in the new data. Any flag whose prerequisite links
+  // could be out of date either is one of these or depends on one of them.
+  private static Set<String> changedFlagKeys(Iterable<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>> data,
+      DataStoreSnapshot previousData) {
+    Map<String, ItemDescriptor> oldFlags = previousData.getItems(FEATURES);
+    Set<String> keys = new HashSet<>();
+    Set<String> newKeys = new HashSet<>();
+    for (Map.Entry<DataKind, KeyedItems<ItemDescriptor>> e0: data) {
+      if (e0.getKey() == FEATURES) {
+        for (Map.Entry<String, ItemDescriptor> e1: e0.getValue().getItems()) {
+          newKeys.add(e1.getKey());
+          if (oldFlags.get(e1.getKey()) != e1.getValue()) {
+            keys.add(e1.getKey());
+          }
+        }
+      }
+    }
+    for (String key: oldFlags.keySet()) {
+      if (!newKeys.contains(key)) {
+        keys.add(key);
+      }
+    }
+    return keys;
+  }
+
+  private static List<String> allFlagKeys(Iterable<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>> data) {
+    List<String> keys = new ArrayList<>();
+    for (Map.Entry<DataKind, KeyedItems<ItemDescriptor>> e0: data) {
+      if (e0.getKey() == FEATURES) {
+        for (Map.Entry<String, ItemDescriptor> e1: e0.getValue().getItems()) {
+          keys.add(e1.getKey());
+        }
+      }
+    }
+    return keys;
+  }
+  
+  // After the given flags have been stored, resolves the prerequisites of those flags, and of any flags that
+  // depend on them, to the flag instances that are now in the store; see
+  // DataModelPreprocessing.PrerequisiteLinks. This must be called after the dependency tracker is updated.
+  // The flags are processed with prerequisites first, so an evaluation that sees a flag's new links will
+  // also see its prerequisites' new links.
+  private void updatePrerequisiteLinks(Iterable<String> changedFlagKeys) {
+    long dataVersion = getStoreDataVersion();
+    if (!storeKeepsItemInstances() || dataVersion < 0) {
+      return;
+    }
+    Set<KindAndKey> affectedItems = new HashSet<>();
+    for (String key: changedFlagKeys) {
+      dependencyTracker.addAffectedItems(affectedItems, new KindAndKey(FEATURES, key));
+    }
+    Set<String> affectedFlagKeys = new HashSet<>();
+    for (KindAndKey item: affectedItems) {
+      if (item.kind == FEATURES) {
+        affectedFlagKeys.add(item.key);
+      }
+    }
+    Set<String> cyclicFlagKeys = new HashSet<>();
+    List<String> sortedFlagKeys = dependencyTracker.sortPrerequisitesFirst(affectedFlagKeys, cyclicFlagKeys);
+    if (!cyclicFlagKeys.isEmpty()) {
+      logger.debug("Flags with circular prerequisite relationships, which cannot be evaluated: {}", cyclicFlagKeys);
+    }
+    for (String key: sortedFlagKeys) {
+      DataModel.FeatureFlag flag = getStoredFlag(key);
+      if (flag == null || flag.preprocessed == null) {
+        continue;
+      }
+      List<DataModel.Prerequisite> prerequisites = flag.getPrerequisites();
+      if (prerequisites.isEmpty() || cyclicFlagKeys.contains(key)) {
+        // Without links, the evaluator will look up the prerequisites and detect the cycle as it did before
+        flag.preprocessed.prerequisiteLinks = null;
+        continue;
+      }
+      DataModel.FeatureFlag[] prerequisiteFlags = new DataModel.FeatureFlag[prerequisites.size()];
+      for (int i = 0; i < prerequisiteFlags.length; i++) {
+        prerequisiteFlags[i] = getStoredFlag(prerequisites.get(i).getKey());
+      }
+      flag.preprocessed.prerequisiteLinks = new DataModelPreprocessing.PrerequisiteLinks(prerequisiteFlags,
+          dataVersion);
+    }
+  }
+  
+  // Prerequisite links are only useful if the store gives the evaluator the same flag instances that we
+  // gave to it, as the in-memory store does. For other stores, reading every affected flag here might mean
+  // a database query for each one, and the evaluator would not see the results anyway.
+  private boolean storeKeepsItemInstances() {
+    return store instanceof InMemoryDataStore ||
+        (store instanceof WriteThroughStore && ((WriteThroughStore)store).isReadingFromMemory());
+  }
+  
+  private DataStoreSnapshot getStoreSnapshot() {
+    return store instanceof DataStoreSnapshotProvider ? ((DataStoreSnapshotProvider)store).getSnapshot() : null;
+  }
+
+  // Returns the version of the store's current snapshot, or -1 if it does not provide snapshots.
+  private long getStoreDataVersion() {
+    DataStoreSnapshot snapshot = getStoreSnapshot();
+    return snapshot == null ? -1 : snapshot.getVersion();
+  }
+
+  private DataModel.FeatureFlag getStoredFlag(String key) {
+    ItemDescriptor item = store.get(FEATURES, key);
+    return item == null ? null : (DataModel.FeatureFlag)item.getItem();
+  }
+  
   private Map<DataKind, Map<String, ItemDescriptor>> fullDataSetToMap(FullDataSet<ItemDescriptor> allData) {
     Map<DataKind, Map<String, ItemDescriptor>> ret = new HashMap<>();
     for (Map.Entry<DataKind, KeyedItems<ItemDescriptor>> e: allData.getData()) {
@@ -381,6 +603,19 @@ final class DataSourceUpdatesImpl implements DataSourceUpdateSink, DataSourceUpd
   
   private boolean applyToTransactionalStore(TransactionalDataStore transactionalDataStore,
       ChangeSet<Iterable<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>>> changeSet) {
+    DataStoreSnapshot previousData = null;
+    if (changeSet.getType() == ChangeSetType.Full && storeKeepsItemInstances()) {
+      previousData = getStoreSnapshot();
+      if (previousData != null) {
+        changeSet = new ChangeSet<>(changeSet.getType(), changeSet.getSelector(),
+            reuseUnchangedItems(changeSet.getData(), previousData), changeSet.getEnvironmentId(),
+            changeSet.shouldPersist());
+        expirePrerequisiteLinks(changedFlagKeys(changeSet.getData(), previousData));
+      }
+    } else if (changeSet.getType() == ChangeSetType.Partial) {
+      expirePrerequisiteLinks(allFlagKeys(changeSet.getData()));
+    }
+
     Map<DataKind, Map<String, ItemDescriptor>> oldData;
     // Getting the old values requires accessing the store, which can fail.
     // If there is a failure to read the store, then we stop treating it as a failure.
@@ -393,7 +628,9 @@ final class DataSourceUpdatesImpl implements DataSourceUpdateSink, DataSourceUpd
     
     ChangeSet<Iterable<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>>> sortedChangeSet = DataModelDependencies.sortChangeset(changeSet);
     
+    long previousDataVersion;
     try {
+      previousDataVersion = getStoreDataVersion();
       transactionalDataStore.apply(sortedChangeSet);
       lastStoreUpdateFailed = false;
     } catch (RuntimeException e) {
@@ -405,11 +642,16 @@ final class DataSourceUpdatesImpl implements DataSourceUpdateSink, DataSourceUpd
     updateStatus(State.VALID, null);
     
     Set<KindAndKey> changes = updateDependencyTrackerForChangesetAndDetermineChanges(oldData, sortedChangeSet);
+    if (previousData != null) {
+      updatePrerequisiteLinks(changedFlagKeys(sortedChangeSet.getData(), previousData));
+    } else if (sortedChangeSet.getType() != ChangeSetType.None) {
+      updatePrerequisiteLinks(allFlagKeys(sortedChangeSet.getData()));
+    }
     
     // Now, if we previously queried the old data because someone is listening for flag change events, compare
     // the versions of all items and generate events for those (and any other items that depend on them)
     if (changes != null) {
-      sendChangeEvents(changes);
+      sendChangeEvents(previousDataVersion, changes);
     }
     
     return true;
@@ -457,20 +699,27 @@ final class DataSourceUpdatesImpl implements DataSourceUpdateSink, DataSourceUpd
   }
   
   private Map<DataKind, Map<String, ItemDescriptor>> getOldDataIfFlagChangeListeners() {
-    if (hasFlagChangeEventListeners()) {
+    if (isTrackingChanges()) {
       // Query the existing data if any, so that after the update we can send events for
       // whatever was changed
-      Map<DataKind, Map<String, ItemDescriptor>> oldData = new HashMap<>();
-      for (DataKind kind: ALL_DATA_KINDS) {
-        KeyedItems<ItemDescriptor> items = store.getAll(kind);
-        oldData.put(kind, ImmutableMap.copyOf(items.getItems()));
-      }
-      return oldData;
+      return readAllData();
     } else {
       return null;
     }
   }
   
+  private Map<DataKind, Map<String, ItemDescriptor>> readAllData() {
+    Map<DataKind, Map<String, ItemDescriptor>> data = new HashMap<>();
+    // If the store can provide a snapshot, its maps are immutable so we don't need to copy them, and all of
+    // the kinds of data are from the same version
+    DataStoreSnapshot snapshot = getStoreSnapshot();
+    for (DataKind kind: ALL_DATA_KINDS) {
+      data.put(kind, snapshot != null ? snapshot.getItems(kind) :
+          ImmutableMap.copyOf(store.getAll(kind).getItems()));
+    }
+    return data;
+  }
+
   private Map<DataKind, Map<String, ItemDescriptor>> changeSetToMap(ChangeSet<Iterable<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>>> changeSet) {
     Map<DataKind, Map<String, ItemDescriptor>> ret = new HashMap<>();
     for (Map.Entry<DataKind, KeyedItems<ItemDescriptor>> e: changeSet.getData()) {
@@ -0,0 +1,121 @@
+package com.launchdarkly.sdk.server;
+
+import com.google.common.collect.ImmutableMap;
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
+import com.launchdarkly.sdk.server.DataModel.Segment;
+import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.DataKind;
+import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.ItemDescriptor;
+import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.KeyedItems;
+
+import java.util.Map;
+
+import static com.launchdarkly.sdk.server.DataModel.SEGMENTS;
+
+/**
+ * An immutable view of all of the data in a store at one point in time. See
+ * {@link DataStoreSnapshotProvider}.
+ * <p>
+ * Getting a snapshot does not copy anything, and neither do any of its methods: the collections they
+ * return are the store's own immutable maps, which the store replaces rather than modifies when it is
+ * updated. So a snapshot can be kept for as long as it's needed, and will not change.
+ */
+final class DataStoreSnapshot {
+  static final DataStoreSnapshot EMPTY = new DataStoreSnapshot(0, ImmutableMap.of(), PersistentHashMap.empty());
+
+  private final long version;
+  private final ImmutableMap<DataKind, PersistentHashMap<String, ItemDescriptor>> data;
+  private final PersistentHashMap<String, FeatureFlag> flagIndex;
+
+  DataStoreSnapshot(long version, ImmutableMap<DataKind, PersistentHashMap<String, ItemDescriptor>> data,
+      PersistentHashMap<String, FeatureFlag> flagIndex) {
+    this.version = version;
+    this.data = data;
+    this.flagIndex = flagIndex;
+  }
+
+  /**
+   * Returns the data version of this snapshot. Every change to the store's data produces a snapshot with a
+   * higher version, so two snapshots from the same store with the same version have the same data; a
+   * caller can use this to tell whether something it computed from an earlier snapshot is still valid.
+   * Versions from different stores can't be compared.
+   *
+   * @return the data version
+   */
+  long getVersion() {
+    return version;
+  }
+
+  /**
+   * Same as {@link com.launchdarkly.sdk.server.subsystems.DataStore#get(DataKind, String)}.
+   *
+   * @param kind specifies which collection to use
+   * @param key the unique key of the item within that collection
+   * @return the item or deleted item placeholder, or null if the key is unknown
+   */
+  ItemDescriptor get(DataKind kind, String key) {
+    Map<String, ItemDescriptor> items = data.get(kind);
+    return items == null ? null : items.get(key);
+  }
+
+  /**
+   * Returns all items of one kind, including deleted item placeholders.
+   *
+   * @param kind specifies which collection to use
+   * @return an immutable map of keys to items, which is empty if there are none
+   */
+  Map<String, ItemDescriptor> getItems(DataKind kind) {
+    Map<String, ItemDescriptor> items = data.get(kind);
+    return items == null ? ImmutableMap.of() : items;
+  }
+
+  /**
+   * Same as {@link com.launchdarkly.sdk.server.subsystems.DataStore#getAll(DataKind)}, but without copying.
+   *
+   * @param kind specifies which collection to use
+   * @return the items
+   */
+  KeyedItems<ItemDescriptor> getAll(DataKind kind) {
+    return new KeyedItems<>(getItems(kind).entrySet());
+  }
+
+  /**
+   * Returns all of the data, by kind.
+   *
+   * @return an immutable map of data kinds to items
+   */
+  ImmutableMap<DataKind, PersistentHashMap<String, ItemDescriptor>> getAllData() {
+    return data;
+  }
+
+  /**
+   * Returns a map of flag keys to flags, not including deleted flags. This is the same map from one
+   * snapshot to the next as long as the flags have not changed, so a caller that still has the same map
+   * reference knows that no flags have changed since it got it.
+   *
+   * @return an immutable map of flag keys to flags
+   */
+  PersistentHashMap<String, FeatureFlag> getFlagIndex() {
+    return flagIndex;
+  }
+
+  /**
+   * Returns a flag, or null if the key is unknown or the flag has been deleted.
+   *
+   * @param key the flag key
+   * @return the flag or null
+   */
+  FeatureFlag getFlag(String key) {
+    return flagIndex.get(key);
+  }
+
+  /**
+   * Returns a segment, or null if the key is unknown or the segment has been deleted.
+   *
+   * @param key the segment key
+   * @return the segment or null
+   */
+  Segment getSegment(String key) {
+    ItemDescriptor item = get(SEGMENTS, key);
+    return item == null ? null : (Segment)item.getItem();
+  }
+}
@@ -0,0 +1,22 @@
+package com.launchdarkly.sdk.server;
+
+/**
+ * Optional interface for data stores that can provide an immutable snapshot of their data.
+ * <p>
+ * Reading a whole collection with {@link com.launchdarkly.sdk.server.subsystems.DataStore#getAll} normally
+ * means copying it, so that the caller has a consistent view even if the store is updated while it is
+ * iterating; and looking up a flag means finding the collection for the data kind, then the item, and then
+ * unwrapping it from its {@link com.launchdarkly.sdk.server.subsystems.DataStoreTypes.ItemDescriptor}. A
+ * store that keeps its data in immutable maps can just hand those out instead, along with a map that goes
+ * straight from a flag key to the flag.
+ * <p>
+ * This is currently only for internal implementations.
+ */
+interface DataStoreSnapshotProvider {
+  /**
+   * Returns a snapshot of the store's current data.
+   *
+   * @return a snapshot, or null if the store can't provide one at the moment
+   */
+  DataStoreSnapshot getSnapshot();
+}
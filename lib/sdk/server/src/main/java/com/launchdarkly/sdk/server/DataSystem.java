@@ -1,11 +1,13 @@
 package com.launchdarkly.sdk.server;
 
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
 import com.launchdarkly.sdk.server.interfaces.DataSourceStatusProvider;
 import com.launchdarkly.sdk.server.interfaces.DataStoreStatusProvider;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.DataKind;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.ItemDescriptor;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.KeyedItems;
 
+import java.util.Map;
 import java.util.concurrent.Future;
 
 /**
@@ -87,6 +89,30 @@ interface ReadOnlyStore {
    */
   KeyedItems<ItemDescriptor> getAll(DataKind kind);
 
+  /**
+   * Retrieves a feature flag. This is equivalent to calling {@link #get(DataKind, String)} for
+   * {@link DataModel#FEATURES} and unwrapping the item, but it uses the store's flag index if it has one
+   * (see {@link DataStoreSnapshot#getFlagIndex()}).
+   *
+   * @param key the flag key
+   * @return the flag, or null if the key is unknown or the flag has been deleted
+   */
+  FeatureFlag getFlag(String key);
+
+  /**
+   * Returns the store's current flag index, as described by {@link DataStoreSnapshot#getFlagIndex()}.
+   *
+   * @return the flag index, or null if the store does not have one
+   */
+  Map<String, FeatureFlag> getFlagIndex();
+
+  /**
+   * Returns a snapshot of the store's current data, as described by {@link DataStoreSnapshotProvider}.
+   *
+   * @return a snapshot, or null if the store can't provide one
+   */
+  DataStoreSnapshot getSnapshot();
+
   /**
    * Checks whether this store has been initialized with any data yet.
    *
@@ -114,4 +140,12 @@ interface FlagChangeNotifier {
    * @param listener the listener to remove
    */
   void removeFlagChangeListener(com.launchdarkly.sdk.server.interfaces.FlagChangeListener listener);
+
+  /**
+   * Sets a listener that is called synchronously with all of the items affected by each update to the
+   * store. There can only be one such listener.
+   *
+   * @param listener the listener, or null to remove it
+   */
+  void setChangedItemsListener(DataSourceUpdatesImpl.ChangedItemsListener listener);
 }
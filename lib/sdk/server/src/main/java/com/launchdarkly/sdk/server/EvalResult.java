@@ -33,6 +33,9 @@ final class EvalResult {
   private final EvaluationDetail<Double> asDouble;
   private final EvaluationDetail<String> asString;
   private final boolean forceReasonTracking;
+  // For a result that was precomputed for a flag (see DataModelPreprocessing), the same result paired with
+  // that flag, so that an evaluation that returns this result does not need to allocate a new pair.
+  private final EvalResultAndFlag precomputedResultAndFlag;
 
   // A list of prerequisites evaluation records evaluated as part of obtaining this result.
   private List<PrerequisiteEvalRecord> prerequisiteEvalRecords = new ArrayList<>(0); // 0 initial capacity uses a static instance for performance
@@ -98,6 +101,7 @@ final class EvalResult {
     this.asString = value.isString() || value.isNull() ?
         EvaluationDetail.fromValue(value.stringValue(), index, reason) :
         WRONG_TYPE_STRING;
+    this.precomputedResultAndFlag = null;
   }
   
   private EvalResult(EvalResult from, EvaluationReason newReason) {
@@ -108,6 +112,7 @@ final class EvalResult {
     this.asString = transformReason(from.asString, newReason);
     this.forceReasonTracking = from.forceReasonTracking;
     this.prerequisiteEvalRecords = from.prerequisiteEvalRecords;
+    this.precomputedResultAndFlag = null;
   }
   
   private EvalResult(EvalResult from, boolean newForceTracking) {
@@ -118,6 +123,7 @@ final class EvalResult {
     this.asString = from.asString;
     this.forceReasonTracking = newForceTracking;
     this.prerequisiteEvalRecords = from.prerequisiteEvalRecords;
+    this.precomputedResultAndFlag = null;
   }
 
   private EvalResult(EvalResult from, List<PrerequisiteEvalRecord> prerequisiteEvalRecords) {
@@ -128,6 +134,18 @@ final class EvalResult {
     this.asString = from.asString;
     this.forceReasonTracking = from.forceReasonTracking;
     this.prerequisiteEvalRecords = prerequisiteEvalRecords;
+    this.precomputedResultAndFlag = null;
+  }
+
+  private EvalResult(EvalResult from, DataModel.FeatureFlag flag) {
+    this.anyType = from.anyType;
+    this.asBoolean = from.asBoolean;
+    this.asInteger = from.asInteger;
+    this.asDouble = from.asDouble;
+    this.asString = from.asString;
+    this.forceReasonTracking = from.forceReasonTracking;
+    this.prerequisiteEvalRecords = from.prerequisiteEvalRecords;
+    this.precomputedResultAndFlag = new EvalResultAndFlag(this, flag);
   }
   
   /**
@@ -252,6 +270,24 @@ final class EvalResult {
     return this.prerequisiteEvalRecords == newValue ? this : new EvalResult(this, newValue);
   }
   
+  /**
+   * Returns a copy of this EvalResult that is paired with the flag it was precomputed for; see
+   * {@link #getPrecomputedResultAndFlag()}. This is only used by {@link DataModelPreprocessing}.
+   * @param flag the flag
+   * @return a copy of this result
+   */
+  EvalResult precomputedFor(DataModel.FeatureFlag flag) {
+    return new EvalResult(this, flag);
+  }
+
+  /**
+   * Returns this result paired with the flag it was precomputed for, or null if it was not precomputed.
+   * @return an {@link EvalResultAndFlag} or null
+   */
+  EvalResultAndFlag getPrecomputedResultAndFlag() {
+    return precomputedResultAndFlag;
+  }
+
   @Override
   public boolean equals(Object other) {
     if (other instanceof EvalResult) {
@@ -7,29 +7,57 @@ package com.launchdarkly.sdk.server;
 final class EvaluationOptions {
   final boolean recordEvents;
   final boolean includeReasonsWithEvents;
+  final PreparedContext preparedContext;
+  final FlagHandle flagHandle;
 
   /**
    * @param recordEvents              when true, events will be recorded while the evaluation is performed
    * @param includeReasonsWithEvents  when true, any events that are recorded will include reasons
+   * @param preparedContext           if non-null, the evaluator may use its index of the context's attributes
+   * @param flagHandle                if non-null, the evaluator may use it to look up the flag
    */
-  private EvaluationOptions(boolean recordEvents, boolean includeReasonsWithEvents) {
+  private EvaluationOptions(boolean recordEvents, boolean includeReasonsWithEvents, PreparedContext preparedContext,
+      FlagHandle flagHandle) {
     this.recordEvents = recordEvents;
     this.includeReasonsWithEvents = includeReasonsWithEvents;
+    this.preparedContext = preparedContext;
+    this.flagHandle = flagHandle;
+  }
 
+  /**
+   * Returns options that are the same as these, but that also refer to a {@link PreparedContext} for the context
+   * that is being evaluated.
+   *
+   * @param preparedContext the prepared context
+   * @return a new options instance
+   */
+  EvaluationOptions withPreparedContext(PreparedContext preparedContext) {
+    return new EvaluationOptions(recordEvents, includeReasonsWithEvents, preparedContext, flagHandle);
+  }
+
+  /**
+   * Returns options that are the same as these, but that also refer to a {@link FlagHandle} for the flag that
+   * is being evaluated.
+   *
+   * @param flagHandle the flag handle
+   * @return a new options instance
+   */
+  EvaluationOptions withFlagHandle(FlagHandle flagHandle) {
+    return new EvaluationOptions(recordEvents, includeReasonsWithEvents, preparedContext, flagHandle);
   }
 
   /**
    * During evaluation, no events will be recorded.
    */
-  public static final EvaluationOptions NO_EVENTS = new EvaluationOptions(false, false);
+  public static final EvaluationOptions NO_EVENTS = new EvaluationOptions(false, false, null, null);
 
   /**
    * During evaluation, events will be recorded, but they will not include reasons.
    */
-  public static final EvaluationOptions EVENTS_WITHOUT_REASONS = new EvaluationOptions(true, false);
+  public static final EvaluationOptions EVENTS_WITHOUT_REASONS = new EvaluationOptions(true, false, null, null);
 
   /**
    * During evaluation, events will be recorded and those events will include reasons.
    */
-  public static final EvaluationOptions EVENTS_WITH_REASONS = new EvaluationOptions(true, true);
+  public static final EvaluationOptions EVENTS_WITH_REASONS = new EvaluationOptions(true, true, null, null);
 }
@@ -0,0 +1,227 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.AttributeRef;
+import com.launchdarkly.sdk.ContextKind;
+import com.launchdarkly.sdk.EvaluationReason;
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.Segment;
+
+import java.util.HashMap;
+import java.util.Objects;
+
+import static com.launchdarkly.sdk.server.EvaluatorBucketing.computeBucketValue;
+
+/**
+ * Holds state that can be shared by several flag evaluations for the same context, such as all of the
+ * evaluations done by a single allFlagsState() or variations() call, or a flag and its prerequisites.
+ * <p>
+ * Currently this is a memo of percentage rollout bucket values, of context attribute values that have
+ * been parsed as dates or semantic versions, of segment match results, and of Big Segment queries. Several
+ * flags may use the same rollout seed, and every flag that references a segment with a weighted rule will
+ * bucket the context by the same segment key and salt, so the same hash input can come up many times for
+ * one context. Similarly, a context's "appVersion" attribute may be compared with semVerLessThan in many
+ * rules and flags, and parsing it is much more expensive than the comparison; and a segment such as
+ * "beta-users" may be referenced by hundreds of flags, but whether the context matches it only needs to be
+ * determined once.
+ * <p>
+ * If the evaluations are for a {@link PreparedContext}, the scope also refers to it, so that the evaluator
+ * can use the individual contexts and attribute values that it resolved ahead of time.
+ * <p>
+ * This class is not thread-safe; an instance must only be used by one evaluation at a time.
+ */
+final class EvaluationScope {
+  static final int MAX_BUCKET_VALUES = 256;
+  static final int MAX_PARSED_VALUES = 64;
+  static final int MAX_SEGMENT_MATCHES = 256;
+
+  private static final Object UNPARSEABLE = new Object();
+
+  final LDContext context;
+  final PreparedContext preparedContext; // may be null
+  private final EvaluatorStatistics statistics;
+  private HashMap<BucketKey, Float> bucketValues = null; // created lazily since many evaluations have no rollouts
+  private HashMap<String, Object> parsedDates = null;
+  private HashMap<String, Object> parsedSemVers = null;
+  private HashMap<String, SegmentMatch> segmentMatches = null;
+  private HashMap<String, BigSegmentStoreWrapper.BigSegmentsQueryResult> bigSegmentsQueries = null;
+
+  EvaluationScope(LDContext context, EvaluatorStatistics statistics) {
+    this(context, null, statistics);
+  }
+
+  EvaluationScope(LDContext context, PreparedContext preparedContext, EvaluatorStatistics statistics) {
+    this.context = context;
+    this.preparedContext = preparedContext;
+    this.statistics = statistics;
+  }
+
+  /**
+   * Returns the same result as {@link EvaluatorBucketing#computeBucketValue}, reusing a previously computed
+   * value if the same hash input has already been seen in this scope. The cache is bounded; once it is full,
+   * further values are computed but not retained.
+   */
+  float getBucketValue(
+      boolean isExperiment,
+      Integer seed,
+      ContextKind contextKind,
+      String flagOrSegmentKey,
+      AttributeRef attr,
+      String salt
+      ) {
+    // Normalize the key so that inputs that computeBucketValue would treat the same way are equal: the key
+    // and salt are ignored if there is a seed, and the attribute is ignored for experiments.
+    BucketKey key = new BucketKey(
+        seed,
+        seed == null ? flagOrSegmentKey : null,
+        seed == null ? salt : null,
+        contextKind == null ? ContextKind.DEFAULT : contextKind,
+        isExperiment ? null : attr
+        );
+    if (bucketValues != null) {
+      Float cached = bucketValues.get(key);
+      if (cached != null) {
+        statistics.bucketCacheHits.increment();
+        return cached.floatValue();
+      }
+    }
+    statistics.bucketCacheMisses.increment();
+    float value = computeBucketValue(isExperiment, seed, context, contextKind, flagOrSegmentKey, attr, salt);
+    if (bucketValues == null) {
+      bucketValues = new HashMap<>();
+    }
+    if (bucketValues.size() < MAX_BUCKET_VALUES) {
+      bucketValues.put(key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Returns the same result as {@link EvaluatorOperators#parseValue(int, LDValue)} for a string value,
+   * reusing the result if the same string has already been parsed the same way in this scope. As with
+   * bucket values, the cache is bounded.
+   */
+  Object getParsedValue(int parsedValueKind, LDValue value) {
+    HashMap<String, Object> parsed;
+    if (parsedValueKind == EvaluatorOperators.PARSED_DATE) {
+      if (parsedDates == null) {
+        parsedDates = new HashMap<>();
+      }
+      parsed = parsedDates;
+    } else {
+      if (parsedSemVers == null) {
+        parsedSemVers = new HashMap<>();
+      }
+      parsed = parsedSemVers;
+    }
+    String s = value.stringValue();
+    Object result = parsed.get(s);
+    if (result == null) {
+      result = EvaluatorOperators.parseValue(parsedValueKind, value);
+      if (parsed.size() < MAX_PARSED_VALUES) {
+        parsed.put(s, result == null ? UNPARSEABLE : result);
+      }
+      return result;
+    }
+    return result == UNPARSEABLE ? null : result;
+  }
+
+  /**
+   * Returns the result of a previous {@link #putSegmentMatch} for the same segment key and version, or null
+   * if there was none.
+   */
+  SegmentMatch getSegmentMatch(Segment segment) {
+    SegmentMatch match = segmentMatches == null ? null : segmentMatches.get(segment.getKey());
+    if (match != null && match.version == segment.getVersion()) {
+      statistics.segmentMatchCacheHits.increment();
+      return match;
+    }
+    statistics.segmentMatchCacheMisses.increment();
+    return null;
+  }
+
+  /**
+   * Remembers whether the context matched a segment. As with bucket values, the cache is bounded.
+   *
+   * @param segment the segment
+   * @param matched true if the context matched it
+   * @param bigSegmentsStatus the Big Segments status that was reported while matching it, or null if no
+   *   Big Segments were involved
+   */
+  void putSegmentMatch(Segment segment, boolean matched, EvaluationReason.BigSegmentsStatus bigSegmentsStatus) {
+    if (segmentMatches == null) {
+      segmentMatches = new HashMap<>();
+    }
+    if (segmentMatches.size() < MAX_SEGMENT_MATCHES || segmentMatches.containsKey(segment.getKey())) {
+      segmentMatches.put(segment.getKey(), new SegmentMatch(segment.getVersion(), matched, bigSegmentsStatus));
+    }
+  }
+
+  /**
+   * Returns the result of a previous {@link #putBigSegmentsQueryResult} for the same context key, or null
+   * if there was none.
+   */
+  BigSegmentStoreWrapper.BigSegmentsQueryResult getBigSegmentsQueryResult(String contextKey) {
+    return bigSegmentsQueries == null ? null : bigSegmentsQueries.get(contextKey);
+  }
+
+  /**
+   * Remembers the Big Segment memberships of a context key, so that flags which reference different Big
+   * Segments don't each have to query them. A multi-kind context can only have a few keys, so this is not
+   * bounded.
+   */
+  void putBigSegmentsQueryResult(String contextKey, BigSegmentStoreWrapper.BigSegmentsQueryResult result) {
+    if (bigSegmentsQueries == null) {
+      bigSegmentsQueries = new HashMap<>();
+    }
+    bigSegmentsQueries.put(contextKey, result);
+  }
+
+  /**
+   * The result of matching a context against one version of a segment. Since a match against a Big Segment,
+   * or against a segment whose rules reference one, also determines the Big Segments status in the evaluation
+   * reason, we keep that status so it can be reported again for each flag that uses the segment.
+   */
+  static final class SegmentMatch {
+    final int version;
+    final boolean matched;
+    final EvaluationReason.BigSegmentsStatus bigSegmentsStatus;
+
+    SegmentMatch(int version, boolean matched, EvaluationReason.BigSegmentsStatus bigSegmentsStatus) {
+      this.version = version;
+      this.matched = matched;
+      this.bigSegmentsStatus = bigSegmentsStatus;
+    }
+  }
+
+  private static final class BucketKey {
+    private final Integer seed;
+    private final String flagOrSegmentKey;
+    private final String salt;
+    private final ContextKind contextKind;
+    private final AttributeRef attr;
+
+    BucketKey(Integer seed, String flagOrSegmentKey, String salt, ContextKind contextKind, AttributeRef attr) {
+      this.seed = seed;
+      this.flagOrSegmentKey = flagOrSegmentKey;
+      this.salt = salt;
+      this.contextKind = contextKind;
+      this.attr = attr;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof BucketKey)) {
+        return false;
+      }
+      BucketKey o = (BucketKey)other;
+      return Objects.equals(seed, o.seed) && Objects.equals(flagOrSegmentKey, o.flagOrSegmentKey) &&
+          Objects.equals(salt, o.salt) && contextKind.equals(o.contextKind) && Objects.equals(attr, o.attr);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(seed, flagOrSegmentKey, salt, contextKind, attr);
+    }
+  }
+}
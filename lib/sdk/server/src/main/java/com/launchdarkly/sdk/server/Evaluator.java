@@ -20,6 +20,8 @@ import com.launchdarkly.sdk.server.DataModel.SegmentRule;
 import com.launchdarkly.sdk.server.DataModel.Target;
 import com.launchdarkly.sdk.server.DataModel.VariationOrRollout;
 import com.launchdarkly.sdk.server.DataModel.WeightedVariation;
+import com.launchdarkly.sdk.server.DataModelPreprocessing.CompiledClause;
+import com.launchdarkly.sdk.server.DataModelPreprocessing.RuleRunIndex;
 import com.launchdarkly.sdk.server.subsystems.BigSegmentStoreTypes;
 
 import javax.annotation.Nonnull;
@@ -32,6 +34,8 @@ import java.util.Map;
 import static com.launchdarkly.sdk.server.EvaluatorBucketing.computeBucketValue;
 import static com.launchdarkly.sdk.server.EvaluatorHelpers.contextKeyIsInTargetList;
 import static com.launchdarkly.sdk.server.EvaluatorHelpers.contextKeyIsInTargetLists;
+import static com.launchdarkly.sdk.server.EvaluatorHelpers.getContextKey;
+import static com.launchdarkly.sdk.server.EvaluatorHelpers.getContextValue;
 import static com.launchdarkly.sdk.server.EvaluatorHelpers.matchClauseByKind;
 import static com.launchdarkly.sdk.server.EvaluatorHelpers.matchClauseWithoutSegments;
 import static com.launchdarkly.sdk.server.EvaluatorHelpers.maybeNegate;
@@ -66,6 +70,20 @@ class Evaluator {
   // 5. Avoid using lambdas/closures here, because these generally cause a heap object to be allocated for
   // variables captured in the closure each time they are used.
   //
+  // 6. Flag rules and segment rules normally carry a compiled form of their clauses (see
+  // DataModelPreprocessing.CompiledClause), and we evaluate that instead of re-inspecting the raw clause
+  // properties. The uncompiled code path must still work and must give identical results.
+  //
+  // 7. Results that depend only on the context and can recur across flags, such as rollout bucket values,
+  // parsed date or semver attributes, and segment matches, can be memoized in an EvaluationScope. We only
+  // create one when reuse is likely, or when the result is expensive enough that the allocation is worth it,
+  // so that a plain evaluation of a simple flag does not have to allocate it.
+  //
+  // 8. The goal is for an evaluation of a simple flag (off, or on with no rules that match) to allocate
+  // nothing at all. The EvaluatorState is reused by each thread, and the precomputed EvalResults from
+  // DataModelPreprocessing are returned as-is; anything else that is needed only in some evaluations should
+  // be created lazily.
+  //
 
   /**
    * This key cannot exist in LaunchDarkly because it contains invalid characters. We use it in tests as a way to
@@ -75,12 +93,22 @@ class Evaluator {
   static final String INVALID_FLAG_KEY_THAT_THROWS_EXCEPTION = "$ test error flag $";
   static final RuntimeException EXPECTED_EXCEPTION_FROM_INVALID_FLAG = new RuntimeException("deliberate test error");
 
+  // See checkPrerequisites.
+  static final int MAX_LINKED_PREREQUISITE_DEPTH = 100;
+
   private final Getters getters;
   private final LDLogger logger;
+  private final EvaluatorStatistics statistics;
+  private final RegexMatchCache regexMatchCache; // null if not enabled
 
   /**
    * An abstraction of getting flags or segments by key. This ensures that Evaluator cannot modify the data store,
    * and simplifies testing.
+   * <p>
+   * The Getters passed to the constructor are used by default, but a caller can also pass a different instance
+   * to {@link Evaluator#evaluate(FeatureFlag, LDContext, EvaluationRecorder, EvaluationScope, Getters)}, such as
+   * one that reads from a single {@link DataStoreSnapshot}, so that every flag and segment that an evaluation
+   * looks up comes from the same version of the data.
    */
   static interface Getters {
 
@@ -99,6 +127,14 @@ class Evaluator {
     Segment getSegment(String key);
 
     BigSegmentStoreWrapper.BigSegmentsQueryResult getBigSegments(String key);
+
+    /**
+     * @return the version of the {@link DataStoreSnapshot} that the flags come from, or -1 if they are
+     *   not from a snapshot, in which case prerequisite links are not used
+     */
+    default long getDataVersion() {
+      return -1;
+    }
   }
 
   /**
@@ -115,20 +151,87 @@ class Evaluator {
   }
 
   /**
-   * This object holds mutable state that Evaluator may need during an evaluation.
+   * This object holds mutable state that Evaluator may need during an evaluation. Each thread reuses one
+   * instance (see {@link Evaluator#acquireState()}), so everything in it must be lazily created and must be cleared
+   * by {@link #release()}.
    */
   private static class EvaluatorState {
     private Map<String, BigSegmentStoreTypes.Membership> bigSegmentsMembership = null;
     private EvaluationReason.BigSegmentsStatus bigSegmentsStatus = null;
     private FeatureFlag originalFlag = null;
     private List<String> prerequisiteStack = null;
-    private List<PrerequisiteEvalRecord> prerequisiteEvalRecords =  new ArrayList<>(0); // 0 initial capacity uses a static instance for performance
+    private List<PrerequisiteEvalRecord> prerequisiteEvalRecords = null; // handed off to the EvalResult, never reused
     private List<String> segmentStack = null;
+    private EvaluationScope scope = null;
+    private PreparedContext preparedContext = null; // only set if the scope has one
+    private Getters getters = null;
+    private int linkedPrerequisiteDepth = 0;
+    // The last date or semver string parsed in an evaluation that has no scope; see getParsedValue()
+    private int lastParsedValueKind = EvaluatorOperators.PARSED_NONE;
+    private String lastParsedString = null;
+    private Object lastParsedValue = null;
+    private boolean inUse = false;
+
+    private void release() {
+      bigSegmentsMembership = null;
+      bigSegmentsStatus = null;
+      originalFlag = null;
+      prerequisiteStack = null;
+      prerequisiteEvalRecords = null;
+      segmentStack = null;
+      scope = null;
+      preparedContext = null;
+      getters = null;
+      linkedPrerequisiteDepth = 0;
+      lastParsedValueKind = EvaluatorOperators.PARSED_NONE;
+      lastParsedString = null;
+      lastParsedValue = null;
+      inUse = false;
+    }
   }
 
+  private static final ThreadLocal<EvaluatorState> THREAD_STATE = new ThreadLocal<EvaluatorState>() {
+    @Override
+    protected EvaluatorState initialValue() {
+      return new EvaluatorState();
+    }
+  };
+
   Evaluator(Getters getters, LDLogger logger) {
+    this(getters, logger, new EvaluatorStatistics());
+  }
+
+  Evaluator(Getters getters, LDLogger logger, EvaluatorStatistics statistics) {
+    this(getters, logger, statistics, null);
+  }
+
+  Evaluator(Getters getters, LDLogger logger, EvaluatorStatistics statistics, RegexMatchCache regexMatchCache) {
     this.getters = getters;
     this.logger = logger;
+    this.statistics = statistics;
+    this.regexMatchCache = regexMatchCache;
+  }
+
+  /**
+   * Creates an {@link EvaluationScope} that can be passed to {@link #evaluate(FeatureFlag, LDContext, EvaluationRecorder, EvaluationScope)}
+   * for several evaluations with the same context.
+   *
+   * @param context the evaluation context
+   * @return a new scope
+   */
+  EvaluationScope newScope(LDContext context) {
+    return new EvaluationScope(context, statistics);
+  }
+
+  /**
+   * Same as {@link #newScope(LDContext)}, but the evaluations will also use the individual contexts and
+   * attribute values that were resolved by the {@link PreparedContext}.
+   *
+   * @param preparedContext the prepared context
+   * @return a new scope
+   */
+  EvaluationScope newScope(PreparedContext preparedContext) {
+    return new EvaluationScope(preparedContext.getContext(), preparedContext, statistics);
   }
 
   /**
@@ -140,12 +243,48 @@ class Evaluator {
    * @return an {@link EvalResult} - guaranteed non-null
    */
   EvalResult evaluate(FeatureFlag flag, LDContext context, @Nonnull EvaluationRecorder recorder) {
+    return evaluate(flag, context, recorder, null);
+  }
+
+  /**
+   * Same as {@link #evaluate(FeatureFlag, LDContext, EvaluationRecorder)}, but allows state to be shared with
+   * other evaluations for the same context.
+   *
+   * @param flag an existing feature flag; any other referenced flags or segments will be queried via {@link Getters}
+   * @param context the evaluation context
+   * @param recorder records information as evaluation runs
+   * @param scope a scope created by {@link #newScope(LDContext)} for the same context, or null
+   * @return an {@link EvalResult} - guaranteed non-null
+   */
+  EvalResult evaluate(FeatureFlag flag, LDContext context, @Nonnull EvaluationRecorder recorder, EvaluationScope scope) {
+    return evaluate(flag, context, recorder, scope, null);
+  }
+
+  /**
+   * Same as {@link #evaluate(FeatureFlag, LDContext, EvaluationRecorder, EvaluationScope)}, but any other
+   * flags or segments that the flag references will be queried via the specified {@link Getters} instead of
+   * the ones that were passed to the constructor.
+   *
+   * @param flag an existing feature flag
+   * @param context the evaluation context
+   * @param recorder records information as evaluation runs
+   * @param scope a scope created by {@link #newScope(LDContext)} for the same context, or null
+   * @param getters the {@link Getters} to use for this evaluation, or null to use the default ones
+   * @return an {@link EvalResult} - guaranteed non-null
+   */
+  EvalResult evaluate(FeatureFlag flag, LDContext context, @Nonnull EvaluationRecorder recorder, EvaluationScope scope,
+      Getters getters) {
     if (flag.getKey() == INVALID_FLAG_KEY_THAT_THROWS_EXCEPTION) {
       throw EXPECTED_EXCEPTION_FROM_INVALID_FLAG;
     }
 
-    EvaluatorState state = new EvaluatorState();
+    EvaluatorState state = acquireState();
     state.originalFlag = flag;
+    state.getters = getters == null ? this.getters : getters;
+    if (scope != null && scope.context == context) {
+      state.scope = scope;
+      state.preparedContext = scope.preparedContext;
+    }
 
     try {
       EvalResult result = evaluateInternal(flag, context, recorder, state);
@@ -164,9 +303,22 @@ class Evaluator {
     } catch (EvaluationException e) {
       logger.error("Could not evaluate flag \"{}\": {}", flag.getKey(), e.getMessage());
       return EvalResult.error(e.errorKind);
+    } finally {
+      state.release();
     }
   }
 
+  // Returns this thread's EvaluatorState, unless it is already in use by an evaluation further up the
+  // stack (for instance, if an EvaluationRecorder evaluated another flag), in which case we need a new one.
+  private static EvaluatorState acquireState() {
+    EvaluatorState state = THREAD_STATE.get();
+    if (state.inUse) {
+      state = new EvaluatorState();
+    }
+    state.inUse = true;
+    return state;
+  }
+
   /**
    * Internal evaluation function that may be called multiple times during a flag evaluation.
    *
@@ -187,24 +339,35 @@ class Evaluator {
     }
 
     // Check to see if targets match
-    EvalResult targetMatchResult = checkTargets(flag, context);
+    EvalResult targetMatchResult = checkTargets(flag, context, state.preparedContext);
     if (targetMatchResult != null) {
       return targetMatchResult;
     }
 
     // Now walk through the rules and see if any match
     List<Rule> rules = flag.getRules(); // guaranteed non-null
+    RuleRunIndex[] ruleRunIndexes = flag.preprocessed == null ? null : flag.preprocessed.ruleRunIndexes;
     int nRules = rules.size();
     for (int i = 0; i < nRules; i++) {
+      if (ruleRunIndexes != null && ruleRunIndexes[i] != null) {
+        // This is the start of a run of simple "in" rules that we can check all at once
+        RuleRunIndex run = ruleRunIndexes[i];
+        int matchIndex = findFirstMatchInRuleRun(run, context, state.preparedContext);
+        if (matchIndex >= 0) {
+          return computeRuleMatch(flag, context, rules.get(matchIndex), matchIndex, state);
+        }
+        i = run.endIndex - 1;
+        continue;
+      }
       Rule rule = rules.get(i);
       if (ruleMatchesContext(flag, rule, context, state)) {
-        return computeRuleMatch(flag, context, rule, i);
+        return computeRuleMatch(flag, context, rule, i, state);
       }
     }
     // Walk through the fallthrough and see if it matches
     return getValueForVariationOrRollout(flag, flag.getFallthrough(), context,
         flag.preprocessed == null ? null : flag.preprocessed.fallthroughResults,
-        EvaluationReason.fallthrough());
+        EvaluationReason.fallthrough(), state);
   }
 
   // Checks prerequisites if any; returns null if successful, or an EvalResult if we have to
@@ -216,6 +379,30 @@ class Evaluator {
       return null;
     }
 
+    // If the data source has resolved this flag's prerequisites (see DataModelPreprocessing.PrerequisiteLinks),
+    // we already know there are no cycles. The depth limit is only a safeguard in case the links were somehow
+    // made inconsistent; past that point we fall back to the normal cycle checking below, which would then
+    // catch any cycle. The links are only followed if they were made for the data version we're using.
+    DataModelPreprocessing.PrerequisiteLinks links = flag.preprocessed == null ? null :
+      flag.preprocessed.prerequisiteLinks;
+    if (links != null && links.flags.length == nPrerequisites &&
+        state.linkedPrerequisiteDepth < MAX_LINKED_PREREQUISITE_DEPTH &&
+        links.isValidFor(state.getters.getDataVersion())) {
+      state.linkedPrerequisiteDepth++;
+      try {
+        for (int i = 0; i < nPrerequisites; i++) {
+          Prerequisite prereq = prerequisites.get(i);
+          if (!checkPrerequisite(flag, prereq, links.flags[i], context, recorder, state)) {
+            return EvaluatorHelpers.prerequisiteFailedResult(flag, prereq);
+          }
+        }
+        return null; // all prerequisites were satisfied
+      } finally {
+        state.linkedPrerequisiteDepth--;
+      }
+    }
+
+    boolean pushed = false;
     try {
       // We use the state object to guard against circular references in prerequisites. To avoid
       // the overhead of creating the state.prerequisiteStack list in the most common case where
@@ -224,8 +411,13 @@ class Evaluator {
       if (flag != state.originalFlag) {
         if (state.prerequisiteStack == null) {
           state.prerequisiteStack = new ArrayList<>();
+        } else if (state.prerequisiteStack.contains(flag.getKey())) {
+          // We can only get here if we reached this flag again through linked prerequisites, which are not
+          // put on the stack.
+          throw circularPrerequisiteException(flag.getKey());
         }
         state.prerequisiteStack.add(flag.getKey());
+        pushed = true;
       }
 
       for (int i = 0; i < nPrerequisites; i++) {
@@ -235,41 +427,50 @@ class Evaluator {
         if (prereqKey.equals(state.originalFlag.getKey()) ||
             (flag != state.originalFlag && prereqKey.equals(flag.getKey())) ||
             (state.prerequisiteStack != null && state.prerequisiteStack.contains(prereqKey))) {
-          throw new EvaluationException(ErrorKind.MALFORMED_FLAG,
-              "prerequisite relationship to \"" + prereqKey + "\" caused a circular reference;" +
-                  " this is probably a temporary condition due to an incomplete update");
+          throw circularPrerequisiteException(prereqKey);
         }
 
-        boolean prereqOk = true;
-        FeatureFlag prereqFeatureFlag = getters.getFlag(prereq.getKey());
-        if (prereqFeatureFlag == null) {
-          logger.error("Could not retrieve prerequisite flag \"{}\" when evaluating \"{}\"", prereq.getKey(), flag.getKey());
-          prereqOk = false;
-        } else {
-          EvalResult prereqEvalResult = evaluateInternal(prereqFeatureFlag, context, recorder, state);
-          // Note that if the prerequisite flag is off, we don't consider it a match no matter what its
-          // off variation was. But we still need to evaluate it in order to generate an event.
-          if (!prereqFeatureFlag.isOn() || prereqEvalResult.getVariationIndex() != prereq.getVariation()) {
-            prereqOk = false;
-          }
-          state.prerequisiteEvalRecords.add(new PrerequisiteEvalRecord(prereqFeatureFlag, flag, prereqEvalResult));
-          recorder.recordPrerequisiteEvaluation(prereqFeatureFlag, flag, context, prereqEvalResult);
-        }
-        if (!prereqOk) {
+        if (!checkPrerequisite(flag, prereq, state.getters.getFlag(prereqKey), context, recorder, state)) {
           return EvaluatorHelpers.prerequisiteFailedResult(flag, prereq);
         }
       }
       return null; // all prerequisites were satisfied
     } finally {
-      if (state.prerequisiteStack != null && !state.prerequisiteStack.isEmpty()) {
+      if (pushed) {
         state.prerequisiteStack.remove(state.prerequisiteStack.size() - 1);
       }
     }
   }
 
+  // Evaluates a single prerequisite flag, which may be null if it does not exist, and records the result.
+  // Returns true if the prerequisite was met.
+  private boolean checkPrerequisite(FeatureFlag flag, Prerequisite prereq, FeatureFlag prereqFeatureFlag,
+      LDContext context, @Nonnull EvaluationRecorder recorder, EvaluatorState state) {
+    if (prereqFeatureFlag == null) {
+      logger.error("Could not retrieve prerequisite flag \"{}\" when evaluating \"{}\"", prereq.getKey(), flag.getKey());
+      return false;
+    }
+    EvalResult prereqEvalResult = evaluateInternal(prereqFeatureFlag, context, recorder, state);
+    if (state.prerequisiteEvalRecords == null) {
+      state.prerequisiteEvalRecords = new ArrayList<>();
+    }
+    state.prerequisiteEvalRecords.add(new PrerequisiteEvalRecord(prereqFeatureFlag, flag, prereqEvalResult));
+    recorder.recordPrerequisiteEvaluation(prereqFeatureFlag, flag, context, prereqEvalResult);
+    // Note that if the prerequisite flag is off, we don't consider it a match no matter what its
+    // off variation was. But we still need to evaluate it in order to generate an event.
+    return prereqFeatureFlag.isOn() && prereqEvalResult.getVariationIndex() == prereq.getVariation();
+  }
+
+  private static EvaluationException circularPrerequisiteException(String prereqKey) {
+    return new EvaluationException(ErrorKind.MALFORMED_FLAG,
+        "prerequisite relationship to \"" + prereqKey + "\" caused a circular reference;" +
+            " this is probably a temporary condition due to an incomplete update");
+  }
+
   private static EvalResult checkTargets(
       FeatureFlag flag,
-      LDContext context
+      LDContext context,
+      PreparedContext prepared
   ) {
     List<Target> contextTargets = flag.getContextTargets(); // guaranteed non-null
     List<Target> userTargets = flag.getTargets(); // guaranteed non-null
@@ -279,11 +480,11 @@ class Evaluator {
     if (nContextTargets == 0) {
       // old-style data has only targets for users
       if (nUserTargets != 0) {
-        LDContext userContext = context.getIndividualContext(ContextKind.DEFAULT);
-        if (userContext != null) {
+        String userKey = getContextKey(context, prepared, ContextKind.DEFAULT);
+        if (userKey != null) {
           for (int i = 0; i < nUserTargets; i++) {
             Target t = userTargets.get(i);
-            if (t.getValues().contains(userContext.getKey())) { // getValues() is guaranteed non-null
+            if (t.getValues().contains(userKey)) { // getValues() is guaranteed non-null
               return EvaluatorHelpers.targetMatchResult(flag, t);
             }
           }
@@ -296,21 +497,21 @@ class Evaluator {
     for (int i = 0; i < nContextTargets; i++) {
       Target t = contextTargets.get(i);
       if (t.getContextKind() == null || t.getContextKind().isDefault()) {
-        LDContext userContext = context.getIndividualContext(ContextKind.DEFAULT);
-        if (userContext == null) {
+        String userKey = getContextKey(context, prepared, ContextKind.DEFAULT);
+        if (userKey == null) {
           continue;
         }
         for (int j = 0; j < nUserTargets; j++) {
           Target ut = userTargets.get(j);
           if (ut.getVariation() == t.getVariation()) {
-            if (ut.getValues().contains(userContext.getKey())) {
+            if (ut.getValues().contains(userKey)) {
               return EvaluatorHelpers.targetMatchResult(flag, t);
             }
             break;
           }
         }
       } else {
-        if (contextKeyIsInTargetList(context, t.getContextKind(), t.getValues())) {
+        if (contextKeyIsInTargetList(context, prepared, t.getContextKind(), t.getValues())) {
           return EvaluatorHelpers.targetMatchResult(flag, t);
         }
       }
@@ -323,7 +524,8 @@ class Evaluator {
       VariationOrRollout vr,
       LDContext context,
       DataModelPreprocessing.EvalResultFactoryMultiVariations precomputedResults,
-      EvaluationReason reason
+      EvaluationReason reason,
+      EvaluatorState state
   ) {
     int variation = -1;
     boolean inExperiment = false;
@@ -333,7 +535,10 @@ class Evaluator {
     } else {
       Rollout rollout = vr.getRollout();
       if (rollout != null && !rollout.getVariations().isEmpty()) {
-        float bucket = computeBucketValue(
+        float bucket = getBucketValue(
+            state,
+            // a prerequisite's rollout may share a hash input with other flags, so it's worth caching
+            state.originalFlag != flag,
             rollout.isExperiment(),
             rollout.getSeed(),
             context,
@@ -390,7 +595,35 @@ class Evaluator {
     return reason;
   }
 
+  // Returns the index of the first rule in the run that matches the context, or -1 if none do. This is
+  // equivalent to calling ruleMatchesContext for each rule in the run, since every rule in the run has a
+  // single "in" clause for the same attribute.
+  private static int findFirstMatchInRuleRun(RuleRunIndex run, LDContext context, PreparedContext prepared) {
+    LDValue contextValue = getContextValue(context, prepared, run.contextKind, run.attribute);
+    if (contextValue.isNull()) {
+      return -1;
+    }
+    if (contextValue.getType() == LDValueType.ARRAY) {
+      int first = -1;
+      int nValues = contextValue.size();
+      for (int i = 0; i < nValues; i++) {
+        Integer index = run.firstRuleIndexByValue.get(contextValue.get(i));
+        if (index != null && (first < 0 || index.intValue() < first)) {
+          first = index.intValue();
+        }
+      }
+      return first;
+    } else if (contextValue.getType() != LDValueType.OBJECT) {
+      Integer index = run.firstRuleIndexByValue.get(contextValue);
+      return index == null ? -1 : index.intValue();
+    }
+    return -1;
+  }
+
   private boolean ruleMatchesContext(FeatureFlag flag, Rule rule, LDContext context, EvaluatorState state) {
+    if (rule.preprocessed != null && rule.preprocessed.clauses != null) {
+      return compiledClausesMatchContext(rule.preprocessed.clauses, context, state);
+    }
     List<Clause> clauses = rule.getClauses(); // guaranteed non-null
     int nClauses = clauses.size();
     for (int i = 0; i < nClauses; i++) {
@@ -415,13 +648,9 @@ class Evaluator {
           "invalid attribute reference \"" + attr.getError() + "\"");
     }
     if (attr.getDepth() == 1 && attr.getComponent(0).equals("kind")) {
-      return maybeNegate(clause, matchClauseByKind(clause, context));
-    }
-    LDContext actualContext = context.getIndividualContext(clause.getContextKind());
-    if (actualContext == null) {
-      return false;
+      return maybeNegate(clause, matchClauseByKind(clause, context, state.preparedContext));
     }
-    LDValue contextValue = actualContext.getValue(attr);
+    LDValue contextValue = getContextValue(context, state.preparedContext, clause.getContextKind(), attr);
     if (contextValue.isNull()) {
       return false;
     }
@@ -441,32 +670,147 @@ class Evaluator {
     return false;
   }
 
+  private boolean compiledClausesMatchContext(CompiledClause[] clauses, LDContext context, EvaluatorState state) {
+    for (int i = 0; i < clauses.length; i++) {
+      if (!compiledClauseMatchesContext(clauses[i], context, state)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Equivalent to clauseMatchesContext, but using the decisions that were already made in
+  // DataModelPreprocessing.compileClause.
+  private boolean compiledClauseMatchesContext(CompiledClause clause, LDContext context, EvaluatorState state) {
+    if (clause.malformedMessage != null) {
+      throw new EvaluationException(ErrorKind.MALFORMED_FLAG, clause.malformedMessage);
+    }
+    if (clause.segmentKeys != null) {
+      String[] segmentKeys = clause.segmentKeys;
+      for (int i = 0; i < segmentKeys.length; i++) {
+        if (matchSegmentKey(segmentKeys[i], context, state)) {
+          return !clause.negate;
+        }
+      }
+      return clause.negate;
+    }
+    if (clause.matchByKind) {
+      if (state.preparedContext != null) {
+        for (LDValue kindValue: state.preparedContext.getKindValues()) {
+          if (clause.valueMatcher.matchAny(kindValue)) {
+            return !clause.negate;
+          }
+        }
+        return clause.negate;
+      }
+      int nContexts = context.getIndividualContextCount();
+      for (int i = 0; i < nContexts; i++) {
+        if (clause.valueMatcher.matchAny(LDValue.of(context.getIndividualContext(i).getKind().toString()))) {
+          return !clause.negate;
+        }
+      }
+      return clause.negate;
+    }
+    LDValue contextValue = getContextValue(context, state.preparedContext, clause.contextKind, clause.attribute);
+    if (contextValue.isNull()) {
+      return false;
+    }
+    if (contextValue.getType() == LDValueType.ARRAY) {
+      int nValues = contextValue.size();
+      for (int i = 0; i < nValues; i++) {
+        if (matchValue(clause.valueMatcher, contextValue.get(i), state)) {
+          return !clause.negate;
+        }
+      }
+      return clause.negate;
+    } else if (contextValue.getType() != LDValueType.OBJECT) {
+      return matchValue(clause.valueMatcher, contextValue, state) != clause.negate;
+    }
+    return false;
+  }
+
+  private boolean matchValue(EvaluatorOperators.ValueMatcher matcher, LDValue contextValue, EvaluatorState state) {
+    if (contextValue.isString()) {
+      if (matcher instanceof EvaluatorOperators.ParsedValueMatcher) {
+        EvaluatorOperators.ParsedValueMatcher parsedValueMatcher = (EvaluatorOperators.ParsedValueMatcher)matcher;
+        return parsedValueMatcher.matchParsed(
+            getParsedValue(parsedValueMatcher.parsedValueKind(), contextValue, state));
+      }
+      if (regexMatchCache != null && matcher.isCacheable()) {
+        return regexMatchCache.matchAny(matcher, contextValue);
+      }
+    }
+    return matcher.matchAny(contextValue);
+  }
+
+  // Date and semver strings are parsed at most once per scope, since the same attribute is often used in
+  // many clauses. A single evaluation usually has no scope, and usually only parses one such attribute, so
+  // rather than creating a scope for it we just remember the last value in the evaluator state.
+  private static Object getParsedValue(int parsedValueKind, LDValue contextValue, EvaluatorState state) {
+    if (state.scope != null) {
+      return state.scope.getParsedValue(parsedValueKind, contextValue);
+    }
+    String s = contextValue.stringValue();
+    if (parsedValueKind != state.lastParsedValueKind || !s.equals(state.lastParsedString)) {
+      state.lastParsedValue = EvaluatorOperators.parseValue(parsedValueKind, contextValue);
+      state.lastParsedValueKind = parsedValueKind;
+      state.lastParsedString = s;
+    }
+    return state.lastParsedValue;
+  }
+
   private boolean matchAnySegment(List<LDValue> values, LDContext context, EvaluatorState state) {
     // For the segmentMatch operator, the values list is really a list of segment keys. We
     // return a match if any of these segments matches the context.
     int nValues = values.size();
     for (int i = 0; i < nValues; i++) {
       LDValue clauseValue = values.get(i);
-      if (!clauseValue.isString()) {
-        continue;
+      if (clauseValue.isString() && matchSegmentKey(clauseValue.stringValue(), context, state)) {
+        return true;
       }
-      String segmentKey = clauseValue.stringValue();
-      if (state.segmentStack != null) {
-        // Clauses within a segment can reference other segments, so we don't want to get stuck in a cycle.
-        if (state.segmentStack.contains(segmentKey)) {
-          throw new EvaluationException(ErrorKind.MALFORMED_FLAG,
-              "segment rule referencing segment \"" + segmentKey + "\" caused a circular reference;" +
-                  " this is probably a temporary condition due to an incomplete update");
-        }
+    }
+    return false;
+  }
+
+  private boolean matchSegmentKey(String segmentKey, LDContext context, EvaluatorState state) {
+    if (state.segmentStack != null) {
+      // Clauses within a segment can reference other segments, so we don't want to get stuck in a cycle.
+      if (state.segmentStack.contains(segmentKey)) {
+        throw new EvaluationException(ErrorKind.MALFORMED_FLAG,
+            "segment rule referencing segment \"" + segmentKey + "\" caused a circular reference;" +
+                " this is probably a temporary condition due to an incomplete update");
       }
-      Segment segment = getters.getSegment(segmentKey);
-      if (segment != null) {
-        if (segmentMatchesContext(segment, context, state)) {
-          return true;
-        }
+    }
+    Segment segment = state.getters.getSegment(segmentKey);
+    if (segment == null) {
+      return false;
+    }
+    // Segment results are memoized in the EvaluationScope. A segment that only has target lists is cheap
+    // enough to check that we don't create a scope just for that, but one with rules is worth it.
+    if (state.scope == null) {
+      if (segment.getRules().isEmpty()) {
+        return segmentMatchesContext(segment, context, state);
       }
+      state.scope = newScope(context);
     }
-    return false;
+    EvaluationScope.SegmentMatch previousMatch = state.scope.getSegmentMatch(segment);
+    if (previousMatch != null) {
+      if (previousMatch.bigSegmentsStatus != null) {
+        state.bigSegmentsStatus = previousMatch.bigSegmentsStatus;
+      }
+      return previousMatch.matched;
+    }
+    // Capture any Big Segments status that is reported while matching this segment, so that we can report it
+    // again whenever we reuse the result.
+    EvaluationReason.BigSegmentsStatus outerBigSegmentsStatus = state.bigSegmentsStatus;
+    state.bigSegmentsStatus = null;
+    boolean matched = segmentMatchesContext(segment, context, state);
+    EvaluationReason.BigSegmentsStatus bigSegmentsStatus = state.bigSegmentsStatus;
+    if (bigSegmentsStatus == null) {
+      state.bigSegmentsStatus = outerBigSegmentsStatus;
+    }
+    state.scope.putSegmentMatch(segment, matched, bigSegmentsStatus);
+    return matched;
   }
 
   private boolean segmentMatchesContext(Segment segment, LDContext context, EvaluatorState state) {
@@ -479,15 +823,21 @@ class Evaluator {
         state.bigSegmentsStatus = EvaluationReason.BigSegmentsStatus.NOT_CONFIGURED;
         return false;
       }
-      LDContext matchContext = context.getIndividualContext(segment.getUnboundedContextKind());
-      if (matchContext == null) {
+      String key = getContextKey(context, state.preparedContext, segment.getUnboundedContextKind());
+      if (key == null) {
         return false;
       }
-      String key = matchContext.getKey();
       BigSegmentStoreTypes.Membership membershipData =
           state.bigSegmentsMembership == null ? null : state.bigSegmentsMembership.get(key);
       if (membershipData == null) {
-        BigSegmentStoreWrapper.BigSegmentsQueryResult queryResult = getters.getBigSegments(key);
+        BigSegmentStoreWrapper.BigSegmentsQueryResult queryResult =
+            state.scope == null ? null : state.scope.getBigSegmentsQueryResult(key);
+        if (queryResult == null) {
+          queryResult = state.getters.getBigSegments(key);
+          if (queryResult != null && state.scope != null) {
+            state.scope.putBigSegmentsQueryResult(key, queryResult);
+          }
+        }
         if (queryResult == null) {
           // The SDK hasn't been configured to be able to use big segments
           state.bigSegmentsStatus = EvaluationReason.BigSegmentsStatus.NOT_CONFIGURED;
@@ -506,16 +856,16 @@ class Evaluator {
         return membershipResult.booleanValue();
       }
     } else {
-      if (contextKeyIsInTargetList(context, ContextKind.DEFAULT, segment.getIncluded())) {
+      if (contextKeyIsInTargetList(context, state.preparedContext, ContextKind.DEFAULT, segment.getIncluded())) {
         return true;
       }
-      if (contextKeyIsInTargetLists(context, segment.getIncludedContexts())) {
+      if (contextKeyIsInTargetLists(context, state.preparedContext, segment.getIncludedContexts())) {
         return true;
       }
-      if (contextKeyIsInTargetList(context, ContextKind.DEFAULT, segment.getExcluded())) {
+      if (contextKeyIsInTargetList(context, state.preparedContext, ContextKind.DEFAULT, segment.getExcluded())) {
         return false;
       }
-      if (contextKeyIsInTargetLists(context, segment.getExcludedContexts())) {
+      if (contextKeyIsInTargetLists(context, state.preparedContext, segment.getExcludedContexts())) {
         return false;
       }
     }
@@ -549,13 +899,19 @@ class Evaluator {
       String segmentKey,
       String salt
   ) {
-    List<Clause> clauses = segmentRule.getClauses(); // guaranteed non-null
-    int nClauses = clauses.size();
-    for (int i = 0; i < nClauses; i++) {
-      Clause c = clauses.get(i);
-      if (!clauseMatchesContext(c, context, state)) {
+    if (segmentRule.preprocessed != null && segmentRule.preprocessed.clauses != null) {
+      if (!compiledClausesMatchContext(segmentRule.preprocessed.clauses, context, state)) {
         return false;
       }
+    } else {
+      List<Clause> clauses = segmentRule.getClauses(); // guaranteed non-null
+      int nClauses = clauses.size();
+      for (int i = 0; i < nClauses; i++) {
+        Clause c = clauses.get(i);
+        if (!clauseMatchesContext(c, context, state)) {
+          return false;
+        }
+      }
     }
 
     // If the Weight is absent, this rule matches
@@ -564,7 +920,9 @@ class Evaluator {
     }
 
     // All of the clauses are met. See if the context buckets in
-    double bucket = computeBucketValue(
+    double bucket = getBucketValue(
+        state,
+        true, // the same segment is likely to be referenced by other rules or flags
         false,
         null,
         context,
@@ -577,15 +935,41 @@ class Evaluator {
     return bucket < weight;
   }
 
-  private EvalResult computeRuleMatch(FeatureFlag flag, LDContext context, Rule rule, int ruleIndex) {
+  // Computes a bucket value, using the memo in the EvaluationScope if there is one. If there isn't, and
+  // createScope is true, we create one for the rest of this evaluation; otherwise we skip the cache, so that
+  // the common case of a single flag with a rollout does not pay for it.
+  private float getBucketValue(
+      EvaluatorState state,
+      boolean createScope,
+      boolean isExperiment,
+      Integer seed,
+      LDContext context,
+      ContextKind contextKind,
+      String flagOrSegmentKey,
+      AttributeRef attr,
+      String salt
+  ) {
+    if (state.scope == null) {
+      if (!createScope) {
+        return computeBucketValue(isExperiment, seed, context, contextKind, flagOrSegmentKey, attr, salt);
+      }
+      state.scope = newScope(context);
+    }
+    return state.scope.getBucketValue(isExperiment, seed, contextKind, flagOrSegmentKey, attr, salt);
+  }
+
+  private EvalResult computeRuleMatch(FeatureFlag flag, LDContext context, Rule rule, int ruleIndex, EvaluatorState state) {
     if (rule.preprocessed != null) {
-      return getValueForVariationOrRollout(flag, rule, context, rule.preprocessed.allPossibleResults, null);
+      return getValueForVariationOrRollout(flag, rule, context, rule.preprocessed.allPossibleResults, null, state);
     }
     EvaluationReason reason = EvaluationReason.ruleMatch(ruleIndex, rule.getId());
-    return getValueForVariationOrRollout(flag, rule, context, null, reason);
+    return getValueForVariationOrRollout(flag, rule, context, null, reason, state);
   }
 
   static String makeBigSegmentRef(Segment segment) {
-    return String.format("%s.g%d", segment.getKey(), segment.getGeneration());
+    if (segment.preprocessed != null && segment.preprocessed.bigSegmentRef != null) {
+      return segment.preprocessed.bigSegmentRef;
+    }
+    return segment.getKey() + ".g" + segment.getGeneration();
   }
 }
@@ -5,7 +5,9 @@ import com.launchdarkly.sdk.ContextKind;
 import com.launchdarkly.sdk.LDContext;
 import com.launchdarkly.sdk.LDValue;
 
-import org.apache.commons.codec.digest.DigestUtils;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * Encapsulates the logic for percentage rollouts.
@@ -15,6 +17,12 @@ abstract class EvaluatorBucketing {
   
   private static final float LONG_SCALE = (float) 0xFFFFFFFFFFFFFFFL;
 
+  // This is the hottest allocation site in experiment-heavy workloads, so rather than building a string and
+  // calling DigestUtils.sha1(), we encode the hash input directly into a reusable per-thread buffer and
+  // digest it with a reusable per-thread MessageDigest. The result must be bit-for-bit the same as the SHA-1
+  // of the UTF-8 encoding of "seed.value" or "key.salt.value".
+  private static final ThreadLocal<HashInput> HASH_INPUT = ThreadLocal.withInitial(HashInput::new);
+
   // Computes a bucket value for a rollout or experiment. If an error condition prevents
   // us from computing a valid bucket value, we return 0, which will cause the evaluator
   // to select the first bucket. A special case is if no context of the desired kind is
@@ -34,32 +42,48 @@ abstract class EvaluatorBucketing {
     if (matchContext == null) {
       return -1;
     }
-    LDValue contextValue;
+    String stringValue = null;
+    int intValue = 0;
     if (isExperiment || attr == null) {
-      contextValue = LDValue.of(matchContext.getKey());
+      stringValue = matchContext.getKey();
     } else {
       if (!attr.isValid()) {
         return 0;
       }
-      contextValue = matchContext.getValue(attr);
-      if (contextValue.isNull()) {
+      LDValue contextValue = matchContext.getValue(attr);
+      switch (contextValue.getType()) {
+      case STRING:
+        stringValue = contextValue.stringValue();
+        break;
+      case NUMBER:
+        if (!contextValue.isInt()) {
+          return 0;
+        }
+        intValue = contextValue.intValue();
+        break;
+      default:
         return 0;
       }
     }
 
-    StringBuilder keyBuilder = new StringBuilder();
+    HashInput input = HASH_INPUT.get();
+    input.reset();
     if (seed != null) {
-      keyBuilder.append(seed.intValue());
+      input.appendInt(seed.intValue());
     } else {
-      keyBuilder.append(flagOrSegmentKey).append('.').append(salt);
+      input.appendString(flagOrSegmentKey);
+      input.appendAscii('.');
+      input.appendString(salt);
     }
-    keyBuilder.append('.');
-    if (!getBucketableStringValue(keyBuilder, contextValue)) {
-      return 0;
+    input.appendAscii('.');
+    if (stringValue != null) {
+      input.appendString(stringValue);
+    } else {
+      input.appendInt(intValue);
     }
+    byte[] hash = input.sha1();
 
     // turn the first 15 hex digits of this into a long
-    byte[] hash = DigestUtils.sha1(keyBuilder.toString());
     long longVal = 0;
     for (int i = 0; i < 7; i++) {
       longVal <<= 8;
@@ -70,19 +94,106 @@ abstract class EvaluatorBucketing {
     return (float) longVal / LONG_SCALE;
   }
 
-  private static boolean getBucketableStringValue(StringBuilder keyBuilder, LDValue userValue) {
-    switch (userValue.getType()) { 
-    case STRING:
-      keyBuilder.append(userValue.stringValue());
-      return true;
-    case NUMBER:
-      if (userValue.isInt()) {
-        keyBuilder.append(userValue.intValue());
-        return true;
+  private static final class HashInput {
+    private static final int INITIAL_SIZE = 128;
+    private static final int MAX_RETAINED_SIZE = 4096;
+    
+    private final MessageDigest digest;
+    private final byte[] hash;
+    private byte[] buffer = new byte[INITIAL_SIZE];
+    private int length;
+    
+    HashInput() {
+      try {
+        digest = MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e); // every Java platform is required to support SHA-1
+      }
+      hash = new byte[digest.getDigestLength()];
+    }
+    
+    void reset() {
+      length = 0;
+      if (buffer.length > MAX_RETAINED_SIZE) {
+        // don't hold onto an unusually large buffer indefinitely
+        buffer = new byte[INITIAL_SIZE];
+      }
+    }
+    
+    void appendAscii(char ch) {
+      ensureCapacity(1);
+      buffer[length++] = (byte) ch;
+    }
+    
+    // Same as the decimal digits produced by StringBuilder.append(int)
+    void appendInt(int n) {
+      ensureCapacity(11);
+      long value = n;
+      if (value < 0) {
+        buffer[length++] = '-';
+        value = -value;
+      }
+      int start = length;
+      do {
+        buffer[length++] = (byte) ('0' + (value % 10));
+        value /= 10;
+      } while (value != 0);
+      for (int i = start, j = length - 1; i < j; i++, j--) {
+        byte b = buffer[i];
+        buffer[i] = buffer[j];
+        buffer[j] = b;
+      }
+    }
+    
+    // Same as the bytes produced by String.getBytes(UTF_8), which is what DigestUtils uses: that is, an
+    // unpaired surrogate is encoded as '?'. As with StringBuilder.append(String), a null is encoded as "null".
+    void appendString(String s) {
+      if (s == null) {
+        s = "null";
+      }
+      int n = s.length();
+      ensureCapacity(n * 3);
+      for (int i = 0; i < n; i++) {
+        char ch = s.charAt(i);
+        if (ch < 0x80) {
+          buffer[length++] = (byte) ch;
+        } else if (ch < 0x800) {
+          buffer[length++] = (byte) (0xC0 | (ch >> 6));
+          buffer[length++] = (byte) (0x80 | (ch & 0x3F));
+        } else if (Character.isSurrogate(ch)) {
+          if (Character.isHighSurrogate(ch) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(ch, s.charAt(++i));
+            buffer[length++] = (byte) (0xF0 | (cp >> 18));
+            buffer[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            buffer[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buffer[length++] = (byte) (0x80 | (cp & 0x3F));
+          } else {
+            buffer[length++] = '?';
+          }
+        } else {
+          buffer[length++] = (byte) (0xE0 | (ch >> 12));
+          buffer[length++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+          buffer[length++] = (byte) (0x80 | (ch & 0x3F));
+        }
+      }
+    }
+    
+    byte[] sha1() {
+      digest.update(buffer, 0, length);
+      try {
+        digest.digest(hash, 0, hash.length);
+      } catch (DigestException e) {
+        throw new IllegalStateException(e); // can't happen, since the output buffer is the right size
+      }
+      return hash;
+    }
+    
+    private void ensureCapacity(int additional) {
+      if (length + additional > buffer.length) {
+        byte[] newBuffer = new byte[Math.max(buffer.length * 2, length + additional)];
+        System.arraycopy(buffer, 0, newBuffer, 0, length);
+        buffer = newBuffer;
       }
-      return false;
-    default:
-      return false;
     }
   }
 }
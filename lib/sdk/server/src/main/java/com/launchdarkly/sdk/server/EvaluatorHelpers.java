@@ -1,5 +1,6 @@
 package com.launchdarkly.sdk.server;
 
+import com.launchdarkly.sdk.AttributeRef;
 import com.launchdarkly.sdk.ContextKind;
 import com.launchdarkly.sdk.EvaluationDetail;
 import com.launchdarkly.sdk.EvaluationReason;
@@ -96,6 +97,10 @@ abstract class EvaluatorHelpers {
           return vs.contains(contextValue);
         }
       }
+      if (preprocessed != null && preprocessed.stringMatcher != null) {
+        // a startsWith, endsWith, or contains clause with many values; see StringPatternIndex
+        return preprocessed.stringMatcher.matchAny(contextValue);
+      }
       List<LDValue> values = clause.getValues();
       List<ClausePreprocessed.ValueData> preprocessedValues =
           preprocessed == null ? null : preprocessed.valuesExtra;
@@ -112,10 +117,18 @@ abstract class EvaluatorHelpers {
     return false;
   }
 
-  static boolean matchClauseByKind(Clause clause, LDContext context) {
+  static boolean matchClauseByKind(Clause clause, LDContext context, PreparedContext prepared) {
     // If attribute is "kind", then we treat operator and values as a match expression against a list
     // of all individual kinds in the context. That is, for a multi-kind context with kinds of "org"
     // and "user", it is a match if either of those strings is a match with Operator and Values.
+    if (prepared != null) {
+      for (LDValue kindValue: prepared.getKindValues()) {
+        if (matchClauseWithoutSegments(clause, kindValue)) {
+          return true;
+        }
+      }
+      return false;
+    }
     for (int i = 0; i < context.getIndividualContextCount(); i++) {
       if (matchClauseWithoutSegments(clause, LDValue.of(
           context.getIndividualContext(i).getKind().toString()))) {
@@ -124,20 +137,43 @@ abstract class EvaluatorHelpers {
     }
     return false;
   }
-  
-  static boolean contextKeyIsInTargetList(LDContext context, ContextKind contextKind, Collection<String> keys) {
+
+  // The following helpers take an optional PreparedContext; if it is non-null, it must be for the same
+  // context, and its index is used instead of searching the context.
+
+  static String getContextKey(LDContext context, PreparedContext prepared, ContextKind contextKind) {
+    if (prepared != null) {
+      return prepared.getKey(contextKind);
+    }
+    LDContext matchContext = context.getIndividualContext(contextKind);
+    return matchContext == null ? null : matchContext.getKey();
+  }
+
+  // Returns LDValue.ofNull() if there is no individual context of this kind, as well as if it does not have
+  // the attribute; the evaluator treats both cases the same.
+  static LDValue getContextValue(LDContext context, PreparedContext prepared, ContextKind contextKind,
+      AttributeRef attr) {
+    if (prepared != null) {
+      return prepared.getValue(contextKind, attr);
+    }
+    LDContext matchContext = context.getIndividualContext(contextKind);
+    return matchContext == null ? LDValue.ofNull() : matchContext.getValue(attr);
+  }
+
+  static boolean contextKeyIsInTargetList(LDContext context, PreparedContext prepared, ContextKind contextKind,
+      Collection<String> keys) {
     if (keys.isEmpty()) {
       return false;
     }
-    LDContext matchContext = context.getIndividualContext(contextKind);
-    return matchContext != null && keys.contains(matchContext.getKey());
+    String key = getContextKey(context, prepared, contextKind);
+    return key != null && keys.contains(key);
   }
 
-  static boolean contextKeyIsInTargetLists(LDContext context, List<SegmentTarget> targets) {
+  static boolean contextKeyIsInTargetLists(LDContext context, PreparedContext prepared, List<SegmentTarget> targets) {
     int nTargets = targets.size();
     for (int i = 0; i < nTargets; i++) {
       SegmentTarget t = targets.get(i);
-      if (contextKeyIsInTargetList(context, t.getContextKind(), t.getValues())) {
+      if (contextKeyIsInTargetList(context, prepared, t.getContextKind(), t.getValues())) {
         return true;
       }
     }
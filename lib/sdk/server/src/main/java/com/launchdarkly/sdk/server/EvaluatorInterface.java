@@ -4,6 +4,8 @@ import com.launchdarkly.sdk.LDContext;
 import com.launchdarkly.sdk.LDValue;
 import com.launchdarkly.sdk.LDValueType;
 
+import java.util.Collection;
+
 /**
  * An Evaluator is able to calculate evaluation results for flags against the provided context.
  */
@@ -35,4 +37,17 @@ public interface EvaluatorInterface {
    * @return a {@link FeatureFlagsState} object (will never be null; see {@link FeatureFlagsState#isValid()}
    */
   FeatureFlagsState allFlagsState(LDContext context, FlagsStateOption... options);
+
+  /**
+   * Evaluates several flags for the same context. Each flag is treated as if it had been evaluated by
+   * {@link #evalAndFlag(String, String, LDContext, LDValue, LDValueType, EvaluationOptions)} with a null default
+   * value and no required type, but the implementation may share work between the evaluations.
+   *
+   * @param method   the top level customer facing method that led to this invocation
+   * @param flagKeys the keys of the flags that will be evaluated
+   * @param context  to use during the evaluation
+   * @param options  that are used to control more specific behavior of the evaluation
+   * @return a {@link FlagVariations} object containing a result for each flag key
+   */
+  FlagVariations variations(String method, Collection<String> flagKeys, LDContext context, EvaluationOptions options);
 }
@@ -1,14 +1,17 @@
 package com.launchdarkly.sdk.server;
 
+import com.google.common.collect.ImmutableSet;
 import com.launchdarkly.sdk.LDValue;
 import com.launchdarkly.sdk.server.DataModel.Operator;
 import com.launchdarkly.sdk.server.DataModelPreprocessing.ClausePreprocessed;
 
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.Function;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import static com.launchdarkly.sdk.server.EvaluatorTypeConversion.valueToDateTime;
 import static com.launchdarkly.sdk.server.EvaluatorTypeConversion.valueToRegex;
@@ -20,105 +23,532 @@ import static com.launchdarkly.sdk.server.EvaluatorTypeConversion.valueToSemVer;
 abstract class EvaluatorOperators {
   private EvaluatorOperators() {}
   
-  private static interface OperatorFn {
-    boolean match(LDValue userValue, LDValue clauseValue, ClausePreprocessed.ValueData preprocessed);
-  }
-  
-  private static final Map<Operator, OperatorFn> OPERATORS = new HashMap<>();
-  static {
-    OPERATORS.put(Operator.in, EvaluatorOperators::applyIn);
-    OPERATORS.put(Operator.startsWith, EvaluatorOperators::applyStartsWith);
-    OPERATORS.put(Operator.endsWith, EvaluatorOperators::applyEndsWith);
-    OPERATORS.put(Operator.matches, EvaluatorOperators::applyMatches);
-    OPERATORS.put(Operator.contains, EvaluatorOperators::applyContains);
-    OPERATORS.put(Operator.lessThan, numericComparison(delta -> delta < 0));
-    OPERATORS.put(Operator.lessThanOrEqual, numericComparison(delta -> delta <= 0));
-    OPERATORS.put(Operator.greaterThan, numericComparison(delta -> delta > 0));
-    OPERATORS.put(Operator.greaterThanOrEqual, numericComparison(delta -> delta >= 0));
-    OPERATORS.put(Operator.before, dateComparison(delta -> delta < 0));
-    OPERATORS.put(Operator.after, dateComparison(delta -> delta > 0));
-    OPERATORS.put(Operator.semVerEqual, semVerComparison(delta -> delta == 0));
-    OPERATORS.put(Operator.semVerLessThan, semVerComparison(delta -> delta < 0));
-    OPERATORS.put(Operator.semVerGreaterThan, semVerComparison(delta -> delta > 0));
-    // Operator.segmentMatch is deliberately not included here, because it is implemented
-    // separately in Evaluator.
-  }
-  
+  // Operators that compare two values are described by which results of the comparison count as a match.
+  private static final int LESS = 1;
+  private static final int EQUAL = 2;
+  private static final int GREATER = 4;
+
+  // The minimum number of values in a startsWith, endsWith, or contains clause for us to build a
+  // StringPatternIndex; below this, checking the values one at a time is about as fast.
+  static final int STRING_PATTERN_INDEX_MIN_VALUES = 8;
+
+  /**
+   * Tests a single context value against a single clause value, for any operator except segmentMatch. This
+   * is used when a clause has not been compiled by DataModelPreprocessing; the compiled form is
+   * {@link ValueMatcher}.
+   */
   static boolean apply(
       DataModel.Operator op,
       LDValue userValue,
       LDValue clauseValue,
       ClausePreprocessed.ValueData preprocessed
       ) {
-    OperatorFn fn = OPERATORS.get(op);
-    return fn != null && fn.match(userValue, clauseValue, preprocessed);
+    if (op == null) {
+      return false;
+    }
+    switch (op.code()) {
+    case Operator.IN:
+      return userValue.equals(clauseValue);
+    case Operator.STARTS_WITH:
+      return userValue.isString() && clauseValue.isString() && userValue.stringValue().startsWith(clauseValue.stringValue());
+    case Operator.ENDS_WITH:
+      return userValue.isString() && clauseValue.isString() && userValue.stringValue().endsWith(clauseValue.stringValue());
+    case Operator.CONTAINS:
+      return userValue.isString() && clauseValue.isString() && userValue.stringValue().contains(clauseValue.stringValue());
+    case Operator.MATCHES:
+      // If preprocessed is non-null, it means we've already tried to parse the clause value as a regex,
+      // in which case if preprocessed.parsedRegex is null it was not a valid regex.
+      return userValue.isString() &&
+          regexMatches(preprocessed == null ? valueToRegex(clauseValue) : preprocessed.parsedRegex, userValue.stringValue());
+    case Operator.LESS_THAN:
+    case Operator.LESS_THAN_OR_EQUAL:
+    case Operator.GREATER_THAN:
+    case Operator.GREATER_THAN_OR_EQUAL:
+      return userValue.isNumber() && clauseValue.isNumber() &&
+          compareNumbers(comparisonFor(op), userValue.doubleValue(), clauseValue.doubleValue());
+    case Operator.BEFORE:
+    case Operator.AFTER:
+      // If preprocessed is non-null, it means we've already tried to parse the clause value as a date/time,
+      // in which case if preprocessed.parsedDate is null it was not a valid date/time.
+      return compareDates(comparisonFor(op), valueToDateTime(userValue),
+          preprocessed == null ? valueToDateTime(clauseValue) : preprocessed.parsedDate);
+    case Operator.SEM_VER_EQUAL:
+    case Operator.SEM_VER_LESS_THAN:
+    case Operator.SEM_VER_GREATER_THAN:
+      // If preprocessed is non-null, it means we've already tried to parse the clause value as a version,
+      // in which case if preprocessed.parsedSemVer is null it was not a valid version.
+      return compareSemVers(comparisonFor(op), valueToSemVer(userValue),
+          preprocessed == null ? valueToSemVer(clauseValue) : preprocessed.parsedSemVer);
+    default:
+      // Operator.segmentMatch is deliberately not included here, because it is implemented
+      // separately in Evaluator.
+      return false;
+    }
+  }
+
+  private static int comparisonFor(Operator op) {
+    switch (op.code()) {
+    case Operator.LESS_THAN:
+    case Operator.BEFORE:
+    case Operator.SEM_VER_LESS_THAN:
+      return LESS;
+    case Operator.LESS_THAN_OR_EQUAL:
+      return LESS | EQUAL;
+    case Operator.GREATER_THAN:
+    case Operator.AFTER:
+    case Operator.SEM_VER_GREATER_THAN:
+      return GREATER;
+    case Operator.GREATER_THAN_OR_EQUAL:
+      return GREATER | EQUAL;
+    case Operator.SEM_VER_EQUAL:
+      return EQUAL;
+    default:
+      return 0;
+    }
   }
 
-  static boolean applyIn(LDValue userValue, LDValue clauseValue, ClausePreprocessed.ValueData preprocessed) {
-    return userValue.equals(clauseValue);
+  private static boolean deltaMatches(int comparison, int delta) {
+    return (comparison & (delta < 0 ? LESS : (delta == 0 ? EQUAL : GREATER))) != 0;
   }
 
-  static boolean applyStartsWith(LDValue userValue, LDValue clauseValue, ClausePreprocessed.ValueData preprocessed) {
-    return userValue.isString() && clauseValue.isString() && userValue.stringValue().startsWith(clauseValue.stringValue());
+  private static boolean compareNumbers(int comparison, double n1, double n2) {
+    return (comparison & (n1 == n2 ? EQUAL : (n1 < n2 ? LESS : GREATER))) != 0;
   }
 
-  static boolean applyEndsWith(LDValue userValue, LDValue clauseValue, ClausePreprocessed.ValueData preprocessed) {
-    return userValue.isString() && clauseValue.isString() && userValue.stringValue().endsWith(clauseValue.stringValue());
+  private static boolean compareDates(int comparison, Instant userDate, Instant clauseDate) {
+    return userDate != null && clauseDate != null && deltaMatches(comparison, userDate.compareTo(clauseDate));
   }
 
-  static boolean applyMatches(LDValue userValue, LDValue clauseValue, ClausePreprocessed.ValueData preprocessed) {
-    // If preprocessed is non-null, it means we've already tried to parse the clause value as a regex,
-    // in which case if preprocessed.parsedRegex is null it was not a valid regex.
-    Pattern clausePattern = preprocessed == null ? valueToRegex(clauseValue) : preprocessed.parsedRegex;
-    return clausePattern != null && userValue.isString() &&
-        clausePattern.matcher(userValue.stringValue()).find();
+  private static boolean compareSemVers(int comparison, SemanticVersion userVer, SemanticVersion clauseVer) {
+    return userVer != null && clauseVer != null && deltaMatches(comparison, userVer.compareTo(clauseVer));
   }
 
-  static boolean applyContains(LDValue userValue, LDValue clauseValue, ClausePreprocessed.ValueData preprocessed) {
-    return userValue.isString() && clauseValue.isString() && userValue.stringValue().contains(clauseValue.stringValue());
+  private static boolean regexMatches(Pattern pattern, String s) {
+    return pattern != null && pattern.matcher(s).find();
+  }
+
+  // Kinds of parsed context values; see ParsedValueMatcher.parsedValueKind().
+  static final int PARSED_NONE = 0;
+  static final int PARSED_DATE = 1;
+  static final int PARSED_SEMVER = 2;
+
+  /**
+   * Tests a single context value against all of the values of a clause, for any operator except
+   * segmentMatch. This has the same semantics as {@link EvaluatorHelpers#matchClauseWithoutSegments},
+   * but the operator and the best representation of the clause values have already been chosen by
+   * {@link #compileValueMatcher}, so there is no per-evaluation lookup.
+   */
+  abstract static class ValueMatcher {
+    abstract boolean matchAny(LDValue contextValue);
+
+    /**
+     * Returns true if this matcher is expensive enough, relative to a cache lookup, that its results for
+     * string values are worth remembering in a {@link RegexMatchCache}.
+     */
+    boolean isCacheable() {
+      return false;
+    }
+  }
+
+  /**
+   * A {@link ValueMatcher} that compares string context values by first parsing them, as a date or a
+   * semantic version. The evaluator uses {@link #parsedValueKind()} to parse each string only once per
+   * evaluation, and then calls {@link #matchParsed(Object)} instead of {@link #matchAny(LDValue)}.
+   */
+  abstract static class ParsedValueMatcher extends ValueMatcher {
+    /**
+     * Returns {@link EvaluatorOperators#PARSED_DATE} or {@link EvaluatorOperators#PARSED_SEMVER}.
+     */
+    abstract int parsedValueKind();
+
+    /**
+     * Same as {@link #matchAny(LDValue)}, but given the result of
+     * {@link EvaluatorOperators#parseValue(int, LDValue)} for the context value.
+     */
+    abstract boolean matchParsed(Object parsedContextValue);
+
+    @Override
+    final boolean matchAny(LDValue contextValue) {
+      // parse the context value only once, rather than once per clause value
+      return matchParsed(parseValue(parsedValueKind(), contextValue));
+    }
+  }
+
+  /**
+   * Parses a context value in the way that matchers of the given {@link ParsedValueMatcher#parsedValueKind()}
+   * expect; returns null if it cannot be parsed.
+   */
+  static Object parseValue(int parsedValueKind, LDValue value) {
+    switch (parsedValueKind) {
+    case PARSED_DATE:
+      return valueToDateTime(value);
+    case PARSED_SEMVER:
+      return valueToSemVer(value);
+    default:
+      return null;
+    }
+  }
+  
+  private static final ValueMatcher NEVER_MATCHES = new ValueMatcher() {
+    @Override
+    boolean matchAny(LDValue contextValue) {
+      return false;
+    }
+  };
+  
+  private static final class InSetMatcher extends ValueMatcher {
+    private final Set<LDValue> values;
+    
+    InSetMatcher(Set<LDValue> values) {
+      this.values = values;
+    }
+    
+    @Override
+    boolean matchAny(LDValue contextValue) {
+      return values.contains(contextValue);
+    }
+  }
+  
+  private static final class InSingleValueMatcher extends ValueMatcher {
+    private final LDValue value;
+    
+    InSingleValueMatcher(LDValue value) {
+      this.value = value;
+    }
+    
+    @Override
+    boolean matchAny(LDValue contextValue) {
+      return contextValue.equals(value);
+    }
   }
+  
+  private static final class StartsWithMatcher extends ValueMatcher {
+    private final String[] prefixes;
+
+    StartsWithMatcher(String[] prefixes) {
+      this.prefixes = prefixes;
+    }
 
-  static OperatorFn numericComparison(Function<Integer, Boolean> comparisonTest) {
-    return (userValue, clauseValue, preprocessed) -> {
-      if (!userValue.isNumber() || !clauseValue.isNumber()) {
+    @Override
+    boolean matchAny(LDValue contextValue) {
+      if (!contextValue.isString()) {
         return false;
       }
-      double n1 = userValue.doubleValue();
-      double n2 = clauseValue.doubleValue();
-      int delta = n1 == n2 ? 0 : (n1 < n2 ? -1 : 1);
-      return comparisonTest.apply(delta);
-    };
+      String s = contextValue.stringValue();
+      for (int i = 0; i < prefixes.length; i++) {
+        if (s.startsWith(prefixes[i])) {
+          return true;
+        }
+      }
+      return false;
+    }
   }
 
-  static OperatorFn dateComparison(Function<Integer, Boolean> comparisonTest) {
-    return (userValue, clauseValue, preprocessed) -> {
-      // If preprocessed is non-null, it means we've already tried to parse the clause value as a date/time,
-      // in which case if preprocessed.parsedDate is null it was not a valid date/time.
-      Instant clauseDate = preprocessed == null ? valueToDateTime(clauseValue) : preprocessed.parsedDate;
-      if (clauseDate == null) {
+  private static final class EndsWithMatcher extends ValueMatcher {
+    private final String[] suffixes;
+
+    EndsWithMatcher(String[] suffixes) {
+      this.suffixes = suffixes;
+    }
+
+    @Override
+    boolean matchAny(LDValue contextValue) {
+      if (!contextValue.isString()) {
         return false;
       }
-      Instant userDate = valueToDateTime(userValue);
-      if (userDate == null) {
+      String s = contextValue.stringValue();
+      for (int i = 0; i < suffixes.length; i++) {
+        if (s.endsWith(suffixes[i])) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class ContainsMatcher extends ValueMatcher {
+    private final String[] substrings;
+
+    ContainsMatcher(String[] substrings) {
+      this.substrings = substrings;
+    }
+
+    @Override
+    boolean matchAny(LDValue contextValue) {
+      if (!contextValue.isString()) {
         return false;
       }
-      return comparisonTest.apply(userDate.compareTo(clauseDate));
-    };
+      String s = contextValue.stringValue();
+      for (int i = 0; i < substrings.length; i++) {
+        if (s.contains(substrings[i])) {
+          return true;
+        }
+      }
+      return false;
+    }
   }
-  
-  static OperatorFn semVerComparison(Function<Integer, Boolean> comparisonTest) {
-    return (userValue, clauseValue, preprocessed) -> {
-      // If preprocessed is non-null, it means we've already tried to parse the clause value as a version,
-      // in which case if preprocessed.parsedSemVer is null it was not a valid version.
-      SemanticVersion clauseVer = preprocessed == null ? valueToSemVer(clauseValue) : preprocessed.parsedSemVer;
-      if (clauseVer == null) {
+
+  private static final class StringPatternIndexMatcher extends ValueMatcher {
+    private final StringPatternIndex index;
+
+    StringPatternIndexMatcher(StringPatternIndex index) {
+      this.index = index;
+    }
+
+    @Override
+    boolean matchAny(LDValue contextValue) {
+      return contextValue.isString() && index.matches(contextValue.stringValue());
+    }
+  }
+
+  private static final class RegexMatcher extends ValueMatcher {
+    private final Pattern[] patterns;
+
+    RegexMatcher(Pattern[] patterns) {
+      this.patterns = patterns;
+    }
+
+    @Override
+    boolean isCacheable() {
+      return true;
+    }
+
+    @Override
+    boolean matchAny(LDValue contextValue) {
+      if (!contextValue.isString()) {
         return false;
       }
-      SemanticVersion userVer = valueToSemVer(userValue);
-      if (userVer == null) {
+      String s = contextValue.stringValue();
+      for (int i = 0; i < patterns.length; i++) {
+        if (patterns[i].matcher(s).find()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class NumericMatcher extends ValueMatcher {
+    private final int comparison;
+    private final double[] numbers;
+
+    NumericMatcher(int comparison, double[] numbers) {
+      this.comparison = comparison;
+      this.numbers = numbers;
+    }
+
+    @Override
+    boolean matchAny(LDValue contextValue) {
+      if (!contextValue.isNumber()) {
         return false;
       }
-      return comparisonTest.apply(userVer.compareTo(clauseVer));
-    };
+      double n = contextValue.doubleValue();
+      for (int i = 0; i < numbers.length; i++) {
+        if (compareNumbers(comparison, n, numbers[i])) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class DateMatcher extends ParsedValueMatcher {
+    private final int comparison;
+    private final Instant[] dates;
+
+    DateMatcher(int comparison, Instant[] dates) {
+      this.comparison = comparison;
+      this.dates = dates;
+    }
+
+    @Override
+    int parsedValueKind() {
+      return PARSED_DATE;
+    }
+
+    @Override
+    boolean matchParsed(Object parsedContextValue) {
+      if (parsedContextValue == null) {
+        return false;
+      }
+      Instant date = (Instant)parsedContextValue;
+      for (int i = 0; i < dates.length; i++) {
+        if (deltaMatches(comparison, date.compareTo(dates[i]))) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class SemVerMatcher extends ParsedValueMatcher {
+    private final int comparison;
+    private final SemanticVersion[] versions;
+
+    SemVerMatcher(int comparison, SemanticVersion[] versions) {
+      this.comparison = comparison;
+      this.versions = versions;
+    }
+
+    @Override
+    int parsedValueKind() {
+      return PARSED_SEMVER;
+    }
+
+    @Override
+    boolean matchParsed(Object parsedContextValue) {
+      if (parsedContextValue == null) {
+        return false;
+      }
+      SemanticVersion version = (SemanticVersion)parsedContextValue;
+      for (int i = 0; i < versions.length; i++) {
+        if (deltaMatches(comparison, version.compareTo(versions[i]))) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Builds a matcher for the startsWith, endsWith, or contains operator. If there are at least
+   * {@link #STRING_PATTERN_INDEX_MIN_VALUES} string values, the values are put into a
+   * {@link StringPatternIndex} so that matching is one pass over the context value; otherwise, each value
+   * is checked in turn, since that is faster for a small number of values.
+   */
+  static ValueMatcher compileStringMatcher(Operator op, List<LDValue> values) {
+    int n = values.size();
+    List<String> strings = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      if (values.get(i).isString()) {
+        strings.add(values.get(i).stringValue());
+      }
+    }
+    if (strings.isEmpty()) {
+      return NEVER_MATCHES;
+    }
+    if (strings.size() >= STRING_PATTERN_INDEX_MIN_VALUES) {
+      return new StringPatternIndexMatcher(op == Operator.startsWith ? StringPatternIndex.forPrefixes(strings) :
+        (op == Operator.endsWith ? StringPatternIndex.forSuffixes(strings) : StringPatternIndex.forSubstrings(strings)));
+    }
+    String[] a = strings.toArray(new String[strings.size()]);
+    return op == Operator.startsWith ? new StartsWithMatcher(a) :
+      (op == Operator.endsWith ? new EndsWithMatcher(a) : new ContainsMatcher(a));
+  }
+
+  // Constructs that would change meaning if a pattern were embedded in a larger pattern: backreferences
+  // (group numbers would shift), named groups (names could collide), \Q quoting (which could run past the
+  // end of the pattern), and comments mode (where a comment could run past the end of the pattern).
+  private static final Pattern NOT_COMBINABLE_REGEX = Pattern.compile("\\\\[1-9]|\\\\k<|\\\\Q|\\(\\?<[a-zA-Z]|\\(\\?[a-zA-Z-]*x");
+
+  /**
+   * Merges the patterns of a matches clause into a single alternation, so that a context value can be
+   * tested against all of them with one call to find(). This has the same result as testing each pattern
+   * in turn, because at each position in the input the regex engine tries every alternative before moving
+   * on. Returns null if any of the patterns uses a construct that would not work the same way inside the
+   * combined pattern, in which case the patterns must be tested separately.
+   */
+  static Pattern combineRegexes(List<Pattern> patterns) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < patterns.size(); i++) {
+      String p = patterns.get(i).pattern();
+      if (NOT_COMBINABLE_REGEX.matcher(p).find()) {
+        return null;
+      }
+      if (i > 0) {
+        sb.append('|');
+      }
+      sb.append("(?:").append(p).append(')');
+    }
+    try {
+      return Pattern.compile(sb.toString());
+    } catch (PatternSyntaxException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Chooses the matcher class for the operator, and converts the clause values into the form that it
+   * uses. Clause values that could never match anything for this operator (such as a number for a string
+   * operator, or an invalid regex) are dropped here, since a clause only needs one value to match.
+   */
+  static ValueMatcher compileValueMatcher(Operator op, List<LDValue> values, ClausePreprocessed preprocessed) {
+    if (op == null || values.isEmpty()) {
+      return NEVER_MATCHES;
+    }
+    List<ClausePreprocessed.ValueData> valuesExtra = preprocessed == null ? null : preprocessed.valuesExtra;
+    int n = values.size();
+    switch (op.code()) {
+    case Operator.IN:
+      if (preprocessed != null && preprocessed.valuesSet != null) {
+        return new InSetMatcher(preprocessed.valuesSet);
+      }
+      if (n == 1) {
+        return new InSingleValueMatcher(values.get(0));
+      }
+      return new InSetMatcher(ImmutableSet.copyOf(values));
+    case Operator.STARTS_WITH:
+    case Operator.ENDS_WITH:
+    case Operator.CONTAINS:
+      if (preprocessed != null && preprocessed.stringMatcher != null) {
+        return preprocessed.stringMatcher;
+      }
+      return compileStringMatcher(op, values);
+    case Operator.MATCHES: {
+      List<Pattern> patterns = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) {
+        Pattern p = valuesExtra == null ? valueToRegex(values.get(i)) : valuesExtra.get(i).parsedRegex;
+        if (p != null) {
+          patterns.add(p);
+        }
+      }
+      if (patterns.isEmpty()) {
+        return NEVER_MATCHES;
+      }
+      Pattern combined = patterns.size() > 1 ? combineRegexes(patterns) : null;
+      return new RegexMatcher(combined != null ? new Pattern[] { combined } :
+        patterns.toArray(new Pattern[patterns.size()]));
+    }
+    case Operator.LESS_THAN:
+    case Operator.LESS_THAN_OR_EQUAL:
+    case Operator.GREATER_THAN:
+    case Operator.GREATER_THAN_OR_EQUAL: {
+      double[] numbers = new double[n];
+      int count = 0;
+      for (int i = 0; i < n; i++) {
+        if (values.get(i).isNumber()) {
+          numbers[count++] = values.get(i).doubleValue();
+        }
+      }
+      return count == 0 ? NEVER_MATCHES : new NumericMatcher(comparisonFor(op), Arrays.copyOf(numbers, count));
+    }
+    case Operator.BEFORE:
+    case Operator.AFTER: {
+      List<Instant> dates = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) {
+        Instant d = valuesExtra == null ? valueToDateTime(values.get(i)) : valuesExtra.get(i).parsedDate;
+        if (d != null) {
+          dates.add(d);
+        }
+      }
+      return dates.isEmpty() ? NEVER_MATCHES :
+        new DateMatcher(comparisonFor(op), dates.toArray(new Instant[dates.size()]));
+    }
+    case Operator.SEM_VER_EQUAL:
+    case Operator.SEM_VER_LESS_THAN:
+    case Operator.SEM_VER_GREATER_THAN: {
+      List<SemanticVersion> versions = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) {
+        SemanticVersion v = valuesExtra == null ? valueToSemVer(values.get(i)) : valuesExtra.get(i).parsedSemVer;
+        if (v != null) {
+          versions.add(v);
+        }
+      }
+      return versions.isEmpty() ? NEVER_MATCHES :
+        new SemVerMatcher(comparisonFor(op), versions.toArray(new SemanticVersion[versions.size()]));
+    }
+    default:
+      return NEVER_MATCHES;
+    }
   }
 }
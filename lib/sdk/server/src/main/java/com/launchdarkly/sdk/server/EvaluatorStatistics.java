@@ -0,0 +1,28 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.server.interfaces.EvaluationStatistics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters that are updated by {@link Evaluator} and reported by {@link LDClient#getEvaluationStatistics()}.
+ * LongAdder is used because these may be incremented by many evaluation threads at once.
+ */
+final class EvaluatorStatistics {
+  final LongAdder bucketCacheHits = new LongAdder();
+  final LongAdder bucketCacheMisses = new LongAdder();
+  final LongAdder segmentMatchCacheHits = new LongAdder();
+  final LongAdder segmentMatchCacheMisses = new LongAdder();
+
+  EvaluationStatistics snapshot(RegexMatchCache regexMatchCache, AllFlagsStateCache allFlagsStateCache) {
+    return new EvaluationStatistics(
+        new EvaluationStatistics.CacheStatistics(bucketCacheHits.sum(), bucketCacheMisses.sum()),
+        new EvaluationStatistics.CacheStatistics(segmentMatchCacheHits.sum(), segmentMatchCacheMisses.sum()),
+        regexMatchCache == null ? new EvaluationStatistics.CacheStatistics(0, 0) : regexMatchCache.getStatistics(),
+        regexMatchCache == null ? 0 : regexMatchCache.size(),
+        allFlagsStateCache == null ? new EvaluationStatistics.CacheStatistics(0, 0) : allFlagsStateCache.getStatistics(),
+        allFlagsStateCache == null ? 0 : allFlagsStateCache.size(),
+        allFlagsStateCache == null ? 0 : allFlagsStateCache.reevaluatedFlags.sum()
+        );
+  }
+}
@@ -8,6 +8,7 @@ import com.launchdarkly.sdk.server.integrations.EvaluationSeriesContext;
 import com.launchdarkly.sdk.server.integrations.Hook;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -73,4 +74,47 @@ class EvaluatorWithHooks implements EvaluatorInterface {
     // We do not support hooks for when all flags are evaluated.  Perhaps in the future that will be added.
     return underlyingEvaluator.allFlagsState(context, options);
   }
+
+  @Override
+  public FlagVariations variations(String method, Collection<String> flagKeys, LDContext context, EvaluationOptions options) {
+    // Each flag gets its own evaluation series, just as if it had been evaluated by itself. All of the
+    // "before" stages run before the flags are evaluated, and all of the "after" stages run afterward.
+    int size = hooks.size();
+    List<EvaluationSeriesContext> seriesContexts = new ArrayList<>(flagKeys.size());
+    List<List<Map>> seriesDataLists = new ArrayList<>(flagKeys.size());
+    Map<String, Object> emptyMap = Collections.emptyMap();
+    for (String featureKey: flagKeys) {
+      EvaluationSeriesContext seriesContext = new EvaluationSeriesContext(method, featureKey, context, LDValue.ofNull());
+      List<Map> seriesDataList = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        Hook currentHook = hooks.get(i);
+        try {
+          Map<String, Object> seriesData = currentHook.beforeEvaluation(seriesContext, emptyMap);
+          seriesDataList.add(seriesData.isEmpty() ? emptyMap : Collections.unmodifiableMap(seriesData));
+        } catch (Exception e) {
+          seriesDataList.add(emptyMap);
+          logger.error("During evaluation of flag \"{}\". Stage \"BeforeEvaluation\" of hook \"{}\" reported error: {}", featureKey, currentHook.getMetadata().getName(), e.toString());
+        }
+      }
+      seriesContexts.add(seriesContext);
+      seriesDataLists.add(seriesDataList);
+    }
+
+    FlagVariations result = underlyingEvaluator.variations(method, flagKeys, context, options);
+
+    for (int f = 0; f < seriesContexts.size(); f++) {
+      EvaluationSeriesContext seriesContext = seriesContexts.get(f);
+      EvalResult flagResult = result.getResult(seriesContext.flagKey);
+      for (int i = size - 1; i >= 0; i--) {
+        Hook currentHook = hooks.get(i);
+        try {
+          currentHook.afterEvaluation(seriesContext, seriesDataLists.get(f).get(i), flagResult.getAnyType());
+        } catch (Exception e) {
+          logger.error("During evaluation of flag \"{}\". Stage \"AfterEvaluation\" of hook \"{}\" reported error: {}", seriesContext.flagKey, currentHook.getMetadata().getName(), e.toString());
+        }
+      }
+    }
+
+    return result;
+  }
 }
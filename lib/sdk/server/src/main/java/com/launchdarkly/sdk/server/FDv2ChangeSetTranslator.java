@@ -59,36 +59,39 @@ final class FDv2ChangeSetTranslator {
         // Use a LinkedHashMap to group items by DataKind in a single pass while preserving order
         Map<DataKind, List<Map.Entry<String, ItemDescriptor>>> kindToItems = new LinkedHashMap<>();
 
-        for (FDv2Change change : changeset.getChanges()) {
-            DataKind dataKind = getDataKind(change.getKind());
+        try (DataModelInterner.Scope scope = DataModelInterner.beginScope()) {
+            DataModelInterner interner = DataModelInterner.current();
+            for (FDv2Change change : changeset.getChanges()) {
+                DataKind dataKind = getDataKind(change.getKind());
 
-            if (dataKind == null) {
-                logger.warn("Unknown data kind '{}' in changeset, skipping", change.getKind());
-                continue;
-            }
+                if (dataKind == null) {
+                    logger.warn("Unknown data kind '{}' in changeset, skipping", change.getKind());
+                    continue;
+                }
 
-            ItemDescriptor item;
+                ItemDescriptor item;
 
-            if (change.getType() == FDv2ChangeType.PUT) {
-                if (change.getObject() == null) {
-                    logger.warn(
-                            "Put operation for {}/{} missing object data, skipping",
-                            change.getKind(),
-                            change.getKey());
-                    continue;
+                if (change.getType() == FDv2ChangeType.PUT) {
+                    if (change.getObject() == null) {
+                        logger.warn(
+                                "Put operation for {}/{} missing object data, skipping",
+                                change.getKind(),
+                                change.getKey());
+                        continue;
+                    }
+                    item = dataKind.deserialize(change.getObject().toString());
+                } else if (change.getType() == FDv2ChangeType.DELETE) {
+                    item = ItemDescriptor.deletedItem(change.getVersion());
+                } else {
+                    throw new IllegalArgumentException(
+                            "Unknown FDv2ChangeType: " + change.getType() + ". This is an implementation error.");
                 }
-                item = dataKind.deserialize(change.getObject().toString());
-            } else if (change.getType() == FDv2ChangeType.DELETE) {
-                item = ItemDescriptor.deletedItem(change.getVersion());
-            } else {
-                throw new IllegalArgumentException(
-                        "Unknown FDv2ChangeType: " + change.getType() + ". This is an implementation error.");
-            }
 
-            List<Map.Entry<String, ItemDescriptor>> itemsList =
-                    kindToItems.computeIfAbsent(dataKind, k -> new ArrayList<>());
+                List<Map.Entry<String, ItemDescriptor>> itemsList =
+                        kindToItems.computeIfAbsent(dataKind, k -> new ArrayList<>());
 
-            itemsList.add(new AbstractMap.SimpleImmutableEntry<>(change.getKey(), item));
+                itemsList.add(new AbstractMap.SimpleImmutableEntry<>(interner.string(change.getKey()), item));
+            }
         }
 
         ImmutableList.Builder<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>> dataBuilder =
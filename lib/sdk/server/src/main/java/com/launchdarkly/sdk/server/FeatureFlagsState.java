@@ -17,6 +17,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static com.launchdarkly.sdk.server.JsonHelpers.gsonInstanceWithNullsAllowed;
@@ -42,6 +43,11 @@ import static com.launchdarkly.sdk.server.JsonHelpers.gsonInstanceWithNullsAllow
 public final class FeatureFlagsState implements JsonSerializable {
   private final ImmutableMap<String, FlagMetadata> flagMetadata;
   private final boolean valid;
+  // If this state was built with DETAILS_ONLY_FOR_TRACKED_FLAGS and includes flags whose event debugging
+  // was on, their details depended on the current time; after this time (epoch millis), building the
+  // state again would give a different result. Used by AllFlagsStateCache.
+  final long detailsExpireAt;
+  private volatile String json;
     
   static class FlagMetadata {
     final LDValue value;
@@ -88,8 +94,13 @@ public final class FeatureFlagsState implements JsonSerializable {
   }
   
   private FeatureFlagsState(ImmutableMap<String, FlagMetadata> flagMetadata, boolean valid) {
+    this(flagMetadata, valid, Long.MAX_VALUE);
+  }
+
+  private FeatureFlagsState(ImmutableMap<String, FlagMetadata> flagMetadata, boolean valid, long detailsExpireAt) {
     this.flagMetadata = flagMetadata;
     this.valid = valid;
+    this.detailsExpireAt = detailsExpireAt;
   }
   
   /**
@@ -152,6 +163,26 @@ public final class FeatureFlagsState implements JsonSerializable {
     return Maps.transformValues(flagMetadata, v -> v.value);
   }
   
+  /**
+   * Returns the standard JSON representation of this object, as described above.
+   * <p>
+   * This is the same as the output of {@link com.launchdarkly.sdk.json.JsonSerialization#serialize(JsonSerializable)},
+   * but since the object is immutable, the string is only computed the first time. That is useful if
+   * {@link LDConfig.Builder#allFlagsStateCacheSize(int)} is enabled, since then the SDK may return the same
+   * instance many times.
+   *
+   * @return a JSON string
+   * @since 7.16.0
+   */
+  public String toJsonString() {
+    String ret = json;
+    if (ret == null) {
+      ret = gsonInstanceWithNullsAllowed().toJson(this);
+      json = ret;
+    }
+    return ret;
+  }
+
   @Override
   public boolean equals(Object other) {
     if (other instanceof FeatureFlagsState) {
@@ -181,6 +212,7 @@ public final class FeatureFlagsState implements JsonSerializable {
     private final boolean saveReasons;
     private final boolean detailsOnlyForTrackedFlags;
     private boolean valid = true;
+    private long detailsExpireAt = Long.MAX_VALUE;
 
     private Builder(FlagsStateOption... options) {
       saveReasons = FlagsStateOption.hasOption(options, FlagsStateOption.WITH_REASONS);
@@ -259,9 +291,12 @@ public final class FeatureFlagsState implements JsonSerializable {
         Long debugEventsUntilDate,
         List<String> prerequisites
         ) {
-      final boolean flagIsTracked = trackEvents ||
-          (debugEventsUntilDate != null && debugEventsUntilDate > System.currentTimeMillis());
+      final boolean flagIsDebugging = debugEventsUntilDate != null && debugEventsUntilDate > System.currentTimeMillis();
+      final boolean flagIsTracked = trackEvents || flagIsDebugging;
       final boolean wantDetails = !detailsOnlyForTrackedFlags || flagIsTracked;
+      if (detailsOnlyForTrackedFlags && !trackEvents && flagIsDebugging) {
+        detailsExpireAt = Math.min(detailsExpireAt, debugEventsUntilDate);
+      }
       FlagMetadata data = new FlagMetadata(
           value,
           variationIndex,
@@ -292,13 +327,42 @@ public final class FeatureFlagsState implements JsonSerializable {
           );
     }
     
+    // Copies the results for all flags in a previous state, replacing the ones whose keys are in
+    // changedFlagKeys with their new results, in the same order as before. A changed flag that has no new
+    // result (because it was deleted, for instance) is dropped, and a new result for a flag that wasn't in
+    // the previous state is added at the end. The previous state must have been built with the same options.
+    Builder addFlagsFrom(FeatureFlagsState previous, Set<String> changedFlagKeys, DataModel.FeatureFlag[] flags,
+        EvalResult[] results) {
+      Map<String, Integer> newResultIndexes = new HashMap<>();
+      for (int i = 0; i < flags.length; i++) {
+        newResultIndexes.put(flags[i].getKey(), i);
+      }
+      for (Map.Entry<String, FlagMetadata> e: previous.flagMetadata.entrySet()) {
+        if (!changedFlagKeys.contains(e.getKey())) {
+          flagMetadata.put(e.getKey(), e.getValue());
+          continue;
+        }
+        Integer i = newResultIndexes.remove(e.getKey());
+        if (i != null) {
+          addFlag(flags[i], results[i]);
+        }
+      }
+      for (int i = 0; i < flags.length; i++) {
+        if (newResultIndexes.containsKey(flags[i].getKey())) {
+          addFlag(flags[i], results[i]);
+        }
+      }
+      detailsExpireAt = Math.min(detailsExpireAt, previous.detailsExpireAt);
+      return this;
+    }
+
     /**
      * Returns an object created from the builder state.
      * 
      * @return an immutable {@link FeatureFlagsState}
      */
     public FeatureFlagsState build() {
-      return new FeatureFlagsState(flagMetadata.build(), valid);
+      return new FeatureFlagsState(flagMetadata.build(), valid, detailsExpireAt);
     }
   }
   
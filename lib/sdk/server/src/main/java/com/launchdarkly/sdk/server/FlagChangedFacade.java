@@ -24,5 +24,10 @@ final class FlagChangedFacade implements FlagChangeNotifier {
   public void removeFlagChangeListener(FlagChangeListener listener) {
     dataSourceUpdates.removeFlagChangeListener(listener);
   }
+
+  @Override
+  public void setChangedItemsListener(DataSourceUpdatesImpl.ChangedItemsListener listener) {
+    dataSourceUpdates.setChangedItemsListener(listener);
+  }
 }
 
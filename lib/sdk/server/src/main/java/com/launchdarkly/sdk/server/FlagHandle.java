@@ -0,0 +1,218 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.EvaluationDetail;
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.LDValueType;
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
+import com.launchdarkly.sdk.server.interfaces.LDClientInterface;
+
+import java.util.Map;
+
+/**
+ * A reference to a feature flag, which can be used to evaluate that flag repeatedly without looking up its
+ * key each time. Obtain one with {@link LDClientInterface#flagHandle(String)}.
+ * <p>
+ * A handle does not hold on to a particular version of the flag: each evaluation uses the flag's current
+ * configuration, exactly as if the flag key had been passed to the {@link LDClient} method of the same name.
+ * But as long as the client's flag data has not changed since the previous evaluation, the handle can skip
+ * the data store lookup. It is immutable from the caller's point of view and can be used from any thread;
+ * it is most useful for a flag that is evaluated very frequently, and can be kept for as long as the client.
+ * <p>
+ * If the SDK is configured with a persistent data store, and is reading flags from that store rather than
+ * from memory, the handle simply looks up the flag each time.
+ *
+ * @since 7.16.0
+ */
+public final class FlagHandle {
+  private final LDClient client;
+  private final ReadOnlyStore store;
+  private final String key;
+  private final EvaluationOptions eventsWithoutReasons;
+  private final EvaluationOptions eventsWithReasons;
+  private volatile Resolved resolved = null;
+
+  FlagHandle(LDClient client, ReadOnlyStore store, String key) {
+    this.client = client;
+    this.store = store;
+    this.key = key;
+    this.eventsWithoutReasons = EvaluationOptions.EVENTS_WITHOUT_REASONS.withFlagHandle(this);
+    this.eventsWithReasons = EvaluationOptions.EVENTS_WITH_REASONS.withFlagHandle(this);
+  }
+
+  /**
+   * Returns the flag key.
+   *
+   * @return the unique key for the feature flag
+   */
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   * Same as {@link LDClientInterface#boolVariation(String, LDContext, boolean)}, for this flag.
+   *
+   * @param context      the evaluation context
+   * @param defaultValue the default value of the flag
+   * @return the variation for the given context, or {@code defaultValue} if the flag is disabled or an error occurs
+   */
+  public boolean boolVariation(LDContext context, boolean defaultValue) {
+    return evaluate("FlagHandle.boolVariation", context, LDValue.of(defaultValue), LDValueType.BOOLEAN,
+        eventsWithoutReasons).getValue().booleanValue();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#intVariation(String, LDContext, int)}, for this flag.
+   *
+   * @param context      the evaluation context
+   * @param defaultValue the default value of the flag
+   * @return the variation for the given context, or {@code defaultValue} if the flag is disabled or an error occurs
+   */
+  public int intVariation(LDContext context, int defaultValue) {
+    return evaluate("FlagHandle.intVariation", context, LDValue.of(defaultValue), LDValueType.NUMBER,
+        eventsWithoutReasons).getValue().intValue();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#doubleVariation(String, LDContext, double)}, for this flag.
+   *
+   * @param context      the evaluation context
+   * @param defaultValue the default value of the flag
+   * @return the variation for the given context, or {@code defaultValue} if the flag is disabled or an error occurs
+   */
+  public double doubleVariation(LDContext context, double defaultValue) {
+    return evaluate("FlagHandle.doubleVariation", context, LDValue.of(defaultValue), LDValueType.NUMBER,
+        eventsWithoutReasons).getValue().doubleValue();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#stringVariation(String, LDContext, String)}, for this flag.
+   *
+   * @param context      the evaluation context
+   * @param defaultValue the default value of the flag
+   * @return the variation for the given context, or {@code defaultValue} if the flag is disabled or an error occurs
+   */
+  public String stringVariation(LDContext context, String defaultValue) {
+    return evaluate("FlagHandle.stringVariation", context, LDValue.of(defaultValue), LDValueType.STRING,
+        eventsWithoutReasons).getValue().stringValue();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#jsonValueVariation(String, LDContext, LDValue)}, for this flag.
+   *
+   * @param context      the evaluation context
+   * @param defaultValue the default value of the flag
+   * @return the variation for the given context, or {@code defaultValue} if the flag is disabled or an error occurs;
+   *   will never be a null reference, but may be {@link LDValue#ofNull()}
+   */
+  public LDValue jsonValueVariation(LDContext context, LDValue defaultValue) {
+    return evaluate("FlagHandle.jsonValueVariation", context, LDValue.normalize(defaultValue), null,
+        eventsWithoutReasons).getValue();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#boolVariationDetail(String, LDContext, boolean)}, for this flag.
+   *
+   * @param context      the evaluation context
+   * @param defaultValue the default value of the flag
+   * @return an {@link EvaluationDetail} object
+   */
+  public EvaluationDetail<Boolean> boolVariationDetail(LDContext context, boolean defaultValue) {
+    return evaluate("FlagHandle.boolVariationDetail", context, LDValue.of(defaultValue), LDValueType.BOOLEAN,
+        eventsWithReasons).getAsBoolean();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#intVariationDetail(String, LDContext, int)}, for this flag.
+   *
+   * @param context      the evaluation context
+   * @param defaultValue the default value of the flag
+   * @return an {@link EvaluationDetail} object
+   */
+  public EvaluationDetail<Integer> intVariationDetail(LDContext context, int defaultValue) {
+    return evaluate("FlagHandle.intVariationDetail", context, LDValue.of(defaultValue), LDValueType.NUMBER,
+        eventsWithReasons).getAsInteger();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#doubleVariationDetail(String, LDContext, double)}, for this flag.
+   *
+   * @param context      the evaluation context
+   * @param defaultValue the default value of the flag
+   * @return an {@link EvaluationDetail} object
+   */
+  public EvaluationDetail<Double> doubleVariationDetail(LDContext context, double defaultValue) {
+    return evaluate("FlagHandle.doubleVariationDetail", context, LDValue.of(defaultValue), LDValueType.NUMBER,
+        eventsWithReasons).getAsDouble();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#stringVariationDetail(String, LDContext, String)}, for this flag.
+   *
+   * @param context      the evaluation context
+   * @param defaultValue the default value of the flag
+   * @return an {@link EvaluationDetail} object
+   */
+  public EvaluationDetail<String> stringVariationDetail(LDContext context, String defaultValue) {
+    return evaluate("FlagHandle.stringVariationDetail", context, LDValue.of(defaultValue), LDValueType.STRING,
+        eventsWithReasons).getAsString();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#jsonValueVariationDetail(String, LDContext, LDValue)}, for this flag.
+   *
+   * @param context      the evaluation context
+   * @param defaultValue the default value of the flag
+   * @return an {@link EvaluationDetail} object
+   */
+  public EvaluationDetail<LDValue> jsonValueVariationDetail(LDContext context, LDValue defaultValue) {
+    return evaluate("FlagHandle.jsonValueVariationDetail", context, LDValue.normalize(defaultValue), null,
+        eventsWithReasons).getAnyType();
+  }
+
+  @Override
+  public String toString() {
+    return "FlagHandle(" + key + ")";
+  }
+
+  private EvalResult evaluate(String method, LDContext context, LDValue defaultValue, LDValueType requireType,
+      EvaluationOptions options) {
+    return client.evaluator.evalAndFlag(method, key, context, defaultValue, requireType, options).getResult();
+  }
+
+  /**
+   * Returns the current version of the flag, or null if it is unknown or deleted. This is the same as
+   * {@link ReadOnlyStore#getFlag(String)}, but if the store's flag index is the same map as last time, we
+   * already know the answer.
+   */
+  FeatureFlag getFlag() {
+    Map<String, FeatureFlag> index = store.getFlagIndex();
+    if (index == null) {
+      return store.getFlag(key);
+    }
+    return getFlag(index);
+  }
+
+  /**
+   * Same as {@link #getFlag()}, but uses the specified flag index, such as the one from the
+   * {@link DataStoreSnapshot} that an evaluation is using, rather than the store's current one.
+   */
+  FeatureFlag getFlag(Map<String, FeatureFlag> index) {
+    Resolved r = resolved;
+    if (r == null || r.index != index) {
+      r = new Resolved(index, index.get(key));
+      resolved = r; // a race here is harmless, since either thread's result is valid for its index
+    }
+    return r.flag;
+  }
+
+  private static final class Resolved {
+    final Map<String, FeatureFlag> index;
+    final FeatureFlag flag;
+
+    Resolved(Map<String, FeatureFlag> index, FeatureFlag flag) {
+      this.index = index;
+      this.flag = flag;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.launchdarkly.sdk.server;
+
+import com.google.common.collect.Maps;
+import com.launchdarkly.sdk.EvaluationDetail;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.interfaces.LDClientInterface;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The results of evaluating several feature flags for the same context, returned by
+ * {@link LDClientInterface#variations(com.launchdarkly.sdk.LDContext, java.util.Collection)} or
+ * {@link LDClientInterface#variationsDetail(com.launchdarkly.sdk.LDContext, java.util.Collection)}.
+ * <p>
+ * Unlike {@link FeatureFlagsState}, this only contains the flags that were requested, and the evaluations
+ * are treated like individual variation calls: they generate analytics events, and invoke any configured
+ * hooks.
+ *
+ * @since 7.16.0
+ */
+public final class FlagVariations {
+  private final Map<String, EvalResult> results;
+
+  FlagVariations(Map<String, EvalResult> results) {
+    this.results = results;
+  }
+
+  EvalResult getResult(String flagKey) {
+    return results.get(flagKey);
+  }
+
+  /**
+   * Returns the value of an individual feature flag.
+   * <p>
+   * If the flag could not be evaluated (for instance, because there is no such flag), or if it evaluated to
+   * the default value, the value is {@link LDValue#ofNull()}, as it would be for
+   * {@link LDClientInterface#jsonValueVariation(String, com.launchdarkly.sdk.LDContext, LDValue)} with a null
+   * default.
+   *
+   * @param flagKey the feature flag key
+   * @return the flag's JSON value; {@code null} if the flag key was not one of the requested keys
+   */
+  public LDValue getValue(String flagKey) {
+    EvalResult result = results.get(flagKey);
+    return result == null ? null : result.getValue();
+  }
+
+  /**
+   * Returns the value of an individual feature flag, along with the variation index and the reason for the
+   * result.
+   *
+   * @param flagKey the feature flag key
+   * @return an {@link EvaluationDetail}; {@code null} if the flag key was not one of the requested keys
+   */
+  public EvaluationDetail<LDValue> getDetail(String flagKey) {
+    EvalResult result = results.get(flagKey);
+    return result == null ? null : result.getAnyType();
+  }
+
+  /**
+   * Returns the keys of all of the flags that were requested.
+   *
+   * @return an unmodifiable set of flag keys
+   */
+  public Set<String> getFlagKeys() {
+    return Collections.unmodifiableSet(results.keySet());
+  }
+
+  /**
+   * Returns a map of flag keys to flag values, as described for {@link #getValue(String)}.
+   *
+   * @return an unmodifiable map of flag keys to JSON values
+   */
+  public Map<String, LDValue> toValuesMap() {
+    return Collections.unmodifiableMap(Maps.transformValues(results, EvalResult::getValue));
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof FlagVariations && results.equals(((FlagVariations)other).results);
+  }
+
+  @Override
+  public int hashCode() {
+    return results.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return results.toString();
+  }
+}
@@ -3,6 +3,7 @@ package com.launchdarkly.sdk.server;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.launchdarkly.sdk.fdv2.Selector;
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
 import com.launchdarkly.sdk.server.interfaces.DataStoreStatusProvider.CacheStats;
 import com.launchdarkly.sdk.server.subsystems.DataStore;
 import com.launchdarkly.sdk.fdv2.ChangeSet;
@@ -16,18 +17,29 @@ import com.launchdarkly.sdk.server.subsystems.TransactionalDataStore;
 import java.io.IOException;
 import java.util.AbstractMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
+import static com.launchdarkly.sdk.server.DataModel.FEATURES;
+
 /**
  * A thread-safe, versioned store for feature flags and related data based on a
- * {@link HashMap}. This is the default implementation of {@link DataStore}.
+ * {@link PersistentHashMap}. This is the default implementation of {@link DataStore}.
+ * <p>
+ * Every update replaces the map for the kind of data that changed, so readers never need a lock; since
+ * the new map shares its structure with the old one, an update to one item costs about the same however
+ * many items there are. The index of flags by key is updated in the same way, rather than being rebuilt.
+ * The item maps and the flag index are published together as one immutable {@link DataStoreSnapshot}, in
+ * a single volatile write, so a reader can never see the index from one version of the data and the items
+ * from another.
  * 
  * As of version 5.0.0, this is package-private; applications must use the factory method
  * {@link Components#inMemoryDataStore()}.
  */
-class InMemoryDataStore implements DataStore, TransactionalDataStore, CacheExporter {
-  private volatile ImmutableMap<DataKind, Map<String, ItemDescriptor>> allData = ImmutableMap.of();
+class InMemoryDataStore implements DataStore, TransactionalDataStore, CacheExporter, DataStoreSnapshotProvider {
+  // All of the data, and the flag index that is always updated along with the flags, are replaced together
+  private volatile DataStoreSnapshot snapshot = DataStoreSnapshot.EMPTY;
   private volatile boolean initialized = false;
   private Object writeLock = new Object();
   private final Object selectorLock = new Object();
@@ -41,57 +53,45 @@ class InMemoryDataStore implements DataStore, TransactionalDataStore, CacheExpor
 
   @Override
   public ItemDescriptor get(DataKind kind, String key) {
-    Map<String, ItemDescriptor> items = this.allData.get(kind);
-    if (items == null) {
-      return null;
-    }
-    return items.get(key);
+    return this.snapshot.get(kind, key);
+  }
+
+  @Override
+  public DataStoreSnapshot getSnapshot() {
+    return this.snapshot;
   }
 
   @Override
   public KeyedItems<ItemDescriptor> getAll(DataKind kind) {
-    Map<String, ItemDescriptor> items = this.allData.get(kind);
-    if (items == null) {
-      return new KeyedItems<>(null);
-    }
-    return new KeyedItems<>(ImmutableList.copyOf(items.entrySet()));
+    // The map is immutable, so there's no need to copy it
+    return this.snapshot.getAll(kind);
   }
 
   @Override
   public boolean upsert(DataKind kind, String key, ItemDescriptor item) {
     synchronized (this.writeLock) {
-      Map<String, ItemDescriptor> existingItems = this.allData.get(kind);
-      ItemDescriptor oldItem = null;
-      if (existingItems != null) {
-        oldItem = existingItems.get(key);
+      DataStoreSnapshot current = this.snapshot;
+      PersistentHashMap<String, ItemDescriptor> existingItems = current.getAllData().get(kind);
+      if (existingItems == null) {
+        existingItems = PersistentHashMap.empty();
+      } else {
+        ItemDescriptor oldItem = existingItems.get(key);
         if (oldItem != null && oldItem.getVersion() >= item.getVersion()) {
           return false;
         }
       }
       // The following logic is necessary because ImmutableMap.Builder doesn't support overwriting an existing key
-      ImmutableMap.Builder<DataKind, Map<String, ItemDescriptor>> newData = ImmutableMap.builder();
-      for (Map.Entry<DataKind, Map<String, ItemDescriptor>> e: this.allData.entrySet()) {
+      ImmutableMap.Builder<DataKind, PersistentHashMap<String, ItemDescriptor>> newData = ImmutableMap.builder();
+      for (Map.Entry<DataKind, PersistentHashMap<String, ItemDescriptor>> e: current.getAllData().entrySet()) {
         if (!e.getKey().equals(kind)) {
           newData.put(e.getKey(), e.getValue());
         }
       }
-      if (existingItems == null) {
-        newData.put(kind, ImmutableMap.of(key, item));
-      } else {
-        ImmutableMap.Builder<String, ItemDescriptor> itemsBuilder = ImmutableMap.builder();
-        if (oldItem == null) {
-          itemsBuilder.putAll(existingItems);
-        } else {
-          for (Map.Entry<String, ItemDescriptor> e: existingItems.entrySet()) {
-            if (!e.getKey().equals(key)) {
-              itemsBuilder.put(e.getKey(), e.getValue());
-            }
-          }
-        }
-        itemsBuilder.put(key, item);
-        newData.put(kind, itemsBuilder.build());
-      }
-      this.allData = newData.build(); // replaces the entire map atomically
+      newData.put(kind, existingItems.with(key, item));
+      PersistentHashMap<String, FeatureFlag> newFlagIndex = kind == FEATURES ?
+        withFlag(current.getFlagIndex(), key, item) : current.getFlagIndex();
+      // replaces all of the data atomically
+      this.snapshot = new DataStoreSnapshot(current.getVersion() + 1, newData.build(), newFlagIndex);
       return true;
     }
   }
@@ -155,42 +155,31 @@ class InMemoryDataStore implements DataStore, TransactionalDataStore, CacheExpor
   private void applyPartialData(Iterable<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>> data,
       Selector selector, boolean shouldPersist) {
     synchronized (this.writeLock) {
-      // Build the complete updated dictionary before assigning to Items for transactional update
-      ImmutableMap.Builder<DataKind, Map<String, ItemDescriptor>> itemsBuilder = ImmutableMap.builder();
-      
-      // First, collect all kinds that will be updated
-      java.util.Set<DataKind> updatedKinds = new java.util.HashSet<>();
-      for (Map.Entry<DataKind, KeyedItems<ItemDescriptor>> kindItemsPair : data) {
-        updatedKinds.add(kindItemsPair.getKey());
-      }
-      
-      // Add all existing kinds that are NOT being updated
-      for (Map.Entry<DataKind, Map<String, ItemDescriptor>> existingEntry : this.allData.entrySet()) {
-        if (!updatedKinds.contains(existingEntry.getKey())) {
-          itemsBuilder.put(existingEntry.getKey(), existingEntry.getValue());
-        }
-      }
+      // Build the complete updated dictionary before assigning to Items for transactional update; existing
+      // kinds stay in the same order, and new ones are added at the end
+      DataStoreSnapshot current = this.snapshot;
+      Map<DataKind, PersistentHashMap<String, ItemDescriptor>> newData = new LinkedHashMap<>(current.getAllData());
+      PersistentHashMap<String, FeatureFlag> newFlagIndex = current.getFlagIndex();
 
-      // Now process the updated kinds
       for (Map.Entry<DataKind, KeyedItems<ItemDescriptor>> kindItemsPair : data) {
         DataKind kind = kindItemsPair.getKey();
-        // Use HashMap to allow overwriting, then convert to ImmutableMap
-        Map<String, ItemDescriptor> kindMap = new HashMap<>();
-
-        Map<String, ItemDescriptor> itemsOfKind = this.allData.get(kind);
-        if (itemsOfKind != null) {
-          kindMap.putAll(itemsOfKind);
+        PersistentHashMap<String, ItemDescriptor> kindMap = newData.get(kind);
+        if (kindMap == null) {
+          kindMap = PersistentHashMap.empty();
         }
 
-        // Overwrite/add items from the change set (HashMap.put overwrites existing keys)
+        // Overwrite/add items from the change set
         for (Map.Entry<String, ItemDescriptor> keyValuePair : kindItemsPair.getValue().getItems()) {
-          kindMap.put(keyValuePair.getKey(), keyValuePair.getValue());
+          kindMap = kindMap.with(keyValuePair.getKey(), keyValuePair.getValue());
+          if (kind == FEATURES) {
+            newFlagIndex = withFlag(newFlagIndex, keyValuePair.getKey(), keyValuePair.getValue());
+          }
         }
 
-        itemsBuilder.put(kind, ImmutableMap.copyOf(kindMap));
+        newData.put(kind, kindMap);
       }
 
-      this.allData = itemsBuilder.build();
+      this.snapshot = new DataStoreSnapshot(current.getVersion() + 1, ImmutableMap.copyOf(newData), newFlagIndex);
       this.shouldPersist = shouldPersist;
       setSelector(selector);
     }
@@ -198,35 +187,58 @@ class InMemoryDataStore implements DataStore, TransactionalDataStore, CacheExpor
 
   private void applyFullPayload(Iterable<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>> data,
       String environmentId, Selector selector, boolean shouldPersist) {
-    ImmutableMap.Builder<DataKind, Map<String, ItemDescriptor>> itemsBuilder = ImmutableMap.builder();
+    ImmutableMap.Builder<DataKind, PersistentHashMap<String, ItemDescriptor>> itemsBuilder = ImmutableMap.builder();
 
     for (Map.Entry<DataKind, KeyedItems<ItemDescriptor>> kindEntry : data) {
-      ImmutableMap.Builder<String, ItemDescriptor> kindItemsBuilder = ImmutableMap.builder();
+      Map<String, ItemDescriptor> kindItems = new HashMap<>();
       for (Map.Entry<String, ItemDescriptor> e1 : kindEntry.getValue().getItems()) {
-        kindItemsBuilder.put(e1.getKey(), e1.getValue());
+        kindItems.put(e1.getKey(), e1.getValue());
       }
-      itemsBuilder.put(kindEntry.getKey(), kindItemsBuilder.build());
+      itemsBuilder.put(kindEntry.getKey(), PersistentHashMap.copyOf(kindItems));
     }
 
-    ImmutableMap<DataKind, Map<String, ItemDescriptor>> newItems = itemsBuilder.build();
+    ImmutableMap<DataKind, PersistentHashMap<String, ItemDescriptor>> newItems = itemsBuilder.build();
+    PersistentHashMap<String, FeatureFlag> newFlagIndex = makeFlagIndex(newItems.get(FEATURES));
 
     synchronized (this.writeLock) {
-      this.allData = newItems;
+      this.snapshot = new DataStoreSnapshot(this.snapshot.getVersion() + 1, newItems, newFlagIndex);
       this.initialized = true;
       this.shouldPersist = shouldPersist;
       setSelector(selector);
     }
   }
 
+  private static PersistentHashMap<String, FeatureFlag> makeFlagIndex(Map<String, ItemDescriptor> flagItems) {
+    if (flagItems == null) {
+      return PersistentHashMap.empty();
+    }
+    Map<String, FeatureFlag> index = new HashMap<>();
+    for (Map.Entry<String, ItemDescriptor> e: flagItems.entrySet()) {
+      Object item = e.getValue().getItem(); // null for a deleted flag
+      if (item instanceof FeatureFlag) {
+        index.put(e.getKey(), (FeatureFlag)item);
+      }
+    }
+    return PersistentHashMap.copyOf(index);
+  }
+
+  private static PersistentHashMap<String, FeatureFlag> withFlag(PersistentHashMap<String, FeatureFlag> index,
+      String key, ItemDescriptor item) {
+    Object flag = item.getItem(); // null for a deleted flag
+    return flag instanceof FeatureFlag ? index.with(key, (FeatureFlag)flag) : index.without(key);
+  }
+
   @Override
   public FullDataSet<ItemDescriptor> exportAll() {
     synchronized (this.writeLock) {
       ImmutableList.Builder<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>> builder = ImmutableList.builder();
 
-      for (Map.Entry<DataKind, Map<String, ItemDescriptor>> kindEntry : this.allData.entrySet()) {
+      // The item maps are immutable, so the result can refer to them without copying them
+      for (Map.Entry<DataKind, PersistentHashMap<String, ItemDescriptor>> kindEntry :
+          this.snapshot.getAllData().entrySet()) {
         builder.add(new AbstractMap.SimpleEntry<>(
             kindEntry.getKey(),
-            new KeyedItems<>(ImmutableList.copyOf(kindEntry.getValue().entrySet()))
+            new KeyedItems<>(kindEntry.getValue().entrySet())
         ));
       }
 
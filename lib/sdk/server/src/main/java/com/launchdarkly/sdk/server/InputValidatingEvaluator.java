@@ -13,7 +13,14 @@ import com.launchdarkly.sdk.server.subsystems.EventProcessor;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static com.launchdarkly.sdk.EvaluationDetail.NO_VARIATION;
 import static com.launchdarkly.sdk.server.DataModel.FEATURES;
@@ -25,10 +32,16 @@ import static com.launchdarkly.sdk.server.subsystems.EventProcessor.NO_VERSION;
  * type assertion, and runtime exceptions.
  */
 class InputValidatingEvaluator implements EvaluatorInterface {
+  // allFlagsState() evaluates at most this many flags in each parallel task
+  static final int ALL_FLAGS_BATCH_SIZE = 128;
 
   private final Evaluator evaluator;
   private final ReadOnlyStore store;
+  private final BigSegmentStoreWrapper segmentStore;
   private final LDLogger logger;
+  private final ForkJoinPool allFlagsStatePool;
+  private final AllFlagsStateCache allFlagsStateCache;
+  private volatile SnapshotGetters lastSnapshotGetters = null;
 
   // these are created at construction to avoid recreation during each evaluation
   private final EvaluationRecorder evaluationEventRecorderWithDetails;
@@ -45,9 +58,42 @@ class InputValidatingEvaluator implements EvaluatorInterface {
    * @param logger         for logging messages and errors during evaluations
    */
   InputValidatingEvaluator(ReadOnlyStore store, BigSegmentStoreWrapper segmentStore, @Nonnull EventProcessor eventProcessor, LDLogger logger) {
+    this(store, segmentStore, eventProcessor, logger, new EvaluatorStatistics(), null);
+  }
+
+  /**
+   * Creates an {@link InputValidatingEvaluator}
+   *
+   * @param store          will be used to get flag data
+   * @param segmentStore   will be used to get segment data
+   * @param eventProcessor will be used to record events during evaluations as necessary
+   * @param logger         for logging messages and errors during evaluations
+   * @param statistics     will be updated with evaluation counters
+   * @param regexMatchCache if non-null, will be used to remember the results of regex clauses
+   */
+  InputValidatingEvaluator(ReadOnlyStore store, BigSegmentStoreWrapper segmentStore, @Nonnull EventProcessor eventProcessor, LDLogger logger,
+      EvaluatorStatistics statistics, RegexMatchCache regexMatchCache) {
+    this(store, segmentStore, eventProcessor, logger, statistics, regexMatchCache, null, null);
+  }
+
+  /**
+   * Creates an {@link InputValidatingEvaluator}
+   *
+   * @param store          will be used to get flag data
+   * @param segmentStore   will be used to get segment data
+   * @param eventProcessor will be used to record events during evaluations as necessary
+   * @param logger         for logging messages and errors during evaluations
+   * @param statistics     will be updated with evaluation counters
+   * @param regexMatchCache if non-null, will be used to remember the results of regex clauses
+   * @param allFlagsStatePool if non-null, allFlagsState will use it to evaluate large flag sets in parallel
+   * @param allFlagsStateCache if non-null, allFlagsState will use it to remember results
+   */
+  InputValidatingEvaluator(ReadOnlyStore store, BigSegmentStoreWrapper segmentStore, @Nonnull EventProcessor eventProcessor, LDLogger logger,
+      EvaluatorStatistics statistics, RegexMatchCache regexMatchCache, ForkJoinPool allFlagsStatePool,
+      AllFlagsStateCache allFlagsStateCache) {
     this.evaluator = new Evaluator(new Evaluator.Getters() {
       public DataModel.FeatureFlag getFlag(String key) {
-        return InputValidatingEvaluator.getFlag(store, key);
+        return store.getFlag(key);
       }
 
       public DataModel.Segment getSegment(String key) {
@@ -58,10 +104,13 @@ class InputValidatingEvaluator implements EvaluatorInterface {
         return segmentStore == null ? null : segmentStore.getUserMembership(key);
       }
 
-    }, logger);
+    }, logger, statistics, regexMatchCache);
 
     this.store = store;
+    this.segmentStore = segmentStore;
     this.logger = logger;
+    this.allFlagsStatePool = allFlagsStatePool;
+    this.allFlagsStateCache = allFlagsStateCache;
 
     // these are created at construction to avoid recreation during each evaluation
     this.evaluationEventRecorderWithDetails = makeEvaluationRecorder(eventProcessor, true);
@@ -72,18 +121,70 @@ class InputValidatingEvaluator implements EvaluatorInterface {
   public EvalResultAndFlag evalAndFlag(String method, String flagKey, LDContext context, LDValue defaultValue,
                                        @Nullable LDValueType requireType, EvaluationOptions options) {
     // this implementation does not care for the method parameter
+    return evaluate(flagKey, context, defaultValue, requireType, recorderForOptions(options),
+        preparedContextForOptions(context, options), flagHandleForOptions(flagKey, options));
+  }
 
+  @Override
+  public FlagVariations variations(String method, Collection<String> flagKeys, LDContext context,
+                                   EvaluationOptions options) {
+    EvaluationRecorder recorder = recorderForOptions(options);
+    Map<String, EvalResult> results = new HashMap<>();
+    ErrorKind errorKind = null;
+    if (!store.isInitialized()) {
+      logger.warn("Evaluation called before client initialized for {} feature flags; data store unavailable, returning default values",
+          flagKeys.size());
+      errorKind = ErrorKind.CLIENT_NOT_READY;
+    } else if (context == null) {
+      logger.warn("Null context when evaluating {} feature flags; returning default values", flagKeys.size());
+      errorKind = ErrorKind.USER_NOT_SPECIFIED;
+    } else if (!context.isValid()) {
+      logger.warn("Invalid context when evaluating {} feature flags; returning default values: " + context.getError(),
+          flagKeys.size());
+      errorKind = ErrorKind.USER_NOT_SPECIFIED;
+    }
+    if (errorKind != null) {
+      EvalResult result = EvalResult.error(errorKind, LDValue.ofNull());
+      for (String flagKey: flagKeys) {
+        if (errorKind == ErrorKind.CLIENT_NOT_READY) {
+          recorder.recordEvaluationUnknownFlagError(flagKey, context, LDValue.ofNull(), errorKind);
+        }
+        results.put(flagKey, result);
+      }
+      return new FlagVariations(results);
+    }
+
+    // All of the flags share one scope, so that segment matches, Big Segment memberships, and bucket values
+    // that are computed for one flag can be reused for the others. They also share one snapshot of the data,
+    // so the results are consistent with each other even if the data changes while we're evaluating them.
+    PreparedContext preparedContext = preparedContextForOptions(context, options);
+    EvaluationScope scope = preparedContext == null ? evaluator.newScope(context) :
+        evaluator.newScope(preparedContext);
+    SnapshotGetters getters = snapshotGetters();
+    for (String flagKey: flagKeys) {
+      results.put(flagKey, evaluateValidated(flagKey, context, LDValue.ofNull(), null, recorder, scope, null, getters)
+          .getResult());
+    }
+    return new FlagVariations(results);
+  }
+
+  private EvaluationRecorder recorderForOptions(EvaluationOptions options) {
     // map options to appropriate event sink
-    EvaluationRecorder sink;
-    if (options == EvaluationOptions.EVENTS_WITH_REASONS) {
-      sink = evaluationEventRecorderWithDetails;
-    } else if (options == EvaluationOptions.EVENTS_WITHOUT_REASONS) {
-      sink = evaluationEventRecorderWithoutDetails;
-    } else {
-      sink = NO_OP_EVALUATION_EVENT_RECORDER;
+    if (!options.recordEvents) {
+      return NO_OP_EVALUATION_EVENT_RECORDER;
     }
+    return options.includeReasonsWithEvents ? evaluationEventRecorderWithDetails :
+        evaluationEventRecorderWithoutDetails;
+  }
+
+  private static PreparedContext preparedContextForOptions(LDContext context, EvaluationOptions options) {
+    PreparedContext preparedContext = options.preparedContext;
+    return preparedContext != null && preparedContext.getContext() == context ? preparedContext : null;
+  }
 
-    return evaluate(flagKey, context, defaultValue, requireType, sink);
+  private static FlagHandle flagHandleForOptions(String flagKey, EvaluationOptions options) {
+    FlagHandle flagHandle = options.flagHandle;
+    return flagHandle != null && flagHandle.getKey().equals(flagKey) ? flagHandle : null;
   }
 
   /**
@@ -97,10 +198,14 @@ class InputValidatingEvaluator implements EvaluatorInterface {
    *                     other potential reasons.
    * @param requireType  if not null, a value type assertion will be made
    * @param recorder     the recorder that will record during evaluation
+   * @param preparedContext if not null, a {@link PreparedContext} for the same context that the evaluation
+   *                     will use
+   * @param flagHandle   if not null, a {@link FlagHandle} for the same flag key that will be used to get the flag
    * @return an {@link EvalResultAndFlag} - guaranteed non-null
    */
   EvalResultAndFlag evaluate(String flagKey, LDContext context, LDValue defaultValue,
-                             @Nullable LDValueType requireType, EvaluationRecorder recorder) {
+                             @Nullable LDValueType requireType, EvaluationRecorder recorder,
+                             @Nullable PreparedContext preparedContext, @Nullable FlagHandle flagHandle) {
     if (!store.isInitialized()) {
       logger.warn("Evaluation called before client initialized for feature flag \"{}\"; data store unavailable, returning default value", flagKey);
       recorder.recordEvaluationUnknownFlagError(flagKey, context, defaultValue, ErrorKind.CLIENT_NOT_READY);
@@ -116,16 +221,32 @@ class InputValidatingEvaluator implements EvaluatorInterface {
       return new EvalResultAndFlag(EvalResult.error(ErrorKind.USER_NOT_SPECIFIED, defaultValue), null);
     }
 
+    return evaluateValidated(flagKey, context, defaultValue, requireType, recorder,
+        preparedContext == null ? null : evaluator.newScope(preparedContext), flagHandle, snapshotGetters());
+  }
+
+  // Same as evaluate(), but the caller has already checked that the store is initialized and the context is
+  // valid. The scope, the flag handle, and the getters can be null; if the getters are null, the flag and
+  // anything it references are read from the store.
+  private EvalResultAndFlag evaluateValidated(String flagKey, LDContext context, LDValue defaultValue,
+                                              @Nullable LDValueType requireType, EvaluationRecorder recorder,
+                                              @Nullable EvaluationScope scope, @Nullable FlagHandle flagHandle,
+                                              @Nullable SnapshotGetters getters) {
     FeatureFlag featureFlag = null;
     try {
-      featureFlag = getFlag(store, flagKey);
+      if (getters == null) {
+        featureFlag = flagHandle == null ? store.getFlag(flagKey) : flagHandle.getFlag();
+      } else {
+        featureFlag = flagHandle == null ? getters.snapshot.getFlag(flagKey) :
+            flagHandle.getFlag(getters.snapshot.getFlagIndex());
+      }
       if (featureFlag == null) {
         logger.info("Unknown feature flag \"{}\"; returning default value", flagKey);
         recorder.recordEvaluationUnknownFlagError(flagKey, context, defaultValue, ErrorKind.FLAG_NOT_FOUND);
         return new EvalResultAndFlag(EvalResult.error(ErrorKind.FLAG_NOT_FOUND, defaultValue), null);
       }
 
-      EvalResult result = evaluator.evaluate(featureFlag, context, recorder);
+      EvalResult result = evaluator.evaluate(featureFlag, context, recorder, scope, getters);
       if (result.isNoVariation()) {
         result = EvalResult.of(defaultValue, result.getVariationIndex(), result.getReason());
       } else {
@@ -140,7 +261,7 @@ class InputValidatingEvaluator implements EvaluatorInterface {
       }
 
       recorder.recordEvaluation(featureFlag, context, result, defaultValue);
-      return new EvalResultAndFlag(result, featureFlag);
+      return resultAndFlag(result, featureFlag);
 
     } catch (Exception e) {
       logger.error("Encountered exception while evaluating feature flag \"{}\": {}", flagKey,
@@ -172,16 +293,41 @@ class InputValidatingEvaluator implements EvaluatorInterface {
       return builder.valid(false).build();
     }
 
-    boolean clientSideOnly = FlagsStateOption.hasOption(options, FlagsStateOption.CLIENT_SIDE_ONLY);
+    // Every flag is evaluated against the same snapshot of the data, if the store provides snapshots, so
+    // that the results are consistent even if the data changes while we're evaluating them.
+    SnapshotGetters getters;
     DataStoreTypes.KeyedItems<DataStoreTypes.ItemDescriptor> flags;
     try {
-      flags = store.getAll(FEATURES);
+      getters = snapshotGetters();
+      flags = getters == null ? store.getAll(FEATURES) : getters.snapshot.getAll(FEATURES);
     } catch (Exception e) {
       logger.error("Exception from data store when evaluating all flags: {}", LogValues.exceptionSummary(e));
       logger.debug(e.toString(), LogValues.exceptionTrace(e));
       return builder.valid(false).build();
     }
 
+    boolean clientSideOnly = FlagsStateOption.hasOption(options, FlagsStateOption.CLIENT_SIDE_ONLY);
+    // Cached results are tagged with the version of the snapshot they were computed from, so we can only
+    // use the cache if the store provides snapshots.
+    AllFlagsStateCache cache = getters == null ? null : allFlagsStateCache;
+    long dataVersion = getters == null ? 0 : getters.snapshot.getVersion();
+    if (cache != null) {
+      AllFlagsStateCache.Entry entry = cache.get(context, options);
+      if (entry != null && entry.state.detailsExpireAt > System.currentTimeMillis()) {
+        Set<String> changedFlagKeys = cache.getFlagsChangedSince(entry.dataVersion, dataVersion);
+        if (changedFlagKeys != null) {
+          cache.hits.increment();
+          if (changedFlagKeys.isEmpty()) {
+            return entry.state;
+          }
+          return reevaluateFlags(entry.state, changedFlagKeys, context, options, clientSideOnly, getters, cache,
+              dataVersion);
+        }
+      }
+      cache.misses.increment();
+    }
+
+    List<FeatureFlag> flagList = new ArrayList<>();
     for (Map.Entry<String, DataStoreTypes.ItemDescriptor> entry : flags.getItems()) {
       if (entry.getValue().getItem() == null) {
         continue; // deleted flag placeholder
@@ -190,24 +336,179 @@ class InputValidatingEvaluator implements EvaluatorInterface {
       if (clientSideOnly && !flag.isClientSide()) {
         continue;
       }
+      flagList.add(flag);
+    }
+
+    FeatureFlag[] flagArray = flagList.toArray(new FeatureFlag[flagList.size()]);
+    EvalResult[] results = new EvalResult[flagArray.length];
+    if (allFlagsStatePool == null || flagArray.length <= ALL_FLAGS_BATCH_SIZE) {
+      evaluateAllFlags(flagArray, results, 0, flagArray.length, context, getters);
+    } else {
+      try {
+        allFlagsStatePool.invoke(new AllFlagsTask(flagArray, results, 0, flagArray.length, context, getters));
+      } catch (RuntimeException e) {
+        // The pool might have been shut down, for instance
+        logger.warn("Could not evaluate flags in parallel, evaluating them sequentially: {}",
+            LogValues.exceptionSummary(e));
+        evaluateAllFlags(flagArray, results, 0, flagArray.length, context, getters);
+      }
+    }
+
+    // The results are added in the same order as the flags, regardless of how they were evaluated.
+    for (int i = 0; i < flagArray.length; i++) {
+      builder.addFlag(flagArray[i], results[i]);
+    }
+    FeatureFlagsState state = builder.build();
+    putInCache(cache, state, results, context, options, dataVersion);
+    return state;
+  }
+
+  // Used when we have a cached state for this context, but some flags have changed between the version of
+  // the data it was computed from and the version in the snapshot we're using.
+  private FeatureFlagsState reevaluateFlags(FeatureFlagsState previous, Set<String> changedFlagKeys, LDContext context,
+      FlagsStateOption[] options, boolean clientSideOnly, SnapshotGetters getters, AllFlagsStateCache cache,
+      long dataVersion) {
+    List<FeatureFlag> flagList = new ArrayList<>();
+    for (String key: changedFlagKeys) {
+      FeatureFlag flag = getters.snapshot.getFlag(key);
+      if (flag != null && !flag.isDeleted() && (!clientSideOnly || flag.isClientSide())) {
+        flagList.add(flag);
+      }
+    }
+    FeatureFlag[] flagArray = flagList.toArray(new FeatureFlag[flagList.size()]);
+    EvalResult[] results = new EvalResult[flagArray.length];
+    evaluateAllFlags(flagArray, results, 0, flagArray.length, context, getters);
+    cache.reevaluatedFlags.add(flagArray.length);
+    FeatureFlagsState state = FeatureFlagsState.builder(options)
+        .addFlagsFrom(previous, changedFlagKeys, flagArray, results).build();
+    putInCache(cache, state, results, context, options, dataVersion);
+    return state;
+  }
+
+  private static void putInCache(AllFlagsStateCache cache, FeatureFlagsState state, EvalResult[] results,
+      LDContext context, FlagsStateOption[] options, long dataVersion) {
+    if (cache == null) {
+      return;
+    }
+    // Big Segment memberships can change without any change to the flag data, so we can't cache the
+    // results for a context that is in any Big Segment queries.
+    for (EvalResult result: results) {
+      EvaluationReason reason = result.getReason();
+      if (reason != null && reason.getBigSegmentsStatus() != null) {
+        return;
+      }
+    }
+    cache.put(context, options, new AllFlagsStateCache.Entry(state, dataVersion));
+  }
+
+  private void evaluateAllFlags(FeatureFlag[] flags, EvalResult[] results, int from, int to, LDContext context,
+      SnapshotGetters getters) {
+    // All of these evaluations are for the same context, so they can share computed bucket values. A scope
+    // is not thread-safe, so when we are evaluating in parallel, each batch of flags has its own.
+    EvaluationScope scope = evaluator.newScope(context);
+    for (int i = from; i < to; i++) {
+      FeatureFlag flag = flags[i];
       try {
         // Note: a no op evaluation event recorder is provided as we don't want the all flag state to generate
         // any evaluation events.
-        EvalResult result = evaluator.evaluate(flag, context, NO_OP_EVALUATION_EVENT_RECORDER);
-        builder.addFlag(flag, result);
+        results[i] = evaluator.evaluate(flag, context, NO_OP_EVALUATION_EVENT_RECORDER, scope, getters);
       } catch (Exception e) {
         logger.error("Exception caught for feature flag \"{}\" when evaluating all flags: {}", flag.getKey(),
             LogValues.exceptionSummary(e));
         logger.debug(e.toString(), LogValues.exceptionTrace(e));
-        builder.addFlag(flag, EvalResult.of(LDValue.ofNull(), NO_VARIATION, EvaluationReason.exception(e)));
+        results[i] = EvalResult.of(LDValue.ofNull(), NO_VARIATION, EvaluationReason.exception(e));
       }
     }
-    return builder.build();
   }
 
-  private static DataModel.FeatureFlag getFlag(ReadOnlyStore store, String key) {
-    DataStoreTypes.ItemDescriptor item = store.get(FEATURES, key);
-    return item == null ? null : (DataModel.FeatureFlag) item.getItem();
+  // Splits a range of flags in half, on a batch boundary, until each part is no bigger than ALL_FLAGS_BATCH_SIZE.
+  private final class AllFlagsTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final FeatureFlag[] flags;
+    private final EvalResult[] results;
+    private final int from;
+    private final int to;
+    private final LDContext context;
+    private final SnapshotGetters getters;
+
+    AllFlagsTask(FeatureFlag[] flags, EvalResult[] results, int from, int to, LDContext context,
+        SnapshotGetters getters) {
+      this.flags = flags;
+      this.results = results;
+      this.from = from;
+      this.to = to;
+      this.context = context;
+      this.getters = getters;
+    }
+
+    @Override
+    protected void compute() {
+      int batches = (to - from + ALL_FLAGS_BATCH_SIZE - 1) / ALL_FLAGS_BATCH_SIZE;
+      if (batches <= 1) {
+        evaluateAllFlags(flags, results, from, to, context, getters);
+        return;
+      }
+      int middle = from + (batches / 2) * ALL_FLAGS_BATCH_SIZE;
+      invokeAll(new AllFlagsTask(flags, results, from, middle, context, getters),
+          new AllFlagsTask(flags, results, middle, to, context, getters));
+    }
+  }
+
+  // Most evaluations of a flag return one of the EvalResult instances that were precomputed for it, each of
+  // which already has an EvalResultAndFlag for that flag.
+  private static EvalResultAndFlag resultAndFlag(EvalResult result, DataModel.FeatureFlag flag) {
+    EvalResultAndFlag precomputed = result.getPrecomputedResultAndFlag();
+    if (precomputed != null && precomputed.getFlag() == flag) {
+      return precomputed;
+    }
+    return new EvalResultAndFlag(result, flag);
+  }
+
+  // Returns Getters that read from the store's current snapshot, or null if the store does not provide
+  // snapshots, in which case the evaluator's default Getters will query the store each time. The snapshot
+  // only changes when the data does, so usually we can reuse the same Getters as last time.
+  private SnapshotGetters snapshotGetters() {
+    DataStoreSnapshot snapshot = store.getSnapshot();
+    if (snapshot == null) {
+      return null;
+    }
+    SnapshotGetters getters = lastSnapshotGetters;
+    if (getters == null || getters.snapshot != snapshot) {
+      getters = new SnapshotGetters(snapshot, segmentStore);
+      lastSnapshotGetters = getters; // a race here is harmless, since either thread's instance is valid
+    }
+    return getters;
+  }
+
+  /**
+   * Evaluator getters that read flags and segments from one {@link DataStoreSnapshot}, so that an evaluation
+   * never sees a flag from one version of the data and a prerequisite or segment from another.
+   */
+  private static final class SnapshotGetters implements Evaluator.Getters {
+    final DataStoreSnapshot snapshot;
+    private final BigSegmentStoreWrapper segmentStore;
+
+    SnapshotGetters(DataStoreSnapshot snapshot, BigSegmentStoreWrapper segmentStore) {
+      this.snapshot = snapshot;
+      this.segmentStore = segmentStore;
+    }
+
+    public DataModel.FeatureFlag getFlag(String key) {
+      return snapshot.getFlag(key);
+    }
+
+    public DataModel.Segment getSegment(String key) {
+      return snapshot.getSegment(key);
+    }
+
+    public BigSegmentStoreWrapper.BigSegmentsQueryResult getBigSegments(String key) {
+      return segmentStore == null ? null : segmentStore.getUserMembership(key);
+    }
+
+    public long getDataVersion() {
+      return snapshot.getVersion();
+    }
   }
 
   private static DataModel.Segment getSegment(ReadOnlyStore store, String key) {
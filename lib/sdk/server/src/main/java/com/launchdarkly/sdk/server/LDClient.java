@@ -17,6 +17,7 @@ import com.launchdarkly.sdk.server.interfaces.BigSegmentStoreStatusProvider;
 import com.launchdarkly.sdk.server.interfaces.BigSegmentsConfiguration;
 import com.launchdarkly.sdk.server.interfaces.DataSourceStatusProvider;
 import com.launchdarkly.sdk.server.interfaces.DataStoreStatusProvider;
+import com.launchdarkly.sdk.server.interfaces.EvaluationStatistics;
 import com.launchdarkly.sdk.server.interfaces.FlagTracker;
 import com.launchdarkly.sdk.server.interfaces.LDClientInterface;
 import com.launchdarkly.sdk.server.subsystems.DataStore;
@@ -32,8 +33,11 @@ import java.io.UnsupportedEncodingException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
@@ -66,6 +70,9 @@ public final class LDClient implements LDClientInterface {
   private final ScheduledExecutorService sharedExecutor;
   private final LDLogger baseLogger;
   private final LDLogger evaluationLogger;
+  private final EvaluatorStatistics evaluatorStatistics = new EvaluatorStatistics();
+  private final RegexMatchCache regexMatchCache;
+  private final AllFlagsStateCache allFlagsStateCache;
 
   private static final int EXCESSIVE_INIT_WAIT_MILLIS = 60000;
 
@@ -206,7 +213,15 @@ public final class LDClient implements LDClientInterface {
       this.dataSystem = FDv1DataSystem.create(baseLogger, config, context, context.getLogging());
     }
 
-    EvaluatorInterface evaluator = new InputValidatingEvaluator(this.dataSystem.getStore(), bigSegmentStoreWrapper, eventProcessor, evaluationLogger);
+    this.regexMatchCache = config.regexMatchCacheSize > 0 ? new RegexMatchCache(config.regexMatchCacheSize) : null;
+    this.allFlagsStateCache = config.allFlagsStateCacheSize > 0 ?
+        new AllFlagsStateCache(config.allFlagsStateCacheSize) : null;
+    if (allFlagsStateCache != null) {
+      // This must be registered before the data system starts, so the cache doesn't miss any updates
+      dataSystem.getFlagChanged().setChangedItemsListener(allFlagsStateCache);
+    }
+    EvaluatorInterface evaluator = new InputValidatingEvaluator(this.dataSystem.getStore(), bigSegmentStoreWrapper, eventProcessor, evaluationLogger,
+        evaluatorStatistics, regexMatchCache, config.allFlagsStatePool, allFlagsStateCache);
 
     // build environment metadata for plugins
     SdkMetadata sdkMetadata;
@@ -394,6 +409,36 @@ public final class LDClient implements LDClientInterface {
         EvaluationOptions.EVENTS_WITH_REASONS).getResult().getAnyType();
   }
 
+  @Override
+  public FlagVariations variations(LDContext context, Collection<String> flagKeys) {
+    return evaluator.variations("LDClient.variations", uniqueFlagKeys(flagKeys), context,
+        EvaluationOptions.EVENTS_WITHOUT_REASONS);
+  }
+
+  @Override
+  public FlagVariations variationsDetail(LDContext context, Collection<String> flagKeys) {
+    return evaluator.variations("LDClient.variationsDetail", uniqueFlagKeys(flagKeys), context,
+        EvaluationOptions.EVENTS_WITH_REASONS);
+  }
+
+  @Override
+  public PreparedContext prepare(LDContext context) {
+    return new PreparedContext(this, context);
+  }
+
+  @Override
+  public FlagHandle flagHandle(String key) {
+    return new FlagHandle(this, dataSystem.getStore(), key);
+  }
+
+  // A flag that is requested twice should only be evaluated once, and only generate one event.
+  static Collection<String> uniqueFlagKeys(Collection<String> flagKeys) {
+    if (flagKeys == null) {
+      return Collections.emptySet();
+    }
+    return flagKeys instanceof Set ? flagKeys : new LinkedHashSet<>(flagKeys);
+  }
+
   @Override
   public MigrationVariation migrationVariation(String key, LDContext context, MigrationStage defaultStage) {
     // The migration evaluator is decorated with logic that will enforce the result is for a recognized migration
@@ -457,11 +502,35 @@ public final class LDClient implements LDClientInterface {
     return bigSegmentStoreStatusProvider;
   }
 
+  @Override
+  public void prefetchBigSegments(Collection<LDContext> contexts) {
+    if (bigSegmentStoreWrapper == null || contexts == null || isOffline()) {
+      return;
+    }
+    Set<String> keys = new LinkedHashSet<>();
+    for (LDContext context: contexts) {
+      if (context == null || !context.isValid()) {
+        continue;
+      }
+      for (int i = 0; i < context.getIndividualContextCount(); i++) {
+        keys.add(context.getIndividualContext(i).getKey());
+      }
+    }
+    if (!keys.isEmpty()) {
+      bigSegmentStoreWrapper.prefetchMemberships(keys);
+    }
+  }
+
   @Override
   public DataStoreStatusProvider getDataStoreStatusProvider() {
     return dataSystem.getDataStoreStatusProvider();
   }
 
+  @Override
+  public EvaluationStatistics getEvaluationStatistics() {
+    return evaluatorStatistics.snapshot(regexMatchCache, allFlagsStateCache);
+  }
+
   @Override
   public LDLogger getLogger() {
     return baseLogger;
@@ -22,6 +22,7 @@ import com.launchdarkly.sdk.server.subsystems.LoggingConfiguration;
 import com.launchdarkly.sdk.server.subsystems.PluginsConfiguration;
 
 import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class exposes advanced configuration options for the {@link LDClient}. Instances of this class must be constructed with a {@link com.launchdarkly.sdk.server.LDConfig.Builder}.
@@ -48,6 +49,9 @@ public final class LDConfig {
   final boolean offline;
   final Duration startWait;
   final int threadPriority;
+  final int regexMatchCacheSize;
+  final ForkJoinPool allFlagsStatePool;
+  final int allFlagsStateCacheSize;
   final WrapperInfo wrapperInfo;
   final DataSystemBuilder dataSystem;
 
@@ -75,6 +79,9 @@ public final class LDConfig {
       .createServiceEndpoints();
     this.startWait = builder.startWait;
     this.threadPriority = builder.threadPriority;
+    this.regexMatchCacheSize = builder.regexMatchCacheSize;
+    this.allFlagsStatePool = builder.allFlagsStatePool;
+    this.allFlagsStateCacheSize = builder.allFlagsStateCacheSize;
     this.wrapperInfo = builder.wrapperBuilder != null ? builder.wrapperBuilder.build() : null;
     this.dataSystem = builder.dataSystem;
   }
@@ -105,6 +112,9 @@ public final class LDConfig {
     private boolean offline = false;
     private Duration startWait = DEFAULT_START_WAIT;
     private int threadPriority = Thread.MIN_PRIORITY;
+    private int regexMatchCacheSize = 0;
+    private ForkJoinPool allFlagsStatePool = null;
+    private int allFlagsStateCacheSize = 0;
     private WrapperInfoBuilder wrapperBuilder = null;
     private DataSystemBuilder dataSystem = null;
 
@@ -138,6 +148,9 @@ public final class LDConfig {
       newBuilder.offline = config.offline;
       newBuilder.startWait = config.startWait;
       newBuilder.threadPriority = config.threadPriority;
+      newBuilder.regexMatchCacheSize = config.regexMatchCacheSize;
+      newBuilder.allFlagsStatePool = config.allFlagsStatePool;
+      newBuilder.allFlagsStateCacheSize = config.allFlagsStateCacheSize;
       newBuilder.wrapperBuilder = config.wrapperInfo != null ?
         ComponentsImpl.WrapperInfoBuilderImpl.fromInfo(config.wrapperInfo) : null;
       newBuilder.dataSystem = config.dataSystem;
@@ -398,6 +411,75 @@ public final class LDConfig {
       return this;
     }
 
+    /**
+     * Enables a cache of the results of "matches" (regular expression) clauses in flag and segment rules.
+     * <p>
+     * If your flags apply expensive regular expressions to attribute values that recur often, such as
+     * user agent strings, this lets the SDK remember whether each value matched each clause instead of
+     * running the regular expressions again. The cache holds at most the given number of results, and
+     * discards the least recently used ones first. Its effectiveness can be measured with
+     * {@link LDClient#getEvaluationStatistics()}.
+     * <p>
+     * The default is zero, meaning that there is no cache.
+     *
+     * @param regexMatchCacheSize the maximum number of cached results; zero or negative to disable the cache
+     * @return the builder
+     * @since 7.16.0
+     */
+    public Builder regexMatchCacheSize(int regexMatchCacheSize) {
+      this.regexMatchCacheSize = Math.max(0, regexMatchCacheSize);
+      return this;
+    }
+
+    /**
+     * Specifies a thread pool that {@link LDClient#allFlagsState(com.launchdarkly.sdk.LDContext, FlagsStateOption...)}
+     * can use to evaluate flags in parallel.
+     * <p>
+     * By default, {@code allFlagsState} evaluates every flag on the calling thread. If there are thousands
+     * of flags, and the application calls it often (for instance, to bootstrap client-side SDKs), setting
+     * a pool here lets it split the flags into batches that are evaluated concurrently. The result is the
+     * same either way, including the order of the flags. Small flag sets are still evaluated on the calling
+     * thread, since the overhead of parallelism would outweigh the benefit.
+     * <p>
+     * The SDK does not shut down the pool when the client is closed. The default is {@code null}, meaning
+     * that flags are always evaluated sequentially.
+     *
+     * @param allFlagsStatePool a {@link ForkJoinPool}, or null to evaluate flags sequentially
+     * @return the builder
+     * @since 7.16.0
+     */
+    public Builder allFlagsStatePool(ForkJoinPool allFlagsStatePool) {
+      this.allFlagsStatePool = allFlagsStatePool;
+      return this;
+    }
+
+    /**
+     * Enables a cache of the results of {@link LDClient#allFlagsState(com.launchdarkly.sdk.LDContext, FlagsStateOption...)}.
+     * <p>
+     * If the application calls {@code allFlagsState} repeatedly for the same contexts, as it might when
+     * bootstrapping client-side SDKs on every page load, this lets the SDK return the previous result instead
+     * of evaluating every flag again. A result is only reused for a context with exactly the same attributes,
+     * and the same options. When flags or segments change, the next call for each cached context re-evaluates
+     * only the flags that were affected by the change. Results for contexts that are in any Big Segment
+     * queries are not cached, since memberships can change without any change to the flags. The cache holds
+     * at most the given number of results, and discards the least recently used ones first. Its
+     * effectiveness can be measured with {@link LDClient#getEvaluationStatistics()}.
+     * <p>
+     * The cache is only used while the SDK is reading flag data from memory, as it does by default. When
+     * it is reading from a persistent data store, which might be updated by another process as with
+     * {@link Components#externalUpdatesOnly()}, every call evaluates all of the flags.
+     * <p>
+     * The default is zero, meaning that there is no cache.
+     *
+     * @param allFlagsStateCacheSize the maximum number of cached results; zero or negative to disable the cache
+     * @return the builder
+     * @since 7.16.0
+     */
+    public Builder allFlagsStateCacheSize(int allFlagsStateCacheSize) {
+      this.allFlagsStateCacheSize = Math.max(0, allFlagsStateCacheSize);
+      return this;
+    }
+
     /**
      * Set the wrapper information.
      * <p>
@@ -7,6 +7,8 @@ import com.launchdarkly.sdk.LDContext;
 import com.launchdarkly.sdk.LDValue;
 import com.launchdarkly.sdk.LDValueType;
 
+import java.util.Collection;
+
 /**
  * This class exists to enforce that migration variation results are stages from the {@link MigrationStage} enum.
  */
@@ -39,4 +41,10 @@ class MigrationStageEnforcingEvaluator implements EvaluatorInterface {
     // this decorator is a pass through for the all flag state case
     return underlyingEvaluator.allFlagsState(context, options);
   }
+
+  @Override
+  public FlagVariations variations(String method, Collection<String> flagKeys, LDContext context, EvaluationOptions options) {
+    // this decorator is a pass through for the multi-flag case, since it is never used for migration flags
+    return underlyingEvaluator.variations(method, flagKeys, context, options);
+  }
 }
@@ -383,8 +383,10 @@ final class PersistentDataStoreWrapper implements DataStore, SettableCache, Disa
       return new KeyedItems<ItemDescriptor>(null);
     }
     ImmutableList.Builder<Map.Entry<String, ItemDescriptor>> b = ImmutableList.builder();
-    for (Map.Entry<String, SerializedItemDescriptor> e: allItems.getItems()) {
-      b.add(new AbstractMap.SimpleEntry<>(e.getKey(), PersistentDataStoreConverter.deserialize(kind, e.getValue())));
+    try (DataModelInterner.Scope scope = DataModelInterner.beginScope()) {
+      for (Map.Entry<String, SerializedItemDescriptor> e: allItems.getItems()) {
+        b.add(new AbstractMap.SimpleEntry<>(e.getKey(), PersistentDataStoreConverter.deserialize(kind, e.getValue())));
+      }
     }
     return new KeyedItems<>(b.build());
   }
@@ -0,0 +1,505 @@
+package com.launchdarkly.sdk.server;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable hash map that can be "modified" by creating a new map that shares almost all of its structure
+ * with the old one. This is what {@link InMemoryDataStore} uses for each kind of data, so that a streaming
+ * patch to one flag doesn't have to copy every other flag's entry: with a regular immutable map, that is a
+ * noticeable cost in time and garbage once there are thousands of flags.
+ * <p>
+ * This is a hash array mapped trie. Each node has a bitmap of which of its 32 slots are in use, and an array
+ * with one element per bit that is set: either an entry, or a child node for the entries whose hash codes
+ * have the same next 5 bits. {@link #with(Object, Object)} and {@link #without(Object)} copy only the nodes
+ * on the path to the entry, each of them at most 32 slots; that is 3 or 4 nodes for a map of 10,000 entries,
+ * and never more than 7. Reads are lock-free since nothing is ever modified after it is constructed, although
+ * a lookup does cost two or three times as much as in a HashMap of the same size. Entries whose keys have the
+ * exact same hash code are kept in a list at the bottom of the trie.
+ * <p>
+ * The entries are {@link java.util.Map.Entry} objects that are stored in the trie, so iterating over
+ * {@link #entrySet()} does not allocate anything but the iterator. The iteration order is by hash code, not
+ * by insertion order. Null keys are not allowed; null values are.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+  private static final int MAX_DEPTH = 8; // enough for 32 bits of hash code plus one level of collision node
+
+  private static final PersistentHashMap<Object, Object> EMPTY =
+      new PersistentHashMap<>(new BitmapNode(0, new Object[0]), 0);
+
+  private final BitmapNode root;
+  private final int size;
+  private EntrySet entrySet;
+
+  private PersistentHashMap(BitmapNode root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Returns an empty map.
+   *
+   * @param <K> the key type
+   * @param <V> the value type
+   * @return an empty map
+   */
+  @SuppressWarnings("unchecked")
+  static <K, V> PersistentHashMap<K, V> empty() {
+    return (PersistentHashMap<K, V>)EMPTY;
+  }
+
+  /**
+   * Returns a map with the same entries as the given map. This is faster, and creates less garbage, than
+   * adding them one at a time with {@link #with(Object, Object)}.
+   *
+   * @param <K> the key type
+   * @param <V> the value type
+   * @param map the entries
+   * @return a new map
+   */
+  static <K, V> PersistentHashMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+    if (map instanceof PersistentHashMap) {
+      @SuppressWarnings("unchecked")
+      PersistentHashMap<K, V> m = (PersistentHashMap<K, V>)map;
+      return m;
+    }
+    if (map.isEmpty()) {
+      return empty();
+    }
+    Leaf[] leaves = new Leaf[map.size()];
+    int n = 0;
+    for (Map.Entry<? extends K, ? extends V> e: map.entrySet()) {
+      leaves[n++] = new Leaf(Objects.requireNonNull(e.getKey()), e.getValue());
+    }
+    Object node = build(leaves, n, 0);
+    BitmapNode root = node instanceof BitmapNode ? (BitmapNode)node :
+      new BitmapNode(bit(hashOf(node), 0), new Object[] { node });
+    return new PersistentHashMap<>(root, n);
+  }
+
+  /**
+   * Returns a map that is the same as this one except that the key has the given value.
+   *
+   * @param key the key
+   * @param value the new value
+   * @return a new map
+   */
+  PersistentHashMap<K, V> with(K key, V value) {
+    Leaf leaf = new Leaf(Objects.requireNonNull(key), value);
+    boolean[] added = new boolean[1];
+    BitmapNode newRoot = (BitmapNode)root.with(leaf, 0, added);
+    return new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+  }
+
+  /**
+   * Returns a map that is the same as this one except that it does not contain the key.
+   *
+   * @param key the key
+   * @return a new map, or this map if it did not contain the key
+   */
+  PersistentHashMap<K, V> without(Object key) {
+    if (key == null) {
+      return this;
+    }
+    int hash = spread(key.hashCode());
+    Object newRoot = root.without(key, hash, 0);
+    if (newRoot == root) {
+      return this;
+    }
+    if (newRoot == null) {
+      return empty();
+    }
+    return new PersistentHashMap<>(newRoot instanceof BitmapNode ? (BitmapNode)newRoot :
+      new BitmapNode(bit(hashOf(newRoot), 0), new Object[] { newRoot }), size - 1);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public V get(Object key) {
+    Leaf leaf = find(key);
+    @SuppressWarnings("unchecked")
+    V value = leaf == null ? null : (V)leaf.value;
+    return value;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return find(key) != null;
+  }
+
+  private Leaf find(Object key) {
+    if (key == null) {
+      return null;
+    }
+    int hash = spread(key.hashCode());
+    BitmapNode node = root;
+    for (int shift = 0; ; shift += BITS) {
+      int bit = bit(hash, shift);
+      if ((node.bitmap & bit) == 0) {
+        return null;
+      }
+      Object o = node.array[node.index(bit)];
+      if (o instanceof Leaf) {
+        Leaf leaf = (Leaf)o;
+        return leaf.hash == hash && (leaf.key == key || leaf.key.equals(key)) ? leaf : null;
+      }
+      if (o instanceof CollisionNode) {
+        return ((CollisionNode)o).find(key, hash);
+      }
+      node = (BitmapNode)o;
+    }
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    EntrySet es = entrySet;
+    if (es == null) {
+      entrySet = es = new EntrySet(); // a race here is harmless
+    }
+    return es;
+  }
+
+  private static int spread(int h) {
+    // The trie uses the hash code 5 bits at a time starting with the lowest, and similar strings like
+    // "flag1" and "flag2" have hash codes that differ mostly in the lowest few bits, so without mixing the
+    // bits, such keys would be clustered in a few branches that are deeper than they should be.
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  private static int hashOf(Object leafOrCollisionNode) {
+    return leafOrCollisionNode instanceof Leaf ? ((Leaf)leafOrCollisionNode).hash :
+      ((CollisionNode)leafOrCollisionNode).hash;
+  }
+
+  // Builds the smallest node that contains the first n leaves, which all have the same lower (shift) bits
+  // of their hash codes and have distinct keys.
+  private static Object build(Leaf[] leaves, int n, int shift) {
+    if (n == 1) {
+      return leaves[0];
+    }
+    boolean sameHash = true;
+    for (int i = 1; i < n && sameHash; i++) {
+      sameHash = leaves[i].hash == leaves[0].hash;
+    }
+    if (sameHash) {
+      Leaf[] list = new Leaf[n];
+      System.arraycopy(leaves, 0, list, 0, n);
+      return new CollisionNode(leaves[0].hash, list);
+    }
+    int[] counts = new int[1 << BITS];
+    int bitmap = 0;
+    for (int i = 0; i < n; i++) {
+      int slot = (leaves[i].hash >>> shift) & MASK;
+      counts[slot]++;
+      bitmap |= 1 << slot;
+    }
+    Object[] array = new Object[Integer.bitCount(bitmap)];
+    Leaf[] group = new Leaf[n];
+    for (int slot = 0, pos = 0; slot < counts.length; slot++) {
+      if (counts[slot] == 0) {
+        continue;
+      }
+      int groupSize = 0;
+      for (int i = 0; i < n; i++) {
+        if (((leaves[i].hash >>> shift) & MASK) == slot) {
+          group[groupSize++] = leaves[i];
+        }
+      }
+      array[pos++] = groupSize == 1 ? group[0] : build(group.clone(), groupSize, shift + BITS);
+    }
+    return new BitmapNode(bitmap, array);
+  }
+
+  // Returns a node containing both a and b, each of which is a leaf or a collision node, and which have
+  // different hash codes.
+  private static Object merge(Object a, Object b, int shift) {
+    int hashA = hashOf(a), hashB = hashOf(b);
+    int bitA = bit(hashA, shift), bitB = bit(hashB, shift);
+    if (bitA == bitB) {
+      return new BitmapNode(bitA, new Object[] { merge(a, b, shift + BITS) });
+    }
+    return new BitmapNode(bitA | bitB, Integer.compareUnsigned(bitA, bitB) < 0 ?
+      new Object[] { a, b } : new Object[] { b, a });
+  }
+
+  private static final class Leaf implements Map.Entry<Object, Object> {
+    final int hash;
+    final Object key;
+    final Object value;
+
+    Leaf(Object key, Object value) {
+      this.hash = spread(key.hashCode());
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public Object getKey() {
+      return key;
+    }
+
+    @Override
+    public Object getValue() {
+      return value;
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+      return key.equals(e.getKey()) && Objects.equals(value, e.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return key.hashCode() ^ Objects.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+      return key + "=" + value;
+    }
+  }
+
+  private static final class BitmapNode {
+    final int bitmap;
+    final Object[] array; // each element is a Leaf, a BitmapNode, or a CollisionNode
+
+    BitmapNode(int bitmap, Object[] array) {
+      this.bitmap = bitmap;
+      this.array = array;
+    }
+
+    int index(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    Object with(Leaf leaf, int shift, boolean[] added) {
+      int bit = bit(leaf.hash, shift);
+      int i = index(bit);
+      if ((bitmap & bit) == 0) {
+        Object[] newArray = new Object[array.length + 1];
+        System.arraycopy(array, 0, newArray, 0, i);
+        newArray[i] = leaf;
+        System.arraycopy(array, i, newArray, i + 1, array.length - i);
+        added[0] = true;
+        return new BitmapNode(bitmap | bit, newArray);
+      }
+      Object current = array[i], replacement;
+      if (current instanceof BitmapNode) {
+        replacement = ((BitmapNode)current).with(leaf, shift + BITS, added);
+      } else if (current instanceof CollisionNode) {
+        CollisionNode c = (CollisionNode)current;
+        replacement = c.hash == leaf.hash ? c.with(leaf, added) : merge(c, leaf, shift + BITS);
+        added[0] |= c.hash != leaf.hash;
+      } else {
+        Leaf old = (Leaf)current;
+        if (old.hash == leaf.hash && old.key.equals(leaf.key)) {
+          replacement = leaf;
+        } else {
+          added[0] = true;
+          replacement = old.hash == leaf.hash ? new CollisionNode(leaf.hash, new Leaf[] { old, leaf }) :
+            merge(old, leaf, shift + BITS);
+        }
+      }
+      Object[] newArray = array.clone();
+      newArray[i] = replacement;
+      return new BitmapNode(bitmap, newArray);
+    }
+
+    // Returns this node if the key was not found; null if the node is now empty; a Leaf or CollisionNode if
+    // that is all that is left in the node, so that the caller can put it in place of the node; otherwise a
+    // new node.
+    Object without(Object key, int hash, int shift) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int i = index(bit);
+      Object current = array[i], replacement;
+      if (current instanceof BitmapNode) {
+        replacement = ((BitmapNode)current).without(key, hash, shift + BITS);
+      } else if (current instanceof CollisionNode) {
+        replacement = ((CollisionNode)current).without(key, hash);
+      } else {
+        Leaf old = (Leaf)current;
+        replacement = old.hash == hash && old.key.equals(key) ? null : old;
+      }
+      if (replacement == current) {
+        return this;
+      }
+      if (replacement == null) {
+        if (array.length == 1) {
+          return null;
+        }
+        if (array.length == 2 && !(array[1 - i] instanceof BitmapNode)) {
+          return array[1 - i];
+        }
+        Object[] newArray = new Object[array.length - 1];
+        System.arraycopy(array, 0, newArray, 0, i);
+        System.arraycopy(array, i + 1, newArray, i, array.length - i - 1);
+        return new BitmapNode(bitmap & ~bit, newArray);
+      }
+      if (array.length == 1 && !(replacement instanceof BitmapNode)) {
+        return replacement;
+      }
+      Object[] newArray = array.clone();
+      newArray[i] = replacement;
+      return new BitmapNode(bitmap, newArray);
+    }
+  }
+
+  private static final class CollisionNode {
+    final int hash;
+    final Leaf[] leaves;
+
+    CollisionNode(int hash, Leaf[] leaves) {
+      this.hash = hash;
+      this.leaves = leaves;
+    }
+
+    Leaf find(Object key, int hash) {
+      if (hash == this.hash) {
+        for (Leaf leaf: leaves) {
+          if (leaf.key.equals(key)) {
+            return leaf;
+          }
+        }
+      }
+      return null;
+    }
+
+    CollisionNode with(Leaf leaf, boolean[] added) {
+      for (int i = 0; i < leaves.length; i++) {
+        if (leaves[i].key.equals(leaf.key)) {
+          Leaf[] newLeaves = leaves.clone();
+          newLeaves[i] = leaf;
+          return new CollisionNode(hash, newLeaves);
+        }
+      }
+      Leaf[] newLeaves = new Leaf[leaves.length + 1];
+      System.arraycopy(leaves, 0, newLeaves, 0, leaves.length);
+      newLeaves[leaves.length] = leaf;
+      added[0] = true;
+      return new CollisionNode(hash, newLeaves);
+    }
+
+    Object without(Object key, int hash) {
+      if (hash != this.hash) {
+        return this;
+      }
+      for (int i = 0; i < leaves.length; i++) {
+        if (leaves[i].key.equals(key)) {
+          if (leaves.length == 2) {
+            return leaves[1 - i];
+          }
+          Leaf[] newLeaves = new Leaf[leaves.length - 1];
+          System.arraycopy(leaves, 0, newLeaves, 0, i);
+          System.arraycopy(leaves, i + 1, newLeaves, i, leaves.length - i - 1);
+          return new CollisionNode(hash, newLeaves);
+        }
+      }
+      return this;
+    }
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Leaf leaf = find(((Map.Entry<?, ?>)o).getKey());
+      return leaf != null && leaf.equals(o);
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+      return new EntryIterator<>(root);
+    }
+  }
+
+  private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+    private final Object[][] arrays = new Object[MAX_DEPTH][];
+    private final int[] positions = new int[MAX_DEPTH];
+    private int depth = 0;
+    private Leaf next;
+
+    EntryIterator(BitmapNode root) {
+      arrays[0] = root.array;
+      next = advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Map.Entry<K, V> next() {
+      Leaf leaf = next;
+      if (leaf == null) {
+        throw new NoSuchElementException();
+      }
+      next = advance();
+      @SuppressWarnings("unchecked")
+      Map.Entry<K, V> e = (Map.Entry<K, V>)(Map.Entry<?, ?>)leaf;
+      return e;
+    }
+
+    private Leaf advance() {
+      while (depth >= 0) {
+        Object[] array = arrays[depth];
+        if (positions[depth] == array.length) {
+          arrays[depth] = null;
+          depth--;
+          continue;
+        }
+        Object o = array[positions[depth]++];
+        if (o instanceof Leaf) {
+          return (Leaf)o;
+        }
+        depth++;
+        arrays[depth] = o instanceof BitmapNode ? ((BitmapNode)o).array : ((CollisionNode)o).leaves;
+        positions[depth] = 0;
+      }
+      return null;
+    }
+  }
+}
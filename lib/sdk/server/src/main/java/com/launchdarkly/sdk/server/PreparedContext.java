@@ -0,0 +1,293 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.AttributeRef;
+import com.launchdarkly.sdk.ContextKind;
+import com.launchdarkly.sdk.EvaluationDetail;
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.LDValueType;
+import com.launchdarkly.sdk.server.interfaces.LDClientInterface;
+
+import java.util.Collection;
+
+/**
+ * An evaluation context that has been bound to an {@link LDClient}, so that it can be used for many flag
+ * evaluations more efficiently than a plain {@link LDContext}. Obtain one with
+ * {@link LDClientInterface#prepare(LDContext)}.
+ * <p>
+ * Preparing a context resolves the values that evaluations use most often-- each
+ * individual context's kind, key, and name-- ahead of time. Each evaluation refers to the context's
+ * attributes many times, in targets, rules, rollouts, and segments, and would otherwise have to look up the
+ * individual context and convert the attribute to an {@link LDValue} every time. This is most useful if an
+ * application evaluates many flags for the same context, for instance in handling one request.
+ * <p>
+ * The evaluation methods behave exactly like the {@link LDClient} methods of the same names: they generate
+ * analytics events and invoke any configured hooks, and the flag data is read at the time of each call. A
+ * {@code PreparedContext} is immutable and can be used from any thread.
+ *
+ * @since 7.16.0
+ */
+public final class PreparedContext {
+  private final LDClient client;
+  private final LDContext context;
+  private final Individual[] individualContexts;
+  private final LDValue[] kindValues;
+  private final EvaluationOptions eventsWithoutReasons;
+  private final EvaluationOptions eventsWithReasons;
+
+  PreparedContext(LDClient client, LDContext context) {
+    this.client = client;
+    this.context = context;
+    // If the context is invalid, evaluations will fail anyway, so don't bother with the index
+    int nContexts = context == null || !context.isValid() ? 0 : context.getIndividualContextCount();
+    this.individualContexts = new Individual[nContexts];
+    this.kindValues = new LDValue[nContexts];
+    for (int i = 0; i < nContexts; i++) {
+      individualContexts[i] = new Individual(context.getIndividualContext(i));
+      kindValues[i] = individualContexts[i].kindValue;
+    }
+    this.eventsWithoutReasons = EvaluationOptions.EVENTS_WITHOUT_REASONS.withPreparedContext(this);
+    this.eventsWithReasons = EvaluationOptions.EVENTS_WITH_REASONS.withPreparedContext(this);
+  }
+
+  /**
+   * Returns the context that this was prepared from.
+   *
+   * @return the evaluation context
+   */
+  public LDContext getContext() {
+    return context;
+  }
+
+  /**
+   * Same as {@link LDClientInterface#boolVariation(String, LDContext, boolean)}, for this context.
+   *
+   * @param key          the unique key for the feature flag
+   * @param defaultValue the default value of the flag
+   * @return the variation for the given context, or {@code defaultValue} if the flag is disabled or an error occurs
+   */
+  public boolean boolVariation(String key, boolean defaultValue) {
+    return evaluate("PreparedContext.boolVariation", key, LDValue.of(defaultValue), LDValueType.BOOLEAN,
+        eventsWithoutReasons).getValue().booleanValue();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#intVariation(String, LDContext, int)}, for this context.
+   *
+   * @param key          the unique key for the feature flag
+   * @param defaultValue the default value of the flag
+   * @return the variation for the given context, or {@code defaultValue} if the flag is disabled or an error occurs
+   */
+  public int intVariation(String key, int defaultValue) {
+    return evaluate("PreparedContext.intVariation", key, LDValue.of(defaultValue), LDValueType.NUMBER,
+        eventsWithoutReasons).getValue().intValue();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#doubleVariation(String, LDContext, double)}, for this context.
+   *
+   * @param key          the unique key for the feature flag
+   * @param defaultValue the default value of the flag
+   * @return the variation for the given context, or {@code defaultValue} if the flag is disabled or an error occurs
+   */
+  public double doubleVariation(String key, double defaultValue) {
+    return evaluate("PreparedContext.doubleVariation", key, LDValue.of(defaultValue), LDValueType.NUMBER,
+        eventsWithoutReasons).getValue().doubleValue();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#stringVariation(String, LDContext, String)}, for this context.
+   *
+   * @param key          the unique key for the feature flag
+   * @param defaultValue the default value of the flag
+   * @return the variation for the given context, or {@code defaultValue} if the flag is disabled or an error occurs
+   */
+  public String stringVariation(String key, String defaultValue) {
+    return evaluate("PreparedContext.stringVariation", key, LDValue.of(defaultValue), LDValueType.STRING,
+        eventsWithoutReasons).getValue().stringValue();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#jsonValueVariation(String, LDContext, LDValue)}, for this context.
+   *
+   * @param key          the unique key for the feature flag
+   * @param defaultValue the default value of the flag
+   * @return the variation for the given context, or {@code defaultValue} if the flag is disabled or an error occurs;
+   *   will never be a null reference, but may be {@link LDValue#ofNull()}
+   */
+  public LDValue jsonValueVariation(String key, LDValue defaultValue) {
+    return evaluate("PreparedContext.jsonValueVariation", key, LDValue.normalize(defaultValue), null,
+        eventsWithoutReasons).getValue();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#boolVariationDetail(String, LDContext, boolean)}, for this context.
+   *
+   * @param key          the unique key for the feature flag
+   * @param defaultValue the default value of the flag
+   * @return an {@link EvaluationDetail} object
+   */
+  public EvaluationDetail<Boolean> boolVariationDetail(String key, boolean defaultValue) {
+    return evaluate("PreparedContext.boolVariationDetail", key, LDValue.of(defaultValue), LDValueType.BOOLEAN,
+        eventsWithReasons).getAsBoolean();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#intVariationDetail(String, LDContext, int)}, for this context.
+   *
+   * @param key          the unique key for the feature flag
+   * @param defaultValue the default value of the flag
+   * @return an {@link EvaluationDetail} object
+   */
+  public EvaluationDetail<Integer> intVariationDetail(String key, int defaultValue) {
+    return evaluate("PreparedContext.intVariationDetail", key, LDValue.of(defaultValue), LDValueType.NUMBER,
+        eventsWithReasons).getAsInteger();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#doubleVariationDetail(String, LDContext, double)}, for this context.
+   *
+   * @param key          the unique key for the feature flag
+   * @param defaultValue the default value of the flag
+   * @return an {@link EvaluationDetail} object
+   */
+  public EvaluationDetail<Double> doubleVariationDetail(String key, double defaultValue) {
+    return evaluate("PreparedContext.doubleVariationDetail", key, LDValue.of(defaultValue), LDValueType.NUMBER,
+        eventsWithReasons).getAsDouble();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#stringVariationDetail(String, LDContext, String)}, for this context.
+   *
+   * @param key          the unique key for the feature flag
+   * @param defaultValue the default value of the flag
+   * @return an {@link EvaluationDetail} object
+   */
+  public EvaluationDetail<String> stringVariationDetail(String key, String defaultValue) {
+    return evaluate("PreparedContext.stringVariationDetail", key, LDValue.of(defaultValue), LDValueType.STRING,
+        eventsWithReasons).getAsString();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#jsonValueVariationDetail(String, LDContext, LDValue)}, for this context.
+   *
+   * @param key          the unique key for the feature flag
+   * @param defaultValue the default value of the flag
+   * @return an {@link EvaluationDetail} object
+   */
+  public EvaluationDetail<LDValue> jsonValueVariationDetail(String key, LDValue defaultValue) {
+    return evaluate("PreparedContext.jsonValueVariationDetail", key, LDValue.normalize(defaultValue), null,
+        eventsWithReasons).getAnyType();
+  }
+
+  /**
+   * Same as {@link LDClientInterface#variations(LDContext, Collection)}, for this context.
+   *
+   * @param flagKeys the unique keys of the feature flags
+   * @return a {@link FlagVariations} object containing a result for each of the flag keys
+   */
+  public FlagVariations variations(Collection<String> flagKeys) {
+    return client.evaluator.variations("PreparedContext.variations", LDClient.uniqueFlagKeys(flagKeys), context,
+        eventsWithoutReasons);
+  }
+
+  /**
+   * Same as {@link LDClientInterface#variationsDetail(LDContext, Collection)}, for this context.
+   *
+   * @param flagKeys the unique keys of the feature flags
+   * @return a {@link FlagVariations} object containing a result for each of the flag keys
+   */
+  public FlagVariations variationsDetail(Collection<String> flagKeys) {
+    return client.evaluator.variations("PreparedContext.variationsDetail", LDClient.uniqueFlagKeys(flagKeys), context,
+        eventsWithReasons);
+  }
+
+  @Override
+  public String toString() {
+    return "PreparedContext(" + context + ")";
+  }
+
+  private EvalResult evaluate(String method, String key, LDValue defaultValue, LDValueType requireType,
+      EvaluationOptions options) {
+    return client.evaluator.evalAndFlag(method, key, context, defaultValue, requireType, options).getResult();
+  }
+
+  private Individual find(ContextKind kind) {
+    if (kind == null) {
+      kind = ContextKind.DEFAULT;
+    }
+    Individual[] cs = individualContexts;
+    for (int i = 0; i < cs.length; i++) {
+      if (cs[i].kind.equals(kind)) {
+        return cs[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Same as {@link LDContext#getIndividualContext(ContextKind)}, but using the index.
+   */
+  LDContext getIndividualContext(ContextKind kind) {
+    Individual c = find(kind);
+    return c == null ? null : c.context;
+  }
+
+  /**
+   * Returns the key of the individual context for the specified kind, or null if there is no such context.
+   */
+  String getKey(ContextKind kind) {
+    Individual c = find(kind);
+    return c == null ? null : c.context.getKey();
+  }
+
+  /**
+   * Same as calling {@link LDContext#getValue(AttributeRef)} on the individual context for the specified
+   * kind, except that it returns {@link LDValue#ofNull()} if there is no such context.
+   */
+  LDValue getValue(ContextKind kind, AttributeRef attr) {
+    Individual c = find(kind);
+    if (c == null) {
+      return LDValue.ofNull();
+    }
+    if (attr != null && attr.isValid() && attr.getDepth() == 1) {
+      // LDContext.getValue creates a new LDValue for each of these every time
+      switch (attr.getComponent(0)) {
+      case "key":
+        return c.keyValue;
+      case "kind":
+        return c.kindValue;
+      case "name":
+        return c.nameValue;
+      default:
+        break;
+      }
+    }
+    return c.context.getValue(attr);
+  }
+
+  /**
+   * Returns the kind of each individual context as a string value, for matching clauses whose attribute is
+   * "kind". The caller must not modify the array.
+   */
+  LDValue[] getKindValues() {
+    return kindValues;
+  }
+
+  private static final class Individual {
+    final LDContext context;
+    final ContextKind kind;
+    // the built-in string attributes, which are the ones most often used in targets, rules, and rollouts
+    final LDValue keyValue;
+    final LDValue kindValue;
+    final LDValue nameValue;
+
+    Individual(LDContext context) {
+      this.context = context;
+      this.kind = context.getKind();
+      this.keyValue = LDValue.of(context.getKey());
+      this.kindValue = LDValue.of(kind.toString());
+      this.nameValue = LDValue.of(context.getName());
+    }
+  }
+}
@@ -1,10 +1,15 @@
 package com.launchdarkly.sdk.server;
 
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
 import com.launchdarkly.sdk.server.subsystems.DataStore;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.DataKind;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.ItemDescriptor;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.KeyedItems;
 
+import java.util.Map;
+
+import static com.launchdarkly.sdk.server.DataModel.FEATURES;
+
 /**
  * Internal facade that wraps a DataStore to provide read-only access.
  * <p>
@@ -12,9 +17,11 @@ import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.KeyedItems;
  */
 final class ReadonlyStoreFacade implements ReadOnlyStore {
   private final DataStore store;
+  private final DataStoreSnapshotProvider snapshotProvider; // null if the store doesn't provide snapshots
 
   ReadonlyStoreFacade(DataStore store) {
     this.store = store;
+    this.snapshotProvider = store instanceof DataStoreSnapshotProvider ? (DataStoreSnapshotProvider)store : null;
   }
 
   @Override
@@ -27,6 +34,27 @@ final class ReadonlyStoreFacade implements ReadOnlyStore {
     return store.getAll(kind);
   }
 
+  @Override
+  public FeatureFlag getFlag(String key) {
+    DataStoreSnapshot snapshot = getSnapshot();
+    if (snapshot != null) {
+      return snapshot.getFlag(key);
+    }
+    ItemDescriptor item = store.get(FEATURES, key);
+    return item == null ? null : (FeatureFlag)item.getItem();
+  }
+
+  @Override
+  public Map<String, FeatureFlag> getFlagIndex() {
+    DataStoreSnapshot snapshot = getSnapshot();
+    return snapshot == null ? null : snapshot.getFlagIndex();
+  }
+
+  @Override
+  public DataStoreSnapshot getSnapshot() {
+    return snapshotProvider == null ? null : snapshotProvider.getSnapshot();
+  }
+
   @Override
   public boolean isInitialized() {
     return store.isInitialized();
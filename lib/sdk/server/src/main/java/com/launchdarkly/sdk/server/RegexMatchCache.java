@@ -0,0 +1,79 @@
+package com.launchdarkly.sdk.server;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.EvaluatorOperators.ValueMatcher;
+import com.launchdarkly.sdk.server.interfaces.EvaluationStatistics;
+
+/**
+ * A bounded, least-recently-used cache of the results of "matches" clauses, keyed by the compiled clause
+ * and the context value. This is only used if {@link LDConfig.Builder#regexMatchCacheSize(int)} is set; it
+ * helps when the same expensive regexes are applied to a small set of recurring strings, such as user agents.
+ * <p>
+ * The key uses the identity of the clause's {@link ValueMatcher}, which is created once for each clause when
+ * the flag or segment is deserialized, so a new version of the flag never sees results from the old one.
+ * Entries for old versions are simply evicted in time.
+ */
+final class RegexMatchCache {
+  private final Cache<Key, Boolean> cache;
+
+  RegexMatchCache(int maximumSize) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Same as {@code matcher.matchAny(contextValue)}, but uses a cached result if possible.
+   *
+   * @param matcher a matcher for which {@link ValueMatcher#isCacheable()} is true
+   * @param contextValue a string value
+   * @return true if the value matches
+   */
+  boolean matchAny(ValueMatcher matcher, LDValue contextValue) {
+    Key key = new Key(matcher, contextValue.stringValue());
+    Boolean cached = cache.getIfPresent(key);
+    if (cached != null) {
+      return cached.booleanValue();
+    }
+    boolean result = matcher.matchAny(contextValue);
+    cache.put(key, result);
+    return result;
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  EvaluationStatistics.CacheStatistics getStatistics() {
+    CacheStats stats = cache.stats();
+    return new EvaluationStatistics.CacheStatistics(stats.hitCount(), stats.missCount());
+  }
+
+  private static final class Key {
+    private final ValueMatcher matcher;
+    private final String value;
+
+    Key(ValueMatcher matcher, String value) {
+      this.matcher = matcher;
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key o = (Key)other;
+      return matcher == o.matcher && value.equals(o.value);
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(matcher) * 31 + value.hashCode();
+    }
+  }
+}
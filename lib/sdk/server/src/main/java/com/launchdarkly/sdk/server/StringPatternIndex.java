@@ -0,0 +1,190 @@
+package com.launchdarkly.sdk.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A character trie over a set of strings, used to test a context value against all of the values of a
+ * startsWith, endsWith, or contains clause in one pass, rather than once per clause value.
+ * <ul>
+ * <li> {@link #forPrefixes(List)} builds a trie of the strings, so a prefix match is a walk from the start
+ * of the context value. </li>
+ * <li> {@link #forSuffixes(List)} builds a trie of the reversed strings, so a suffix match is a walk from
+ * the end of the context value. </li>
+ * <li> {@link #forSubstrings(List)} adds Aho-Corasick failure links, so a substring match is a single scan
+ * of the context value. </li>
+ * </ul>
+ * Characters are compared as UTF-16 code units, which gives the same results as String.startsWith,
+ * endsWith, and contains. The trie is stored in arrays, with each node's outgoing edges sorted by character
+ * so they can be binary-searched; matching does not allocate.
+ * <p>
+ * Instances are immutable once built.
+ */
+final class StringPatternIndex {
+  private static final int ROOT = 0;
+
+  private final char[][] edgeChars;
+  private final int[][] edgeTargets;
+  private final boolean[] accepting; // for forSubstrings, also true if any suffix of the node's path is a pattern
+  private final int[] failureLinks; // null unless this is a forSubstrings index
+  private final boolean reversed;
+
+  private StringPatternIndex(char[][] edgeChars, int[][] edgeTargets, boolean[] accepting, int[] failureLinks,
+      boolean reversed) {
+    this.edgeChars = edgeChars;
+    this.edgeTargets = edgeTargets;
+    this.accepting = accepting;
+    this.failureLinks = failureLinks;
+    this.reversed = reversed;
+  }
+
+  static StringPatternIndex forPrefixes(List<String> patterns) {
+    return new Builder(patterns, false).build(false);
+  }
+
+  static StringPatternIndex forSuffixes(List<String> patterns) {
+    return new Builder(patterns, true).build(false);
+  }
+
+  static StringPatternIndex forSubstrings(List<String> patterns) {
+    return new Builder(patterns, false).build(true);
+  }
+
+  /**
+   * Returns true if any of the patterns is a prefix of the string (for {@link #forPrefixes(List)}), a suffix
+   * of it (for {@link #forSuffixes(List)}), or a substring of it (for {@link #forSubstrings(List)}).
+   */
+  boolean matches(String s) {
+    if (accepting[ROOT]) {
+      return true; // an empty pattern matches anything
+    }
+    return failureLinks == null ? walk(s) : scan(s);
+  }
+
+  // Prefix or suffix match: follow edges from the root until we reach a pattern or run out of edges.
+  private boolean walk(String s) {
+    int node = ROOT;
+    int n = s.length();
+    for (int i = 0; i < n; i++) {
+      node = child(node, s.charAt(reversed ? n - 1 - i : i));
+      if (node < 0) {
+        return false;
+      }
+      if (accepting[node]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Substring match: standard Aho-Corasick scan, where a missing edge falls back along the failure links.
+  private boolean scan(String s) {
+    int node = ROOT;
+    int n = s.length();
+    for (int i = 0; i < n; i++) {
+      char c = s.charAt(i);
+      int next = child(node, c);
+      while (next < 0 && node != ROOT) {
+        node = failureLinks[node];
+        next = child(node, c);
+      }
+      node = next < 0 ? ROOT : next;
+      if (accepting[node]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int child(int node, char c) {
+    int i = Arrays.binarySearch(edgeChars[node], c);
+    return i < 0 ? -1 : edgeTargets[node][i];
+  }
+
+  private static final class Builder {
+    private final List<TreeMap<Character, Integer>> edges = new ArrayList<>();
+    private final List<Boolean> terminal = new ArrayList<>();
+    private final boolean reversed;
+
+    Builder(List<String> patterns, boolean reversed) {
+      this.reversed = reversed;
+      addNode();
+      for (String p: patterns) {
+        add(p);
+      }
+    }
+
+    private int addNode() {
+      edges.add(new TreeMap<>());
+      terminal.add(false);
+      return edges.size() - 1;
+    }
+
+    private void add(String pattern) {
+      int node = ROOT;
+      int n = pattern.length();
+      for (int i = 0; i < n; i++) {
+        char c = pattern.charAt(reversed ? n - 1 - i : i);
+        Integer next = edges.get(node).get(c);
+        if (next == null) {
+          next = addNode();
+          edges.get(node).put(c, next);
+        }
+        node = next;
+      }
+      terminal.set(node, true);
+    }
+
+    StringPatternIndex build(boolean withFailureLinks) {
+      int count = edges.size();
+      char[][] edgeChars = new char[count][];
+      int[][] edgeTargets = new int[count][];
+      boolean[] accepting = new boolean[count];
+      for (int node = 0; node < count; node++) {
+        TreeMap<Character, Integer> e = edges.get(node);
+        edgeChars[node] = new char[e.size()];
+        edgeTargets[node] = new int[e.size()];
+        int i = 0;
+        for (Map.Entry<Character, Integer> entry: e.entrySet()) { // TreeMap iterates in sorted order
+          edgeChars[node][i] = entry.getKey();
+          edgeTargets[node][i] = entry.getValue();
+          i++;
+        }
+        accepting[node] = terminal.get(node);
+      }
+      int[] failureLinks = null;
+      if (withFailureLinks) {
+        failureLinks = new int[count];
+        StringPatternIndex partial = new StringPatternIndex(edgeChars, edgeTargets, accepting, null, false);
+        // Breadth-first, so that a node's failure link target has always been finished before the node.
+        int[] queue = new int[count];
+        int head = 0, tail = 0;
+        queue[tail++] = ROOT;
+        while (head < tail) {
+          int node = queue[head++];
+          for (int i = 0; i < edgeChars[node].length; i++) {
+            char c = edgeChars[node][i];
+            int target = edgeTargets[node][i];
+            int link = ROOT;
+            if (node != ROOT) {
+              int f = failureLinks[node];
+              int next = partial.child(f, c);
+              while (next < 0 && f != ROOT) {
+                f = failureLinks[f];
+                next = partial.child(f, c);
+              }
+              link = next < 0 ? ROOT : next;
+            }
+            failureLinks[target] = link;
+            accepting[target] |= accepting[link];
+            queue[tail++] = target;
+          }
+        }
+      }
+      return new StringPatternIndex(edgeChars, edgeTargets, accepting, failureLinks, reversed);
+    }
+  }
+}
@@ -25,7 +25,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * <p>
  * This class is package-private and should not be used by application code.
  */
-final class WriteThroughStore implements DataStore, TransactionalDataStore {
+final class WriteThroughStore implements DataStore, TransactionalDataStore, DataStoreSnapshotProvider {
   private final DataStore memoryStore;
   private final TransactionalDataStore txMemoryStore;
   private final DataStore persistentStore;
@@ -74,6 +74,13 @@ final class WriteThroughStore implements DataStore, TransactionalDataStore {
     return activeReadStore.getAll(kind);
   }
 
+  @Override
+  public DataStoreSnapshot getSnapshot() {
+    // while we're still reading from the persistent store, there are no snapshots
+    DataStore store = activeReadStore;
+    return store instanceof DataStoreSnapshotProvider ? ((DataStoreSnapshotProvider)store).getSnapshot() : null;
+  }
+
   @Override
   public boolean upsert(DataKind kind, String key, ItemDescriptor item) {
     boolean result = memoryStore.upsert(kind, key, item);
@@ -139,6 +146,14 @@ final class WriteThroughStore implements DataStore, TransactionalDataStore {
     }
   }
 
+  /**
+   * Returns true if reads are currently served by the in-memory store, so that {@link #get} returns the same
+   * item instances that were stored.
+   */
+  boolean isReadingFromMemory() {
+    return activeReadStore == memoryStore;
+  }
+
   /**
    * Switches the active read store from persistent to memory store once an initializing payload is received.
    * This transition happens once, and then subsequently we only use the memory store.
@@ -54,6 +54,8 @@ public final class BigSegmentsConfigurationBuilder implements ComponentConfigure
   private final ComponentConfigurer<BigSegmentStore> storeConfigurer;
   private int userCacheSize = DEFAULT_USER_CACHE_SIZE;
   private Duration userCacheTime = DEFAULT_USER_CACHE_TIME;
+  private Duration notMemberCacheTime = null;
+  private double userCacheRefreshAheadFactor = 0;
   private Duration statusPollInterval = DEFAULT_STATUS_POLL_INTERVAL;
   private Duration staleAfter = DEFAULT_STALE_AFTER;
 
@@ -110,6 +112,50 @@ public final class BigSegmentsConfigurationBuilder implements ComponentConfigure
     return this;
   }
 
+  /**
+   * Sets the maximum length of time that the SDK will cache the Big Segment state for a user who is
+   * not included in or excluded from any Big Segment.
+   * <p>
+   * In many applications, most users are not in any Big Segment, and a change that adds one of them
+   * to a segment is less urgent than a change to an existing member. Setting this to a longer time
+   * than {@link #userCacheTime(Duration)} reduces the number of database queries for those users.
+   * If it is not set, the same time is used for all users.
+   *
+   * @param notMemberCacheTime the cache TTL for users who are not in any Big Segment (a null or
+   *                           negative value means to use the same value as {@code userCacheTime})
+   * @return the builder
+   * @since 7.16.0
+   */
+  public BigSegmentsConfigurationBuilder notMemberCacheTime(Duration notMemberCacheTime) {
+    this.notMemberCacheTime = notMemberCacheTime != null && notMemberCacheTime.compareTo(Duration.ZERO) >= 0
+        ? notMemberCacheTime : null;
+    return this;
+  }
+
+  /**
+   * Enables refreshing cached Big Segment state in the background before it expires.
+   * <p>
+   * Normally, when the cached state for a user expires, the next evaluation that needs it has to wait
+   * while the SDK queries the database. If this is set to a value between 0 and 1, then when an
+   * evaluation finds cached state that is within that fraction of its cache time of expiring, it uses
+   * the cached state, and the SDK queries the database for new state on a worker thread. For instance,
+   * with a {@link #userCacheTime(Duration)} of 5 seconds and a factor of 0.2, a user whose state is
+   * read between 4 and 5 seconds after it was loaded will have it reloaded in the background; a user
+   * whose state is not read in that time will not.
+   * <p>
+   * The default is 0, which disables this behavior.
+   *
+   * @param userCacheRefreshAheadFactor the fraction of the cache time, greater than 0 and less than 1
+   *                                    (any other value disables refresh-ahead)
+   * @return the builder
+   * @since 7.16.0
+   */
+  public BigSegmentsConfigurationBuilder userCacheRefreshAheadFactor(double userCacheRefreshAheadFactor) {
+    this.userCacheRefreshAheadFactor = userCacheRefreshAheadFactor > 0 && userCacheRefreshAheadFactor < 1
+        ? userCacheRefreshAheadFactor : 0;
+    return this;
+  }
+
   /**
    * Sets the interval at which the SDK will poll the Big Segment store to make sure it is available
    * and to determine how long ago it was updated.
@@ -159,6 +205,8 @@ public final class BigSegmentsConfigurationBuilder implements ComponentConfigure
         store,
         userCacheSize,
         userCacheTime,
+        notMemberCacheTime == null ? userCacheTime : notMemberCacheTime,
+        userCacheRefreshAheadFactor,
         statusPollInterval,
         staleAfter);
   }
@@ -45,6 +45,16 @@ public interface BigSegmentStoreStatusProvider {
    */
   void removeStatusListener(StatusListener listener);
 
+  /**
+   * Returns statistics for the SDK's cache of Big Segment state for users.
+   * <p>
+   * See {@link BigSegmentsConfigurationBuilder#userCacheSize(int)} for more about this cache.
+   *
+   * @return a {@link CacheStats} instance, or null if Big Segments are not configured
+   * @since 7.16.0
+   */
+  CacheStats getCacheStats();
+
   /**
    * Information about the status of a Big Segment store, provided by
    * {@link BigSegmentStoreStatusProvider}
@@ -121,6 +131,129 @@ public interface BigSegmentStoreStatusProvider {
     }
   }
 
+  /**
+   * A snapshot of statistics for the SDK's cache of Big Segment state for users, provided by
+   * {@link BigSegmentStoreStatusProvider#getCacheStats()}. The statistics are cumulative across the
+   * lifetime of the SDK client.
+   *
+   * @since 7.16.0
+   */
+  public static final class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadExceptionCount;
+    private final long totalLoadTime;
+    private final long refreshCount;
+    private final long evictionCount;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param hitCount number of evaluations that used cached state
+     * @param missCount number of evaluations that did not find unexpired cached state
+     * @param loadSuccessCount number of times that state was loaded from the store without an exception
+     * @param loadExceptionCount number of times that loading state from the store caused an exception
+     * @param totalLoadTime number of nanoseconds spent loading state from the store
+     * @param refreshCount number of times that cached state was reloaded in the background
+     * @param evictionCount number of cache entries that have been evicted
+     */
+    public CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadExceptionCount,
+        long totalLoadTime, long refreshCount, long evictionCount) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.loadSuccessCount = loadSuccessCount;
+      this.loadExceptionCount = loadExceptionCount;
+      this.totalLoadTime = totalLoadTime;
+      this.refreshCount = refreshCount;
+      this.evictionCount = evictionCount;
+    }
+
+    /**
+     * The number of evaluations that used cached state instead of querying the store.
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    /**
+     * The number of evaluations that did not find unexpired cached state and queried the store.
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+      return missCount;
+    }
+
+    /**
+     * The number of times that the SDK loaded a user's state from the store (or found that it did not
+     * exist in the store), including prefetches and background refreshes.
+     * @return the number of successful loads
+     */
+    public long getLoadSuccessCount() {
+      return loadSuccessCount;
+    }
+
+    /**
+     * The number of times that an error occurred while querying the store.
+     * @return the number of failed loads
+     */
+    public long getLoadExceptionCount() {
+      return loadExceptionCount;
+    }
+
+    /**
+     * The total number of nanoseconds that the SDK has spent loading state from the store. Dividing this
+     * by the sum of {@link #getLoadSuccessCount()} and {@link #getLoadExceptionCount()} gives the average
+     * load latency.
+     * @return total time spent for all loads
+     */
+    public long getTotalLoadTime() {
+      return totalLoadTime;
+    }
+
+    /**
+     * The number of times that cached state was reloaded in the background before it expired; see
+     * {@link BigSegmentsConfigurationBuilder#userCacheRefreshAheadFactor(double)}.
+     * @return the number of refreshes
+     */
+    public long getRefreshCount() {
+      return refreshCount;
+    }
+
+    /**
+     * The number of times cache entries have been evicted.
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+      return evictionCount;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof CacheStats)) {
+        return false;
+      }
+      CacheStats o = (CacheStats)other;
+      return hitCount == o.hitCount && missCount == o.missCount && loadSuccessCount == o.loadSuccessCount &&
+          loadExceptionCount == o.loadExceptionCount && totalLoadTime == o.totalLoadTime &&
+          refreshCount == o.refreshCount && evictionCount == o.evictionCount;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(hitCount, missCount, loadSuccessCount, loadExceptionCount, totalLoadTime, refreshCount,
+          evictionCount);
+    }
+
+    @Override
+    public String toString() {
+      return "{hit=" + hitCount + ", miss=" + missCount + ", loadSuccess=" + loadSuccessCount +
+          ", loadException=" + loadExceptionCount + ", totalLoadTime=" + totalLoadTime +
+          ", refresh=" + refreshCount + ", evictionCount=" + evictionCount + "}";
+    }
+  }
+
   /**
    * Interface for receiving Big Segment status change notifications.
    */
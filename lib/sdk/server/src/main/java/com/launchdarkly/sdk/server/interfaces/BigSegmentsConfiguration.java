@@ -21,6 +21,8 @@ public final class BigSegmentsConfiguration {
   private final BigSegmentStore bigSegmentStore;
   private final int userCacheSize;
   private final Duration userCacheTime;
+  private final Duration notMemberCacheTime;
+  private final double userCacheRefreshAheadFactor;
   private final Duration statusPollInterval;
   private final Duration staleAfter;
 
@@ -40,9 +42,35 @@ public final class BigSegmentsConfiguration {
                                   Duration userCacheTime,
                                   Duration statusPollInterval,
                                   Duration staleAfter) {
+    this(bigSegmentStore, userCacheSize, userCacheTime, userCacheTime, 0, statusPollInterval, staleAfter);
+  }
+
+  /**
+   * Creates a new {@link BigSegmentsConfiguration} instance with the specified values.
+   * <p>
+   * See {@link BigSegmentsConfigurationBuilder} for more information on the configuration fields.
+   *
+   * @param bigSegmentStore the Big Segments store instance
+   * @param userCacheSize the user cache size
+   * @param userCacheTime the user cache time
+   * @param notMemberCacheTime the cache time for users who are not in any Big Segment
+   * @param userCacheRefreshAheadFactor the refresh-ahead factor for the user cache, or 0 for none
+   * @param statusPollInterval the status poll interval
+   * @param staleAfter the interval after which store data is considered stale
+   * @since 7.16.0
+   */
+  public BigSegmentsConfiguration(BigSegmentStore bigSegmentStore,
+                                  int userCacheSize,
+                                  Duration userCacheTime,
+                                  Duration notMemberCacheTime,
+                                  double userCacheRefreshAheadFactor,
+                                  Duration statusPollInterval,
+                                  Duration staleAfter) {
     this.bigSegmentStore = bigSegmentStore;
     this.userCacheSize = userCacheSize;
     this.userCacheTime = userCacheTime;
+    this.notMemberCacheTime = notMemberCacheTime;
+    this.userCacheRefreshAheadFactor = userCacheRefreshAheadFactor;
     this.statusPollInterval = statusPollInterval;
     this.staleAfter = staleAfter;
   }
@@ -74,6 +102,27 @@ public final class BigSegmentsConfiguration {
     return this.userCacheTime;
   }
 
+  /**
+   * Gets the value set by {@link BigSegmentsConfigurationBuilder#notMemberCacheTime(Duration)}, or the
+   * user cache time if that was not set
+   *
+   * @return the configured cache time for users who are not in any Big Segment
+   * @since 7.16.0
+   */
+  public Duration getNotMemberCacheTime() {
+    return this.notMemberCacheTime;
+  }
+
+  /**
+   * Gets the value set by {@link BigSegmentsConfigurationBuilder#userCacheRefreshAheadFactor(double)}
+   *
+   * @return the configured refresh-ahead factor, or 0 if refresh-ahead is disabled
+   * @since 7.16.0
+   */
+  public double getUserCacheRefreshAheadFactor() {
+    return this.userCacheRefreshAheadFactor;
+  }
+
   /**
    * Gets the value set by {@link BigSegmentsConfigurationBuilder#statusPollInterval(Duration)}
    *
@@ -0,0 +1,227 @@
+package com.launchdarkly.sdk.server.interfaces;
+
+import java.util.Objects;
+
+/**
+ * A snapshot of counters describing the work done by the SDK's flag evaluation logic.
+ * <p>
+ * The counters are cumulative from the time the client was created. To measure activity over a period of
+ * time, get a snapshot at the beginning and end of the period and compare them.
+ *
+ * @see LDClientInterface#getEvaluationStatistics()
+ * @since 7.16.0
+ */
+public final class EvaluationStatistics {
+  private final CacheStatistics bucketCache;
+  private final CacheStatistics segmentMatchCache;
+  private final CacheStatistics regexMatchCache;
+  private final long regexMatchCacheSize;
+  private final CacheStatistics allFlagsStateCache;
+  private final long allFlagsStateCacheSize;
+  private final long allFlagsStateReevaluatedFlagCount;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param bucketCache statistics for the percentage rollout bucket cache
+   * @param segmentMatchCache statistics for the segment match cache
+   * @param regexMatchCache statistics for the regex match cache
+   * @param regexMatchCacheSize the current number of entries in the regex match cache
+   * @param allFlagsStateCache statistics for the all-flags state cache
+   * @param allFlagsStateCacheSize the current number of entries in the all-flags state cache
+   * @param allFlagsStateReevaluatedFlagCount the number of flags that were re-evaluated to update cached
+   *   all-flags states
+   */
+  public EvaluationStatistics(CacheStatistics bucketCache, CacheStatistics segmentMatchCache,
+      CacheStatistics regexMatchCache, long regexMatchCacheSize,
+      CacheStatistics allFlagsStateCache, long allFlagsStateCacheSize, long allFlagsStateReevaluatedFlagCount) {
+    this.bucketCache = bucketCache;
+    this.segmentMatchCache = segmentMatchCache;
+    this.regexMatchCache = regexMatchCache;
+    this.regexMatchCacheSize = regexMatchCacheSize;
+    this.allFlagsStateCache = allFlagsStateCache;
+    this.allFlagsStateCacheSize = allFlagsStateCacheSize;
+    this.allFlagsStateReevaluatedFlagCount = allFlagsStateReevaluatedFlagCount;
+  }
+
+  /**
+   * Returns statistics for the percentage rollout bucket cache.
+   * <p>
+   * When the SDK evaluates several flags for the same context, as in
+   * {@link LDClientInterface#allFlagsState(com.launchdarkly.sdk.LDContext, com.launchdarkly.sdk.server.FlagsStateOption...)},
+   * or evaluates a flag along with its prerequisites and segments, it remembers each rollout bucket value
+   * that it computes. Rollouts that share a seed, and weighted segment rules in a segment that is referenced
+   * by several flags, can then reuse the value instead of hashing the context again. A hit means that a
+   * value was reused; a miss means that it had to be computed.
+   *
+   * @return the bucket cache statistics
+   */
+  public CacheStatistics getBucketCache() {
+    return bucketCache;
+  }
+
+  /**
+   * Returns statistics for the segment match cache.
+   * <p>
+   * In the same situations where bucket values are reused (see {@link #getBucketCache()}), the SDK also
+   * remembers whether the context matched each segment that it checked, so a segment that is referenced by
+   * many flags, or by several rules of one flag, is only evaluated once for that context. A hit means that a
+   * previous result was reused; a miss means that the segment had to be evaluated.
+   *
+   * @return the segment match cache statistics
+   */
+  public CacheStatistics getSegmentMatchCache() {
+    return segmentMatchCache;
+  }
+
+  /**
+   * Returns statistics for the regex match cache, which remembers the results of "matches" clauses for
+   * recently seen attribute values. This cache is only used if it has been enabled with
+   * {@link com.launchdarkly.sdk.server.LDConfig.Builder#regexMatchCacheSize(int)}; otherwise the counts
+   * are always zero.
+   *
+   * @return the regex match cache statistics
+   */
+  public CacheStatistics getRegexMatchCache() {
+    return regexMatchCache;
+  }
+
+  /**
+   * Returns the current number of entries in the regex match cache.
+   *
+   * @return the number of cached regex results
+   * @see #getRegexMatchCache()
+   */
+  public long getRegexMatchCacheSize() {
+    return regexMatchCacheSize;
+  }
+
+  /**
+   * Returns statistics for the all-flags state cache, which remembers the results of
+   * {@link LDClientInterface#allFlagsState(com.launchdarkly.sdk.LDContext, com.launchdarkly.sdk.server.FlagsStateOption...)}
+   * for recently seen contexts. This cache is only used if it has been enabled with
+   * {@link com.launchdarkly.sdk.server.LDConfig.Builder#allFlagsStateCacheSize(int)}; otherwise the counts
+   * are always zero.
+   * <p>
+   * A hit means that a cached state was returned, possibly after re-evaluating the flags that had changed
+   * since it was computed (see {@link #getAllFlagsStateReevaluatedFlagCount()}); a miss means that all of
+   * the flags had to be evaluated.
+   *
+   * @return the all-flags state cache statistics
+   */
+  public CacheStatistics getAllFlagsStateCache() {
+    return allFlagsStateCache;
+  }
+
+  /**
+   * Returns the current number of entries in the all-flags state cache.
+   *
+   * @return the number of cached states
+   * @see #getAllFlagsStateCache()
+   */
+  public long getAllFlagsStateCacheSize() {
+    return allFlagsStateCacheSize;
+  }
+
+  /**
+   * Returns the total number of flags that were re-evaluated because they had changed since a cached
+   * all-flags state was computed.
+   *
+   * @return the number of re-evaluated flags
+   * @see #getAllFlagsStateCache()
+   */
+  public long getAllFlagsStateReevaluatedFlagCount() {
+    return allFlagsStateReevaluatedFlagCount;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof EvaluationStatistics)) {
+      return false;
+    }
+    EvaluationStatistics o = (EvaluationStatistics)other;
+    return Objects.equals(bucketCache, o.bucketCache) && Objects.equals(segmentMatchCache, o.segmentMatchCache) &&
+        Objects.equals(regexMatchCache, o.regexMatchCache) && regexMatchCacheSize == o.regexMatchCacheSize &&
+        Objects.equals(allFlagsStateCache, o.allFlagsStateCache) && allFlagsStateCacheSize == o.allFlagsStateCacheSize &&
+        allFlagsStateReevaluatedFlagCount == o.allFlagsStateReevaluatedFlagCount;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(bucketCache, segmentMatchCache, regexMatchCache, regexMatchCacheSize,
+        allFlagsStateCache, allFlagsStateCacheSize, allFlagsStateReevaluatedFlagCount);
+  }
+
+  @Override
+  public String toString() {
+    return "{bucketCache=" + bucketCache + ", segmentMatchCache=" + segmentMatchCache +
+        ", regexMatchCache=" + regexMatchCache +
+        ", regexMatchCacheSize=" + regexMatchCacheSize +
+        ", allFlagsStateCache=" + allFlagsStateCache +
+        ", allFlagsStateCacheSize=" + allFlagsStateCacheSize +
+        ", allFlagsStateReevaluatedFlagCount=" + allFlagsStateReevaluatedFlagCount + "}";
+  }
+
+  /**
+   * Hit and miss counts for one of the caches used during evaluation.
+   */
+  public static final class CacheStatistics {
+    private final long hitCount;
+    private final long missCount;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param hitCount number of lookups that found a cached value
+     * @param missCount number of lookups that had to compute a value
+     */
+    public CacheStatistics(long hitCount, long missCount) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+    }
+
+    /**
+     * The number of lookups that found a cached value.
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    /**
+     * The number of lookups that did not find a cached value.
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+      return missCount;
+    }
+
+    /**
+     * The proportion of lookups that found a cached value, from 0 to 1; or 0 if there have been no lookups.
+     * @return the cache hit rate
+     */
+    public double getHitRate() {
+      long total = hitCount + missCount;
+      return total == 0 ? 0 : (double)hitCount / total;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof CacheStatistics)) {
+        return false;
+      }
+      CacheStatistics o = (CacheStatistics)other;
+      return hitCount == o.hitCount && missCount == o.missCount;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(hitCount, missCount);
+    }
+
+    @Override
+    public String toString() {
+      return "{hit=" + hitCount + ", miss=" + missCount + "}";
+    }
+  }
+}
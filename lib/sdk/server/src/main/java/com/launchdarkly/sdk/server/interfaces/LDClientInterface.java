@@ -6,15 +6,19 @@ import com.launchdarkly.sdk.LDContext;
 import com.launchdarkly.sdk.LDValue;
 
 import com.launchdarkly.sdk.server.FeatureFlagsState;
+import com.launchdarkly.sdk.server.FlagHandle;
+import com.launchdarkly.sdk.server.FlagVariations;
 import com.launchdarkly.sdk.server.FlagsStateOption;
 import com.launchdarkly.sdk.server.LDClient;
 import com.launchdarkly.sdk.server.MigrationOpTracker;
 import com.launchdarkly.sdk.server.MigrationStage;
 import com.launchdarkly.sdk.server.MigrationVariation;
+import com.launchdarkly.sdk.server.PreparedContext;
 import com.launchdarkly.sdk.server.migrations.Migration;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collection;
 
 /**
  * This interface defines the public methods of {@link LDClient}.
@@ -301,6 +305,77 @@ public interface LDClientInterface extends Closeable {
    */
   EvaluationDetail<LDValue> jsonValueVariationDetail(String key, LDContext context, LDValue defaultValue);
 
+  /**
+   * Calculates the values of several feature flags for the same context.
+   * <p>
+   * This is equivalent to calling {@link #jsonValueVariation(String, LDContext, LDValue)} with a null default
+   * value for each flag key: each evaluation generates an analytics event, and any hooks are invoked for each
+   * flag. However, it is more efficient than separate calls, because the context is only validated once,
+   * and work such as matching the context against segments, querying Big Segment memberships, and computing
+   * rollout buckets is shared between the flags.
+   * <p>
+   * If a flag cannot be evaluated, or evaluates to its default value, its value in the result is
+   * {@link LDValue#ofNull()}.
+   *
+   * @param context  the evaluation context
+   * @param flagKeys the unique keys of the feature flags
+   * @return a {@link FlagVariations} object containing a result for each of the flag keys
+   * @see #allFlagsState(LDContext, FlagsStateOption...)
+   * @since 7.16.0
+   */
+  FlagVariations variations(LDContext context, Collection<String> flagKeys);
+
+  /**
+   * Calculates the values of several feature flags for the same context, and describes the way each value
+   * was determined.
+   * <p>
+   * The {@link EvaluationDetail#getReason()} properties in the result will also be included in analytics
+   * events, if you are capturing detailed event data for these flags.
+   * <p>
+   * The behavior is otherwise identical to {@link #variations(LDContext, Collection)}.
+   *
+   * @param context  the evaluation context
+   * @param flagKeys the unique keys of the feature flags
+   * @return a {@link FlagVariations} object containing a result for each of the flag keys
+   * @since 7.16.0
+   */
+  FlagVariations variationsDetail(LDContext context, Collection<String> flagKeys);
+
+  /**
+   * Prepares a context for evaluating many feature flags.
+   * <p>
+   * The returned {@link PreparedContext} has the same evaluation methods as this interface, without the
+   * context parameter, and they behave the same way. But the context's individual contexts and attributes
+   * are indexed once, rather than being looked up again by every target, rule, and segment in every flag,
+   * which is most worthwhile for a multi-kind context with many attributes. An application that handles a
+   * request by evaluating several flags could prepare the context at the start of the request, and use it
+   * for all of those evaluations.
+   * <p>
+   * The context is not validated until it is used for an evaluation. Preparing it does not generate any
+   * analytics events.
+   *
+   * @param context the evaluation context
+   * @return a {@link PreparedContext}
+   * @since 7.16.0
+   */
+  PreparedContext prepare(LDContext context);
+
+  /**
+   * Returns a handle for evaluating a feature flag repeatedly.
+   * <p>
+   * The returned {@link FlagHandle} has the same evaluation methods as this interface, without the flag key
+   * parameter, and they behave the same way; each evaluation uses the flag's current configuration. But while
+   * the flag data has not changed, the handle does not need to look up the flag again, so it is somewhat
+   * faster for a flag that is evaluated very frequently.
+   * <p>
+   * The flag does not need to exist yet. Getting a handle does not generate any analytics events.
+   *
+   * @param key the unique key for the feature flag
+   * @return a {@link FlagHandle}
+   * @since 7.16.0
+   */
+  FlagHandle flagHandle(String key);
+
   /**
    * Returns the migration stage of the migration feature flag for the given
    * evaluation context.
@@ -366,6 +441,26 @@ public interface LDClientInterface extends Closeable {
    */
   BigSegmentStoreStatusProvider getBigSegmentStoreStatusProvider();
 
+  /**
+   * Loads the Big Segment membership state for a number of contexts ahead of evaluating flags for them.
+   * <p>
+   * Normally, the first evaluation for a context that refers to a Big Segment queries the Big Segment
+   * store for that context, and the result is cached for the time configured with
+   * {@link com.launchdarkly.sdk.server.integrations.BigSegmentsConfigurationBuilder#userCacheTime(java.time.Duration)}.
+   * If the application is about to evaluate flags for many contexts, calling this method first allows the
+   * SDK to query the store for all of them at once, which for a store such as Redis is a single round trip.
+   * Contexts whose state is already cached are not queried again.
+   * <p>
+   * Since the SDK does not know in advance which context kinds the Big Segments will apply to, it loads the
+   * state for the key of every individual context within each context. If Big Segments are not configured,
+   * or if the client is offline, this method does nothing. It does not throw an exception if the store
+   * query fails; the error is logged, and later evaluations will query the store as usual.
+   *
+   * @param contexts the evaluation contexts
+   * @since 7.16.0
+   */
+  void prefetchBigSegments(Collection<LDContext> contexts);
+
   /**
    * Returns an interface for tracking the status of the data source.
    * <p>
@@ -392,6 +487,18 @@ public interface LDClientInterface extends Closeable {
    */
   DataStoreStatusProvider getDataStoreStatusProvider();
 
+  /**
+   * Returns a snapshot of counters describing the work done by the SDK's flag evaluation logic, such as
+   * how often computed values could be reused between evaluations.
+   * <p>
+   * This is intended for measuring the effect of the SDK's internal optimizations for a given set of flag
+   * configurations. The counters are cumulative from the time the client was created.
+   *
+   * @return an {@link EvaluationStatistics} snapshot
+   * @since 7.16.0
+   */
+  EvaluationStatistics getEvaluationStatistics();
+
   /**
    * Returns the logger instance used by this SDK instance.
    * <p>
@@ -1,6 +1,9 @@
 package com.launchdarkly.sdk.server.subsystems;
 
 import java.io.Closeable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Interface for a read-only data store that allows querying of user membership in Big Segments.
@@ -29,6 +32,33 @@ public interface BigSegmentStore extends Closeable {
    */
   BigSegmentStoreTypes.Membership getMembership(String userHash);
 
+  /**
+   * Queries the store for the current segment state for a number of users at once.
+   * <p>
+   * The SDK calls this method instead of {@link #getMembership(String)} when it needs the state of
+   * more than one user, such as when the application calls
+   * {@link com.launchdarkly.sdk.server.interfaces.LDClientInterface#prefetchBigSegments(Collection)}.
+   * The default implementation simply calls {@link #getMembership(String)} for each user; a store
+   * implementation should override it if the database allows it to do all of the queries in a single
+   * round trip.
+   * <p>
+   * The returned map is keyed by user hash. A user whose membership state is not found may have
+   * either no entry, a {@code null} value, or an empty {@link BigSegmentStoreTypes.Membership}. As with
+   * {@link #getMembership(String)}, the method should not throw an exception unless there is an
+   * unexpected database error or the retrieved data is malformed.
+   *
+   * @param userHashes the hashed user identifiers
+   * @return a map of user hashes to segment membership states
+   * @since 7.16.0
+   */
+  default Map<String, BigSegmentStoreTypes.Membership> getMemberships(Collection<String> userHashes) {
+    Map<String, BigSegmentStoreTypes.Membership> ret = new HashMap<>();
+    for (String userHash: userHashes) {
+      ret.put(userHash, getMembership(userHash));
+    }
+    return ret;
+  }
+
   /**
    * Returns information about the overall state of the store.
    * <p>
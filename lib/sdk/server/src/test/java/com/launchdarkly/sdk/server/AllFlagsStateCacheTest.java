@@ -0,0 +1,116 @@
+package com.launchdarkly.sdk.server;
+
+import com.google.common.collect.ImmutableSet;
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.server.DataModelDependencies.KindAndKey;
+
+import org.junit.Test;
+
+import static com.launchdarkly.sdk.server.DataModel.FEATURES;
+import static com.launchdarkly.sdk.server.DataModel.SEGMENTS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@SuppressWarnings("javadoc")
+public class AllFlagsStateCacheTest {
+  private static final FeatureFlagsState state = FeatureFlagsState.builder().build();
+
+  @Test
+  public void entryIsKeyedByContextAttributesAndOptions() {
+    AllFlagsStateCache cache = new AllFlagsStateCache(10);
+    LDContext context = LDContext.builder("key").set("plan", "free").build();
+    AllFlagsStateCache.Entry entry = new AllFlagsStateCache.Entry(state, 0);
+    cache.put(context, new FlagsStateOption[] { FlagsStateOption.WITH_REASONS }, entry);
+
+    assertSame(entry, cache.get(LDContext.builder("key").set("plan", "free").build(),
+        new FlagsStateOption[] { FlagsStateOption.WITH_REASONS }));
+    assertNull(cache.get(context, new FlagsStateOption[0]));
+    assertNull(cache.get(LDContext.builder("key").set("plan", "paid").build(),
+        new FlagsStateOption[] { FlagsStateOption.WITH_REASONS }));
+  }
+
+  @Test
+  public void changedFlagsAreAccumulatedBetweenDataVersions() {
+    AllFlagsStateCache cache = new AllFlagsStateCache(10);
+    cache.itemsChanged(0, 1,
+        ImmutableSet.of(new KindAndKey(FEATURES, "flag1"), new KindAndKey(SEGMENTS, "segment1")));
+    cache.itemsChanged(1, 2, ImmutableSet.of(new KindAndKey(FEATURES, "flag2")));
+
+    assertEquals(ImmutableSet.of("flag1", "flag2"), cache.getFlagsChangedSince(0, 2));
+    assertEquals(ImmutableSet.of("flag1"), cache.getFlagsChangedSince(0, 1));
+    assertEquals(ImmutableSet.of("flag2"), cache.getFlagsChangedSince(1, 2));
+    assertEquals(ImmutableSet.of(), cache.getFlagsChangedSince(2, 2));
+  }
+
+  @Test
+  public void changeThatAffectsNoFlagsIsStillRecorded() {
+    AllFlagsStateCache cache = new AllFlagsStateCache(10);
+    cache.itemsChanged(0, 1, ImmutableSet.of(new KindAndKey(SEGMENTS, "segment1")));
+    cache.itemsChanged(1, 2, ImmutableSet.of(new KindAndKey(FEATURES, "flag1")));
+
+    assertEquals(ImmutableSet.of(), cache.getFlagsChangedSince(0, 1));
+    assertEquals(ImmutableSet.of("flag1"), cache.getFlagsChangedSince(0, 2));
+  }
+
+  @Test
+  public void versionThatHasNotBeenRecordedYetIsUnknown() {
+    // The store publishes a new snapshot before the change is recorded, so an evaluation can see a
+    // version that we don't know about yet.
+    AllFlagsStateCache cache = new AllFlagsStateCache(10);
+    cache.itemsChanged(0, 1, ImmutableSet.of(new KindAndKey(FEATURES, "flag1")));
+
+    assertNull(cache.getFlagsChangedSince(1, 2));
+    assertNull(cache.getFlagsChangedSince(0, 2));
+  }
+
+  @Test
+  public void entryNewerThanDataVersionIsUnknown() {
+    AllFlagsStateCache cache = new AllFlagsStateCache(10);
+    cache.itemsChanged(0, 1, ImmutableSet.of(new KindAndKey(FEATURES, "flag1")));
+
+    assertNull(cache.getFlagsChangedSince(1, 0));
+  }
+
+  @Test
+  public void changesBeforeAMissedChangeAreForgotten() {
+    AllFlagsStateCache cache = new AllFlagsStateCache(10);
+    cache.itemsChanged(0, 1, ImmutableSet.of(new KindAndKey(FEATURES, "flag1")));
+    cache.itemsChanged(2, 3, ImmutableSet.of(new KindAndKey(FEATURES, "flag3")));
+
+    assertNull(cache.getFlagsChangedSince(0, 3));
+    assertNull(cache.getFlagsChangedSince(1, 3));
+    assertNull(cache.getFlagsChangedSince(2, 3));
+    assertEquals(ImmutableSet.of(), cache.getFlagsChangedSince(3, 3));
+
+    cache.itemsChanged(3, 4, ImmutableSet.of(new KindAndKey(FEATURES, "flag4")));
+    assertEquals(ImmutableSet.of("flag4"), cache.getFlagsChangedSince(3, 4));
+  }
+
+  @Test
+  public void oldChangesAreForgotten() {
+    AllFlagsStateCache cache = new AllFlagsStateCache(10);
+    int count = AllFlagsStateCache.MAX_CHANGE_RECORDS + 1;
+    for (int i = 0; i < count; i++) {
+      cache.itemsChanged(i, i + 1, ImmutableSet.of(new KindAndKey(FEATURES, "flag" + i)));
+    }
+
+    assertNull(cache.getFlagsChangedSince(0, count));
+    assertNotNull(cache.getFlagsChangedSince(1, count));
+    assertEquals(AllFlagsStateCache.MAX_CHANGE_RECORDS, cache.getFlagsChangedSince(1, count).size());
+  }
+
+  @Test
+  public void statisticsCountHitsAndMisses() {
+    AllFlagsStateCache cache = new AllFlagsStateCache(10);
+    cache.hits.increment();
+    cache.misses.increment();
+    cache.misses.increment();
+    cache.put(LDContext.create("key"), new FlagsStateOption[0], new AllFlagsStateCache.Entry(state, 0));
+
+    assertEquals(1, cache.getStatistics().getHitCount());
+    assertEquals(2, cache.getStatistics().getMissCount());
+    assertEquals(1, cache.size());
+  }
+}
@@ -3,6 +3,7 @@ package com.launchdarkly.sdk.server;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.same;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import com.launchdarkly.sdk.server.interfaces.BigSegmentStoreStatusProvider.Status;
 import com.launchdarkly.sdk.server.interfaces.BigSegmentStoreStatusProvider.StatusListener;
@@ -36,6 +37,14 @@ public class BigSegmentStoreStatusProviderImplTest extends BaseTest {
     mocks.verifyAll();
   }
 
+  @Test
+  public void cacheStatsNullWithNullWrapper() {
+    mocks.replayAll();
+    BigSegmentStoreStatusProviderImpl statusProvider = new BigSegmentStoreStatusProviderImpl(mockEventBroadcaster, null);
+    assertNull(statusProvider.getCacheStats());
+    mocks.verifyAll();
+  }
+
   @Test
   public void statusDelegatedToWrapper() {
     BigSegmentStoreWrapper storeWrapper = mocks.strictMock(BigSegmentStoreWrapper.class);
@@ -17,7 +17,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -26,6 +29,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import static com.launchdarkly.sdk.server.TestComponents.clientContext;
 import static com.launchdarkly.sdk.server.TestComponents.nullLogger;
 import static com.launchdarkly.sdk.server.TestComponents.sharedExecutor;
+import static com.launchdarkly.sdk.server.TestComponents.specificComponent;
 import static com.launchdarkly.sdk.server.subsystems.BigSegmentStoreTypes.createMembershipFromSegmentRefs;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.isA;
@@ -211,6 +215,172 @@ public class BigSegmentStoreWrapperTest extends BaseTest {
     }
   }
 
+  @Test
+  public void prefetchQueriesUncachedUsersInOneBatch() throws Exception {
+    Membership membership1 = createMembershipFromSegmentRefs(Collections.singleton("seg1"), null);
+    Membership membership2 = createMembershipFromSegmentRefs(Collections.singleton("seg2"), null);
+    TestComponents.InMemoryBigSegmentStore store = new TestComponents.InMemoryBigSegmentStore();
+    store.setMembership("userkey1", membership1);
+    store.setMembership("userkey2", membership2);
+
+    BigSegmentsConfiguration bsConfig = Components.bigSegments(specificComponent(store))
+        .staleAfter(Duration.ofDays(1))
+        .build(clientContext(SDK_KEY, new LDConfig.Builder().build()));
+    try (BigSegmentStoreWrapper wrapper = makeWrapper(bsConfig)) {
+      wrapper.prefetchMemberships(Arrays.asList("userkey1", "userkey2"));
+      assertEquals(1, store.batchQueryCount.get());
+      assertEquals(2, store.queriedUserCount.get());
+
+      wrapper.prefetchMemberships(Arrays.asList("userkey2", "userkey3"));
+      assertEquals(2, store.batchQueryCount.get());
+      assertEquals(3, store.queriedUserCount.get());
+
+      assertEquals(membership1, wrapper.getUserMembership("userkey1").membership);
+      assertEquals(membership2, wrapper.getUserMembership("userkey2").membership);
+      BigSegmentsQueryResult res3 = wrapper.getUserMembership("userkey3");
+      assertEquals(createMembershipFromSegmentRefs(null, null), res3.membership);
+      assertEquals(BigSegmentsStatus.HEALTHY, res3.status);
+      assertEquals(0, store.singleQueryCount.get());
+    }
+  }
+
+  @Test
+  public void prefetchErrorIsNotThrown() throws Exception {
+    TestComponents.InMemoryBigSegmentStore store = new TestComponents.InMemoryBigSegmentStore() {
+      @Override
+      public Map<String, Membership> getMemberships(Collection<String> userHashes) {
+        throw new RuntimeException("sorry");
+      }
+    };
+    Membership membership = createMembershipFromSegmentRefs(Collections.singleton("seg1"), null);
+    store.setMembership("userkey", membership);
+
+    BigSegmentsConfiguration bsConfig = Components.bigSegments(specificComponent(store))
+        .staleAfter(Duration.ofDays(1))
+        .build(clientContext(SDK_KEY, new LDConfig.Builder().build()));
+    try (BigSegmentStoreWrapper wrapper = makeWrapper(bsConfig)) {
+      wrapper.prefetchMemberships(Collections.singleton("userkey"));
+      assertEquals(membership, wrapper.getUserMembership("userkey").membership);
+      assertEquals(1, store.singleQueryCount.get());
+    }
+  }
+
+  @Test
+  public void notMemberStateUsesSeparateCacheTime() throws Exception {
+    TestComponents.InMemoryBigSegmentStore store = new TestComponents.InMemoryBigSegmentStore();
+    store.setMembership("member", createMembershipFromSegmentRefs(Collections.singleton("seg1"), null));
+
+    BigSegmentsConfiguration bsConfig = Components.bigSegments(specificComponent(store))
+        .userCacheTime(Duration.ofDays(1))
+        .notMemberCacheTime(Duration.ZERO)
+        .staleAfter(Duration.ofDays(1))
+        .build(clientContext(SDK_KEY, new LDConfig.Builder().build()));
+    try (BigSegmentStoreWrapper wrapper = makeWrapper(bsConfig)) {
+      wrapper.getUserMembership("member");
+      wrapper.getUserMembership("member");
+      assertEquals(1, store.singleQueryCount.get());
+
+      wrapper.getUserMembership("nonmember");
+      wrapper.getUserMembership("nonmember");
+      assertEquals(3, store.singleQueryCount.get());
+    }
+  }
+
+  @Test
+  public void notMemberStateCanBeCachedLongerThanMemberState() throws Exception {
+    TestComponents.InMemoryBigSegmentStore store = new TestComponents.InMemoryBigSegmentStore();
+    store.setMembership("member", createMembershipFromSegmentRefs(Collections.singleton("seg1"), null));
+
+    BigSegmentsConfiguration bsConfig = Components.bigSegments(specificComponent(store))
+        .userCacheTime(Duration.ZERO)
+        .notMemberCacheTime(Duration.ofDays(1))
+        .staleAfter(Duration.ofDays(1))
+        .build(clientContext(SDK_KEY, new LDConfig.Builder().build()));
+    try (BigSegmentStoreWrapper wrapper = makeWrapper(bsConfig)) {
+      wrapper.getUserMembership("member");
+      wrapper.getUserMembership("member");
+      assertEquals(2, store.singleQueryCount.get());
+
+      assertEquals(createMembershipFromSegmentRefs(null, null), wrapper.getUserMembership("nonmember").membership);
+      assertEquals(createMembershipFromSegmentRefs(null, null), wrapper.getUserMembership("nonmember").membership);
+      assertEquals(3, store.singleQueryCount.get());
+    }
+  }
+
+  @Test
+  public void refreshAheadReloadsStateInBackground() throws Exception {
+    Membership oldMembership = createMembershipFromSegmentRefs(Collections.singleton("seg1"), null);
+    Membership newMembership = createMembershipFromSegmentRefs(Collections.singleton("seg2"), null);
+    TestComponents.InMemoryBigSegmentStore store = new TestComponents.InMemoryBigSegmentStore();
+    store.setMembership("userkey", oldMembership);
+
+    BigSegmentsConfiguration bsConfig = Components.bigSegments(specificComponent(store))
+        .userCacheTime(Duration.ofMillis(1000))
+        .userCacheRefreshAheadFactor(0.8)
+        .staleAfter(Duration.ofDays(1))
+        .build(clientContext(SDK_KEY, new LDConfig.Builder().build()));
+    try (BigSegmentStoreWrapper wrapper = makeWrapper(bsConfig)) {
+      assertEquals(oldMembership, wrapper.getUserMembership("userkey").membership);
+      assertEquals(oldMembership, wrapper.getUserMembership("userkey").membership);
+      assertEquals(1, store.singleQueryCount.get());
+
+      store.setMembership("userkey", newMembership);
+      Thread.sleep(300);
+      // This is within the refresh-ahead window, so it returns the cached state and starts a refresh
+      assertEquals(oldMembership, wrapper.getUserMembership("userkey").membership);
+      for (int i = 0; i < 100 && wrapper.getCacheStats().getLoadSuccessCount() < 2; i++) {
+        Thread.sleep(10);
+      }
+      assertEquals(2, store.singleQueryCount.get());
+      assertEquals(newMembership, wrapper.getUserMembership("userkey").membership);
+
+      BigSegmentStoreStatusProvider.CacheStats stats = wrapper.getCacheStats();
+      assertEquals(3, stats.getHitCount());
+      assertEquals(1, stats.getMissCount());
+      assertEquals(2, stats.getLoadSuccessCount());
+      assertEquals(1, stats.getRefreshCount());
+    }
+  }
+
+  @Test
+  public void cacheStatsCountHitsMissesAndLoads() throws Exception {
+    TestComponents.InMemoryBigSegmentStore store = new TestComponents.InMemoryBigSegmentStore();
+
+    BigSegmentsConfiguration bsConfig = Components.bigSegments(specificComponent(store))
+        .staleAfter(Duration.ofDays(1))
+        .build(clientContext(SDK_KEY, new LDConfig.Builder().build()));
+    try (BigSegmentStoreWrapper wrapper = makeWrapper(bsConfig)) {
+      wrapper.getUserMembership("userkey1");
+      wrapper.getUserMembership("userkey1");
+      wrapper.getUserMembership("userkey2");
+
+      BigSegmentStoreStatusProvider.CacheStats stats = wrapper.getCacheStats();
+      assertEquals(1, stats.getHitCount());
+      assertEquals(2, stats.getMissCount());
+      assertEquals(2, stats.getLoadSuccessCount());
+      assertEquals(0, stats.getLoadExceptionCount());
+      assertEquals(0, stats.getRefreshCount());
+      assertTrue(stats.getTotalLoadTime() > 0);
+    }
+  }
+
+  @Test
+  public void statusIsQueriedWhenWrapperIsCreated() throws Exception {
+    TestComponents.InMemoryBigSegmentStore store = new TestComponents.InMemoryBigSegmentStore();
+
+    BigSegmentsConfiguration bsConfig = Components.bigSegments(specificComponent(store))
+        .statusPollInterval(Duration.ofDays(1))
+        .staleAfter(Duration.ofDays(1))
+        .build(clientContext(SDK_KEY, new LDConfig.Builder().build()));
+    try (BigSegmentStoreWrapper wrapper = makeWrapper(bsConfig)) {
+      assertEquals(1, store.metadataQueryCount.get());
+      assertEquals(new Status(true, false), wrapper.getStatus());
+      wrapper.getUserMembership("userkey");
+      assertEquals(new Status(true, false), wrapper.getStatus());
+      assertEquals(1, store.metadataQueryCount.get());
+    }
+  }
+
   @Test
   public void pollingDetectsStoreUnavailability() throws Exception {
     mocks.replayAll();
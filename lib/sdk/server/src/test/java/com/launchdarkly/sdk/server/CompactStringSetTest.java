@@ -0,0 +1,173 @@
+package com.launchdarkly.sdk.server;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("javadoc")
+public class CompactStringSetTest {
+  @Test
+  public void smallSetIsNotCompacted() {
+    Set<String> set = CompactStringSet.of(ImmutableList.of("b", "a", "b"));
+    assertThat(set, instanceOf(LinkedHashSet.class));
+    assertEquals(ImmutableList.of("b", "a"), new ArrayList<>(set));
+    assertThat(CompactStringSet.of(makeKeys(CompactStringSet.MIN_COMPACT_SIZE - 1)), instanceOf(LinkedHashSet.class));
+  }
+
+  @Test
+  public void containsAllOfTheStringsAndNoOthers() {
+    List<String> keys = makeKeys(CompactStringSet.MIN_COMPACT_SIZE);
+    Set<String> set = CompactStringSet.of(keys);
+    assertThat(set, instanceOf(CompactStringSet.class));
+    assertEquals(keys.size(), set.size());
+    for (String key: keys) {
+      assertTrue(key, set.contains(key));
+      assertFalse(key, set.contains(key + "x"));
+      assertFalse(key, set.contains(key.substring(1)));
+    }
+    assertFalse(set.contains(""));
+    assertFalse(set.contains(null));
+    assertFalse(set.contains(3));
+  }
+
+  @Test
+  public void duplicatesAreRemoved() {
+    List<String> keys = makeKeys(100);
+    List<String> keysWithDuplicates = new ArrayList<>(keys);
+    keysWithDuplicates.addAll(keys);
+    Set<String> set = CompactStringSet.of(keysWithDuplicates, 0);
+    assertThat(set, instanceOf(CompactStringSet.class));
+    assertEquals(keys.size(), set.size());
+  }
+
+  @Test
+  public void equalsSetWithSameStrings() {
+    List<String> keys = makeKeys(500);
+    Set<String> set = CompactStringSet.of(keys, 0);
+    assertThat(set, instanceOf(CompactStringSet.class));
+    assertEquals(new HashSet<>(keys), set);
+    assertEquals(set, new HashSet<>(keys));
+    assertEquals(new HashSet<>(keys).hashCode(), set.hashCode());
+  }
+
+  @Test
+  public void nonAsciiStrings() {
+    List<String> keys = makeKeys(CompactStringSet.MIN_COMPACT_SIZE);
+    // 2-byte, 3-byte, and 4-byte (surrogate pair) UTF-8 sequences, including ones that sort after ASCII
+    List<String> others = ImmutableList.of("café", "é", "日本", "x😀y", "😀",
+        "\u007f", "\u0080", "߿", "ࠀ", "￿", "");
+    keys.addAll(others);
+    Set<String> set = CompactStringSet.of(keys);
+    assertThat(set, instanceOf(CompactStringSet.class));
+    assertEquals(new HashSet<>(keys), set);
+    for (String s: others) {
+      assertTrue(s, set.contains(s));
+    }
+    assertFalse(set.contains("cafe"));
+    assertFalse(set.contains("cafè"));
+    assertFalse(set.contains("😁"));
+    assertFalse(set.contains("x\ud83dy")); // unpaired surrogate
+  }
+
+  @Test
+  public void stringsWithSameHashCode() {
+    // "Aa" and "BB" have the same hash code, so all of these combinations do too
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 128; i++) {
+      StringBuilder sb = new StringBuilder();
+      for (int bit = 0; bit < 7; bit++) {
+        sb.append((i & (1 << bit)) == 0 ? "Aa" : "BB");
+      }
+      keys.add(sb.toString());
+    }
+    Set<String> set = CompactStringSet.of(keys.subList(1, keys.size()), 0);
+    assertThat(set, instanceOf(CompactStringSet.class));
+    assertEquals(keys.size() - 1, set.size());
+    for (String key: keys.subList(1, keys.size())) {
+      assertTrue(key, set.contains(key));
+    }
+    assertFalse(set.contains(keys.get(0)));
+  }
+
+  @Test
+  public void longStrings() {
+    List<String> keys = makeKeys(CompactStringSet.MIN_COMPACT_SIZE);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      sb.append((char)('a' + i % 26));
+      keys.add(sb.toString());
+    }
+    Set<String> set = CompactStringSet.of(keys);
+    assertThat(set, instanceOf(CompactStringSet.class));
+    assertEquals(new HashSet<>(keys), set);
+    for (String key: keys) {
+      assertTrue(set.contains(key));
+    }
+    assertFalse(set.contains(sb.append('x').toString()));
+  }
+
+  @Test
+  public void setWithUnpairedSurrogateIsNotCompacted() {
+    List<String> keys = makeKeys(CompactStringSet.MIN_COMPACT_SIZE);
+    keys.add("a\ud83d");
+    Set<String> set = CompactStringSet.of(keys);
+    assertThat(set, instanceOf(LinkedHashSet.class));
+    assertTrue(set.contains("a\ud83d"));
+  }
+
+  @Test
+  public void setWithNullIsNotCompacted() {
+    List<String> keys = makeKeys(CompactStringSet.MIN_COMPACT_SIZE);
+    keys.add(null);
+    Set<String> set = CompactStringSet.of(keys);
+    assertThat(set, instanceOf(LinkedHashSet.class));
+    assertTrue(set.contains(null));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void setIsImmutable() {
+    CompactStringSet.of(makeKeys(100), 0).add("x");
+  }
+
+  @Test
+  public void storageIsAboutTheLengthOfEachStringPlusFiveBytes() {
+    // A LinkedHashSet costs well over 100 bytes per key for keys like these, for the String objects and
+    // the hash entries, so this should be less than a third as much.
+    Random random = new Random(1);
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 150000; i++) {
+      keys.add(new UUID(random.nextLong(), random.nextLong()).toString());
+    }
+    CompactStringSet set = (CompactStringSet)CompactStringSet.of(keys);
+    // 36 bytes of UTF-8, a 1-byte length, a 4-byte hash code, and a 4-byte offset for every 16 strings
+    assertEquals(keys.size() * (36 + 1 + 4) + (keys.size() / 16) * 4, set.storageBytes());
+  }
+
+  private static List<String> makeKeys(int count) {
+    Random random = new Random(1);
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      StringBuilder sb = new StringBuilder("key-");
+      int length = 1 + random.nextInt(12);
+      for (int j = 0; j < length; j++) {
+        sb.append((char)('a' + random.nextInt(26)));
+      }
+      keys.add(sb.append(i).toString());
+    }
+    return keys;
+  }
+}
@@ -326,6 +326,50 @@ public class DataModelDependenciesTest {
         new KindAndKey(FEATURES, "flag1"));
   }
 
+  @Test
+  public void dependencyTrackerSortsPrerequisitesFirst() {
+    DependencyTracker dt = new DependencyTracker();
+    
+    FeatureFlag flag1 = flagBuilder("flag1").prerequisites(prerequisite("flag2", 0), prerequisite("flag3", 0)).build();
+    FeatureFlag flag2 = flagBuilder("flag2").prerequisites(prerequisite("flag3", 0)).build();
+    FeatureFlag flag3 = flagBuilder("flag3").build();
+    FeatureFlag flag4 = flagBuilder("flag4").prerequisites(prerequisite("flag1", 0)).build();
+    for (FeatureFlag f: new FeatureFlag[] {flag1, flag2, flag3, flag4}) {
+      dt.updateDependenciesFrom(FEATURES, f.getKey(), new ItemDescriptor(f.getVersion(), f));
+    }
+    
+    Set<String> cyclicKeys = new HashSet<>();
+    assertThat(dt.sortPrerequisitesFirst(ImmutableList.of("flag4", "flag1", "flag2", "flag3"), cyclicKeys),
+        contains("flag3", "flag2", "flag1", "flag4"));
+    assertThat(cyclicKeys, emptyIterable());
+    
+    // flags that were not requested are visited, but not returned
+    assertThat(dt.sortPrerequisitesFirst(ImmutableList.of("flag4", "flag2"), cyclicKeys),
+        contains("flag2", "flag4"));
+  }
+  
+  @Test
+  public void dependencyTrackerFindsPrerequisiteCycles() {
+    DependencyTracker dt = new DependencyTracker();
+    
+    FeatureFlag flag1 = flagBuilder("flag1").prerequisites(prerequisite("flag2", 0)).build();
+    FeatureFlag flag2 = flagBuilder("flag2").prerequisites(prerequisite("flag1", 0)).build();
+    FeatureFlag flag3 = flagBuilder("flag3").prerequisites(prerequisite("flag2", 0)).build();
+    FeatureFlag flag4 = flagBuilder("flag4").prerequisites(prerequisite("flag5", 0)).build();
+    FeatureFlag flag5 = flagBuilder("flag5").prerequisites(prerequisite("flag5", 0)).build();
+    FeatureFlag flag6 = flagBuilder("flag6").build();
+    for (FeatureFlag f: new FeatureFlag[] {flag1, flag2, flag3, flag4, flag5, flag6}) {
+      dt.updateDependenciesFrom(FEATURES, f.getKey(), new ItemDescriptor(f.getVersion(), f));
+    }
+    
+    Set<String> cyclicKeys = new HashSet<>();
+    List<String> sorted = dt.sortPrerequisitesFirst(
+        ImmutableList.of("flag1", "flag2", "flag3", "flag4", "flag5", "flag6"), cyclicKeys);
+    
+    assertThat(sorted, iterableWithSize(6));
+    assertEquals(ImmutableSet.of("flag1", "flag2", "flag3", "flag4", "flag5"), cyclicKeys);
+  }
+  
   @Test
   public void dependencyTrackerResetsGraph() {
     DependencyTracker dt = new DependencyTracker();
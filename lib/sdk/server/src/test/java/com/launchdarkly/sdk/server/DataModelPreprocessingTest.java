@@ -2,6 +2,8 @@ package com.launchdarkly.sdk.server;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.launchdarkly.sdk.AttributeRef;
+import com.launchdarkly.sdk.ContextKind;
 import com.launchdarkly.sdk.EvaluationDetail;
 import com.launchdarkly.sdk.EvaluationReason;
 import com.launchdarkly.sdk.LDValue;
@@ -14,6 +16,8 @@ import com.launchdarkly.sdk.server.DataModel.Segment;
 import com.launchdarkly.sdk.server.DataModel.SegmentRule;
 import com.launchdarkly.sdk.server.DataModel.Target;
 import com.launchdarkly.sdk.server.DataModelPreprocessing.ClausePreprocessed;
+import com.launchdarkly.sdk.server.DataModelPreprocessing.CompiledClause;
+import com.launchdarkly.sdk.server.DataModelPreprocessing.RuleRunIndex;
 
 import org.junit.Test;
 
@@ -28,9 +32,13 @@ import static com.launchdarkly.sdk.server.ModelBuilders.segmentRuleBuilder;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 @SuppressWarnings("javadoc")
 public class DataModelPreprocessingTest {
@@ -136,6 +144,34 @@ public class DataModelPreprocessingTest {
         equalTo(EvalResult.of(aValue, 0, EvaluationReason.prerequisiteFailed("abc"))));
   }
 
+  @Test
+  public void precomputedFlagResultsArePairedWithTheFlag() {
+    FeatureFlag f = new FeatureFlag("key", 0, false,
+        ImmutableList.of(new Prerequisite("abc", 1)),
+        null,
+        ImmutableList.of(new Target(null, ImmutableSet.of(), 1)),
+        null, ImmutableList.of(), null, 0,
+        ImmutableList.of(aValue, bValue),
+        false, false, false, null, false, null, null, false);
+    
+    f.afterDeserialized();
+    
+    List<EvalResult> results = ImmutableList.of(
+        f.preprocessed.offResult,
+        f.preprocessed.fallthroughResults.forVariation(1, false),
+        f.preprocessed.fallthroughResults.forVariation(1, true),
+        f.getTargets().get(0).preprocessed.targetMatchResult,
+        f.getPrerequisites().get(0).preprocessed.prerequisiteFailedResult);
+    for (EvalResult result: results) {
+      EvalResultAndFlag resultAndFlag = result.getPrecomputedResultAndFlag();
+      assertNotNull(resultAndFlag);
+      assertSame(result, resultAndFlag.getResult());
+      assertSame(f, resultAndFlag.getFlag());
+    }
+    assertNull(EvalResult.of(aValue, 0, EvaluationReason.off()).getPrecomputedResultAndFlag());
+    assertNull(f.preprocessed.offResult.withForceReasonTracking(true).getPrecomputedResultAndFlag());
+  }
+
   @Test
   public void preprocessFlagAddsPrecomputedResultsToFlagRulesWithRollout() {
 
@@ -304,6 +340,28 @@ public class DataModelPreprocessingTest {
     }
   }
   
+  @Test
+  public void preprocessFlagIndexesStringClausesWithManyValues() {
+    for (Operator op: new Operator[] { Operator.startsWith, Operator.endsWith, Operator.contains }) {
+      LDValue[] manyValues = new LDValue[EvaluatorOperators.STRING_PATTERN_INDEX_MIN_VALUES];
+      for (int i = 0; i < manyValues.length; i++) {
+        manyValues[i] = LDValue.of("value" + i);
+      }
+      FeatureFlag f1 = flagFromClause(clause("x", op, manyValues));
+      f1.afterDeserialized();
+      ClausePreprocessed ce1 = f1.getRules().get(0).getClauses().get(0).preprocessed;
+      assertNotNull(op.name(), ce1);
+      assertNotNull(op.name(), ce1.stringMatcher);
+      assertSame(op.name(), ce1.stringMatcher, f1.getRules().get(0).preprocessed.clauses[0].valueMatcher);
+      assertTrue(op.name(), ce1.stringMatcher.matchAny(LDValue.of("value3")));
+      assertFalse(op.name(), ce1.stringMatcher.matchAny(LDValue.of("other")));
+
+      FeatureFlag f2 = flagFromClause(clause("x", op, LDValue.of("a"), LDValue.of("b")));
+      f2.afterDeserialized();
+      assertNull(op.name(), f2.getRules().get(0).getClauses().get(0).preprocessed);
+    }
+  }
+
   @Test
   public void preprocessFlagParsesClauseRegex() {
     Clause c = clause(
@@ -377,4 +435,168 @@ public class DataModelPreprocessingTest {
     assertNotNull(ce.valuesExtra.get(0).parsedRegex);
     assertEquals("x*", ce.valuesExtra.get(0).parsedRegex.toString());
   }
+
+  @Test
+  public void preprocessFlagCompilesRuleClauses() {
+    Clause c0 = new Clause(ContextKind.of("org"), AttributeRef.fromLiteral("x"), Operator.in,
+        ImmutableList.of(aValue, bValue), true);
+    Clause c1 = new Clause(null, AttributeRef.fromLiteral("kind"), Operator.startsWith,
+        ImmutableList.of(aValue), false);
+    FeatureFlag f = new FeatureFlag("key", 0, false, null, null, null, null,
+        ImmutableList.of(new Rule("", ImmutableList.of(c0, c1), null, null, false)),
+        null, null, null, false, false, false, null, false, null, null, false);
+    
+    f.afterDeserialized();
+    
+    CompiledClause[] compiled = f.getRules().get(0).preprocessed.clauses;
+    assertEquals(2, compiled.length);
+    
+    assertNull(compiled[0].malformedMessage);
+    assertNull(compiled[0].segmentKeys);
+    assertFalse(compiled[0].matchByKind);
+    assertEquals(ContextKind.of("org"), compiled[0].contextKind);
+    assertEquals(AttributeRef.fromLiteral("x"), compiled[0].attribute);
+    assertTrue(compiled[0].negate);
+    assertTrue(compiled[0].valueMatcher.matchAny(bValue));
+    assertFalse(compiled[0].valueMatcher.matchAny(LDValue.of("c")));
+    
+    assertTrue(compiled[1].matchByKind);
+    assertFalse(compiled[1].negate);
+    assertTrue(compiled[1].valueMatcher.matchAny(LDValue.of("abc")));
+  }
+  
+  @Test
+  public void preprocessFlagCompilesSegmentMatchClauseToStringKeys() {
+    Clause c = new Clause(null, null, Operator.segmentMatch,
+        ImmutableList.of(LDValue.of("s1"), LDValue.of(2), LDValue.of("s3")), false);
+    FeatureFlag f = flagFromClause(c);
+    
+    f.afterDeserialized();
+    
+    CompiledClause compiled = f.getRules().get(0).preprocessed.clauses[0];
+    assertNull(compiled.malformedMessage);
+    assertArrayEquals(new String[] { "s1", "s3" }, compiled.segmentKeys);
+  }
+  
+  @Test
+  public void preprocessFlagCompilesMalformedClausesToErrorMessage() {
+    Clause noAttr = new Clause(null, null, Operator.in, ImmutableList.of(aValue), false);
+    Clause badAttr = new Clause(null, AttributeRef.fromPath("///"), Operator.in, ImmutableList.of(aValue), false);
+    FeatureFlag f1 = flagFromClause(noAttr), f2 = flagFromClause(badAttr);
+    
+    f1.afterDeserialized();
+    f2.afterDeserialized();
+    
+    assertEquals("rule clause did not specify an attribute",
+        f1.getRules().get(0).preprocessed.clauses[0].malformedMessage);
+    assertNotNull(f2.getRules().get(0).preprocessed.clauses[0].malformedMessage);
+  }
+  
+  @Test
+  public void preprocessFlagCompilesUnknownOperatorToNonMatchingClause() {
+    Clause c = new Clause(null, AttributeRef.fromLiteral("x"), Operator.forName("whatever"),
+        ImmutableList.of(aValue), false);
+    FeatureFlag f = flagFromClause(c);
+    
+    f.afterDeserialized();
+    
+    CompiledClause compiled = f.getRules().get(0).preprocessed.clauses[0];
+    assertNull(compiled.malformedMessage);
+    assertFalse(compiled.valueMatcher.matchAny(aValue));
+  }
+  
+  @Test
+  public void preprocessSegmentCompilesClausesInRules() {
+    Clause c = clause("x", Operator.endsWith, LDValue.of("z"));
+    SegmentRule rule = segmentRuleBuilder().clauses(c).build();
+    Segment s = segmentBuilder("key").disablePreprocessing(true).rules(rule).build();
+    
+    assertNull(s.getRules().get(0).preprocessed);
+    
+    s.afterDeserialized();
+    
+    CompiledClause[] compiled = s.getRules().get(0).preprocessed.clauses;
+    assertEquals(1, compiled.length);
+    assertTrue(compiled[0].valueMatcher.matchAny(LDValue.of("xyz")));
+    assertFalse(compiled[0].valueMatcher.matchAny(LDValue.of("zyx")));
+  }
+
+  @Test
+  public void preprocessSegmentComputesBigSegmentRef() {
+    Segment s = segmentBuilder("key").unbounded(true).generation(2).disablePreprocessing(true).build();
+    
+    assertNull(s.preprocessed);
+    
+    s.afterDeserialized();
+    
+    assertEquals("key.g2", s.preprocessed.bigSegmentRef);
+  }
+
+  @Test
+  public void preprocessSegmentDoesNotComputeBigSegmentRefForRegularSegment() {
+    Segment s = segmentBuilder("key").build();
+    
+    assertNull(s.preprocessed.bigSegmentRef);
+  }
+
+  private static Rule inRule(String attr, boolean negate, LDValue... values) {
+    return new Rule("", ImmutableList.of(new Clause(null, AttributeRef.fromLiteral(attr), Operator.in,
+        ImmutableList.copyOf(values), negate)), 0, null, false);
+  }
+  
+  private static FeatureFlag flagFromRules(Rule... rules) {
+    return new FeatureFlag("key", 0, false, null, null, null, null, ImmutableList.copyOf(rules),
+        null, null, ImmutableList.of(aValue), false, false, false, null, false, null, null, false);
+  }
+  
+  @Test
+  public void preprocessFlagIndexesRunsOfSingleInClauseRules() {
+    FeatureFlag f = flagFromRules(
+        inRule("x", false, LDValue.of(1)),
+        inRule("y", false, LDValue.of(1), LDValue.of(2)),
+        inRule("y", false, LDValue.of(3), LDValue.of(2)),
+        inRule("y", false, LDValue.of(4)),
+        inRule("x", false, LDValue.of(1))
+        );
+    
+    f.afterDeserialized();
+    
+    RuleRunIndex[] indexes = f.preprocessed.ruleRunIndexes;
+    assertNotNull(indexes);
+    assertEquals(5, indexes.length);
+    assertNull(indexes[0]);
+    assertNotNull(indexes[1]);
+    assertNull(indexes[2]);
+    assertNull(indexes[3]);
+    assertNull(indexes[4]);
+    
+    RuleRunIndex run = indexes[1];
+    assertEquals(AttributeRef.fromLiteral("y"), run.attribute);
+    assertEquals(4, run.endIndex);
+    assertEquals(Integer.valueOf(1), run.firstRuleIndexByValue.get(LDValue.of(1)));
+    assertEquals(Integer.valueOf(1), run.firstRuleIndexByValue.get(LDValue.of(2)));
+    assertEquals(Integer.valueOf(2), run.firstRuleIndexByValue.get(LDValue.of(3)));
+    assertEquals(Integer.valueOf(3), run.firstRuleIndexByValue.get(LDValue.of(4)));
+  }
+  
+  @Test
+  public void preprocessFlagDoesNotIndexShortRunsOrUnsuitableRules() {
+    FeatureFlag f = flagFromRules(
+        inRule("x", false, LDValue.of(1)),
+        inRule("x", false, LDValue.of(2)),
+        inRule("x", true, LDValue.of(3)),
+        inRule("x", false, LDValue.of(4)),
+        new Rule("", ImmutableList.of(
+            new Clause(null, AttributeRef.fromLiteral("x"), Operator.in, ImmutableList.of(aValue), false),
+            new Clause(null, AttributeRef.fromLiteral("x"), Operator.in, ImmutableList.of(aValue), false)),
+            0, null, false),
+        inRule("kind", false, LDValue.of("user")),
+        inRule("kind", false, LDValue.of("org")),
+        inRule("kind", false, LDValue.of("other"))
+        );
+    
+    f.afterDeserialized();
+    
+    assertNull(f.preprocessed.ruleRunIndexes);
+  }
 }
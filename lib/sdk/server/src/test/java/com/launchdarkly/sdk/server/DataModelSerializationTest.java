@@ -2,7 +2,9 @@ package com.launchdarkly.sdk.server;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.gson.JsonElement;
+import com.launchdarkly.sdk.ArrayBuilder;
 import com.launchdarkly.sdk.AttributeRef;
 import com.launchdarkly.sdk.ContextKind;
 import com.launchdarkly.sdk.LDValue;
@@ -22,15 +24,20 @@ import com.launchdarkly.sdk.server.DataStoreTestTypes.DataBuilder;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.DataKind;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.FullDataSet;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.ItemDescriptor;
+import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.KeyedItems;
 import com.launchdarkly.sdk.server.subsystems.SerializationException;
 
 import org.junit.Test;
 
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import static com.launchdarkly.sdk.server.DataModel.FEATURES;
 import static com.launchdarkly.sdk.server.DataModel.SEGMENTS;
+import static com.launchdarkly.sdk.server.DataModelSerialization.deserializeFromJsonReader;
 import static com.launchdarkly.sdk.server.DataModelSerialization.deserializeFromParsedJson;
 import static com.launchdarkly.sdk.server.DataModelSerialization.parseFullDataSet;
 import static com.launchdarkly.sdk.server.JsonHelpers.serialize;
@@ -39,10 +46,14 @@ import static com.launchdarkly.sdk.server.ModelBuilders.segmentBuilder;
 import static com.launchdarkly.sdk.server.TestUtil.assertDataSetEquals;
 import static com.launchdarkly.sdk.server.TestUtil.jsonReaderFrom;
 import static com.launchdarkly.testhelpers.JsonAssertions.assertJsonEquals;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 @SuppressWarnings("javadoc")
@@ -346,6 +357,38 @@ public class DataModelSerializationTest {
     assertSegmentHasAllProperties(segment1);
   }
   
+  @Test
+  public void largeKeyListsAreDeserializedAsCompactSets() {
+    ArrayBuilder keys = LDValue.buildArray();
+    Set<String> expectedKeys = new HashSet<>();
+    for (int i = 0; i < CompactStringSet.MIN_COMPACT_SIZE; i++) {
+      keys.add("key" + i);
+      expectedKeys.add("key" + i);
+    }
+    LDValue segmentJson = baseBuilder("segment-key")
+        .put("included", keys.build())
+        .put("includedContexts", LDValue.arrayOf(
+            LDValue.buildObject().put("contextKind", "kind1").put("values", keys.build()).build()))
+        .build();
+    Segment segment0 = (Segment)SEGMENTS.deserialize(segmentJson.toJsonString()).getItem();
+    assertThat(segment0.getIncluded(), instanceOf(CompactStringSet.class));
+    assertThat(segment0.getIncludedContexts().get(0).getValues(), instanceOf(CompactStringSet.class));
+    assertEquals(expectedKeys, segment0.getIncluded());
+
+    String json1 = SEGMENTS.serialize(new ItemDescriptor(segment0.getVersion(), segment0));
+    Segment segment1 = (Segment)SEGMENTS.deserialize(json1).getItem();
+    assertEquals(expectedKeys, segment1.getIncluded());
+    assertEquals(expectedKeys, segment1.getIncludedContexts().get(0).getValues());
+
+    LDValue flagJson = baseBuilder("flag-key")
+        .put("targets", LDValue.arrayOf(LDValue.buildObject().put("variation", 0).put("values", keys.build()).build()))
+        .build();
+    assertFlagFromJson(flagJson, f -> {
+      assertThat(f.getTargets().get(0).getValues(), instanceOf(CompactStringSet.class));
+      assertEquals(expectedKeys, f.getTargets().get(0).getValues());
+    });
+  }
+
   @Test
   public void segmentIsDeserializedWithMinimalProperties() {
     String json = LDValue.buildObject().put("key", "segment-key").put("version", 99).build().toJsonString();
@@ -611,6 +654,81 @@ public class DataModelSerializationTest {
         .addAny(FEATURES, flag1, flag2).addAny(SEGMENTS, segment1, segment2).build(), allData);
   }
   
+  @Test
+  public void parsingFullDataSetUsesOneInstanceForEqualValues() throws Exception {
+    ContextKind org = ContextKind.of("org");
+    LDValue jsonVariation = LDValue.buildObject().put("color", "green").build();
+    FeatureFlag[] flags = new FeatureFlag[2];
+    for (int i = 0; i < flags.length; i++) {
+      flags[i] = flagBuilder("flag" + i).version(1)
+          .variations(jsonVariation, LDValue.of("b"))
+          .contextTargets(ModelBuilders.target(org, 0, "key1"))
+          .rules(ModelBuilders.ruleBuilder().variation(0)
+              .clauses(ModelBuilders.clause(org, "email", Operator.endsWith, LDValue.of("@example.com"))).build())
+          .build();
+    }
+    Segment segment = segmentBuilder("segment1").version(1).includedContexts(org, "key1").build();
+    String json = "{\"flags\":{\"flag0\":" + serialize(flags[0]) + ",\"flag1\":" + serialize(flags[1]) + "}" +
+        ",\"segments\":{\"segment1\":" + serialize(segment) + "}}";
+    Iterable<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>> data = parseFullDataSet(jsonReaderFrom(json));
+
+    Map.Entry<String, ItemDescriptor> flagEntry0 = Iterables.get(Iterables.get(data, 0).getValue().getItems(), 0);
+    Map.Entry<String, ItemDescriptor> flagEntry1 = Iterables.get(Iterables.get(data, 0).getValue().getItems(), 1);
+    Map.Entry<String, ItemDescriptor> segmentEntry = Iterables.get(Iterables.get(data, 1).getValue().getItems(), 0);
+    FeatureFlag flag0 = (FeatureFlag)flagEntry0.getValue().getItem();
+    FeatureFlag flag1 = (FeatureFlag)flagEntry1.getValue().getItem();
+    Segment parsedSegment = (Segment)segmentEntry.getValue().getItem();
+    Clause clause0 = flag0.getRules().get(0).getClauses().get(0), clause1 = flag1.getRules().get(0).getClauses().get(0);
+
+    assertSame(flagEntry0.getKey(), flag0.getKey());
+    assertSame(segmentEntry.getKey(), parsedSegment.getKey());
+    assertSame(flag0.getVariations().get(0), flag1.getVariations().get(0));
+    assertSame(flag0.getVariations().get(1), flag1.getVariations().get(1));
+    assertSame(clause0.getValues().get(0), clause1.getValues().get(0));
+    assertSame(clause0.getAttribute(), clause1.getAttribute());
+    assertSame(clause0.getContextKind(), clause1.getContextKind());
+    assertSame(clause0.getContextKind(), flag0.getContextTargets().get(0).getContextKind());
+    assertSame(clause0.getContextKind(), parsedSegment.getIncludedContexts().get(0).getContextKind());
+    assertEquals(jsonVariation, flag0.getVariations().get(0));
+    assertEquals(AttributeRef.fromPath("email"), clause0.getAttribute());
+    assertEquals(org, clause0.getContextKind());
+
+    // equal values in a different data set are not the same instances, since the interner is discarded
+    Iterable<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>> otherData = parseFullDataSet(jsonReaderFrom(json));
+    FeatureFlag other = (FeatureFlag)Iterables.get(Iterables.get(otherData, 0).getValue().getItems(), 0)
+        .getValue().getItem();
+    assertNotSame(flag0.getVariations().get(0), other.getVariations().get(0));
+    assertNull(DataModelInterner.current());
+  }
+
+  @Test
+  public void singleItemIsDeserializedWithoutInterning() throws Exception {
+    LDValue jsonVariation = LDValue.buildObject().put("color", "green").build();
+    String json = serialize(flagBuilder("flag1").version(1).variations(jsonVariation, jsonVariation).build());
+    JsonElement element = JsonHelpers.gsonInstance().fromJson(json, JsonElement.class);
+
+    FeatureFlag fromReader = (FeatureFlag)deserializeFromJsonReader(FEATURES, jsonReaderFrom(json));
+    FeatureFlag fromParsedJson = (FeatureFlag)deserializeFromParsedJson(FEATURES, element);
+
+    for (FeatureFlag flag: new FeatureFlag[] { fromReader, fromParsedJson }) {
+      assertEquals(jsonVariation, flag.getVariations().get(0));
+      assertEquals(jsonVariation, flag.getVariations().get(1));
+      assertNotSame(flag.getVariations().get(0), flag.getVariations().get(1));
+    }
+    assertNull(DataModelInterner.current());
+  }
+
+  @Test
+  public void interningIsNotLeftActiveAfterParsingFails() throws Exception {
+    try {
+      parseFullDataSet(jsonReaderFrom("{\"flags\":{\"flag1\":{\"key\":[3]}}}"));
+    } catch (SerializationException e) {
+      assertNull(DataModelInterner.current());
+      return;
+    }
+    throw new AssertionError("expected exception");
+  }
+
   private void assertFlagFromJson(LDValue flagJson, Consumer<FeatureFlag> action) {
     FeatureFlag flag = (FeatureFlag)FEATURES.deserialize(flagJson.toJsonString()).getItem();
     action.accept(flag);
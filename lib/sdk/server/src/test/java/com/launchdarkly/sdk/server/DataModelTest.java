@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.launchdarkly.sdk.server.DataModel.Clause;
 import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
+import com.launchdarkly.sdk.server.DataModel.Operator;
 import com.launchdarkly.sdk.server.DataModel.Rollout;
 import com.launchdarkly.sdk.server.DataModel.RolloutKind;
 import com.launchdarkly.sdk.server.DataModel.Rule;
@@ -13,7 +14,12 @@ import com.launchdarkly.sdk.server.DataModel.Target;
 
 import org.junit.Test;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 @SuppressWarnings("javadoc")
 public class DataModelTest {
@@ -97,6 +103,20 @@ public class DataModelTest {
     assertEquals(ImmutableList.of(), r.getVariations());
   }
   
+  @Test
+  public void builtinOperatorsHaveDistinctCodes() {
+    Set<Integer> codes = new HashSet<>();
+    for (Operator op: Operator.getBuiltins()) {
+      assertNotEquals(Operator.UNKNOWN, op.code());
+      assertTrue(op.name(), codes.add(op.code()));
+    }
+  }
+
+  @Test
+  public void unrecognizedOperatorHasUnknownCode() {
+    assertEquals(Operator.UNKNOWN, Operator.forName("notAnOperator").code());
+  }
+
   private FeatureFlag flagWithAllZeroValuedFields() {
     // This calls the empty constructor directly to simulate a condition where Gson did not set any fields
     // and no preprocessing has happened.
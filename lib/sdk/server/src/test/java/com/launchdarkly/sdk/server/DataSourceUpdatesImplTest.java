@@ -57,6 +57,8 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 @SuppressWarnings("javadoc")
 public class DataSourceUpdatesImplTest {
@@ -1001,6 +1003,197 @@ public class DataSourceUpdatesImplTest {
     expectEvents(eventSink, "flag2");
   }
   
+  @Test
+  public void initLinksPrerequisitesToStoredFlags() throws Exception {
+    DataStore store = inMemoryDataStore();
+    DataSourceUpdatesImpl storeUpdates = makeInstance(store);
+    
+    FeatureFlag flag1 = flagBuilder("flag1").version(1).build();
+    FeatureFlag flag2 = flagWithPrerequisiteReference(flagBuilder("flag2").version(1).build(), flag1);
+    storeUpdates.init(new DataBuilder().addAny(FEATURES, flag1, flag2).build());
+    
+    FeatureFlag storedFlag2 = (FeatureFlag)store.get(FEATURES, "flag2").getItem();
+    assertThat(storedFlag2.preprocessed.prerequisiteLinks.flags.length, is(1));
+    assertSame(store.get(FEATURES, "flag1").getItem(), storedFlag2.preprocessed.prerequisiteLinks.flags[0]);
+    assertNull(((FeatureFlag)store.get(FEATURES, "flag1").getItem()).preprocessed.prerequisiteLinks);
+  }
+  
+  @Test
+  public void upsertOfPrerequisiteRelinksDependentFlags() throws Exception {
+    DataStore store = inMemoryDataStore();
+    DataSourceUpdatesImpl storeUpdates = makeInstance(store);
+    
+    FeatureFlag flag1 = flagBuilder("flag1").version(1).build();
+    FeatureFlag flag2 = flagWithPrerequisiteReference(flagBuilder("flag2").version(1).build(), flag1);
+    FeatureFlag flag3 = flagWithPrerequisiteReference(flagBuilder("flag3").version(1).build(), flag2);
+    storeUpdates.init(new DataBuilder().addAny(FEATURES, flag1, flag2, flag3).build());
+    
+    FeatureFlag flag1v2 = flagBuilder("flag1").version(2).build();
+    storeUpdates.upsert(FEATURES, "flag1", new ItemDescriptor(2, flag1v2));
+    assertSame(flag1v2, flag2.preprocessed.prerequisiteLinks.flags[0]);
+    assertSame(flag2, flag3.preprocessed.prerequisiteLinks.flags[0]);
+    
+    storeUpdates.upsert(FEATURES, "flag1", ItemDescriptor.deletedItem(3));
+    assertNull(flag2.preprocessed.prerequisiteLinks.flags[0]);
+  }
+  
+  @Test
+  public void flagsWithPrerequisiteCycleAreNotLinked() throws Exception {
+    DataStore store = inMemoryDataStore();
+    DataSourceUpdatesImpl storeUpdates = makeInstance(store);
+    
+    FeatureFlag flag1 = flagBuilder("flag1").version(1).prerequisites(prerequisite("flag2", 0)).build();
+    FeatureFlag flag2 = flagBuilder("flag2").version(1).prerequisites(prerequisite("flag1", 0)).build();
+    FeatureFlag flag3 = flagBuilder("flag3").version(1).prerequisites(prerequisite("flag1", 0)).build();
+    storeUpdates.init(new DataBuilder().addAny(FEATURES, flag1, flag2, flag3).build());
+    
+    assertNull(flag1.preprocessed.prerequisiteLinks);
+    assertNull(flag2.preprocessed.prerequisiteLinks);
+    assertNull(flag3.preprocessed.prerequisiteLinks);
+    
+    // breaking the cycle allows all of them to be linked
+    FeatureFlag flag2v2 = flagBuilder("flag2").version(2).build();
+    storeUpdates.upsert(FEATURES, "flag2", new ItemDescriptor(2, flag2v2));
+    assertSame(flag2v2, flag1.preprocessed.prerequisiteLinks.flags[0]);
+    assertSame(flag1, flag3.preprocessed.prerequisiteLinks.flags[0]);
+  }
+  
+  @Test
+  public void initKeepsStoredInstancesOfUnchangedItems() throws Exception {
+    DataStore store = inMemoryDataStore();
+    DataSourceUpdatesImpl storeUpdates = makeInstance(store);
+
+    FeatureFlag flag1 = flagBuilder("flag1").version(1).build();
+    FeatureFlag flag2 = flagBuilder("flag2").version(1).build();
+    Segment segment1 = segmentBuilder("segment1").version(1).build();
+    storeUpdates.init(new DataBuilder().addAny(FEATURES, flag1, flag2).addAny(SEGMENTS, segment1).build());
+
+    FeatureFlag flag1Copy = flagBuilder(flag1).build();
+    FeatureFlag flag2v2 = flagBuilder("flag2").version(2).build();
+    Segment segment1Copy = segmentBuilder("segment1").version(1).build();
+    storeUpdates.init(new DataBuilder().addAny(FEATURES, flag1Copy, flag2v2).addAny(SEGMENTS, segment1Copy).build());
+
+    assertSame(flag1, store.get(FEATURES, "flag1").getItem());
+    assertSame(flag2v2, store.get(FEATURES, "flag2").getItem());
+    assertSame(segment1, store.get(SEGMENTS, "segment1").getItem());
+  }
+
+  @Test
+  public void applyFullChangeSetKeepsStoredInstancesOfUnchangedItems() throws Exception {
+    DataStore store = inMemoryDataStore();
+    DataSourceUpdatesImpl storeUpdates = makeInstance(store);
+
+    FeatureFlag flag1 = flagBuilder("flag1").version(1).build();
+    FeatureFlag flag2 = flagBuilder("flag2").version(1).build();
+    storeUpdates.apply(makeFullChangeSet(flag1, flag2));
+
+    FeatureFlag flag1Copy = flagBuilder(flag1).build();
+    FeatureFlag flag2v2 = flagBuilder("flag2").version(2).build();
+    storeUpdates.apply(makeFullChangeSet(flag1Copy, flag2v2));
+
+    assertSame(flag1, store.get(FEATURES, "flag1").getItem());
+    assertSame(flag2v2, store.get(FEATURES, "flag2").getItem());
+  }
+
+  @Test
+  public void unchangedFlagIsRelinkedWhenPrerequisiteChangesInFullDataSet() throws Exception {
+    DataStore store = inMemoryDataStore();
+    DataSourceUpdatesImpl storeUpdates = makeInstance(store);
+
+    FeatureFlag flag1 = flagBuilder("flag1").version(1).build();
+    FeatureFlag flag2 = flagWithPrerequisiteReference(flagBuilder("flag2").version(1).build(), flag1);
+    storeUpdates.init(new DataBuilder().addAny(FEATURES, flag1, flag2).build());
+    assertSame(flag1, flag2.preprocessed.prerequisiteLinks.flags[0]);
+
+    FeatureFlag flag1v2 = flagBuilder("flag1").version(2).build();
+    storeUpdates.init(new DataBuilder().addAny(FEATURES, flag1v2, flagBuilder(flag2).build()).build());
+    assertSame(flag2, store.get(FEATURES, "flag2").getItem());
+    assertSame(flag1v2, flag2.preprocessed.prerequisiteLinks.flags[0]);
+
+    storeUpdates.init(new DataBuilder().addAny(FEATURES, flagBuilder(flag2).build()).build());
+    assertSame(flag2, store.get(FEATURES, "flag2").getItem());
+    assertNull(flag2.preprocessed.prerequisiteLinks.flags[0]);
+  }
+
+  @Test
+  public void linksOfUnchangedFlagAreExpiredBeforeFullDataSetIsStored() throws Exception {
+    // Between the store update and the relinking, evaluations that use the new data must not follow a link to
+    // the old prerequisite.
+    FeatureFlag flag1 = flagBuilder("flag1").version(1).build();
+    FeatureFlag flag2 = flagWithPrerequisiteReference(flagBuilder("flag2").version(1).build(), flag1);
+    List<DataModelPreprocessing.PrerequisiteLinks> linksWhenStored = new ArrayList<>();
+    List<Long> versionsWhenStored = new ArrayList<>();
+    InMemoryDataStore store = new InMemoryDataStore() {
+      @Override
+      public void init(FullDataSet<ItemDescriptor> allData) {
+        linksWhenStored.add(flag2.preprocessed.prerequisiteLinks);
+        versionsWhenStored.add(getSnapshot().getVersion());
+        super.init(allData);
+      }
+
+      @Override
+      public void apply(ChangeSet<Iterable<Map.Entry<DataKind, KeyedItems<ItemDescriptor>>>> changeSet) {
+        linksWhenStored.add(flag2.preprocessed.prerequisiteLinks);
+        versionsWhenStored.add(getSnapshot().getVersion());
+        super.apply(changeSet);
+      }
+    };
+    DataSourceUpdatesImpl storeUpdates = makeInstance(store);
+
+    storeUpdates.init(new DataBuilder().addAny(FEATURES, flag1, flag2).build());
+    FeatureFlag flag1v2 = flagBuilder("flag1").version(2).build();
+    storeUpdates.init(new DataBuilder().addAny(FEATURES, flag1v2, flagBuilder(flag2).build()).build());
+    assertSame(flag1, linksWhenStored.get(1).flags[0]);
+    assertThat(linksWhenStored.get(1).isValidFor(versionsWhenStored.get(1)), is(true));
+    assertThat(linksWhenStored.get(1).isValidFor(versionsWhenStored.get(1) + 1), is(false));
+    assertSame(flag1v2, flag2.preprocessed.prerequisiteLinks.flags[0]);
+    assertThat(flag2.preprocessed.prerequisiteLinks.isValidFor(store.getSnapshot().getVersion()), is(true));
+
+    FeatureFlag flag1v3 = flagBuilder("flag1").version(3).build();
+    storeUpdates.apply(makeFullChangeSet(flag1v3, flagBuilder(flag2).build()));
+    assertSame(flag1v2, linksWhenStored.get(2).flags[0]);
+    assertThat(linksWhenStored.get(2).isValidFor(versionsWhenStored.get(2)), is(true));
+    assertThat(linksWhenStored.get(2).isValidFor(versionsWhenStored.get(2) + 1), is(false));
+    assertSame(flag1v3, flag2.preprocessed.prerequisiteLinks.flags[0]);
+
+    storeUpdates.apply(makeFullChangeSet(flagBuilder(flag1v3).build(), flagBuilder(flag2).build()));
+    // nothing changed, so the links were kept and are still valid for the new data
+    assertSame(flag1v3, linksWhenStored.get(3).flags[0]);
+    assertSame(linksWhenStored.get(3), flag2.preprocessed.prerequisiteLinks);
+    assertThat(flag2.preprocessed.prerequisiteLinks.isValidFor(store.getSnapshot().getVersion()), is(true));
+  }
+
+  @Test
+  public void linksOfDependentFlagsAreExpiredBeforeUpsertIsStored() throws Exception {
+    FeatureFlag flag1 = flagBuilder("flag1").version(1).build();
+    FeatureFlag flag2 = flagWithPrerequisiteReference(flagBuilder("flag2").version(1).build(), flag1);
+    FeatureFlag flag3 = flagWithPrerequisiteReference(flagBuilder("flag3").version(1).build(), flag2);
+    List<Boolean> linksValidForNewData = new ArrayList<>();
+    InMemoryDataStore store = new InMemoryDataStore() {
+      @Override
+      public boolean upsert(DataKind kind, String key, ItemDescriptor item) {
+        long newVersion = getSnapshot().getVersion() + 1;
+        linksValidForNewData.add(flag2.preprocessed.prerequisiteLinks.isValidFor(newVersion));
+        linksValidForNewData.add(flag3.preprocessed.prerequisiteLinks.isValidFor(newVersion));
+        return super.upsert(kind, key, item);
+      }
+    };
+    DataSourceUpdatesImpl storeUpdates = makeInstance(store);
+    storeUpdates.init(new DataBuilder().addAny(FEATURES, flag1, flag2, flag3).build());
+
+    FeatureFlag flag1v2 = flagBuilder("flag1").version(2).build();
+    storeUpdates.upsert(FEATURES, "flag1", new ItemDescriptor(2, flag1v2));
+    assertThat(linksValidForNewData, is(ImmutableList.of(false, false)));
+    long dataVersion = store.getSnapshot().getVersion();
+    assertThat(flag2.preprocessed.prerequisiteLinks.isValidFor(dataVersion), is(true));
+    assertThat(flag3.preprocessed.prerequisiteLinks.isValidFor(dataVersion), is(true));
+
+    // a rejected update does not change the data, but the links must still be usable afterward
+    storeUpdates.upsert(FEATURES, "flag1", new ItemDescriptor(1, flag1));
+    assertSame(flag1v2, flag2.preprocessed.prerequisiteLinks.flags[0]);
+    assertThat(flag2.preprocessed.prerequisiteLinks.isValidFor(store.getSnapshot().getVersion()), is(true));
+  }
+
   @Test
   public void applyFullChangeSetToLegacyStoreWithEnvironmentId() throws Exception {
     LegacyDataStore legacyStore = new LegacyDataStore();
@@ -0,0 +1,327 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.AttributeRef;
+import com.launchdarkly.sdk.ContextKind;
+import com.launchdarkly.sdk.EvaluationReason;
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
+import com.launchdarkly.sdk.server.DataModel.Operator;
+import com.launchdarkly.sdk.server.DataModel.Rollout;
+import com.launchdarkly.sdk.server.DataModel.RolloutKind;
+import com.launchdarkly.sdk.server.DataModel.Segment;
+import com.launchdarkly.sdk.server.DataModel.WeightedVariation;
+import com.launchdarkly.sdk.server.interfaces.EvaluationStatistics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.launchdarkly.sdk.server.EvaluatorBucketing.computeBucketValue;
+import static com.launchdarkly.sdk.server.EvaluatorTestUtil.evaluatorBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.booleanFlagWithClauses;
+import static com.launchdarkly.sdk.server.ModelBuilders.clause;
+import static com.launchdarkly.sdk.server.ModelBuilders.clauseMatchingContext;
+import static com.launchdarkly.sdk.server.ModelBuilders.clauseMatchingSegment;
+import static com.launchdarkly.sdk.server.ModelBuilders.flagBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.prerequisite;
+import static com.launchdarkly.sdk.server.ModelBuilders.ruleBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.segmentBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.segmentRuleBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@SuppressWarnings("javadoc")
+public class EvaluationScopeTest {
+  private static final LDContext context = LDContext.builder("userkey").set("attr", "value").build();
+  private static final EvaluationRecorder recorder = new EvaluationRecorder() {};
+
+  private final EvaluatorStatistics statistics = new EvaluatorStatistics();
+
+  @Test
+  public void bucketValueIsComputedOnceForSameSeed() {
+    EvaluationScope scope = new EvaluationScope(context, statistics);
+    float value1 = scope.getBucketValue(false, 123, null, "flag1", null, "salt1");
+    float value2 = scope.getBucketValue(false, 123, null, "flag2", null, "salt2");
+
+    assertEquals(computeBucketValue(false, 123, context, null, "flag1", null, "salt1"), value1, 0);
+    assertEquals(value1, value2, 0);
+    assertBucketCacheStatistics(1, 1);
+  }
+
+  @Test
+  public void bucketValueIsComputedOnceForSameKeyAndSalt() {
+    EvaluationScope scope = new EvaluationScope(context, statistics);
+    float value1 = scope.getBucketValue(false, null, null, "segment", null, "salt");
+    float value2 = scope.getBucketValue(false, null, ContextKind.DEFAULT, "segment", null, "salt");
+
+    assertEquals(computeBucketValue(false, null, context, null, "segment", null, "salt"), value1, 0);
+    assertEquals(value1, value2, 0);
+    assertBucketCacheStatistics(1, 1);
+  }
+
+  @Test
+  public void bucketByAttributeIsIgnoredForExperiments() {
+    EvaluationScope scope = new EvaluationScope(context, statistics);
+    scope.getBucketValue(true, 123, null, "flag", null, "salt");
+    scope.getBucketValue(true, 123, null, "flag", AttributeRef.fromLiteral("attr"), "salt");
+
+    assertBucketCacheStatistics(1, 1);
+  }
+
+  @Test
+  public void differentHashInputsAreNotShared() {
+    EvaluationScope scope = new EvaluationScope(context, statistics);
+    float bySeed = scope.getBucketValue(false, 123, null, "flag", null, "salt");
+    float byOtherSeed = scope.getBucketValue(false, 456, null, "flag", null, "salt");
+    float bySalt = scope.getBucketValue(false, null, null, "flag", null, "salt");
+    float byOtherSalt = scope.getBucketValue(false, null, null, "flag", null, "other");
+    float byAttr = scope.getBucketValue(false, null, null, "flag", AttributeRef.fromLiteral("attr"), "salt");
+
+    assertEquals(computeBucketValue(false, 456, context, null, "flag", null, "salt"), byOtherSeed, 0);
+    assertEquals(computeBucketValue(false, null, context, null, "flag", null, "other"), byOtherSalt, 0);
+    assertEquals(computeBucketValue(false, null, context, null, "flag", AttributeRef.fromLiteral("attr"), "salt"),
+        byAttr, 0);
+    assertEquals(5, Arrays.asList(bySeed, byOtherSeed, bySalt, byOtherSalt, byAttr).stream().distinct().count());
+    assertBucketCacheStatistics(0, 5);
+  }
+
+  @Test
+  public void bucketValueCacheIsBounded() {
+    EvaluationScope scope = new EvaluationScope(context, statistics);
+    int max = EvaluationScope.MAX_BUCKET_VALUES;
+    for (int i = 0; i < max + 1; i++) {
+      scope.getBucketValue(false, i, null, "flag", null, "salt");
+    }
+    scope.getBucketValue(false, 0, null, "flag", null, "salt"); // was retained
+    scope.getBucketValue(false, max, null, "flag", null, "salt"); // was not retained
+
+    assertBucketCacheStatistics(1, max + 2);
+  }
+
+  @Test
+  public void flagsWithSameSeedShareBucketValueInScope() {
+    FeatureFlag flag1 = rolloutFlag("flag1", 99);
+    FeatureFlag flag2 = rolloutFlag("flag2", 99);
+    Evaluator evaluator = evaluatorBuilder().withStatistics(statistics).build();
+
+    EvalResult expected1 = evaluator.evaluate(flag1, context, recorder);
+    EvalResult expected2 = evaluator.evaluate(flag2, context, recorder);
+    assertBucketCacheStatistics(0, 0); // a scope is not used for a single evaluation with no prerequisites
+
+    EvaluationScope scope = evaluator.newScope(context);
+    assertEquals(expected1, evaluator.evaluate(flag1, context, recorder, scope));
+    assertEquals(expected2, evaluator.evaluate(flag2, context, recorder, scope));
+    assertBucketCacheStatistics(1, 1);
+  }
+
+  @Test
+  public void scopeForDifferentContextIsIgnored() {
+    FeatureFlag flag = rolloutFlag("flag", 99);
+    Evaluator evaluator = evaluatorBuilder().withStatistics(statistics).build();
+    LDContext otherContext = LDContext.create("otherkey");
+    EvaluationScope scope = evaluator.newScope(otherContext);
+
+    assertEquals(evaluator.evaluate(flag, context, recorder), evaluator.evaluate(flag, context, recorder, scope));
+    assertBucketCacheStatistics(0, 0);
+  }
+
+  @Test
+  public void weightedSegmentRuleIsBucketedOnceWithinEvaluation() {
+    Segment segment = segmentBuilder("segment")
+        .salt("salt")
+        .rules(segmentRuleBuilder().clauses(clauseMatchingContext(context)).weight(100000).build())
+        .build();
+    FeatureFlag prereqFlag = flagBuilder("prereq")
+        .on(true)
+        .rules(ruleBuilder().id("rule").clauses(clauseMatchingSegment(segment)).variation(1).build())
+        .fallthroughVariation(0)
+        .offVariation(0)
+        .variations(LDValue.of(false), LDValue.of(true))
+        .build();
+    FeatureFlag flag = flagBuilder("flag")
+        .on(true)
+        .prerequisites(prerequisite(prereqFlag.getKey(), 1))
+        .rules(ruleBuilder().id("rule").clauses(clauseMatchingSegment(segment)).variation(1).build())
+        .fallthroughVariation(0)
+        .offVariation(0)
+        .variations(LDValue.of(false), LDValue.of(true))
+        .build();
+    Evaluator evaluator = evaluatorBuilder().withStatistics(statistics)
+        .withStoredFlags(prereqFlag).withStoredSegments(segment).build();
+
+    EvalResult result = evaluator.evaluate(flag, context, recorder);
+    assertEquals(LDValue.of(true), result.getValue());
+    // the second reference to the segment reuses the segment match, so it doesn't even need the bucket value
+    assertBucketCacheStatistics(0, 1);
+    assertSegmentMatchCacheStatistics(1, 1);
+  }
+
+  @Test
+  public void segmentIsMatchedOnceForSeveralFlagsInScope() {
+    Segment segment = segmentBuilder("segment")
+        .version(1)
+        .rules(segmentRuleBuilder().clauses(clause("attr", Operator.in, LDValue.of("value"))).build())
+        .build();
+    Segment otherSegment = segmentBuilder("other")
+        .version(1)
+        .rules(segmentRuleBuilder().clauses(clause("attr", Operator.in, LDValue.of("x"))).build())
+        .build();
+    FeatureFlag flag1 = booleanFlagWithClauses("flag1", clauseMatchingSegment(segment));
+    FeatureFlag flag2 = booleanFlagWithClauses("flag2", clauseMatchingSegment(otherSegment.getKey(), segment.getKey()));
+    FeatureFlag flag3 = booleanFlagWithClauses("flag3", clauseMatchingSegment(otherSegment));
+    Evaluator evaluator = evaluatorBuilder().withStatistics(statistics)
+        .withStoredSegments(segment, otherSegment).build();
+    EvaluationScope scope = evaluator.newScope(context);
+
+    assertEquals(LDValue.of(true), evaluator.evaluate(flag1, context, recorder, scope).getValue());
+    assertEquals(LDValue.of(true), evaluator.evaluate(flag2, context, recorder, scope).getValue());
+    assertEquals(LDValue.of(false), evaluator.evaluate(flag3, context, recorder, scope).getValue());
+    assertSegmentMatchCacheStatistics(2, 2);
+  }
+
+  @Test
+  public void segmentMatchForDifferentSegmentVersionIsNotReused() {
+    Segment segmentV1 = segmentBuilder("segment")
+        .version(1)
+        .rules(segmentRuleBuilder().clauses(clause("attr", Operator.in, LDValue.of("value"))).build())
+        .build();
+    Segment segmentV2 = segmentBuilder("segment")
+        .version(2)
+        .rules(segmentRuleBuilder().clauses(clause("attr", Operator.in, LDValue.of("x"))).build())
+        .build();
+    FeatureFlag flag = booleanFlagWithClauses("flag", clauseMatchingSegment(segmentV1));
+    Evaluator evaluatorV1 = evaluatorBuilder().withStatistics(statistics).withStoredSegments(segmentV1).build();
+    Evaluator evaluatorV2 = evaluatorBuilder().withStatistics(statistics).withStoredSegments(segmentV2).build();
+    EvaluationScope scope = evaluatorV1.newScope(context);
+    assertEquals(LDValue.of(true), evaluatorV1.evaluate(flag, context, recorder, scope).getValue());
+    assertEquals(LDValue.of(false), evaluatorV2.evaluate(flag, context, recorder, scope).getValue());
+    assertSegmentMatchCacheStatistics(0, 2);
+  }
+
+  @Test
+  public void segmentWithOnlyTargetListsDoesNotCreateScope() {
+    Segment segment = segmentBuilder("segment").included(context.getKey()).build();
+    FeatureFlag flag = flagBuilder("flag")
+        .on(true)
+        .rules(
+            ruleBuilder().id("rule1").clauses(clauseMatchingSegment(segment)).variation(1).build(),
+            ruleBuilder().id("rule2").clauses(clauseMatchingSegment(segment)).variation(1).build())
+        .fallthroughVariation(0)
+        .offVariation(0)
+        .variations(LDValue.of(false), LDValue.of(true))
+        .build();
+    Evaluator evaluator = evaluatorBuilder().withStatistics(statistics).withStoredSegments(segment).build();
+
+    assertEquals(LDValue.of(true), evaluator.evaluate(flag, context, recorder).getValue());
+    assertSegmentMatchCacheStatistics(0, 0);
+  }
+
+  @Test
+  public void bigSegmentsStatusIsReportedForEachFlagThatReusesSegmentMatch() {
+    Segment bigSegment = segmentBuilder("big").unbounded(true).generation(1).build();
+    Segment segment = segmentBuilder("segment")
+        .rules(segmentRuleBuilder().clauses(clauseMatchingSegment(bigSegment)).build())
+        .build();
+    FeatureFlag flag1 = booleanFlagWithClauses("flag1", clauseMatchingSegment(segment));
+    FeatureFlag flag2 = booleanFlagWithClauses("flag2", clauseMatchingSegment(segment));
+    FeatureFlag flag3 = booleanFlagWithClauses("flag3", clauseMatchingSegment(bigSegment));
+    Evaluator evaluator = evaluatorBuilder().withStatistics(statistics)
+        .withStoredSegments(bigSegment, segment).withBigSegmentQueryResult(context.getKey(), null).build();
+    EvaluationScope scope = evaluator.newScope(context);
+
+    for (FeatureFlag flag: new FeatureFlag[] { flag1, flag2, flag3 }) {
+      EvalResult result = evaluator.evaluate(flag, context, recorder, scope);
+      assertEquals(flag.getKey(), LDValue.of(false), result.getValue());
+      assertEquals(flag.getKey(), EvaluationReason.BigSegmentsStatus.NOT_CONFIGURED,
+          result.getReason().getBigSegmentsStatus());
+    }
+    assertSegmentMatchCacheStatistics(2, 2);
+  }
+
+  @Test
+  public void parsedValueIsReusedInScope() {
+    EvaluationScope scope = new EvaluationScope(context, statistics);
+    Object version1 = scope.getParsedValue(EvaluatorOperators.PARSED_SEMVER, LDValue.of("2.1.0"));
+    Object version2 = scope.getParsedValue(EvaluatorOperators.PARSED_SEMVER, LDValue.of("2.1.0"));
+    Object date1 = scope.getParsedValue(EvaluatorOperators.PARSED_DATE, LDValue.of("2020-01-01T00:00:00Z"));
+    Object date2 = scope.getParsedValue(EvaluatorOperators.PARSED_DATE, LDValue.of("2020-01-01T00:00:00Z"));
+
+    assertEquals(0, EvaluatorTypeConversion.valueToSemVer(LDValue.of("2.1.0")).compareTo((SemanticVersion)version1));
+    assertSame(version1, version2);
+    assertEquals(EvaluatorTypeConversion.valueToDateTime(LDValue.of("2020-01-01T00:00:00Z")), date1);
+    assertSame(date1, date2);
+  }
+
+  @Test
+  public void parsedValuesOfDifferentKindsAreNotShared() {
+    EvaluationScope scope = new EvaluationScope(context, statistics);
+    assertNull(scope.getParsedValue(EvaluatorOperators.PARSED_DATE, LDValue.of("2.1.0")));
+    Object version = scope.getParsedValue(EvaluatorOperators.PARSED_SEMVER, LDValue.of("2.1.0"));
+    assertEquals(0, EvaluatorTypeConversion.valueToSemVer(LDValue.of("2.1.0")).compareTo((SemanticVersion)version));
+    assertNull(scope.getParsedValue(EvaluatorOperators.PARSED_DATE, LDValue.of("2.1.0")));
+  }
+
+  @Test
+  public void parsedValueCacheIsBounded() {
+    EvaluationScope scope = new EvaluationScope(context, statistics);
+    int max = EvaluationScope.MAX_PARSED_VALUES;
+    Object first = scope.getParsedValue(EvaluatorOperators.PARSED_SEMVER, LDValue.of("1.0.0"));
+    for (int i = 1; i < max + 1; i++) {
+      scope.getParsedValue(EvaluatorOperators.PARSED_SEMVER, LDValue.of(i + ".0.0"));
+    }
+    Object last = scope.getParsedValue(EvaluatorOperators.PARSED_SEMVER, LDValue.of((max + 1) + ".0.0"));
+
+    assertSame(first, scope.getParsedValue(EvaluatorOperators.PARSED_SEMVER, LDValue.of("1.0.0")));
+    assertNotSame(last, scope.getParsedValue(EvaluatorOperators.PARSED_SEMVER, LDValue.of((max + 1) + ".0.0")));
+  }
+
+  @Test
+  public void semVerAndDateClausesGiveSameResultsWithScope() {
+    LDContext c = LDContext.builder("key").set("version", "2.1.0").set("date", "2020-01-01T00:00:00Z")
+        .set("bad", "x").build();
+    FeatureFlag[] flags = new FeatureFlag[] {
+        booleanFlagWithClauses("flag1", clause("version", Operator.semVerLessThan, LDValue.of("3.0.0"))),
+        booleanFlagWithClauses("flag2", clause("version", Operator.semVerGreaterThan, LDValue.of("3.0.0"))),
+        booleanFlagWithClauses("flag3", clause("version", Operator.semVerEqual, LDValue.of("2.1"))),
+        booleanFlagWithClauses("flag4", clause("date", Operator.before, LDValue.of("2021-01-01T00:00:00Z"))),
+        booleanFlagWithClauses("flag5", clause("date", Operator.after, LDValue.of("2021-01-01T00:00:00Z"))),
+        booleanFlagWithClauses("flag6", clause("bad", Operator.semVerLessThan, LDValue.of("3.0.0"))),
+        booleanFlagWithClauses("flag7", clause("bad", Operator.before, LDValue.of("2021-01-01T00:00:00Z")))
+    };
+    boolean[] expected = new boolean[] { true, false, true, true, false, false, false };
+    Evaluator evaluator = evaluatorBuilder().build();
+    EvaluationScope scope = evaluator.newScope(c);
+    for (int i = 0; i < flags.length; i++) {
+      assertEquals(flags[i].getKey(), LDValue.of(expected[i]), evaluator.evaluate(flags[i], c, recorder).getValue());
+      assertEquals(flags[i].getKey(), LDValue.of(expected[i]),
+          evaluator.evaluate(flags[i], c, recorder, scope).getValue());
+    }
+  }
+
+  private static FeatureFlag rolloutFlag(String key, Integer seed) {
+    Rollout rollout = new Rollout(null, Arrays.asList(
+        new WeightedVariation(0, 50000, false),
+        new WeightedVariation(1, 50000, false)
+        ), null, RolloutKind.rollout, seed);
+    return flagBuilder(key)
+        .on(true)
+        .salt(key + "-salt")
+        .fallthrough(rollout)
+        .offVariation(0)
+        .variations(LDValue.of(false), LDValue.of(true))
+        .build();
+  }
+
+  private void assertBucketCacheStatistics(long hits, long misses) {
+    EvaluationStatistics stats = statistics.snapshot(null, null);
+    assertEquals(new EvaluationStatistics.CacheStatistics(hits, misses), stats.getBucketCache());
+  }
+
+  private void assertSegmentMatchCacheStatistics(long hits, long misses) {
+    EvaluationStatistics stats = statistics.snapshot(null, null);
+    assertEquals(new EvaluationStatistics.CacheStatistics(hits, misses), stats.getSegmentMatchCache());
+  }
+}
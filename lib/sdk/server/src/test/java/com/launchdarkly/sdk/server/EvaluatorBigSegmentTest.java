@@ -192,4 +192,31 @@ public class EvaluatorBigSegmentTest extends EvaluatorTestBase {
     assertEquals(LDValue.of(true), result.getValue());
     assertEquals(BigSegmentsStatus.HEALTHY, result.getReason().getBigSegmentsStatus());
   }
+
+  @Test
+  public void bigSegmentStateIsQueriedOnlyOncePerKeyForAllFlagsInScope() {
+    Segment segment1 = segmentBuilder("segmentkey1").unbounded(true).generation(2).build();
+    Segment segment2 = segmentBuilder("segmentkey2").unbounded(true).generation(3).build();
+    FeatureFlag flag1 = booleanFlagWithClauses("key1", clauseMatchingSegment(segment1));
+    FeatureFlag flag2 = booleanFlagWithClauses("key2", clauseMatchingSegment(segment2));
+
+    BigSegmentStoreWrapper.BigSegmentsQueryResult queryResult = new BigSegmentStoreWrapper.BigSegmentsQueryResult();
+    queryResult.status = BigSegmentsStatus.HEALTHY;
+    queryResult.membership = createMembershipFromSegmentRefs(asList(makeBigSegmentRef(segment2)), null);
+
+    Evaluator.Getters mockGetters = strictMock(Evaluator.Getters.class);
+    expect(mockGetters.getSegment(segment1.getKey())).andReturn(segment1);
+    expect(mockGetters.getBigSegments(testUser.getKey())).andReturn(queryResult).times(1);
+    expect(mockGetters.getSegment(segment2.getKey())).andReturn(segment2);
+    replay(mockGetters);
+
+    Evaluator evaluator = new Evaluator(mockGetters, testLogger);
+    EvaluationScope scope = evaluator.newScope(testUser);
+    EvalResult result1 = evaluator.evaluate(flag1, testUser, expectNoPrerequisiteEvals(), scope);
+    EvalResult result2 = evaluator.evaluate(flag2, testUser, expectNoPrerequisiteEvals(), scope);
+    assertEquals(LDValue.of(false), result1.getValue());
+    assertEquals(BigSegmentsStatus.HEALTHY, result1.getReason().getBigSegmentsStatus());
+    assertEquals(LDValue.of(true), result2.getValue());
+    assertEquals(BigSegmentsStatus.HEALTHY, result2.getReason().getBigSegmentsStatus());
+  }
 }
@@ -14,6 +14,7 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static com.launchdarkly.sdk.server.EvaluatorBucketing.computeBucketValue;
 import static com.launchdarkly.sdk.server.EvaluatorTestUtil.BASE_EVALUATOR;
@@ -146,6 +147,87 @@ public class EvaluatorBucketingTest {
     assertEquals(expectedResult, result, Float.MIN_VALUE);
   }
 
+  @Test
+  public void bucketValueIsSameAsStringBasedSha1ForRandomInputs() {
+    Random random = new Random(1234);
+    for (int i = 0; i < 5000; i++) {
+      String key = randomString(random), salt = randomString(random), contextKey = "k" + randomString(random);
+      LDContext context = LDContext.builder(contextKey)
+          .set("stringattr", randomString(random))
+          .set("intattr", random.nextInt())
+          .build();
+      Integer seed = random.nextBoolean() ? null : random.nextInt();
+      
+      assertEquals(expectedBucketValue(seed, key, salt, contextKey),
+          computeBucketValue(false, seed, context, null, key, null, salt), 0f);
+      assertEquals(expectedBucketValue(seed, key, salt, context.getValue("stringattr").stringValue()),
+          computeBucketValue(false, seed, context, null, key, AttributeRef.fromLiteral("stringattr"), salt), 0f);
+      assertEquals(expectedBucketValue(seed, key, salt, String.valueOf(context.getValue("intattr").intValue())),
+          computeBucketValue(false, seed, context, null, key, AttributeRef.fromLiteral("intattr"), salt), 0f);
+    }
+  }
+  
+  @Test
+  public void bucketValueIsSameAsStringBasedSha1ForEdgeCases() {
+    LDContext context = LDContext.create("x");
+    assertEquals(expectedBucketValue(null, null, null, "x"),
+        computeBucketValue(false, null, context, null, null, null, null), 0f);
+    for (int seed: new int[] { 0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE }) {
+      assertEquals(expectedBucketValue(seed, null, null, "x"),
+          computeBucketValue(false, seed, context, null, "key", null, "salt"), 0f);
+    }
+    for (String s: new String[] { "\ud800", "a\udc00b", "\ud83d\ude00", "\udbff", "\ud800\ud800\udc00" }) {
+      assertEquals(expectedBucketValue(null, s, s, s),
+          computeBucketValue(false, null, LDContext.create(s), null, s, null, s), 0f);
+    }
+    StringBuilder longKey = new StringBuilder();
+    for (int i = 0; i < 3000; i++) {
+      longKey.append("\u20ac");
+    }
+    assertEquals(expectedBucketValue(null, longKey.toString(), "salt", "x"),
+        computeBucketValue(false, null, context, null, longKey.toString(), null, "salt"), 0f);
+    assertEquals(expectedBucketValue(null, "key", "salt", "x"),
+        computeBucketValue(false, null, context, null, "key", null, "salt"), 0f);
+  }
+  
+  // This is the original string-based implementation of the hash input, which the optimized implementation
+  // must match exactly.
+  private static float expectedBucketValue(Integer seed, String key, String salt, String value) {
+    StringBuilder sb = new StringBuilder();
+    if (seed != null) {
+      sb.append(seed.intValue());
+    } else {
+      sb.append(key).append('.').append(salt);
+    }
+    sb.append('.').append(value);
+    String hash = DigestUtils.sha1Hex(sb.toString()).substring(0, 15);
+    return Long.parseLong(hash, 16) / (float) 0xFFFFFFFFFFFFFFFL;
+  }
+  
+  private static String randomString(Random random) {
+    int length = random.nextInt(20);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      switch (random.nextInt(6)) {
+      case 0:
+        sb.append((char) (0xD800 + random.nextInt(0x800))); // a surrogate, possibly unpaired
+        break;
+      case 1:
+        sb.appendCodePoint(0x10000 + random.nextInt(0x100000));
+        break;
+      case 2:
+        sb.append((char) (0x80 + random.nextInt(0x780)));
+        break;
+      case 3:
+        sb.append((char) (0x800 + random.nextInt(0xD000)));
+        break;
+      default:
+        sb.append((char) random.nextInt(0x80));
+      }
+    }
+    return sb.toString();
+  }
+  
   private static void assertVariationIndexFromRollout(
       int expectedVariation,
       Rollout rollout,
@@ -301,4 +301,22 @@ public class EvaluatorClauseTest extends EvaluatorTestBase {
     Evaluator e = evaluatorBuilder().withStoredSegments(segment).build();
     assertMatch(e, flag, context, true);
   }
+
+  @Test
+  public void parsedContextValueIsOnlyReusedForSameValueAndKind() throws Exception {
+    // A single evaluation remembers the last date or semver value it parsed; that must not carry over to a
+    // different value, or to the same string parsed in a different way.
+    FeatureFlag f = flagBuilder("flag").on(true).variations(false, true).fallthroughVariation(0)
+        .rules(
+            ruleBuilder().id("r1").variation(1)
+              .clauses(clause("version", Operator.semVerGreaterThan, LDValue.of("2.0.0"))).build(),
+            ruleBuilder().id("r2").variation(1)
+              .clauses(clause("version", Operator.after, LDValue.of("2020-01-01T00:00:00Z"))).build())
+        .build();
+
+    assertMatch(BASE_EVALUATOR, f, LDContext.builder("key").set("version", "3.0.0").build(), true);
+    assertMatch(BASE_EVALUATOR, f, LDContext.builder("key").set("version", "1.0.0").build(), false);
+    assertMatch(BASE_EVALUATOR, f, LDContext.builder("key").set("version", "2021-01-01T00:00:00Z").build(), true);
+    assertMatch(BASE_EVALUATOR, f, LDContext.builder("key").set("version", "2019-01-01T00:00:00Z").build(), false);
+  }
 }
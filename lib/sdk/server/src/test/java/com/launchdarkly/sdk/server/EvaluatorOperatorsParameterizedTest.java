@@ -182,6 +182,12 @@ public class EvaluatorOperatorsParameterizedTest {
     
     Clause clause2 = new Clause(null, userAttr, op, values, false);
     DataModelPreprocessing.preprocessClause(clause2);
-    assertEquals("without preprocessing", shouldBe, matchClauseWithoutSegments(clause2, userValue));
+    assertEquals("with preprocessing", shouldBe, matchClauseWithoutSegments(clause2, userValue));
+
+    EvaluatorOperators.ValueMatcher matcher = EvaluatorOperators.compileValueMatcher(op, values, clause2.preprocessed);
+    assertEquals("with compiled matcher", shouldBe, matcher.matchAny(userValue));
+
+    EvaluatorOperators.ValueMatcher matcherWithoutPreprocessing = EvaluatorOperators.compileValueMatcher(op, values, null);
+    assertEquals("with compiled matcher but without preprocessing", shouldBe, matcherWithoutPreprocessing.matchAny(userValue));
   }
 }
@@ -0,0 +1,75 @@
+package com.launchdarkly.sdk.server;
+
+import com.google.common.collect.ImmutableList;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.Operator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("javadoc")
+public class EvaluatorOperatorsTest {
+  private static List<Pattern> patterns(String... regexes) {
+    List<Pattern> ret = new ArrayList<>();
+    for (String r: regexes) {
+      ret.add(Pattern.compile(r));
+    }
+    return ret;
+  }
+
+  @Test
+  public void combinedRegexMatchesIfAnyPatternMatches() {
+    List<Pattern> ps = patterns("^abc", "x+y", "(foo|bar)baz$", "[0-9]{3}");
+    Pattern combined = EvaluatorOperators.combineRegexes(ps);
+    assertNotNull(combined);
+    for (String s: new String[] { "abcdef", "zabc", "xxy", "foobaz", "barbaz!", "12", "a123", "", "y" }) {
+      boolean expected = false;
+      for (Pattern p: ps) {
+        expected |= p.matcher(s).find();
+      }
+      assertEquals(s, expected, combined.matcher(s).find());
+    }
+  }
+
+  @Test
+  public void inlineFlagsInCombinedRegexOnlyApplyToTheirOwnPattern() {
+    Pattern combined = EvaluatorOperators.combineRegexes(patterns("(?i)abc", "def"));
+    assertNotNull(combined);
+    assertTrue(combined.matcher("ABC").find());
+    assertTrue(combined.matcher("def").find());
+    assertFalse(combined.matcher("DEF").find());
+  }
+
+  @Test
+  public void regexesWithPositionDependentConstructsAreNotCombined() {
+    assertNull(EvaluatorOperators.combineRegexes(patterns("(a)\\1", "b")));
+    assertNull(EvaluatorOperators.combineRegexes(patterns("(?<name>a)\\k<name>", "b")));
+    assertNull(EvaluatorOperators.combineRegexes(patterns("(?<name>a)", "(?<name>b)")));
+    assertNull(EvaluatorOperators.combineRegexes(patterns("\\Qa.b", "c")));
+    assertNull(EvaluatorOperators.combineRegexes(patterns("(?x)a b # comment", "c")));
+  }
+
+  @Test
+  public void regexesWithLookaroundAreCombined() {
+    assertNotNull(EvaluatorOperators.combineRegexes(patterns("(?<=a)b", "(?<!c)d", "e(?=f)")));
+  }
+
+  @Test
+  public void matcherWithUncombinableRegexesStillMatchesEachPattern() {
+    EvaluatorOperators.ValueMatcher matcher = EvaluatorOperators.compileValueMatcher(Operator.matches,
+        ImmutableList.of(LDValue.of("(a)\\1"), LDValue.of("\\Qx.y"), LDValue.of("not a [valid regex")), null);
+    assertTrue(matcher.matchAny(LDValue.of("zaa")));
+    assertTrue(matcher.matchAny(LDValue.of("x.y")));
+    assertFalse(matcher.matchAny(LDValue.of("xzy")));
+    assertFalse(matcher.matchAny(LDValue.of("a")));
+  }
+}
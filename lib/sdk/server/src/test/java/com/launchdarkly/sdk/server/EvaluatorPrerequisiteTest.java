@@ -257,4 +257,194 @@ public class EvaluatorPrerequisiteTest {
       // it won't get as far as emitting any prereq evaluation results. 
     }
   }
+
+  @Test
+  public void linkedPrerequisitesAreUsedForDataVersionsTheyAreValidFor() throws Exception {
+    FeatureFlag f0 = buildThreeWayFlag("feature")
+        .on(true)
+        .prerequisites(prerequisite("feature1", GREEN_VARIATION))
+        .build();
+    FeatureFlag f1 = buildRedGreenFlag("feature1")
+        .on(true)
+        .prerequisites(prerequisite("feature2", GREEN_VARIATION))
+        .fallthroughVariation(GREEN_VARIATION)
+        .build();
+    FeatureFlag f2 = buildRedGreenFlag("feature2")
+        .on(true)
+        .fallthroughVariation(GREEN_VARIATION)
+        .build();
+    f0.preprocessed.prerequisiteLinks = new DataModelPreprocessing.PrerequisiteLinks(new FeatureFlag[] { f1 }, 1);
+    f1.preprocessed.prerequisiteLinks = new DataModelPreprocessing.PrerequisiteLinks(new FeatureFlag[] { f2 }, 1);
+    f1.preprocessed.prerequisiteLinks.lastValidDataVersion = 2;
+    for (long dataVersion = 1; dataVersion <= 2; dataVersion++) {
+      // the evaluator builder throws an exception if a flag that we haven't provided is looked up
+      Evaluator e = evaluatorBuilder().withDataVersion(dataVersion).build();
+      EvalResult result = e.evaluate(f0, BASE_USER, new EvaluationRecorder(){});
+
+      assertEquals(EvalResult.of(FALLTHROUGH_VALUE, FALLTHROUGH_VARIATION, EvaluationReason.fallthrough()), result);
+      assertEquals(2, result.getPrerequisiteEvalRecords().size());
+      assertSame(f2, result.getPrerequisiteEvalRecords().get(0).flag);
+      assertSame(f1, result.getPrerequisiteEvalRecords().get(0).prereqOfFlag);
+      assertSame(f1, result.getPrerequisiteEvalRecords().get(1).flag);
+      assertSame(f0, result.getPrerequisiteEvalRecords().get(1).prereqOfFlag);
+    }
+  }
+
+  @Test
+  public void linkedPrerequisitesAreNotUsedForOlderDataThanTheyWereMadeFrom() throws Exception {
+    // The links are replaced when a prerequisite changes, so an evaluation that is using an older snapshot can
+    // see links to a newer version of a flag.
+    FeatureFlag f0 = buildThreeWayFlag("feature")
+        .on(true)
+        .prerequisites(prerequisite("feature1", GREEN_VARIATION))
+        .build();
+    FeatureFlag f1 = buildRedGreenFlag("feature1")
+        .on(true)
+        .fallthroughVariation(GREEN_VARIATION)
+        .build();
+    FeatureFlag f1Newer = buildRedGreenFlag("feature1")
+        .version(f1.getVersion() + 1)
+        .on(false)
+        .build();
+    f0.preprocessed.prerequisiteLinks = new DataModelPreprocessing.PrerequisiteLinks(new FeatureFlag[] { f1Newer }, 2);
+    Evaluator e = evaluatorBuilder().withStoredFlags(f1).withDataVersion(1).build();
+    EvalResult result = e.evaluate(f0, BASE_USER, new EvaluationRecorder(){});
+
+    assertEquals(EvalResult.of(FALLTHROUGH_VALUE, FALLTHROUGH_VARIATION, EvaluationReason.fallthrough()), result);
+    assertEquals(1, result.getPrerequisiteEvalRecords().size());
+    assertSame(f1, result.getPrerequisiteEvalRecords().get(0).flag);
+  }
+
+  @Test
+  public void linkedPrerequisitesAreNotUsedForNewerDataThanTheyAreValidFor() throws Exception {
+    // Before a prerequisite changes, the data source marks the links as not valid for the new data.
+    FeatureFlag f0 = buildThreeWayFlag("feature")
+        .on(true)
+        .prerequisites(prerequisite("feature1", GREEN_VARIATION))
+        .build();
+    FeatureFlag f1Older = buildRedGreenFlag("feature1")
+        .on(false)
+        .build();
+    FeatureFlag f1 = buildRedGreenFlag("feature1")
+        .version(f1Older.getVersion() + 1)
+        .on(true)
+        .fallthroughVariation(GREEN_VARIATION)
+        .build();
+    f0.preprocessed.prerequisiteLinks = new DataModelPreprocessing.PrerequisiteLinks(new FeatureFlag[] { f1Older }, 1);
+    f0.preprocessed.prerequisiteLinks.lastValidDataVersion = 1;
+    Evaluator e = evaluatorBuilder().withStoredFlags(f1).withDataVersion(2).build();
+    EvalResult result = e.evaluate(f0, BASE_USER, new EvaluationRecorder(){});
+
+    assertEquals(EvalResult.of(FALLTHROUGH_VALUE, FALLTHROUGH_VARIATION, EvaluationReason.fallthrough()), result);
+    assertSame(f1, result.getPrerequisiteEvalRecords().get(0).flag);
+  }
+
+  @Test
+  public void linkedPrerequisitesAreNotUsedIfDataIsNotFromASnapshot() throws Exception {
+    FeatureFlag f0 = buildThreeWayFlag("feature")
+        .on(true)
+        .prerequisites(prerequisite("feature1", GREEN_VARIATION))
+        .build();
+    FeatureFlag f1 = buildRedGreenFlag("feature1")
+        .on(true)
+        .fallthroughVariation(GREEN_VARIATION)
+        .build();
+    f0.preprocessed.prerequisiteLinks = new DataModelPreprocessing.PrerequisiteLinks(new FeatureFlag[] { null }, 0);
+    Evaluator e = evaluatorBuilder().withStoredFlags(f1).build();
+    EvalResult result = e.evaluate(f0, BASE_USER, new EvaluationRecorder(){});
+
+    assertEquals(EvalResult.of(FALLTHROUGH_VALUE, FALLTHROUGH_VARIATION, EvaluationReason.fallthrough()), result);
+  }
+
+  @Test
+  public void linkedPrerequisiteThatDoesNotExistIsNotMet() throws Exception {
+    FeatureFlag f0 = buildThreeWayFlag("feature")
+        .on(true)
+        .prerequisites(prerequisite("feature1", GREEN_VARIATION))
+        .build();
+    f0.preprocessed.prerequisiteLinks = new DataModelPreprocessing.PrerequisiteLinks(new FeatureFlag[] { null }, 1);
+    Evaluator e = evaluatorBuilder().withDataVersion(1).build();
+    EvalResult result = e.evaluate(f0, BASE_USER, expectNoPrerequisiteEvals());
+
+    EvaluationReason expectedReason = EvaluationReason.prerequisiteFailed("feature1");
+    assertEquals(EvalResult.of(OFF_VALUE, OFF_VARIATION, expectedReason), result);
+  }
+
+  @Test
+  public void circularLinkedPrerequisitesAreStillDetected() throws Exception {
+    // The data source never links flags that have a cycle, but if the links were inconsistent, the evaluator
+    // should fall back to its normal cycle detection rather than recursing forever.
+    FeatureFlag f0 = buildThreeWayFlag("feature")
+        .on(true)
+        .prerequisites(prerequisite("feature1", GREEN_VARIATION))
+        .build();
+    FeatureFlag f1 = buildRedGreenFlag("feature1")
+        .on(true)
+        .prerequisites(prerequisite("feature", GREEN_VARIATION))
+        .build();
+    f0.preprocessed.prerequisiteLinks = new DataModelPreprocessing.PrerequisiteLinks(new FeatureFlag[] { f1 }, 1);
+    f1.preprocessed.prerequisiteLinks = new DataModelPreprocessing.PrerequisiteLinks(new FeatureFlag[] { f0 }, 1);
+    Evaluator e = evaluatorBuilder().withStoredFlags(f0, f1).withDataVersion(1).build();
+    EvalResult result = e.evaluate(f0, BASE_USER, expectNoPrerequisiteEvals());
+
+    assertEquals(EvalResult.error(ErrorKind.MALFORMED_FLAG), result);
+  }
+
+  @Test
+  public void prerequisiteResultsAreNotCarriedOverToNextEvaluation() throws Exception {
+    FeatureFlag f0 = buildThreeWayFlag("feature")
+        .on(true)
+        .prerequisites(prerequisite("feature1", GREEN_VARIATION))
+        .build();
+    FeatureFlag f1 = buildRedGreenFlag("feature1")
+        .on(true)
+        .fallthroughVariation(GREEN_VARIATION)
+        .build();
+    FeatureFlag f2 = buildThreeWayFlag("feature2")
+        .on(true)
+        .build();
+    Evaluator e = evaluatorBuilder().withStoredFlags(f1).build();
+    EvalResult result0 = e.evaluate(f0, BASE_USER, new EvaluationRecorder(){});
+    EvalResult result2 = e.evaluate(f2, BASE_USER, expectNoPrerequisiteEvals());
+
+    assertEquals(1, result0.getPrerequisiteEvalRecords().size());
+    assertEquals(0, result2.getPrerequisiteEvalRecords().size());
+  }
+
+  @Test
+  public void evaluationStartedDuringAnotherEvaluationHasItsOwnState() throws Exception {
+    FeatureFlag f0 = buildThreeWayFlag("feature")
+        .on(true)
+        .prerequisites(prerequisite("feature1", GREEN_VARIATION))
+        .build();
+    FeatureFlag f1 = buildRedGreenFlag("feature1")
+        .on(true)
+        .fallthroughVariation(GREEN_VARIATION)
+        .build();
+    FeatureFlag f2 = buildThreeWayFlag("feature2")
+        .on(true)
+        .prerequisites(prerequisite("feature3", GREEN_VARIATION))
+        .build();
+    FeatureFlag f3 = buildRedGreenFlag("feature3")
+        .on(true)
+        .fallthroughVariation(GREEN_VARIATION)
+        .build();
+    Evaluator e = evaluatorBuilder().withStoredFlags(f1, f3).build();
+    EvalResult[] nestedResult = new EvalResult[1];
+    EvaluationRecorder recorder = new EvaluationRecorder() {
+      @Override
+      public void recordPrerequisiteEvaluation(FeatureFlag flag, FeatureFlag predecessor, LDContext context, EvalResult result) {
+        if (flag == f1) {
+          nestedResult[0] = e.evaluate(f2, context, this);
+        }
+      }
+    };
+    EvalResult result = e.evaluate(f0, BASE_USER, recorder);
+
+    assertEquals(EvalResult.of(FALLTHROUGH_VALUE, FALLTHROUGH_VARIATION, EvaluationReason.fallthrough()), result);
+    assertEquals(1, result.getPrerequisiteEvalRecords().size());
+    assertSame(f1, result.getPrerequisiteEvalRecords().get(0).flag);
+    assertEquals(1, nestedResult[0].getPrerequisiteEvalRecords().size());
+    assertSame(f3, nestedResult[0].getPrerequisiteEvalRecords().get(0).flag);
+  }
 }
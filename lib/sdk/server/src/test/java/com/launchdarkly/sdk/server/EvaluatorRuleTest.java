@@ -91,6 +91,97 @@ public class EvaluatorRuleTest {
     assertEquals(result1, result2); // but they're equal
   }
   
+  @Test
+  public void malformedClauseInLaterRuleIsNotReachedIfEarlierRuleMatches() {
+    Clause malformed = clause(null, AttributeRef.fromPath("///"), DataModel.Operator.in, LDValue.of("x"));
+    for (boolean disablePreprocessing: new boolean[] { false, true }) {
+      Rule rule0 = buildTestRule("ruleid0", clauseMatchingContext(BASE_USER)).build();
+      Rule rule1 = buildTestRule("ruleid1", malformed).build();
+      FeatureFlag f = buildBooleanFlagWithRules("feature", rule0, rule1)
+          .disablePreprocessing(disablePreprocessing)
+          .build();
+      
+      EvalResult matched = BASE_EVALUATOR.evaluate(f, BASE_USER, expectNoPrerequisiteEvals());
+      assertEquals(EvaluationReason.ruleMatch(0, "ruleid0"), matched.getReason());
+      
+      EvalResult notMatched = BASE_EVALUATOR.evaluate(f, OTHER_USER, expectNoPrerequisiteEvals());
+      assertEquals(EvalResult.error(EvaluationReason.ErrorKind.MALFORMED_FLAG), notMatched);
+    }
+  }
+  
+  @Test
+  public void compiledAndUncompiledRulesGiveSameResults() {
+    LDContext context = LDContext.builder("userkey").name("Lucy")
+        .set("tags", LDValue.buildArray().add("a").add("b").build())
+        .set("obj", LDValue.buildObject().put("a", "b").build())
+        .build();
+    Clause[] clauses = new Clause[] {
+        clause("name", DataModel.Operator.in, LDValue.of("Lucy")),
+        clause("name", DataModel.Operator.in, LDValue.of("Bob"), LDValue.of("Lucy")),
+        clause("name", DataModel.Operator.startsWith, LDValue.of("Lu")),
+        clause("name", DataModel.Operator.matches, LDValue.of("^L.*y$")),
+        clause("tags", DataModel.Operator.in, LDValue.of("b")),
+        clause("obj", DataModel.Operator.in, LDValue.of("b")),
+        clause("missing", DataModel.Operator.in, LDValue.of("b")),
+        clause(null, "kind", DataModel.Operator.in, LDValue.of("user")),
+        clause(ContextKind.of("org"), "key", DataModel.Operator.in, LDValue.of("userkey")),
+        clause("name", DataModel.Operator.in),
+        clause("name", DataModel.Operator.forName("unknown"), LDValue.of("Lucy"))
+    };
+    for (Clause c: clauses) {
+      for (boolean negate: new boolean[] { false, true }) {
+        Clause clause = new Clause(c.getContextKind(), c.getAttribute(), c.getOp(), c.getValues(), negate);
+        FeatureFlag compiled = buildBooleanFlagWithRules("feature",
+            buildTestRule("ruleid", clause).build()).build();
+        FeatureFlag uncompiled = buildBooleanFlagWithRules("feature",
+            buildTestRule("ruleid", clause).build()).disablePreprocessing(true).build();
+        
+        EvalResult expected = BASE_EVALUATOR.evaluate(uncompiled, context, expectNoPrerequisiteEvals());
+        EvalResult actual = BASE_EVALUATOR.evaluate(compiled, context, expectNoPrerequisiteEvals());
+        assertEquals(c.getAttribute() + " " + c.getOp() + " negate=" + negate,
+            expected.getValue(), actual.getValue());
+      }
+    }
+  }
+  
+  @Test
+  public void indexedRunOfInRulesGivesSameResultsAsCheckingEachRule() {
+    for (boolean disablePreprocessing: new boolean[] { false, true }) {
+      FeatureFlag f = buildBooleanFlagWithRules("feature",
+          buildTestRule("r0", clause("key", DataModel.Operator.in, LDValue.of("a"))).build(),
+          buildTestRule("r1", clause("key", DataModel.Operator.in, LDValue.of("b"), LDValue.of("c"))).build(),
+          buildTestRule("r2", clause("key", DataModel.Operator.in, LDValue.of("c"), LDValue.of("d"))).build(),
+          buildTestRule("r3", clause("tags", DataModel.Operator.in, LDValue.of("e"), LDValue.of("f"))).build(),
+          buildTestRule("r4", clause("tags", DataModel.Operator.in, LDValue.of("g"))).build(),
+          buildTestRule("r5", clause("tags", DataModel.Operator.in, LDValue.of("f"), LDValue.of("h"))).build(),
+          buildTestRule("r6", clause("tags", DataModel.Operator.in, LDValue.of("i"))).build()
+          ).disablePreprocessing(disablePreprocessing).build();
+      assertEquals(!disablePreprocessing, f.preprocessed != null && f.preprocessed.ruleRunIndexes != null);
+      
+      assertRuleMatch(f, LDContext.create("a"), 0, "r0");
+      assertRuleMatch(f, LDContext.create("c"), 1, "r1");
+      assertRuleMatch(f, LDContext.create("d"), 2, "r2");
+      assertRuleMatch(f, LDContext.builder("x").set("tags", "h").build(), 5, "r5");
+      assertRuleMatch(f, LDContext.builder("x").set("tags",
+          LDValue.buildArray().add("i").add("h").add("f").build()).build(), 3, "r3");
+      assertRuleMatch(f, LDContext.builder("x").set("tags",
+          LDValue.buildArray().add("i").add("g").build()).build(), 4, "r4");
+      assertEquals(EvaluationReason.fallthrough(), BASE_EVALUATOR.evaluate(f,
+          LDContext.builder("x").set("tags", LDValue.buildArray().add("z").build()).build(),
+          expectNoPrerequisiteEvals()).getReason());
+      assertEquals(EvaluationReason.fallthrough(), BASE_EVALUATOR.evaluate(f,
+          LDContext.builder("x").set("tags", LDValue.buildObject().put("f", "f").build()).build(),
+          expectNoPrerequisiteEvals()).getReason());
+      assertEquals(EvaluationReason.fallthrough(), BASE_EVALUATOR.evaluate(f,
+          LDContext.create(ContextKind.of("org"), "a"), expectNoPrerequisiteEvals()).getReason());
+    }
+  }
+  
+  private static void assertRuleMatch(FeatureFlag f, LDContext context, int ruleIndex, String ruleId) {
+    EvalResult result = BASE_EVALUATOR.evaluate(f, context, expectNoPrerequisiteEvals());
+    assertEquals(EvaluationReason.ruleMatch(ruleIndex, ruleId), result.getReason());
+  }
+  
   @Test
   public void ruleWithTooHighVariationReturnsMalformedFlagError() {
     Clause clause = clauseMatchingContext(BASE_USER);
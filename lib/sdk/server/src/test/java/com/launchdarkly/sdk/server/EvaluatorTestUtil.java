@@ -64,7 +64,9 @@ public abstract class EvaluatorTestUtil {
     HashMap<String, DataModel.FeatureFlag> flagMap = new HashMap<>();
     HashMap<String, DataModel.Segment> segmentMap = new HashMap<>();
     HashMap<String, BigSegmentsQueryResult> bigSegmentMap = new HashMap<>();
+    long dataVersion = -1;
     private final LDLogger logger;
+    private EvaluatorStatistics statistics = new EvaluatorStatistics();
 
     EvaluatorBuilder() {
       this(LDLogger.withAdapter(Logs.none(), ""));
@@ -96,7 +98,11 @@ public abstract class EvaluatorTestUtil {
         }
         return bigSegmentMap.get(key);
       }
-    }, logger);
+
+      public long getDataVersion() {
+        return dataVersion;
+      }
+    }, logger, statistics);
   }
     
     public EvaluatorBuilder withStoredFlags(final DataModel.FeatureFlag... flags) {
@@ -123,6 +129,16 @@ public abstract class EvaluatorTestUtil {
       return this;
     }
 
+    public EvaluatorBuilder withDataVersion(long dataVersion) {
+      this.dataVersion = dataVersion;
+      return this;
+    }
+
+    public EvaluatorBuilder withStatistics(EvaluatorStatistics statistics) {
+      this.statistics = statistics;
+      return this;
+    }
+
     public EvaluatorBuilder withBigSegmentQueryResult(final String userKey, BigSegmentsQueryResult queryResult) {
       bigSegmentMap.put(userKey, queryResult);
       return this;
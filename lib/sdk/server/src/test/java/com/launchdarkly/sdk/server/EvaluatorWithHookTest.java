@@ -6,6 +6,7 @@ import com.launchdarkly.sdk.EvaluationReason;
 import com.launchdarkly.sdk.LDContext;
 import com.launchdarkly.sdk.LDValue;
 import com.launchdarkly.sdk.LDValueType;
+import com.launchdarkly.sdk.server.integrations.EvaluationSeriesContext;
 import com.launchdarkly.sdk.server.integrations.Hook;
 import com.launchdarkly.sdk.server.integrations.HookMetadata;
 import org.junit.Test;
@@ -193,4 +194,31 @@ public class EvaluatorWithHookTest {
     verify(mockHookA).afterEvaluation(any(), eq(Collections.emptyMap()), any());
     verify(mockHookB).afterEvaluation(any(), eq(mockData), any());
   }
+
+  @Test
+  public void variationsRunsHooksForEachFlag() {
+    Map<String, EvalResult> results = new HashMap<>();
+    results.put("keyA", EvalResult.of(LDValue.of("a"), 0, EvaluationReason.fallthrough()));
+    results.put("keyB", EvalResult.of(LDValue.of("b"), 1, EvaluationReason.off()));
+    EvaluatorInterface mockEvaluator = mock(EvaluatorInterface.class);
+    when(mockEvaluator.variations(any(), any(), any(), any())).thenReturn(new FlagVariations(results));
+
+    List<String> calls = new ArrayList<>();
+    Hook mockHook = mock(Hook.class);
+    when(mockHook.beforeEvaluation(any(), any())).thenAnswer(invocation -> {
+      calls.add("before " + ((EvaluationSeriesContext)invocation.getArgument(0)).flagKey);
+      return Collections.emptyMap();
+    });
+    when(mockHook.afterEvaluation(any(), any(), any())).thenAnswer(invocation -> {
+      calls.add("after " + ((EvaluationSeriesContext)invocation.getArgument(0)).flagKey);
+      return Collections.emptyMap();
+    });
+
+    EvaluatorWithHooks evaluatorUnderTest = new EvaluatorWithHooks(mockEvaluator, Collections.singletonList(mockHook), LDLogger.none());
+    evaluatorUnderTest.variations("aMethod", Arrays.asList("keyA", "keyB"), LDContext.create("aKey"), EvaluationOptions.NO_EVENTS);
+
+    assertEquals(Arrays.asList("before keyA", "before keyB", "after keyA", "after keyB"), calls);
+    verify(mockHook).afterEvaluation(any(), any(), eq(EvaluationDetail.fromValue(LDValue.of("a"), 0, EvaluationReason.fallthrough())));
+    verify(mockHook).afterEvaluation(any(), any(), eq(EvaluationDetail.fromValue(LDValue.of("b"), 1, EvaluationReason.off())));
+  }
 }
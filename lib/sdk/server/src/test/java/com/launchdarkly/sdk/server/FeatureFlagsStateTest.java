@@ -2,6 +2,7 @@ package com.launchdarkly.sdk.server;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.launchdarkly.sdk.EvaluationReason;
 import com.launchdarkly.sdk.LDValue;
 import com.launchdarkly.sdk.json.JsonSerialization;
@@ -25,6 +26,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 @SuppressWarnings("javadoc")
 public class FeatureFlagsStateTest {
@@ -87,6 +89,52 @@ public class FeatureFlagsStateTest {
     assertNull(state.getFlagReason("key"));
   }
   
+  @Test
+  public void detailsExpireWhenDebuggingEndsForUntrackedFlag() {
+    long debugUntil = System.currentTimeMillis() + 1000000;
+    FeatureFlagsState state = FeatureFlagsState.builder(WITH_REASONS, DETAILS_ONLY_FOR_TRACKED_FLAGS)
+        .add("key1", LDValue.of("value"), 1, EvaluationReason.off(), 10, false, debugUntil, null)
+        .add("key2", LDValue.of("value"), 1, EvaluationReason.off(), 10, true, debugUntil - 1000, null)
+        .build();
+    
+    assertEquals(debugUntil, state.detailsExpireAt);
+  }
+
+  @Test
+  public void detailsDoNotExpireIfAllDetailsAreIncluded() {
+    FeatureFlagsState state = FeatureFlagsState.builder(WITH_REASONS)
+        .add("key", LDValue.of("value"), 1, EvaluationReason.off(), 10, false, System.currentTimeMillis() + 1000000, null)
+        .build();
+    
+    assertEquals(Long.MAX_VALUE, state.detailsExpireAt);
+  }
+
+  @Test
+  public void canCopyFlagsFromPreviousState() {
+    FeatureFlagsState previous = FeatureFlagsState.builder()
+        .add("key1", LDValue.of("value1"), 0, null, 10, false, null, null)
+        .add("key2", LDValue.of("value2"), 0, null, 10, false, null, null)
+        .add("key3", LDValue.of("value3"), 0, null, 10, false, null, null)
+        .add("key4", LDValue.of("value4"), 0, null, 10, false, null, null)
+        .build();
+    DataModel.FeatureFlag[] flags = new DataModel.FeatureFlag[] {
+        flagBuilder("key5").version(1).build(),
+        flagBuilder("key2").version(11).build()
+    };
+    EvalResult[] results = new EvalResult[] {
+        EvalResult.of(LDValue.of("value5"), 0, EvaluationReason.off()),
+        EvalResult.of(LDValue.of("newValue2"), 1, EvaluationReason.off())
+    };
+    FeatureFlagsState state = FeatureFlagsState.builder()
+        .addFlagsFrom(previous, ImmutableSet.of("key2", "key3", "key5"), flags, results)
+        .build();
+    
+    // key2 keeps its place, key3 was deleted, and key5 is new
+    assertEquals(Arrays.asList("key1", "key2", "key4", "key5"), new ArrayList<>(state.toValuesMap().keySet()));
+    assertEquals(ImmutableMap.of("key1", LDValue.of("value1"), "key2", LDValue.of("newValue2"),
+        "key4", LDValue.of("value4"), "key5", LDValue.of("value5")), state.toValuesMap());
+  }
+
   @Test
   public void flagCanHaveNullValue() {
     FeatureFlagsState state = FeatureFlagsState.builder()
@@ -175,6 +223,14 @@ public class FeatureFlagsStateTest {
     assertJsonEquals(makeExpectedJsonSerialization(), actualJsonString);
   }
   
+  @Test
+  public void toJsonStringIsSameAsSerializedJson() {
+    FeatureFlagsState state = makeInstanceForSerialization();
+    String json = state.toJsonString();
+    assertJsonEquals(makeExpectedJsonSerialization(), json);
+    assertSame(json, state.toJsonString());
+  }
+  
   @Test
   public void canConvertFromJson() throws SerializationException {
     FeatureFlagsState expectedState = makeInstanceForSerialization();
@@ -0,0 +1,71 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
+import com.launchdarkly.sdk.server.TestComponents.DelegatingDataStore;
+import com.launchdarkly.sdk.server.subsystems.DataStore;
+import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.ItemDescriptor;
+
+import org.junit.Test;
+
+import static com.launchdarkly.sdk.server.DataModel.FEATURES;
+import static com.launchdarkly.sdk.server.DataModel.SEGMENTS;
+import static com.launchdarkly.sdk.server.ModelBuilders.flagBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.segmentBuilder;
+import static com.launchdarkly.sdk.server.TestComponents.inMemoryDataStore;
+import static com.launchdarkly.sdk.server.TestUtil.upsertFlag;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@SuppressWarnings("javadoc")
+public class FlagHandleTest {
+  @Test
+  public void flagIsNullIfNotFound() {
+    DataStore store = inMemoryDataStore();
+    FlagHandle handle = new FlagHandle(null, new ReadonlyStoreFacade(store), "key");
+
+    assertNull(handle.getFlag());
+  }
+
+  @Test
+  public void flagIsLatestVersion() {
+    DataStore store = inMemoryDataStore();
+    FlagHandle handle = new FlagHandle(null, new ReadonlyStoreFacade(store), "key");
+    FeatureFlag flag1 = flagBuilder("key").version(1).build();
+    FeatureFlag flag2 = flagBuilder("key").version(2).build();
+
+    upsertFlag(store, flag1);
+    assertSame(flag1, handle.getFlag());
+
+    upsertFlag(store, flag2);
+    assertSame(flag2, handle.getFlag());
+
+    store.upsert(FEATURES, "key", ItemDescriptor.deletedItem(3));
+    assertNull(handle.getFlag());
+  }
+
+  @Test
+  public void flagIsStillFoundAfterOtherDataChanges() {
+    DataStore store = inMemoryDataStore();
+    FlagHandle handle = new FlagHandle(null, new ReadonlyStoreFacade(store), "key");
+    FeatureFlag flag = flagBuilder("key").version(1).build();
+    upsertFlag(store, flag);
+    assertSame(flag, handle.getFlag());
+
+    upsertFlag(store, flagBuilder("other").version(1).build());
+    store.upsert(SEGMENTS, "segment", new ItemDescriptor(1, segmentBuilder("segment").version(1).build()));
+
+    assertSame(flag, handle.getFlag());
+  }
+
+  @Test
+  public void flagIsLookedUpInStoreThatHasNoIndex() {
+    // DelegatingDataStore doesn't implement DataStoreSnapshotProvider, like a persistent data store wrapper
+    DataStore store = new DelegatingDataStore(inMemoryDataStore(), null);
+    FlagHandle handle = new FlagHandle(null, new ReadonlyStoreFacade(store), "key");
+    FeatureFlag flag = flagBuilder("key").version(1).build();
+
+    upsertFlag(store, flag);
+
+    assertSame(flag, handle.getFlag());
+  }
+}
@@ -40,6 +40,9 @@ public class FlagTrackerImplTest extends BaseTest {
       public void removeFlagChangeListener(FlagChangeListener listener) {
         broadcaster.unregister(listener);
       }
+
+      @Override
+      public void setChangedItemsListener(DataSourceUpdatesImpl.ChangedItemsListener listener) {}
     };
     
     FlagTrackerImpl tracker = new FlagTrackerImpl(notifier, null);
@@ -93,6 +96,9 @@ public class FlagTrackerImplTest extends BaseTest {
       public void removeFlagChangeListener(FlagChangeListener listener) {
         broadcaster.unregister(listener);
       }
+
+      @Override
+      public void setChangedItemsListener(DataSourceUpdatesImpl.ChangedItemsListener listener) {}
     };
     
     FlagTrackerImpl tracker = new FlagTrackerImpl(notifier,
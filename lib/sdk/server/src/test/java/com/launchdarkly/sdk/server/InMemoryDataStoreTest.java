@@ -16,14 +16,20 @@ import org.junit.Test;
 import java.util.AbstractMap;
 import java.util.Map;
 
+import static com.launchdarkly.sdk.server.DataModel.FEATURES;
+import static com.launchdarkly.sdk.server.DataModel.SEGMENTS;
 import static com.launchdarkly.sdk.server.DataStoreTestTypes.OTHER_TEST_ITEMS;
 import static com.launchdarkly.sdk.server.DataStoreTestTypes.TEST_ITEMS;
 import static com.launchdarkly.sdk.server.DataStoreTestTypes.TestItem;
 import static com.launchdarkly.sdk.server.DataStoreTestTypes.toItemsMap;
+import static com.launchdarkly.sdk.server.ModelBuilders.flagBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.segmentBuilder;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 @SuppressWarnings("javadoc")
@@ -951,4 +957,219 @@ public class InMemoryDataStoreTest extends DataStoreTestBase {
     assertEquals(1, testKindData.size());
     assertEquals(item2, testKindData.get("key2").getItem());
   }
+
+  @Test
+  public void flagIndexIsEmptyBeforeInit() {
+    assertEquals(0, typedStore().getSnapshot().getFlagIndex().size());
+  }
+
+  @Test
+  public void flagIndexContainsFlagsAfterInit() {
+    DataModel.FeatureFlag flag1 = flagBuilder("flag1").version(1).build();
+    DataModel.FeatureFlag flag2 = flagBuilder("flag2").version(1).build();
+    store.init(new DataStoreTestTypes.DataBuilder().addAny(FEATURES, flag1, flag2)
+        .addAny(SEGMENTS, segmentBuilder("segment1").version(1).build()).build());
+
+    Map<String, DataModel.FeatureFlag> index = typedStore().getSnapshot().getFlagIndex();
+    assertEquals(2, index.size());
+    assertSame(flag1, index.get("flag1"));
+    assertSame(flag2, index.get("flag2"));
+  }
+
+  @Test
+  public void flagIndexIsReplacedWhenFlagIsUpserted() {
+    DataModel.FeatureFlag flag1 = flagBuilder("flag1").version(1).build();
+    store.init(new DataStoreTestTypes.DataBuilder().addAny(FEATURES, flag1).build());
+    Map<String, DataModel.FeatureFlag> oldIndex = typedStore().getSnapshot().getFlagIndex();
+
+    DataModel.FeatureFlag flag1v2 = flagBuilder("flag1").version(2).build();
+    store.upsert(FEATURES, "flag1", new ItemDescriptor(2, flag1v2));
+
+    Map<String, DataModel.FeatureFlag> newIndex = typedStore().getSnapshot().getFlagIndex();
+    assertNotSame(oldIndex, newIndex);
+    assertSame(flag1v2, newIndex.get("flag1"));
+    assertSame(flag1, oldIndex.get("flag1"));
+  }
+
+  @Test
+  public void flagIndexIsNotReplacedWhenUpsertIsRejected() {
+    store.init(new DataStoreTestTypes.DataBuilder().addAny(FEATURES, flagBuilder("flag1").version(2).build()).build());
+    Map<String, DataModel.FeatureFlag> oldIndex = typedStore().getSnapshot().getFlagIndex();
+
+    store.upsert(FEATURES, "flag1", new ItemDescriptor(1, flagBuilder("flag1").version(1).build()));
+
+    assertSame(oldIndex, typedStore().getSnapshot().getFlagIndex());
+  }
+
+  @Test
+  public void flagIndexIsNotReplacedWhenSegmentIsUpserted() {
+    store.init(new DataStoreTestTypes.DataBuilder().addAny(FEATURES, flagBuilder("flag1").version(1).build()).build());
+    Map<String, DataModel.FeatureFlag> oldIndex = typedStore().getSnapshot().getFlagIndex();
+
+    store.upsert(SEGMENTS, "segment1", new ItemDescriptor(1, segmentBuilder("segment1").version(1).build()));
+
+    assertSame(oldIndex, typedStore().getSnapshot().getFlagIndex());
+  }
+
+  @Test
+  public void flagIndexExcludesDeletedFlags() {
+    store.init(new DataStoreTestTypes.DataBuilder().addAny(FEATURES, flagBuilder("flag1").version(1).build()).build());
+
+    store.upsert(FEATURES, "flag1", ItemDescriptor.deletedItem(2));
+
+    assertNull(typedStore().getSnapshot().getFlagIndex().get("flag1"));
+    assertFalse(typedStore().getSnapshot().getFlagIndex().containsKey("flag1"));
+  }
+
+  @Test
+  public void flagIndexIsUpdatedByPartialChangeSet() {
+    DataModel.FeatureFlag flag1 = flagBuilder("flag1").version(1).build();
+    store.init(new DataStoreTestTypes.DataBuilder().addAny(FEATURES, flag1).build());
+
+    DataModel.FeatureFlag flag2 = flagBuilder("flag2").version(1).build();
+    Map<DataKind, KeyedItems<ItemDescriptor>> changeSetData = ImmutableMap.of(
+        FEATURES,
+        new KeyedItems<>(ImmutableList.of(
+            new AbstractMap.SimpleEntry<>("flag2", new ItemDescriptor(1, flag2))
+        ))
+    );
+    typedStore().apply(new ChangeSet<>(ChangeSetType.Partial, Selector.make(2, "state2"),
+        changeSetData.entrySet(), null, true));
+
+    Map<String, DataModel.FeatureFlag> index = typedStore().getSnapshot().getFlagIndex();
+    assertSame(flag1, index.get("flag1"));
+    assertSame(flag2, index.get("flag2"));
+  }
+
+  @Test
+  public void flagIndexIsReplacedByFullChangeSet() {
+    store.init(new DataStoreTestTypes.DataBuilder().addAny(FEATURES, flagBuilder("flag1").version(1).build()).build());
+
+    DataModel.FeatureFlag flag2 = flagBuilder("flag2").version(1).build();
+    Map<DataKind, KeyedItems<ItemDescriptor>> changeSetData = ImmutableMap.of(
+        FEATURES,
+        new KeyedItems<>(ImmutableList.of(
+            new AbstractMap.SimpleEntry<>("flag2", new ItemDescriptor(1, flag2))
+        ))
+    );
+    typedStore().apply(new ChangeSet<>(ChangeSetType.Full, Selector.make(2, "state2"),
+        changeSetData.entrySet(), null, true));
+
+    Map<String, DataModel.FeatureFlag> index = typedStore().getSnapshot().getFlagIndex();
+    assertEquals(1, index.size());
+    assertSame(flag2, index.get("flag2"));
+  }
+
+  @Test
+  public void flagIndexMatchesDataInEverySnapshotWhileFlagsAreUpdated() throws Exception {
+    int flagCount = 10, updateCount = 2000;
+    store.init(new DataStoreTestTypes.DataBuilder().build());
+    java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newSingleThreadExecutor();
+    try {
+      java.util.concurrent.Future<?> writer = executor.submit(() -> {
+        for (int version = 1; version <= updateCount; version++) {
+          String key = "flag" + (version % flagCount);
+          if (version % 7 == 0) {
+            store.upsert(FEATURES, key, ItemDescriptor.deletedItem(version));
+          } else if (version % 5 == 0) {
+            typedStore().apply(new ChangeSet<>(ChangeSetType.Partial, Selector.make(version, "state"),
+                ImmutableMap.of(FEATURES, new KeyedItems<>(ImmutableList.of(new AbstractMap.SimpleEntry<>(key,
+                    new ItemDescriptor(version, flagBuilder(key).version(version).build()))))).entrySet(),
+                null, true));
+          } else {
+            store.upsert(FEATURES, key, new ItemDescriptor(version, flagBuilder(key).version(version).build()));
+          }
+        }
+      });
+      while (!writer.isDone()) {
+        assertFlagIndexMatchesData(typedStore().getSnapshot());
+      }
+      writer.get();
+      assertFlagIndexMatchesData(typedStore().getSnapshot());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void assertFlagIndexMatchesData(DataStoreSnapshot snapshot) {
+    Map<String, ItemDescriptor> flagItems = snapshot.getItems(FEATURES);
+    Map<String, DataModel.FeatureFlag> index = snapshot.getFlagIndex();
+    int flagsInData = 0;
+    for (Map.Entry<String, ItemDescriptor> e: flagItems.entrySet()) {
+      if (e.getValue().getItem() != null) {
+        flagsInData++;
+      }
+      assertSame(e.getValue().getItem(), index.get(e.getKey()));
+    }
+    assertEquals(flagsInData, index.size());
+  }
+
+  @Test
+  public void snapshotVersionIncreasesWithEachChange() {
+    DataStoreSnapshot s0 = typedStore().getSnapshot();
+    initStore();
+    DataStoreSnapshot s1 = typedStore().getSnapshot();
+    store.upsert(TEST_ITEMS, item1Key, new ItemDescriptor(item1Version + 1, item1));
+    DataStoreSnapshot s2 = typedStore().getSnapshot();
+    Map<DataKind, KeyedItems<ItemDescriptor>> changeSetData = ImmutableMap.of(
+        OTHER_TEST_ITEMS,
+        new KeyedItems<>(ImmutableList.of(new AbstractMap.SimpleEntry<>("key3", new ItemDescriptor(1, item1))))
+    );
+    typedStore().apply(new ChangeSet<>(ChangeSetType.Partial, Selector.make(2, "state2"),
+        changeSetData.entrySet(), null, true));
+    DataStoreSnapshot s3 = typedStore().getSnapshot();
+
+    assertTrue(s1.getVersion() > s0.getVersion());
+    assertTrue(s2.getVersion() > s1.getVersion());
+    assertTrue(s3.getVersion() > s2.getVersion());
+  }
+
+  @Test
+  public void snapshotIsNotReplacedWhenUpsertIsRejected() {
+    initStore();
+    DataStoreSnapshot snapshot = typedStore().getSnapshot();
+
+    store.upsert(TEST_ITEMS, item1Key, new ItemDescriptor(item1Version - 1, item1));
+
+    assertSame(snapshot, typedStore().getSnapshot());
+  }
+
+  @Test
+  public void snapshotDoesNotChangeWhenStoreIsUpdated() {
+    initStore();
+    DataStoreSnapshot snapshot = typedStore().getSnapshot();
+    long version = snapshot.getVersion();
+
+    TestItem item3 = new TestItem("key3", "item3", 1);
+    store.upsert(TEST_ITEMS, "key3", new ItemDescriptor(1, item3));
+    store.upsert(TEST_ITEMS, item1Key, ItemDescriptor.deletedItem(item1Version + 1));
+
+    assertEquals(version, snapshot.getVersion());
+    assertEquals(item1, snapshot.get(TEST_ITEMS, item1Key).getItem());
+    assertNull(snapshot.get(TEST_ITEMS, "key3"));
+    assertEquals(ImmutableMap.of(item1Key, new ItemDescriptor(item1Version, item1),
+        item2Key, new ItemDescriptor(item2Version, item2)), snapshot.getItems(TEST_ITEMS));
+    assertEquals(3, typedStore().getSnapshot().getItems(TEST_ITEMS).size());
+  }
+
+  @Test
+  public void snapshotHasEmptyCollectionForUnknownKind() {
+    initStore();
+    DataStoreSnapshot snapshot = typedStore().getSnapshot();
+
+    assertEquals(0, snapshot.getItems(OTHER_TEST_ITEMS).size());
+    assertFalse(snapshot.getAll(OTHER_TEST_ITEMS).getItems().iterator().hasNext());
+    assertNull(snapshot.get(OTHER_TEST_ITEMS, item1Key));
+  }
+
+  @Test
+  public void getAllResultDoesNotChangeWhenStoreIsUpdated() {
+    initStore();
+    KeyedItems<ItemDescriptor> items = store.getAll(TEST_ITEMS);
+
+    store.upsert(TEST_ITEMS, "key3", new ItemDescriptor(1, new TestItem("key3", "item3", 1)));
+
+    assertEquals(ImmutableMap.of(item1Key, new ItemDescriptor(item1Version, item1),
+        item2Key, new ItemDescriptor(item2Version, item2)), toItemsMap(items));
+  }
 }
@@ -1,5 +1,6 @@
 package com.launchdarkly.sdk.server;
 
+import com.launchdarkly.sdk.ContextKind;
 import com.launchdarkly.sdk.EvaluationDetail;
 import com.launchdarkly.sdk.EvaluationReason.BigSegmentsStatus;
 import com.launchdarkly.sdk.LDContext;
@@ -16,6 +17,7 @@ import org.easymock.EasyMockSupport;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
 
 import static com.launchdarkly.sdk.server.BigSegmentStoreWrapper.hashForUserKey;
@@ -102,6 +104,32 @@ public class LDClientBigSegmentsTest extends BaseTest {
     }
   }
 
+  @Test
+  public void prefetchedMembershipIsUsedForEvaluation() throws Exception {
+    LDContext user2 = LDContext.create("userkey2");
+    LDContext org = LDContext.create(ContextKind.of("org"), "orgkey");
+    TestComponents.InMemoryBigSegmentStore store = new TestComponents.InMemoryBigSegmentStore();
+    store.setMembership(user.getKey(), createMembershipFromSegmentRefs(Collections.singleton(makeBigSegmentRef(bigSegment)), null));
+
+    LDConfig config = configBuilder.bigSegments(Components.bigSegments(specificComponent(store))).build();
+    try (LDClient client = new LDClient("SDK_KEY", config)) {
+      client.prefetchBigSegments(Arrays.asList(user, LDContext.createMulti(user2, org)));
+      assertEquals(1, store.batchQueryCount.get());
+      assertEquals(3, store.queriedUserCount.get());
+
+      assertTrue(client.boolVariation("flagkey", user, false));
+      assertFalse(client.boolVariation("flagkey", user2, false));
+      assertEquals(0, store.singleQueryCount.get());
+    }
+  }
+
+  @Test
+  public void prefetchDoesNothingIfStoreNotConfigured() throws Exception {
+    try (LDClient client = new LDClient("SDK_KEY", configBuilder.build())) {
+      client.prefetchBigSegments(Collections.singleton(user));
+    }
+  }
+
   @Test
   public void storeNotConfigured() throws Exception {
     try (LDClient client = new LDClient("SDK_KEY", configBuilder.build())) {
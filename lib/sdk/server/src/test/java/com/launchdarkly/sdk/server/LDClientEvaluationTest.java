@@ -1,33 +1,50 @@
 package com.launchdarkly.sdk.server;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.gson.Gson;
+import com.launchdarkly.sdk.AttributeRef;
+import com.launchdarkly.sdk.ContextKind;
 import com.launchdarkly.sdk.EvaluationDetail;
 import com.launchdarkly.sdk.EvaluationReason;
 import com.launchdarkly.sdk.LDContext;
 import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.TestComponents.ContextCapturingFactory;
 import com.launchdarkly.sdk.server.integrations.TestData;
+import com.launchdarkly.sdk.server.interfaces.EvaluationStatistics;
 import com.launchdarkly.sdk.server.interfaces.LDClientInterface;
+import com.launchdarkly.sdk.server.subsystems.DataSource;
+import com.launchdarkly.sdk.server.subsystems.DataSourceUpdateSink;
 import com.launchdarkly.sdk.server.subsystems.DataStore;
 import com.launchdarkly.sdk.server.subsystems.DataStoreTypes.ItemDescriptor;
 
 import org.junit.Test;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.google.common.collect.Iterables.getFirst;
 import static com.launchdarkly.sdk.EvaluationDetail.NO_VARIATION;
 import static com.launchdarkly.sdk.server.DataModel.FEATURES;
+import static com.launchdarkly.sdk.server.DataModel.SEGMENTS;
 import static com.launchdarkly.sdk.server.Evaluator.EXPECTED_EXCEPTION_FROM_INVALID_FLAG;
 import static com.launchdarkly.sdk.server.Evaluator.INVALID_FLAG_KEY_THAT_THROWS_EXCEPTION;
 import static com.launchdarkly.sdk.server.ModelBuilders.booleanFlagWithClauses;
+import static com.launchdarkly.sdk.server.ModelBuilders.clause;
+import static com.launchdarkly.sdk.server.ModelBuilders.clauseMatchingContext;
 import static com.launchdarkly.sdk.server.ModelBuilders.clauseMatchingSegment;
 import static com.launchdarkly.sdk.server.ModelBuilders.fallthroughVariation;
 import static com.launchdarkly.sdk.server.ModelBuilders.flagBuilder;
 import static com.launchdarkly.sdk.server.ModelBuilders.flagWithValue;
 import static com.launchdarkly.sdk.server.ModelBuilders.prerequisite;
+import static com.launchdarkly.sdk.server.ModelBuilders.ruleBuilder;
 import static com.launchdarkly.sdk.server.ModelBuilders.segmentBuilder;
+import static com.launchdarkly.sdk.server.ModelBuilders.segmentRuleBuilder;
 import static com.launchdarkly.sdk.server.TestComponents.dataStoreThatThrowsException;
 import static com.launchdarkly.sdk.server.TestComponents.failedDataSource;
 import static com.launchdarkly.sdk.server.TestComponents.initedDataStore;
@@ -38,7 +55,10 @@ import static com.launchdarkly.testhelpers.JsonAssertions.assertJsonEquals;
 import static com.launchdarkly.testhelpers.JsonAssertions.assertJsonIncludes;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 @SuppressWarnings("javadoc")
@@ -579,6 +599,343 @@ public class LDClientEvaluationTest extends BaseTest {
     assertEquals(flag1.getKey(), getFirst(valuesMap.keySet(), null));
   }
   
+  @Test
+  public void allFlagsStateReusesBucketValuesForRolloutsWithSameSeed() throws Exception {
+    DataModel.Rollout rollout = new DataModel.Rollout(null, Arrays.asList(
+        new DataModel.WeightedVariation(0, 50000, false),
+        new DataModel.WeightedVariation(1, 50000, false)
+        ), null, DataModel.RolloutKind.rollout, 123);
+    for (int i = 0; i < 3; i++) {
+      upsertFlag(dataStore, flagBuilder("key" + i).version(1).on(true).fallthrough(rollout)
+          .variations(LDValue.of(false), LDValue.of(true)).build());
+    }
+
+    EvaluationStatistics.CacheStatistics before = client.getEvaluationStatistics().getBucketCache();
+    FeatureFlagsState state = client.allFlagsState(context);
+    EvaluationStatistics.CacheStatistics after = client.getEvaluationStatistics().getBucketCache();
+
+    assertEquals(3, state.toValuesMap().size());
+    assertEquals(1, after.getMissCount() - before.getMissCount());
+    assertEquals(2, after.getHitCount() - before.getHitCount());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(client.jsonValueVariation("key" + i, context, LDValue.ofNull()), state.getFlagValue("key" + i));
+    }
+  }
+
+  @Test
+  public void allFlagsStateMatchesSegmentOnceForAllFlagsThatReferenceIt() throws Exception {
+    DataModel.Segment segment = segmentBuilder("segment").version(1)
+        .rules(segmentRuleBuilder().clauses(clauseMatchingContext(context)).build())
+        .build();
+    upsertSegment(dataStore, segment);
+    for (int i = 0; i < 3; i++) {
+      upsertFlag(dataStore, booleanFlagWithClauses("key" + i, clauseMatchingSegment(segment)));
+    }
+
+    EvaluationStatistics.CacheStatistics before = client.getEvaluationStatistics().getSegmentMatchCache();
+    FeatureFlagsState state = client.allFlagsState(context);
+    EvaluationStatistics.CacheStatistics after = client.getEvaluationStatistics().getSegmentMatchCache();
+
+    assertEquals(1, after.getMissCount() - before.getMissCount());
+    assertEquals(2, after.getHitCount() - before.getHitCount());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(LDValue.of(true), state.getFlagValue("key" + i));
+    }
+  }
+
+  @Test
+  public void variationsReturnsSameResultsAsIndividualEvaluations() throws Exception {
+    DataModel.Segment segment = segmentBuilder("segment").version(1)
+        .rules(segmentRuleBuilder().clauses(clauseMatchingContext(context)).build())
+        .build();
+    upsertSegment(dataStore, segment);
+    upsertFlag(dataStore, flagWithValue("key0", LDValue.of("value0")));
+    upsertFlag(dataStore, booleanFlagWithClauses("key1", clauseMatchingSegment(segment)));
+    upsertFlag(dataStore, flagBuilder("key2").on(true).variations(LDValue.of("off"), LDValue.of("on"))
+        .prerequisites(prerequisite("key1", 1)).fallthroughVariation(1).offVariation(0).build());
+    upsertFlag(dataStore, flagWithValue(INVALID_FLAG_KEY_THAT_THROWS_EXCEPTION, LDValue.of("nope")));
+    ImmutableList<String> keys = ImmutableList.of("key0", "key1", "key2", INVALID_FLAG_KEY_THAT_THROWS_EXCEPTION,
+        "unknown");
+
+    FlagVariations results = client.variationsDetail(context, keys);
+
+    assertEquals(ImmutableSet.copyOf(keys), results.getFlagKeys());
+    for (String key: keys) {
+      assertEquals(client.jsonValueVariationDetail(key, context, LDValue.ofNull()), results.getDetail(key));
+      assertEquals(client.jsonValueVariation(key, context, LDValue.ofNull()), results.getValue(key));
+    }
+    assertEquals(LDValue.of("on"), results.getValue("key2"));
+    assertEquals(EvaluationReason.error(EvaluationReason.ErrorKind.FLAG_NOT_FOUND), results.getDetail("unknown").getReason());
+    assertNull(results.getValue("notRequested"));
+    assertNull(results.getDetail("notRequested"));
+    assertEquals(client.variations(context, keys), results);
+  }
+
+  @Test
+  public void variationsMatchesSegmentOnceForAllFlagsThatReferenceIt() throws Exception {
+    DataModel.Segment segment = segmentBuilder("segment").version(1)
+        .rules(segmentRuleBuilder().clauses(clauseMatchingContext(context)).build())
+        .build();
+    upsertSegment(dataStore, segment);
+    for (int i = 0; i < 3; i++) {
+      upsertFlag(dataStore, booleanFlagWithClauses("key" + i, clauseMatchingSegment(segment)));
+    }
+
+    EvaluationStatistics.CacheStatistics before = client.getEvaluationStatistics().getSegmentMatchCache();
+    FlagVariations results = client.variations(context, Arrays.asList("key0", "key1", "key2"));
+    EvaluationStatistics.CacheStatistics after = client.getEvaluationStatistics().getSegmentMatchCache();
+
+    assertEquals(1, after.getMissCount() - before.getMissCount());
+    assertEquals(2, after.getHitCount() - before.getHitCount());
+    assertEquals(ImmutableMap.of("key0", LDValue.of(true), "key1", LDValue.of(true), "key2", LDValue.of(true)),
+        results.toValuesMap());
+  }
+
+  @Test
+  public void variationsReturnsErrorForEachFlagForInvalidContext() throws Exception {
+    upsertFlag(dataStore, flagWithValue("key", LDValue.of("value")));
+
+    for (LDContext c: new LDContext[] { null, invalidContext }) {
+      FlagVariations results = client.variationsDetail(c, Arrays.asList("key", "unknown"));
+      assertEquals(EvaluationDetail.error(EvaluationReason.ErrorKind.USER_NOT_SPECIFIED, LDValue.ofNull()),
+          results.getDetail("key"));
+      assertEquals(EvaluationDetail.error(EvaluationReason.ErrorKind.USER_NOT_SPECIFIED, LDValue.ofNull()),
+          results.getDetail("unknown"));
+    }
+  }
+
+  @Test
+  public void variationsReturnsErrorForEachFlagIfClientAndStoreAreNotInitialized() throws Exception {
+    LDConfig customConfig = baseConfig()
+        .dataSource(specificComponent(failedDataSource()))
+        .startWait(Duration.ZERO)
+        .build();
+    try (LDClient badClient = new LDClient("SDK_KEY", customConfig)) {
+      FlagVariations results = badClient.variationsDetail(context, Arrays.asList("key"));
+      assertEquals(EvaluationDetail.error(EvaluationReason.ErrorKind.CLIENT_NOT_READY, LDValue.ofNull()),
+          results.getDetail("key"));
+    }
+  }
+
+  @Test
+  public void preparedContextReturnsSameResultsAsContext() throws Exception {
+    ContextKind orgKind = ContextKind.of("org");
+    LDContext multiContext = LDContext.createMulti(
+        context,
+        LDContext.builder(orgKind, "orgkey").name("Org")
+          .set("address", LDValue.buildObject().put("city", "Oakland").build()).build());
+    upsertSegment(dataStore, segmentBuilder("segment").version(1).includedContexts(orgKind, "orgkey").build());
+    for (boolean disablePreprocessing: new boolean[] { false, true }) {
+      String prefix = disablePreprocessing ? "unprocessed-" : "";
+      upsertFlag(dataStore, flagBuilder(prefix + "user-target").on(true).variations(false, true)
+          .addTarget(1, context.getKey()).fallthroughVariation(0).disablePreprocessing(disablePreprocessing).build());
+      upsertFlag(dataStore, flagBuilder(prefix + "org-target").on(true).variations(false, true)
+          .addContextTarget(orgKind, 1, "orgkey").fallthroughVariation(0)
+          .disablePreprocessing(disablePreprocessing).build());
+      upsertFlag(dataStore, flagBuilder(prefix + "org-attribute").on(true).variations(false, true)
+          .rules(ruleBuilder().variation(1).clauses(
+              clause(orgKind, AttributeRef.fromPath("/address/city"), DataModel.Operator.in, LDValue.of("Oakland"))).build())
+          .fallthroughVariation(0).disablePreprocessing(disablePreprocessing).build());
+      upsertFlag(dataStore, flagBuilder(prefix + "kind").on(true).variations(false, true)
+          .rules(ruleBuilder().variation(1).clauses(clause("kind", DataModel.Operator.in, LDValue.of("org"))).build())
+          .fallthroughVariation(0).disablePreprocessing(disablePreprocessing).build());
+      upsertFlag(dataStore, flagBuilder(prefix + "segment").on(true).variations(false, true)
+          .rules(ruleBuilder().variation(1).clauses(clauseMatchingSegment("segment")).build())
+          .fallthroughVariation(0).disablePreprocessing(disablePreprocessing).build());
+      upsertFlag(dataStore, flagBuilder(prefix + "missing-kind").on(true).variations(false, true)
+          .rules(ruleBuilder().variation(1).clauses(
+              clause(ContextKind.of("device"), "key", DataModel.Operator.in, LDValue.of("orgkey"))).build())
+          .fallthroughVariation(0).disablePreprocessing(disablePreprocessing).build());
+    }
+    ImmutableList<String> keys = ImmutableList.of("user-target", "org-target", "org-attribute", "kind", "segment",
+        "missing-kind", "unprocessed-user-target", "unprocessed-org-target", "unprocessed-org-attribute",
+        "unprocessed-kind", "unprocessed-segment", "unprocessed-missing-kind");
+
+    PreparedContext prepared = client.prepare(multiContext);
+
+    assertSame(multiContext, prepared.getContext());
+    for (String key: keys) {
+      boolean expected = !key.endsWith("missing-kind");
+      assertEquals(key, expected, prepared.boolVariation(key, !expected));
+      assertEquals(key, client.boolVariationDetail(key, multiContext, false), prepared.boolVariationDetail(key, false));
+    }
+    assertEquals(client.variationsDetail(multiContext, keys), prepared.variationsDetail(keys));
+    assertEquals(client.variations(multiContext, keys), prepared.variations(keys));
+  }
+
+  @Test
+  public void preparedContextTypedVariationsReturnSameValuesAsClient() throws Exception {
+    upsertFlag(dataStore, flagWithValue("int", LDValue.of(2)));
+    upsertFlag(dataStore, flagWithValue("double", LDValue.of(2.5)));
+    upsertFlag(dataStore, flagWithValue("string", LDValue.of("x")));
+    upsertFlag(dataStore, flagWithValue("json", LDValue.buildArray().add(1).build()));
+
+    PreparedContext prepared = client.prepare(context);
+
+    assertEquals(2, prepared.intVariation("int", 0));
+    assertEquals(2.5d, prepared.doubleVariation("double", 0), 0);
+    assertEquals("x", prepared.stringVariation("string", ""));
+    assertEquals(LDValue.buildArray().add(1).build(), prepared.jsonValueVariation("json", LDValue.ofNull()));
+    assertEquals(client.intVariationDetail("int", context, 0), prepared.intVariationDetail("int", 0));
+    assertEquals(client.doubleVariationDetail("double", context, 0), prepared.doubleVariationDetail("double", 0));
+    assertEquals(client.stringVariationDetail("string", context, ""), prepared.stringVariationDetail("string", ""));
+    assertEquals(client.jsonValueVariationDetail("json", context, LDValue.ofNull()),
+        prepared.jsonValueVariationDetail("json", LDValue.ofNull()));
+    assertEquals(EvaluationDetail.fromValue(3, NO_VARIATION, EvaluationReason.error(EvaluationReason.ErrorKind.WRONG_TYPE)),
+        prepared.intVariationDetail("string", 3));
+  }
+
+  @Test
+  public void preparedContextReturnsErrorForInvalidContext() throws Exception {
+    upsertFlag(dataStore, flagWithValue("key", LDValue.of("value")));
+
+    for (LDContext c: new LDContext[] { null, invalidContext }) {
+      PreparedContext prepared = client.prepare(c);
+      assertEquals(EvaluationDetail.fromValue("default", NO_VARIATION,
+          EvaluationReason.error(EvaluationReason.ErrorKind.USER_NOT_SPECIFIED)),
+          prepared.stringVariationDetail("key", "default"));
+      assertEquals(EvaluationDetail.error(EvaluationReason.ErrorKind.USER_NOT_SPECIFIED, LDValue.ofNull()),
+          prepared.variationsDetail(Arrays.asList("key")).getDetail("key"));
+    }
+  }
+
+  @Test
+  public void flagHandleReturnsSameResultsAsClient() throws Exception {
+    upsertFlag(dataStore, flagWithValue("bool", LDValue.of(true)));
+    upsertFlag(dataStore, flagWithValue("int", LDValue.of(2)));
+    upsertFlag(dataStore, flagWithValue("double", LDValue.of(2.5)));
+    upsertFlag(dataStore, flagWithValue("string", LDValue.of("x")));
+    upsertFlag(dataStore, flagWithValue("json", LDValue.buildArray().add(1).build()));
+
+    assertEquals("bool", client.flagHandle("bool").getKey());
+    assertTrue(client.flagHandle("bool").boolVariation(context, false));
+    assertEquals(2, client.flagHandle("int").intVariation(context, 0));
+    assertEquals(2.5d, client.flagHandle("double").doubleVariation(context, 0), 0);
+    assertEquals("x", client.flagHandle("string").stringVariation(context, ""));
+    assertEquals(LDValue.buildArray().add(1).build(), client.flagHandle("json").jsonValueVariation(context, LDValue.ofNull()));
+    assertEquals(client.boolVariationDetail("bool", context, false),
+        client.flagHandle("bool").boolVariationDetail(context, false));
+    assertEquals(client.intVariationDetail("int", context, 0), client.flagHandle("int").intVariationDetail(context, 0));
+    assertEquals(client.doubleVariationDetail("double", context, 0),
+        client.flagHandle("double").doubleVariationDetail(context, 0));
+    assertEquals(client.stringVariationDetail("string", context, ""),
+        client.flagHandle("string").stringVariationDetail(context, ""));
+    assertEquals(client.jsonValueVariationDetail("json", context, LDValue.ofNull()),
+        client.flagHandle("json").jsonValueVariationDetail(context, LDValue.ofNull()));
+    assertEquals(EvaluationDetail.fromValue(3, NO_VARIATION, EvaluationReason.error(EvaluationReason.ErrorKind.WRONG_TYPE)),
+        client.flagHandle("string").intVariationDetail(context, 3));
+  }
+
+  @Test
+  public void flagHandleUsesCurrentVersionOfFlag() throws Exception {
+    FlagHandle handle = client.flagHandle("key");
+
+    assertEquals(EvaluationDetail.fromValue("default", NO_VARIATION,
+        EvaluationReason.error(EvaluationReason.ErrorKind.FLAG_NOT_FOUND)),
+        handle.stringVariationDetail(context, "default"));
+
+    upsertFlag(dataStore, flagBuilder("key").version(1).on(true).variations("a", "b").fallthroughVariation(0).build());
+    assertEquals("a", handle.stringVariation(context, "default"));
+
+    upsertFlag(dataStore, flagBuilder("key").version(2).on(true).variations("a", "b").fallthroughVariation(1).build());
+    assertEquals("b", handle.stringVariation(context, "default"));
+
+    dataStore.upsert(FEATURES, "key", ItemDescriptor.deletedItem(3));
+    assertEquals("default", handle.stringVariation(context, "default"));
+  }
+
+  @Test
+  public void evaluationUsesSameVersionOfDataForFlagAndSegmentsEvenIfDataChangesDuringEvaluation() throws Exception {
+    DataModel.Segment segment = segmentBuilder("segment").version(1)
+        .rules(segmentRuleBuilder().clauses(clauseMatchingContext(context)).build())
+        .build();
+    upsertSegment(dataStore, segment);
+    upsertFlag(dataStore, flagBuilder("prereq").version(1).on(true).variations("a").fallthroughVariation(0).build());
+    DataModel.FeatureFlag flag = booleanFlagWithClauses("key", clauseMatchingSegment(segment));
+    upsertFlag(dataStore, flagBuilder(flag).prerequisites(prerequisite("prereq", 0)).build());
+
+    // The prerequisite event is recorded after the prerequisite has been evaluated, but before the flag's
+    // rules are checked; changing the segment at that point must not affect the result.
+    TestComponents.TestEventProcessor eventProcessor = new TestComponents.TestEventProcessor() {
+      @Override
+      public void recordEvaluationEvent(LDContext context, String flagKey, int flagVersion, int variation, LDValue value,
+          EvaluationReason reason, LDValue defaultValue, String prerequisiteOfFlagKey, boolean requireFullEvent,
+          Long debugEventsUntilDate, boolean excludeFromSummaries, Long samplingRatio) {
+        if (prerequisiteOfFlagKey != null) {
+          upsertSegment(dataStore, segmentBuilder("segment").version(2).build());
+        }
+        super.recordEvaluationEvent(context, flagKey, flagVersion, variation, value, reason, defaultValue,
+            prerequisiteOfFlagKey, requireFullEvent, debugEventsUntilDate, excludeFromSummaries, samplingRatio);
+      }
+    };
+    LDConfig customConfig = baseConfig()
+        .dataStore(specificComponent(dataStore))
+        .events(specificComponent(eventProcessor))
+        .build();
+
+    try (LDClient client = new LDClient("SDK_KEY", customConfig)) {
+      assertTrue(client.boolVariation("key", context, false));
+      assertFalse(client.boolVariation("key", context, false)); // now it sees the new segment
+    }
+  }
+
+  @Test
+  public void evaluationUsesSameVersionOfPrerequisitesEvenIfDataSourceChangesThemDuringEvaluation() throws Exception {
+    // The data source links each flag to its prerequisites, and updates those links in place when a
+    // prerequisite changes; an evaluation that is already in progress must not follow them to the new data.
+    TestData testData = TestData.dataSource();
+    ContextCapturingFactory<DataSource> dataSourceFactory = new ContextCapturingFactory<>(testData);
+    TestComponents.TestEventProcessor eventProcessor = new TestComponents.TestEventProcessor() {
+      @Override
+      public void recordEvaluationEvent(LDContext context, String flagKey, int flagVersion, int variation, LDValue value,
+          EvaluationReason reason, LDValue defaultValue, String prerequisiteOfFlagKey, boolean requireFullEvent,
+          Long debugEventsUntilDate, boolean excludeFromSummaries, Long samplingRatio) {
+        if (flagKey.equals("prereq1")) {
+          dataSourceFactory.clientContext.getDataSourceUpdateSink().upsert(FEATURES, "prereq3", new ItemDescriptor(2,
+              flagBuilder("prereq3").version(2).on(true).variations("a", "b").fallthroughVariation(1).build()));
+        }
+        super.recordEvaluationEvent(context, flagKey, flagVersion, variation, value, reason, defaultValue,
+            prerequisiteOfFlagKey, requireFullEvent, debugEventsUntilDate, excludeFromSummaries, samplingRatio);
+      }
+    };
+    LDConfig config = baseConfig()
+        .dataSource(dataSourceFactory)
+        .events(specificComponent(eventProcessor))
+        .build();
+
+    try (LDClient client = new LDClient("SDK_KEY", config)) {
+      DataSourceUpdateSink updates = dataSourceFactory.clientContext.getDataSourceUpdateSink();
+      updates.upsert(FEATURES, "prereq3", new ItemDescriptor(1,
+          flagBuilder("prereq3").version(1).on(true).variations("a", "b").fallthroughVariation(0).build()));
+      updates.upsert(FEATURES, "prereq2", new ItemDescriptor(1,
+          flagBuilder("prereq2").version(1).on(true).variations("a").fallthroughVariation(0)
+            .prerequisites(prerequisite("prereq3", 0)).build()));
+      updates.upsert(FEATURES, "prereq1", new ItemDescriptor(1,
+          flagBuilder("prereq1").version(1).on(true).variations("a").fallthroughVariation(0).build()));
+      updates.upsert(FEATURES, "key", new ItemDescriptor(1,
+          flagBuilder("key").version(1).on(true).variations(LDValue.of(false), LDValue.of(true))
+            .fallthroughVariation(1).offVariation(0)
+            .prerequisites(prerequisite("prereq1", 0), prerequisite("prereq2", 0)).build()));
+
+      assertTrue(client.boolVariation("key", context, false));
+      assertFalse(client.boolVariation("key", context, false)); // now it sees the new prereq3
+    }
+  }
+
+  @Test
+  public void flagHandleReturnsErrorIfDataStoreThrowsException() throws Exception {
+    RuntimeException exception = new RuntimeException("sorry");
+    LDConfig customConfig = baseConfig()
+        .dataStore(specificComponent(dataStoreThatThrowsException(exception)))
+        .startWait(Duration.ZERO)
+        .build();
+
+    try (LDClient client = new LDClient("SDK_KEY", customConfig)) {
+      assertEquals(EvaluationDetail.fromValue(false, NO_VARIATION, EvaluationReason.exception(exception)),
+          client.flagHandle("key").boolVariationDetail(context, false));
+    }
+  }
+
   @Test
   public void allFlagsStateReturnsEmptyStateForNullContext() throws Exception {
     upsertFlag(dataStore, flagWithValue("key", LDValue.of("value")));
@@ -623,6 +980,171 @@ public class LDClientEvaluationTest extends BaseTest {
     assertEquals(LDValue.ofNull(), state.getFlagValue(INVALID_FLAG_KEY_THAT_THROWS_EXCEPTION));
   }
   
+  @Test
+  public void allFlagsStateInParallelReturnsSameStateAsSequentialEvaluation() throws Exception {
+    DataModel.Segment segment = segmentBuilder("segment").version(1)
+        .rules(segmentRuleBuilder().clauses(clauseMatchingContext(context)).build())
+        .build();
+    upsertSegment(dataStore, segment);
+    upsertFlag(dataStore, flagWithValue(INVALID_FLAG_KEY_THAT_THROWS_EXCEPTION, LDValue.of("nope")));
+    for (int i = 0; i < 1000; i++) {
+      switch (i % 3) {
+      case 0:
+        upsertFlag(dataStore, flagWithValue("key" + i, LDValue.of(i)));
+        break;
+      case 1:
+        upsertFlag(dataStore, booleanFlagWithClauses("key" + i, clauseMatchingSegment(segment)));
+        break;
+      default:
+        upsertFlag(dataStore, flagBuilder("key" + i).on(true).variations(LDValue.of("off"), LDValue.of("on"))
+            .prerequisites(prerequisite("key" + (i - 1), 0)).fallthroughVariation(1).offVariation(0).build());
+      }
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    LDConfig parallelConfig = baseConfig()
+        .dataStore(specificComponent(dataStore))
+        .allFlagsStatePool(pool)
+        .build();
+    try (LDClient parallelClient = new LDClient("SDK_KEY", parallelConfig)) {
+      FeatureFlagsState expected = client.allFlagsState(context, FlagsStateOption.WITH_REASONS);
+      FeatureFlagsState actual = parallelClient.allFlagsState(context, FlagsStateOption.WITH_REASONS);
+      assertEquals(1001, actual.toValuesMap().size());
+      assertEquals(expected, actual);
+      assertEquals(new ArrayList<>(expected.toValuesMap().keySet()), new ArrayList<>(actual.toValuesMap().keySet()));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void allFlagsStateEvaluatesSequentiallyIfPoolIsShutDown() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      upsertFlag(dataStore, flagWithValue("key" + i, LDValue.of(i)));
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(2);
+    pool.shutdown();
+    LDConfig parallelConfig = baseConfig()
+        .dataStore(specificComponent(dataStore))
+        .allFlagsStatePool(pool)
+        .build();
+    try (LDClient parallelClient = new LDClient("SDK_KEY", parallelConfig)) {
+      assertEquals(client.allFlagsState(context), parallelClient.allFlagsState(context));
+    }
+  }
+
+  @Test
+  public void allFlagsStateCacheReturnsCachedStateForSameContext() throws Exception {
+    TestData testData = TestData.dataSource();
+    testData.update(testData.flag("flag1").variationForAll(true));
+    testData.update(testData.flag("flag2").variationForUser(context.getKey(), true));
+    LDConfig config = baseConfig().dataSource(testData).allFlagsStateCacheSize(10).build();
+    try (LDClient client = new LDClient("SDK_KEY", config)) {
+      FeatureFlagsState state1 = client.allFlagsState(context);
+      FeatureFlagsState state2 = client.allFlagsState(LDContext.create(context.getKey()));
+      FeatureFlagsState state3 = client.allFlagsState(LDContext.builder(context.getKey()).set("plan", "free").build());
+      FeatureFlagsState state4 = client.allFlagsState(context, FlagsStateOption.WITH_REASONS);
+      assertSame(state1, state2);
+      assertNotSame(state1, state3);
+      assertEquals(state1, state3);
+      assertNotEquals(state1, state4);
+
+      EvaluationStatistics stats = client.getEvaluationStatistics();
+      assertEquals(new EvaluationStatistics.CacheStatistics(1, 3), stats.getAllFlagsStateCache());
+      assertEquals(3, stats.getAllFlagsStateCacheSize());
+      assertEquals(0, stats.getAllFlagsStateReevaluatedFlagCount());
+    }
+  }
+
+  @Test
+  public void allFlagsStateCacheReevaluatesOnlyChangedFlags() throws Exception {
+    TestData testData = TestData.dataSource();
+    testData.update(testData.flag("flag1").variationForAll(true));
+    testData.update(testData.flag("flag2").variationForAll(true));
+    testData.update(testData.flag("flag3").variationForAll(true));
+    LDConfig config = baseConfig().dataSource(testData).allFlagsStateCacheSize(10).build();
+    try (LDClient client = new LDClient("SDK_KEY", config)) {
+      client.allFlagsState(context);
+
+      testData.update(testData.flag("flag2").variationForAll(false));
+      FeatureFlagsState state2 = client.allFlagsState(context);
+      assertEquals(ImmutableMap.of("flag1", LDValue.of(true), "flag2", LDValue.of(false), "flag3", LDValue.of(true)),
+          state2.toValuesMap());
+      assertEquals(1, client.getEvaluationStatistics().getAllFlagsStateReevaluatedFlagCount());
+
+      testData.delete("flag3");
+      FeatureFlagsState state3 = client.allFlagsState(context);
+      assertEquals(ImmutableMap.of("flag1", LDValue.of(true), "flag2", LDValue.of(false)), state3.toValuesMap());
+      assertSame(state3, client.allFlagsState(context));
+
+      EvaluationStatistics stats = client.getEvaluationStatistics();
+      assertEquals(new EvaluationStatistics.CacheStatistics(3, 1), stats.getAllFlagsStateCache());
+      assertEquals(1, stats.getAllFlagsStateReevaluatedFlagCount()); // deleted flags aren't evaluated
+    }
+  }
+
+  @Test
+  public void allFlagsStateCacheKeepsFlagOrderWhenReevaluatingChangedFlags() throws Exception {
+    TestData testData = TestData.dataSource();
+    for (int i = 0; i < 10; i++) {
+      testData.update(testData.flag("flag" + i).variationForAll(true));
+    }
+    LDConfig config = baseConfig().dataSource(testData).allFlagsStateCacheSize(10).build();
+    try (LDClient client = new LDClient("SDK_KEY", config)) {
+      List<String> keys = new ArrayList<>(client.allFlagsState(context).toValuesMap().keySet());
+
+      testData.update(testData.flag("flag2").variationForAll(false));
+      testData.update(testData.flag("flag7").variationForAll(false));
+      FeatureFlagsState state = client.allFlagsState(context);
+
+      assertEquals(keys, new ArrayList<>(state.toValuesMap().keySet()));
+      assertEquals(LDValue.of(false), state.getFlagValue("flag2"));
+      assertEquals(LDValue.of(false), state.getFlagValue("flag7"));
+      assertEquals(2, client.getEvaluationStatistics().getAllFlagsStateReevaluatedFlagCount());
+    }
+  }
+
+  @Test
+  public void allFlagsStateCacheDoesNotReturnStaleStateForDataThatChangeHasNotBeenRecordedFor() throws Exception {
+    // Updating the store directly publishes new data without telling the cache what changed, as happens
+    // briefly during every update.
+    TestData testData = TestData.dataSource();
+    testData.update(testData.flag("flag1").variationForAll(true));
+    LDConfig config = baseConfig().dataStore(specificComponent(dataStore)).dataSource(testData)
+        .allFlagsStateCacheSize(10).build();
+    try (LDClient client = new LDClient("SDK_KEY", config)) {
+      assertEquals(LDValue.of(true), client.allFlagsState(context).getFlagValue("flag1"));
+
+      upsertFlag(dataStore, flagBuilder("flag1").version(2).on(false).offVariation(0).variations(LDValue.of(false)).build());
+      assertEquals(LDValue.of(false), client.allFlagsState(context).getFlagValue("flag1"));
+
+      assertEquals(new EvaluationStatistics.CacheStatistics(0, 2),
+          client.getEvaluationStatistics().getAllFlagsStateCache());
+    }
+  }
+
+  @Test
+  public void allFlagsStateCacheReevaluatesFlagsThatDependOnChangedSegment() throws Exception {
+    TestData testData = TestData.dataSource();
+    ContextCapturingFactory<DataSource> dataSourceFactory = new ContextCapturingFactory<>(testData);
+    LDConfig config = baseConfig().dataSource(dataSourceFactory).allFlagsStateCacheSize(10).build();
+    try (LDClient client = new LDClient("SDK_KEY", config)) {
+      DataSourceUpdateSink updates = dataSourceFactory.clientContext.getDataSourceUpdateSink();
+      updates.upsert(SEGMENTS, "segment1", new ItemDescriptor(1, segmentBuilder("segment1").version(1).build()));
+      updates.upsert(FEATURES, "flag1", new ItemDescriptor(1, booleanFlagWithClauses("flag1", clauseMatchingSegment("segment1"))));
+      updates.upsert(FEATURES, "flag2", new ItemDescriptor(1, flagWithValue("flag2", LDValue.of("value2"))));
+      assertEquals(LDValue.of(false), client.allFlagsState(context).getFlagValue("flag1"));
+
+      updates.upsert(SEGMENTS, "segment1",
+          new ItemDescriptor(2, segmentBuilder("segment1").version(2).included(context.getKey()).build()));
+      FeatureFlagsState state = client.allFlagsState(context);
+      assertEquals(LDValue.of(true), state.getFlagValue("flag1"));
+      assertEquals(LDValue.of("value2"), state.getFlagValue("flag2"));
+      assertEquals(1, client.getEvaluationStatistics().getAllFlagsStateReevaluatedFlagCount());
+    }
+  }
+
   @Test
   public void allFlagsStateUsesStoreDataIfStoreIsInitializedButClientIsNot() throws Exception {
     upsertFlag(dataStore, flagWithValue("key", LDValue.of("value")));
@@ -14,6 +14,8 @@ import com.launchdarkly.sdk.server.subsystems.DataStore;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static com.launchdarkly.sdk.server.ModelBuilders.clauseMatchingContext;
 import static com.launchdarkly.sdk.server.ModelBuilders.clauseNotMatchingContext;
 import static com.launchdarkly.sdk.server.ModelBuilders.fallthroughVariation;
@@ -298,6 +300,70 @@ public class LDClientEventTest extends BaseTest {
         EvaluationReason.error(ErrorKind.FLAG_NOT_FOUND));
   }
 
+  @Test
+  public void variationsSendsEventForEachFlag() throws Exception {
+    DataModel.FeatureFlag flag1 = flagWithValue("key1", LDValue.of("a"));
+    DataModel.FeatureFlag flag2 = flagWithValue("key2", LDValue.of("b"));
+    upsertFlag(dataStore, flag1);
+    upsertFlag(dataStore, flag2);
+
+    client.variations(context, Arrays.asList("key1", "key2", "key1", "unknown"));
+    assertEquals(3, eventSink.events.size());
+    checkFeatureEvent(eventSink.events.get(0), flag1, LDValue.of("a"), LDValue.ofNull(), null, null);
+    checkFeatureEvent(eventSink.events.get(1), flag2, LDValue.of("b"), LDValue.ofNull(), null, null);
+    checkUnknownFeatureEvent(eventSink.events.get(2), "unknown", LDValue.ofNull(), null, null);
+  }
+
+  @Test
+  public void variationsDetailSendsEventWithReasonForEachFlag() throws Exception {
+    DataModel.FeatureFlag flag = flagWithValue("key", LDValue.of("a"));
+    upsertFlag(dataStore, flag);
+
+    client.variationsDetail(context, Arrays.asList("key", "unknown"));
+    assertEquals(2, eventSink.events.size());
+    checkFeatureEvent(eventSink.events.get(0), flag, LDValue.of("a"), LDValue.ofNull(), null, EvaluationReason.off());
+    checkUnknownFeatureEvent(eventSink.events.get(1), "unknown", LDValue.ofNull(), null,
+        EvaluationReason.error(ErrorKind.FLAG_NOT_FOUND));
+  }
+
+  @Test
+  public void variationsDoesNotSendEventsForInvalidContext() throws Exception {
+    upsertFlag(dataStore, flagWithValue("key", LDValue.of("value")));
+
+    client.variations(invalidContext, Arrays.asList("key"));
+    client.variations(null, Arrays.asList("key"));
+    assertEquals(0, eventSink.events.size());
+  }
+
+  @Test
+  public void preparedContextSendsSameEventsAsClient() throws Exception {
+    DataModel.FeatureFlag flag = flagWithValue("key", LDValue.of("a"));
+    upsertFlag(dataStore, flag);
+    PreparedContext prepared = client.prepare(context);
+
+    prepared.stringVariation("key", "x");
+    prepared.stringVariationDetail("key", "x");
+    prepared.variations(Arrays.asList("unknown"));
+    assertEquals(3, eventSink.events.size());
+    checkFeatureEvent(eventSink.events.get(0), flag, LDValue.of("a"), LDValue.of("x"), null, null);
+    checkFeatureEvent(eventSink.events.get(1), flag, LDValue.of("a"), LDValue.of("x"), null, EvaluationReason.off());
+    checkUnknownFeatureEvent(eventSink.events.get(2), "unknown", LDValue.ofNull(), null, null);
+  }
+
+  @Test
+  public void flagHandleSendsSameEventsAsClient() throws Exception {
+    DataModel.FeatureFlag flag = flagWithValue("key", LDValue.of("a"));
+    upsertFlag(dataStore, flag);
+
+    client.flagHandle("key").stringVariation(context, "x");
+    client.flagHandle("key").stringVariationDetail(context, "x");
+    client.flagHandle("unknown").stringVariation(context, "x");
+    assertEquals(3, eventSink.events.size());
+    checkFeatureEvent(eventSink.events.get(0), flag, LDValue.of("a"), LDValue.of("x"), null, null);
+    checkFeatureEvent(eventSink.events.get(1), flag, LDValue.of("a"), LDValue.of("x"), null, EvaluationReason.off());
+    checkUnknownFeatureEvent(eventSink.events.get(2), "unknown", LDValue.of("x"), null, null);
+  }
+
   @Test
   public void variationDoesNotSendEventForInvalidContextOrNullUser() throws Exception {
     DataModel.FeatureFlag flag = flagWithValue("key", LDValue.of("value"));
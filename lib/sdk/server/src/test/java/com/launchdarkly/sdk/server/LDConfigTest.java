@@ -26,6 +26,7 @@ import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.launchdarkly.sdk.server.TestComponents.clientContext;
@@ -189,6 +190,40 @@ public class LDConfigTest {
     assertEquals(Thread.MAX_PRIORITY, config.threadPriority);
   }
 
+  @Test
+  public void regexMatchCacheSize() {
+    assertEquals(0, new LDConfig.Builder().build().regexMatchCacheSize);
+    assertEquals(1000, new LDConfig.Builder().regexMatchCacheSize(1000).build().regexMatchCacheSize);
+    assertEquals(0, new LDConfig.Builder().regexMatchCacheSize(-1).build().regexMatchCacheSize);
+
+    LDConfig config = new LDConfig.Builder().regexMatchCacheSize(1000).build();
+    assertEquals(1000, LDConfig.Builder.fromConfig(config).build().regexMatchCacheSize);
+  }
+
+  @Test
+  public void allFlagsStatePool() {
+    assertNull(new LDConfig.Builder().build().allFlagsStatePool);
+
+    ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      LDConfig config = new LDConfig.Builder().allFlagsStatePool(pool).build();
+      assertSame(pool, config.allFlagsStatePool);
+      assertSame(pool, LDConfig.Builder.fromConfig(config).build().allFlagsStatePool);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void allFlagsStateCacheSize() {
+    assertEquals(0, new LDConfig.Builder().build().allFlagsStateCacheSize);
+    assertEquals(1000, new LDConfig.Builder().allFlagsStateCacheSize(1000).build().allFlagsStateCacheSize);
+    assertEquals(0, new LDConfig.Builder().allFlagsStateCacheSize(-1).build().allFlagsStateCacheSize);
+
+    LDConfig config = new LDConfig.Builder().allFlagsStateCacheSize(1000).build();
+    assertEquals(1000, LDConfig.Builder.fromConfig(config).build().allFlagsStateCacheSize);
+  }
+
   @Test
   public void testHttpDefaults() {
     LDConfig config = new LDConfig.Builder().build();
@@ -2,6 +2,7 @@ package com.launchdarkly.sdk.server;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.launchdarkly.sdk.LDValue;
 import com.launchdarkly.sdk.server.DataStoreTestTypes.DataBuilder;
 import com.launchdarkly.sdk.server.DataStoreTestTypes.TestItem;
 import com.launchdarkly.sdk.server.integrations.MockPersistentDataStore;
@@ -25,6 +26,7 @@ import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
+import static com.launchdarkly.sdk.server.DataModel.FEATURES;
 import static com.launchdarkly.sdk.server.DataStoreTestTypes.TEST_ITEMS;
 import static com.launchdarkly.sdk.server.DataStoreTestTypes.toDataMap;
 import static com.launchdarkly.sdk.server.DataStoreTestTypes.toItemsMap;
@@ -35,8 +37,10 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeThat;
 
@@ -207,6 +211,23 @@ public class PersistentDataStoreWrapperTest extends BaseTest {
     }
   }
 
+  @Test
+  public void getAllUsesOneInstanceForEqualValuesInDifferentItems() {
+    LDValue jsonVariation = LDValue.buildObject().put("color", "green").build();
+    for (String key: new String[] { "flag1", "flag2" }) {
+      DataModel.FeatureFlag flag = ModelBuilders.flagBuilder(key).version(1).variations(jsonVariation).build();
+      core.forceSet(FEATURES, key, toSerialized(FEATURES, new ItemDescriptor(1, flag)));
+    }
+
+    Map<String, ItemDescriptor> items = toItemsMap(wrapper.getAll(FEATURES));
+    DataModel.FeatureFlag flag1 = (DataModel.FeatureFlag)items.get("flag1").getItem();
+    DataModel.FeatureFlag flag2 = (DataModel.FeatureFlag)items.get("flag2").getItem();
+
+    assertEquals(jsonVariation, flag1.getVariations().get(0));
+    assertSame(flag1.getVariations().get(0), flag2.getVariations().get(0));
+    assertNull(DataModelInterner.current());
+  }
+
   @Test
   public void getAllDoesNotRemoveDeletedItems() {
     String key1 = "key1", key2 = "key2";    
@@ -0,0 +1,143 @@
+package com.launchdarkly.sdk.server;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("javadoc")
+public class PersistentHashMapTest {
+  @Test
+  public void emptyMap() {
+    PersistentHashMap<String, String> map = PersistentHashMap.empty();
+    assertEquals(0, map.size());
+    assertTrue(map.isEmpty());
+    assertNull(map.get("a"));
+    assertNull(map.get(null));
+    assertFalse(map.entrySet().iterator().hasNext());
+    assertSame(map, map.without("a"));
+    assertEquals(ImmutableMap.of(), map);
+  }
+
+  @Test
+  public void withAddsOrReplacesValueWithoutChangingOriginal() {
+    PersistentHashMap<String, Integer> map1 = PersistentHashMap.<String, Integer>empty().with("a", 1);
+    PersistentHashMap<String, Integer> map2 = map1.with("b", 2);
+    PersistentHashMap<String, Integer> map3 = map2.with("a", 3);
+
+    assertEquals(ImmutableMap.of("a", 1), map1);
+    assertEquals(ImmutableMap.of("a", 1, "b", 2), map2);
+    assertEquals(ImmutableMap.of("a", 3, "b", 2), map3);
+    assertEquals(2, map3.size());
+  }
+
+  @Test
+  public void withoutRemovesValueWithoutChangingOriginal() {
+    PersistentHashMap<String, Integer> map1 = PersistentHashMap.copyOf(ImmutableMap.of("a", 1, "b", 2));
+    PersistentHashMap<String, Integer> map2 = map1.without("a");
+
+    assertEquals(ImmutableMap.of("a", 1, "b", 2), map1);
+    assertEquals(ImmutableMap.of("b", 2), map2);
+    assertSame(map2, map2.without("a"));
+    assertEquals(ImmutableMap.of(), map2.without("b"));
+  }
+
+  @Test
+  public void nullValuesAreAllowed() {
+    PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().with("a", null);
+    assertEquals(1, map.size());
+    assertTrue(map.containsKey("a"));
+    assertNull(map.get("a"));
+  }
+
+  @Test
+  public void keysWithSameHashCodeAreDistinct() {
+    // "Aa" and "BB" have the same hash code, and so do "AaAa", "AaBB", "BBAa", and "BBBB"
+    List<String> keys = new ArrayList<>();
+    for (String a: new String[] { "Aa", "BB" }) {
+      for (String b: new String[] { "Aa", "BB" }) {
+        keys.add(a + b);
+      }
+    }
+    keys.add("Aa");
+    keys.add("BB");
+    Map<String, Integer> expected = new HashMap<>();
+    PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+    for (int i = 0; i < keys.size(); i++) {
+      map = map.with(keys.get(i), i);
+      expected.put(keys.get(i), i);
+      assertEquals(expected, map);
+    }
+    assertEquals(expected, PersistentHashMap.copyOf(expected));
+    map = map.with("AaAa", 100);
+    expected.put("AaAa", 100);
+    assertEquals(expected, map);
+    for (String key: keys) {
+      map = map.without(key);
+      expected.remove(key);
+      assertEquals(expected, map);
+      assertFalse(map.containsKey(key));
+    }
+    assertTrue(map.isEmpty());
+  }
+
+  @Test
+  public void randomOperationsHaveSameResultsAsHashMap() {
+    Random random = new Random(12345);
+    Map<String, Integer> expected = new HashMap<>();
+    PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+    for (int i = 0; i < 20000; i++) {
+      String key = "key" + random.nextInt(3000);
+      if (random.nextInt(4) == 0) {
+        map = map.without(key);
+        expected.remove(key);
+      } else {
+        map = map.with(key, i);
+        expected.put(key, i);
+      }
+      assertEquals(expected.size(), map.size());
+      assertEquals(expected.get(key), map.get(key));
+    }
+    assertEquals(expected, map);
+    assertEquals(expected.hashCode(), map.hashCode());
+    assertEquals(expected, new HashMap<>(map));
+  }
+
+  @Test
+  public void copyOfHasSameEntriesAsMap() {
+    for (int size: new int[] { 1, 2, 31, 32, 33, 1000, 100000 }) {
+      Map<String, Integer> source = new HashMap<>();
+      for (int i = 0; i < size; i++) {
+        source.put("key" + i, i);
+      }
+      PersistentHashMap<String, Integer> map = PersistentHashMap.copyOf(source);
+      assertEquals(size, map.size());
+      assertEquals(source, map);
+      assertEquals(source, new HashMap<>(map));
+      assertSame(map, PersistentHashMap.copyOf(map));
+    }
+  }
+
+  @Test
+  public void entriesCannotBeModified() {
+    PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().with("a", 1);
+    try {
+      map.entrySet().iterator().next().setValue(2);
+    } catch (UnsupportedOperationException e) {
+      assertEquals(Integer.valueOf(1), map.get("a"));
+      return;
+    }
+    throw new AssertionError("expected exception");
+  }
+}
@@ -0,0 +1,86 @@
+package com.launchdarkly.sdk.server;
+
+import com.launchdarkly.sdk.AttributeRef;
+import com.launchdarkly.sdk.ContextKind;
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@SuppressWarnings("javadoc")
+public class PreparedContextTest {
+  private static final ContextKind ORG = ContextKind.of("org");
+  private static final LDContext user = LDContext.builder("userkey").name("Lucy").anonymous(true)
+      .set("address", LDValue.buildObject().put("city", "Oakland").build())
+      .build();
+  private static final LDContext org = LDContext.builder(ORG, "orgkey").set("plan", "gold").build();
+  private static final LDContext multi = LDContext.createMulti(user, org);
+
+  @Test
+  public void individualContextsAreIndexedByKind() {
+    PreparedContext prepared = new PreparedContext(null, multi);
+
+    assertSame(multi, prepared.getContext());
+    assertSame(user, prepared.getIndividualContext(ContextKind.DEFAULT));
+    assertSame(user, prepared.getIndividualContext(null));
+    assertSame(org, prepared.getIndividualContext(ContextKind.of("org")));
+    assertNull(prepared.getIndividualContext(ContextKind.of("device")));
+    assertEquals("userkey", prepared.getKey(null));
+    assertEquals("orgkey", prepared.getKey(ORG));
+    assertNull(prepared.getKey(ContextKind.of("device")));
+  }
+
+  @Test
+  public void singleKindContextIsIndexed() {
+    PreparedContext prepared = new PreparedContext(null, org);
+
+    assertSame(org, prepared.getIndividualContext(ORG));
+    assertNull(prepared.getIndividualContext(ContextKind.DEFAULT));
+    assertArrayEquals(new LDValue[] { LDValue.of("org") }, prepared.getKindValues());
+  }
+
+  @Test
+  public void attributeValuesAreSameAsInContext() {
+    PreparedContext prepared = new PreparedContext(null, multi);
+    String[] refs = new String[] { "kind", "key", "name", "anonymous", "address", "/address/city", "/address/zip",
+        "/name/first", "plan", "unknown", "/" };
+
+    for (LDContext c: new LDContext[] { user, org }) {
+      for (String ref: refs) {
+        AttributeRef attr = AttributeRef.fromPath(ref);
+        assertEquals(c.getKind() + " " + ref, c.getValue(attr), prepared.getValue(c.getKind(), attr));
+      }
+    }
+  }
+
+  @Test
+  public void attributeValueIsNullIfThereIsNoContextOfThatKind() {
+    PreparedContext prepared = new PreparedContext(null, multi);
+
+    assertEquals(LDValue.ofNull(), prepared.getValue(ContextKind.of("device"), AttributeRef.fromLiteral("key")));
+  }
+
+  @Test
+  public void kindValuesAreInSameOrderAsIndividualContexts() {
+    PreparedContext prepared = new PreparedContext(null, multi);
+
+    assertArrayEquals(new LDValue[] { LDValue.of(multi.getIndividualContext(0).getKind().toString()),
+        LDValue.of(multi.getIndividualContext(1).getKind().toString()) }, prepared.getKindValues());
+  }
+
+  @Test
+  public void invalidContextHasNoIndividualContexts() {
+    for (LDContext c: new LDContext[] { null, LDContext.create(null) }) {
+      PreparedContext prepared = new PreparedContext(null, c);
+
+      assertSame(c, prepared.getContext());
+      assertNull(prepared.getIndividualContext(ContextKind.DEFAULT));
+      assertEquals(0, prepared.getKindValues().length);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.launchdarkly.sdk.server;
+
+import com.google.common.collect.ImmutableList;
+import com.launchdarkly.sdk.LDContext;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.server.DataModel.FeatureFlag;
+import com.launchdarkly.sdk.server.DataModel.Operator;
+import com.launchdarkly.sdk.server.EvaluatorOperators.ValueMatcher;
+import com.launchdarkly.sdk.server.interfaces.EvaluationStatistics;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.launchdarkly.sdk.server.EvaluatorTestUtil.BASE_EVALUATOR;
+import static com.launchdarkly.sdk.server.ModelBuilders.booleanFlagWithClauses;
+import static com.launchdarkly.sdk.server.ModelBuilders.clause;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("javadoc")
+public class RegexMatchCacheTest {
+  private static final EvaluationRecorder recorder = new EvaluationRecorder() {};
+
+  private static ValueMatcher regexMatcher(String... patterns) {
+    ImmutableList.Builder<LDValue> values = ImmutableList.builder();
+    for (String p: patterns) {
+      values.add(LDValue.of(p));
+    }
+    List<LDValue> list = values.build();
+    return EvaluatorOperators.compileValueMatcher(Operator.matches, list, null);
+  }
+
+  @Test
+  public void repeatedValueIsCacheHit() {
+    RegexMatchCache cache = new RegexMatchCache(100);
+    ValueMatcher matcher = regexMatcher("^Mozilla/.*Firefox");
+
+    assertTrue(cache.matchAny(matcher, LDValue.of("Mozilla/5.0 Firefox/120")));
+    assertTrue(cache.matchAny(matcher, LDValue.of("Mozilla/5.0 Firefox/120")));
+    assertFalse(cache.matchAny(matcher, LDValue.of("curl/8.0")));
+    assertFalse(cache.matchAny(matcher, LDValue.of("curl/8.0")));
+
+    assertEquals(new EvaluationStatistics.CacheStatistics(2, 2), cache.getStatistics());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void resultsAreNotSharedBetweenClauses() {
+    RegexMatchCache cache = new RegexMatchCache(100);
+    ValueMatcher matcher1 = regexMatcher("a");
+    ValueMatcher matcher2 = regexMatcher("a");
+
+    assertTrue(cache.matchAny(matcher1, LDValue.of("abc")));
+    assertTrue(cache.matchAny(matcher2, LDValue.of("abc")));
+
+    assertEquals(new EvaluationStatistics.CacheStatistics(0, 2), cache.getStatistics());
+  }
+
+  @Test
+  public void cacheIsBounded() {
+    RegexMatchCache cache = new RegexMatchCache(10);
+    ValueMatcher matcher = regexMatcher("x");
+    for (int i = 0; i < 100; i++) {
+      cache.matchAny(matcher, LDValue.of("value" + i));
+    }
+    assertTrue(cache.size() <= 10);
+  }
+
+  @Test
+  public void evaluatorUsesCacheForRegexClauses() {
+    RegexMatchCache cache = new RegexMatchCache(100);
+    Evaluator evaluator = new Evaluator(new Evaluator.Getters() {
+      public FeatureFlag getFlag(String key) {
+        return null;
+      }
+
+      public DataModel.Segment getSegment(String key) {
+        return null;
+      }
+
+      public BigSegmentStoreWrapper.BigSegmentsQueryResult getBigSegments(String key) {
+        return null;
+      }
+    }, TestComponents.nullLogger, new EvaluatorStatistics(), cache);
+    FeatureFlag flag = booleanFlagWithClauses("flag",
+        clause("userAgent", Operator.matches, LDValue.of("Chrome/[0-9]+"), LDValue.of("Safari/[0-9]+")));
+    LDContext chrome = LDContext.builder("a").set("userAgent", "Mozilla/5.0 Chrome/119").build();
+    LDContext curl = LDContext.builder("b").set("userAgent", "curl/8.0").build();
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(BASE_EVALUATOR.evaluate(flag, chrome, recorder), evaluator.evaluate(flag, chrome, recorder));
+      assertEquals(BASE_EVALUATOR.evaluate(flag, curl, recorder), evaluator.evaluate(flag, curl, recorder));
+    }
+    assertEquals(LDValue.of(true), evaluator.evaluate(flag, chrome, recorder).getValue());
+    assertEquals(new EvaluationStatistics.CacheStatistics(5, 2), cache.getStatistics());
+  }
+}
@@ -0,0 +1,111 @@
+package com.launchdarkly.sdk.server;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("javadoc")
+public class StringPatternIndexTest {
+  @Test
+  public void prefixes() {
+    StringPatternIndex index = StringPatternIndex.forPrefixes(ImmutableList.of("abc", "abd", "x", "xyz"));
+    assertTrue(index.matches("abc"));
+    assertTrue(index.matches("abcdef"));
+    assertTrue(index.matches("abd"));
+    assertTrue(index.matches("xylophone"));
+    assertFalse(index.matches("ab"));
+    assertFalse(index.matches("zabc"));
+    assertFalse(index.matches(""));
+  }
+
+  @Test
+  public void suffixes() {
+    StringPatternIndex index = StringPatternIndex.forSuffixes(ImmutableList.of("@a.com", "@b.com", ".org"));
+    assertTrue(index.matches("user@a.com"));
+    assertTrue(index.matches("@b.com"));
+    assertTrue(index.matches("someone@example.org"));
+    assertFalse(index.matches("user@c.com"));
+    assertFalse(index.matches("user@a.com.evil"));
+    assertFalse(index.matches("com"));
+  }
+
+  @Test
+  public void substrings() {
+    StringPatternIndex index = StringPatternIndex.forSubstrings(ImmutableList.of("he", "she", "his", "hers"));
+    assertTrue(index.matches("ushers"));
+    assertTrue(index.matches("this"));
+    assertTrue(index.matches("he"));
+    assertFalse(index.matches("hi"));
+    assertFalse(index.matches("s-h-e"));
+    assertFalse(index.matches(""));
+  }
+
+  @Test
+  public void substringFoundAfterPartialMatchOfLongerPattern() {
+    // "abcd" fails at the last character, and the scan has to fall back to find "bce"
+    StringPatternIndex index = StringPatternIndex.forSubstrings(ImmutableList.of("abcd", "bce"));
+    assertTrue(index.matches("xabcex"));
+    assertFalse(index.matches("xabcx"));
+  }
+
+  @Test
+  public void emptyPatternMatchesEverything() {
+    List<String> patterns = ImmutableList.of("abc", "");
+    assertTrue(StringPatternIndex.forPrefixes(patterns).matches("xyz"));
+    assertTrue(StringPatternIndex.forSuffixes(patterns).matches("xyz"));
+    assertTrue(StringPatternIndex.forSubstrings(patterns).matches(""));
+  }
+
+  @Test
+  public void nonAsciiCharacters() {
+    List<String> patterns = ImmutableList.of("ü", "€uro", "😀");
+    assertTrue(StringPatternIndex.forPrefixes(patterns).matches("über"));
+    assertTrue(StringPatternIndex.forSuffixes(patterns).matches("smile😀"));
+    assertTrue(StringPatternIndex.forSubstrings(patterns).matches("10 €uros"));
+    assertFalse(StringPatternIndex.forSubstrings(patterns).matches("euro"));
+  }
+
+  @Test
+  public void resultsAreSameAsStringMethodsForRandomInputs() {
+    Random random = new Random(5678);
+    for (int round = 0; round < 200; round++) {
+      List<String> patterns = new ArrayList<>();
+      int patternCount = 1 + random.nextInt(30);
+      for (int i = 0; i < patternCount; i++) {
+        patterns.add(randomString(random, 1 + random.nextInt(4)));
+      }
+      StringPatternIndex prefixes = StringPatternIndex.forPrefixes(patterns);
+      StringPatternIndex suffixes = StringPatternIndex.forSuffixes(patterns);
+      StringPatternIndex substrings = StringPatternIndex.forSubstrings(patterns);
+      for (int i = 0; i < 50; i++) {
+        String s = randomString(random, random.nextInt(12));
+        boolean expectStartsWith = false, expectEndsWith = false, expectContains = false;
+        for (String p: patterns) {
+          expectStartsWith |= s.startsWith(p);
+          expectEndsWith |= s.endsWith(p);
+          expectContains |= s.contains(p);
+        }
+        assertEquals(patterns + " startsWith " + s, expectStartsWith, prefixes.matches(s));
+        assertEquals(patterns + " endsWith " + s, expectEndsWith, suffixes.matches(s));
+        assertEquals(patterns + " contains " + s, expectContains, substrings.matches(s));
+      }
+    }
+  }
+
+  private static String randomString(Random random, int length) {
+    // a small alphabet, so that patterns overlap and share prefixes often
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = "abcd".charAt(random.nextInt(4));
+    }
+    return new String(chars);
+  }
+}
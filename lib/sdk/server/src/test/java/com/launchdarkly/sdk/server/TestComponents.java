@@ -20,6 +20,9 @@ import com.launchdarkly.sdk.server.interfaces.DataStoreStatusProvider;
 import com.launchdarkly.sdk.server.interfaces.DataStoreStatusProvider.CacheStats;
 import com.launchdarkly.sdk.server.interfaces.FlagChangeEvent;
 import com.launchdarkly.sdk.server.interfaces.FlagChangeListener;
+import com.launchdarkly.sdk.server.subsystems.BigSegmentStore;
+import com.launchdarkly.sdk.server.subsystems.BigSegmentStoreTypes.Membership;
+import com.launchdarkly.sdk.server.subsystems.BigSegmentStoreTypes.StoreMetadata;
 import com.launchdarkly.sdk.server.subsystems.ClientContext;
 import com.launchdarkly.sdk.server.subsystems.ComponentConfigurer;
 import com.launchdarkly.sdk.server.subsystems.DataSource;
@@ -35,9 +38,11 @@ import com.launchdarkly.sdk.server.subsystems.EventProcessor;
 import com.launchdarkly.sdk.server.subsystems.HttpConfiguration;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
@@ -45,7 +50,9 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.launchdarkly.testhelpers.ConcurrentHelpers.awaitValue;
@@ -288,6 +295,70 @@ public class TestComponents {
     }
   }
   
+  /**
+   * A BigSegmentStore that keeps memberships in memory, counts queries, and can simulate the latency of a
+   * database round trip for each query.
+   */
+  public static class InMemoryBigSegmentStore implements BigSegmentStore {
+    private final Map<String, Membership> memberships = new ConcurrentHashMap<>();
+    private final Duration latency;
+    public final AtomicInteger singleQueryCount = new AtomicInteger();
+    public final AtomicInteger batchQueryCount = new AtomicInteger();
+    public final AtomicInteger queriedUserCount = new AtomicInteger();
+    public final AtomicInteger metadataQueryCount = new AtomicInteger();
+
+    public InMemoryBigSegmentStore() {
+      this(Duration.ZERO);
+    }
+
+    public InMemoryBigSegmentStore(Duration latency) {
+      this.latency = latency;
+    }
+
+    public void setMembership(String userKey, Membership membership) {
+      memberships.put(BigSegmentStoreWrapper.hashForUserKey(userKey), membership);
+    }
+
+    @Override
+    public Membership getMembership(String userHash) {
+      singleQueryCount.incrementAndGet();
+      queriedUserCount.incrementAndGet();
+      simulateRoundTrip();
+      return memberships.get(userHash);
+    }
+
+    @Override
+    public Map<String, Membership> getMemberships(Collection<String> userHashes) {
+      batchQueryCount.incrementAndGet();
+      queriedUserCount.addAndGet(userHashes.size());
+      simulateRoundTrip();
+      Map<String, Membership> ret = new HashMap<>();
+      for (String userHash: userHashes) {
+        ret.put(userHash, memberships.get(userHash));
+      }
+      return ret;
+    }
+
+    @Override
+    public StoreMetadata getMetadata() {
+      metadataQueryCount.incrementAndGet();
+      return new StoreMetadata(System.currentTimeMillis());
+    }
+
+    @Override
+    public void close() throws IOException {}
+
+    private void simulateRoundTrip() {
+      if (!latency.isZero()) {
+        try {
+          Thread.sleep(latency.toMillis());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
   private static class DataStoreThatThrowsException implements DataStore {
     private final RuntimeException e;
     
@@ -13,6 +13,7 @@ import org.junit.Test;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import static com.launchdarkly.sdk.server.TestComponents.clientContext;
@@ -102,6 +103,26 @@ public abstract class BigSegmentStoreTestBase extends BaseTest {
     }
   }
 
+  @Test
+  public void membershipsFoundInBatch() throws Exception {
+    String otherUserHash = "otheruserhash", unknownUserHash = "unknownuserhash";
+    try (BigSegmentStore store = makeEmptyStore()) {
+      setSegments(prefix, fakeUserHash, Collections.singleton(segmentRef1), Collections.singleton(segmentRef2));
+      setSegments(prefix, otherUserHash, Collections.singleton(segmentRef3), Collections.<String>emptyList());
+      Map<String, Membership> memberships =
+          store.getMemberships(Arrays.asList(fakeUserHash, otherUserHash, unknownUserHash));
+
+      assertEqualMembership(createMembershipFromSegmentRefs(Collections.singleton(segmentRef1),
+          Collections.singleton(segmentRef2)), memberships.get(fakeUserHash));
+      assertEqualMembership(createMembershipFromSegmentRefs(Collections.singleton(segmentRef3), null),
+          memberships.get(otherUserHash));
+      // Either no entry, null, or an empty membership is allowed
+      if (memberships.get(unknownUserHash) != null) {
+        assertEqualMembership(createMembershipFromSegmentRefs(null, null), memberships.get(unknownUserHash));
+      }
+    }
+  }
+
   private static class Memberships {
     final Iterable<String> inclusions;
     final Iterable<String> exclusions;
@@ -16,6 +16,7 @@ import java.time.Duration;
 
 import static com.launchdarkly.sdk.server.TestComponents.specificComponent;
 import static org.easymock.EasyMock.createStrictControl;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 
 @SuppressWarnings("javadoc")
@@ -60,6 +61,33 @@ public class BigSegmentsConfigurationBuilderTest {
     prop.assertSetIsChangedTo(Duration.ofSeconds(-1), BigSegmentsConfigurationBuilder.DEFAULT_USER_CACHE_TIME);
   }
 
+  @Test
+  public void notMemberCacheTime() {
+    BuilderPropertyTester<Duration> prop = tester.property(BigSegmentsConfiguration::getNotMemberCacheTime,
+                                                           BigSegmentsConfigurationBuilder::notMemberCacheTime);
+    prop.assertDefault(BigSegmentsConfigurationBuilder.DEFAULT_USER_CACHE_TIME);
+    prop.assertCanSet(Duration.ofSeconds(60));
+    prop.assertCanSet(Duration.ZERO);
+    prop.assertSetIsChangedTo(null, BigSegmentsConfigurationBuilder.DEFAULT_USER_CACHE_TIME);
+    prop.assertSetIsChangedTo(Duration.ofSeconds(-1), BigSegmentsConfigurationBuilder.DEFAULT_USER_CACHE_TIME);
+  }
+
+  @Test
+  public void notMemberCacheTimeDefaultsToUserCacheTime() {
+    BigSegmentsConfiguration c = Components.bigSegments(null).userCacheTime(Duration.ofSeconds(10)).build(null);
+    assertEquals(Duration.ofSeconds(10), c.getNotMemberCacheTime());
+  }
+
+  @Test
+  public void userCacheRefreshAheadFactor() {
+    BuilderPropertyTester<Double> prop = tester.property(BigSegmentsConfiguration::getUserCacheRefreshAheadFactor,
+                                                         BigSegmentsConfigurationBuilder::userCacheRefreshAheadFactor);
+    prop.assertDefault(0d);
+    prop.assertCanSet(0.25);
+    prop.assertSetIsChangedTo(1d, 0d);
+    prop.assertSetIsChangedTo(-0.5, 0d);
+  }
+
   @Test
   public void statusPollInterval() {
     BuilderPropertyTester<Duration> prop = tester.property(BigSegmentsConfiguration::getStatusPollInterval,